@@ -16,8 +16,6 @@
  */
 package cz.incad.kramerius.rest.api.k5.admin.statistics;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
@@ -25,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -42,7 +41,6 @@ import cz.incad.kramerius.rest.api.processes.LRResource;
 import cz.incad.kramerius.statistics.filters.*;
 import cz.incad.kramerius.statistics.formatters.report.StatisticsReportFormatter;
 import cz.incad.kramerius.users.LoggedUsersSingleton;
-import cz.incad.kramerius.utils.IOUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -169,7 +167,8 @@ public class StatisticsResource {
                                   @QueryParam("uniqueipaddresses") String uniqueIpAddresses,
                                   @QueryParam("annualyear") String annual,
                                   @QueryParam("pids") String pids,
-                                  @DefaultValue("export.data") @QueryParam("file") String file) {
+                                  @DefaultValue("export.data") @QueryParam("file") String file,
+                                  @DefaultValue("false") @QueryParam("gzip") boolean gzip) {
 
 
         AnnualYearFilter annualYearFilter = new AnnualYearFilter();
@@ -238,33 +237,43 @@ public class StatisticsResource {
                             + ((ipAddr.getIpAddress().equals("")) ? "" : "zakázané IP adresy: " + ipAddr.getIpAddress() + ", ")
                             + "unikátní IP adresy: " + uniqueIpAddresses + ".";
 
-                    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-                    try {
-                        STATISTIC_SEMAPHORE.acquire();
-                        selectedFormatter.addInfo(bos, info);
-                        selectedFormatter.beforeProcess(bos);
-
-                        // Must be synchronized - only one report at the time
-                        report.prepareViews(action != null ? ReportedAction.valueOf(action) : null,new StatisticsFiltersContainer(new StatisticsFilter []{dateFilter,modelFilter, ipAddr, multimodelFilter, annualYearFilter, pidsFilter}));
-                        report.processAccessLog(action != null ? ReportedAction.valueOf(action) : null, selectedFormatter,new StatisticsFiltersContainer(new StatisticsFilter []{dateFilter,modelFilter,visFilter,ipAddr, multimodelFilter, annualYearFilter, uniqueIPFilter, pidsFilter}));
-                        selectedFormatter.afterProcess(bos);
-
-                        return Response.ok(new StreamingOutput() {
-                            @Override
-                            public void write(OutputStream output) throws IOException, WebApplicationException {
-                                IOUtils.copyStreams(new ByteArrayInputStream(bos.toByteArray()), output);
+                    final String reportInfo = info;
+                    final ReportedAction reportedAction = action != null ? ReportedAction.valueOf(action) : null;
+                    final StatisticsFiltersContainer viewFilters = new StatisticsFiltersContainer(new StatisticsFilter []{dateFilter,modelFilter, ipAddr, multimodelFilter, annualYearFilter, pidsFilter});
+                    final StatisticsFiltersContainer reportFilters = new StatisticsFiltersContainer(new StatisticsFilter []{dateFilter,modelFilter,visFilter,ipAddr, multimodelFilter, annualYearFilter, uniqueIPFilter, pidsFilter});
+
+                    // records are written directly into the response, large exports are not collected in the memory
+                    Response.ResponseBuilder builder = Response.ok(new StreamingOutput() {
+                        @Override
+                        public void write(OutputStream output) throws IOException, WebApplicationException {
+                            OutputStream os = gzip ? new GZIPOutputStream(output, 1 << 16) : output;
+                            try {
+                                STATISTIC_SEMAPHORE.acquire();
+                                try {
+                                    selectedFormatter.addInfo(os, reportInfo);
+                                    selectedFormatter.beforeProcess(os);
+
+                                    // Must be synchronized - only one report at the time
+                                    report.prepareViews(reportedAction, viewFilters);
+                                    report.processAccessLog(reportedAction, selectedFormatter, reportFilters);
+                                    selectedFormatter.afterProcess(os);
+                                } finally {
+                                    STATISTIC_SEMAPHORE.release();
+                                }
+                                if (gzip) {
+                                    ((GZIPOutputStream) os).finish();
+                                }
+                            } catch (StatisticsReportException e) {
+                                throw new GenericApplicationException(e.getMessage());
+                            } catch (InterruptedException e) {
+                                throw new GenericApplicationException(e.getMessage());
                             }
-                        }).header("Content-disposition",  "attachment; filename="+file).build();
-                    } catch (IOException e) {
-                        throw new GenericApplicationException(e.getMessage());
-                    } catch (StatisticsReportException e) {
-                        throw new GenericApplicationException(e.getMessage());
-                    } catch (InterruptedException e) {
-                        throw new GenericApplicationException(e.getMessage());
-                    } finally {
-                        STATISTIC_SEMAPHORE.release();
+                        }
+                    }).header("Content-disposition",  "attachment; filename="+file);
+                    if (gzip) {
+                        builder.type("application/gzip");
                     }
+                    return builder.build();
                 } else {
                     throw new BadRequestException("For selected report and selected mimtype I cannot find the formatter");
                 }
@@ -1,7 +1,5 @@
 package cz.incad.kramerius.rest.api.k5.client.pdf;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Date;
@@ -15,19 +13,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import cz.incad.kramerius.statistics.accesslogs.AggregatedAccessLogs;
-import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
+import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfWriter;
 
 import cz.incad.kramerius.AbstractObjectPath;
 import cz.incad.kramerius.FedoraAccess;
@@ -43,6 +44,7 @@ import cz.incad.kramerius.pdf.FirstPagePDFService;
 import cz.incad.kramerius.pdf.GeneratePDFService;
 import cz.incad.kramerius.pdf.OutOfRangeException;
 import cz.incad.kramerius.pdf.SimplePDFService;
+import cz.incad.kramerius.pdf.utils.pdf.DocumentUtils;
 import cz.incad.kramerius.pdf.utils.pdf.FontMap;
 import cz.incad.kramerius.rest.api.k5.client.JSONDecoratorsAggregate;
 import cz.incad.kramerius.rest.api.k5.client.SolrMemoization;
@@ -140,56 +142,39 @@ public class AbstractPDFResource {
     }
 
     
-    public File selection(String[] pids, Rectangle rect,FirstPage fp) throws DocumentException, IOException, ProcessSubtreeException, OutOfRangeException {
-        FontMap fmap = new FontMap(deprectedService.fontsFolder());
-
-        PreparedDocument rdoc = documentService.buildDocumentFromSelection(pids, new int[] {(int)rect.getWidth(), (int)rect.getHeight()});
+    /**
+     * Prepares pdf from selection; checks rights and reports access immediately, the pdf is rendered when the
+     * returned output is written
+     */
+    public StreamingOutput selection(final String[] pids, Rectangle rect, FirstPage fp) throws DocumentException, IOException, ProcessSubtreeException, OutOfRangeException {
+        final FontMap fmap = new FontMap(deprectedService.fontsFolder());
+
+        final PreparedDocument rdoc = documentService.buildDocumentFromSelection(pids, new int[] {(int)rect.getWidth(), (int)rect.getHeight()});
         checkRenderedPDFDoc(rdoc);
 
-        File parentFile = null;
-        File firstPageFile = null;
-        try {
-            // abstract document
-            parentFile = File.createTempFile("body", "pdf");
-            FileOutputStream bodyTmpFos = new FileOutputStream(parentFile);
-
-            firstPageFile = File.createTempFile("head", "pdf");
-            FileOutputStream fpageFos = new FileOutputStream(firstPageFile);
-            
-            // most desirable
-            for (String p : pids) {
-                this.mostDesirable.saveAccess(p, new Date());
-                reportAccess(p);
-            }
-
-            if (fp == FirstPage.IMAGES) {
-                this.imageFirstPage.selection(rdoc, fpageFos, pids, fmap);
-            } else {
-                this.textFirstPage.selection(rdoc, fpageFos, pids, fmap);
-            }
-            this.simplePdfService.pdf(rdoc, bodyTmpFos,  fmap);
-
-            File generatedPDF = File.createTempFile("rendered", "pdf");
-            FileOutputStream fos = new FileOutputStream(generatedPDF);
-
-            AbstractPDFResource.mergeToOutput(fos, parentFile, firstPageFile);
-            return generatedPDF;
-        } finally {
-            saveDeleteFile(parentFile, firstPageFile);
+        // most desirable
+        for (String p : pids) {
+            this.mostDesirable.saveAccess(p, new Date());
+            reportAccess(p);
         }
+
+        final FirstPagePDFService firstPage = fp == FirstPage.IMAGES ? this.imageFirstPage : this.textFirstPage;
+        return pdf(rdoc, fmap, (doc, writer) -> firstPage.selection(rdoc, doc, writer, pids, fmap));
     }
 
-    public File parent(String pid, int n, Rectangle rect, FirstPage fp) throws DocumentException,
+    /**
+     * Prepares pdf of the parent; checks rights and reports access immediately, the pdf is rendered when the
+     * returned output is written
+     */
+    public StreamingOutput parent(String pid, int n, Rectangle rect, FirstPage fp) throws DocumentException,
             IOException, NumberFormatException, ProcessSubtreeException {
-        FontMap fmap = new FontMap(deprectedService.fontsFolder());
+        final FontMap fmap = new FontMap(deprectedService.fontsFolder());
         Map<String, AbstractObjectPath[]> pathsMap = solrAccess.getModelAndPidPaths(pid);
         ObjectPidsPath[] paths = (ObjectPidsPath[]) pathsMap.get(ObjectPidsPath.class.getName());
         final ObjectPidsPath path = AbstractPDFResource.selectOnePath(pid, paths);
 
-        File parentFile = null;
-        File firstPageFile = null;
         try {
-            PreparedDocument rdoc = this.documentService.buildDocumentAsFlat(path, pid, n, new int[] {(int)rect.getWidth(), (int)rect.getHeight()});
+            final PreparedDocument rdoc = this.documentService.buildDocumentAsFlat(path, pid, n, new int[] {(int)rect.getWidth(), (int)rect.getHeight()});
             checkRenderedPDFDoc(rdoc);
 
             this.mostDesirable.saveAccess(pid, new Date());
@@ -197,30 +182,43 @@ public class AbstractPDFResource {
                 reportAccess(p.getUuid());
             }
 
-            parentFile = File.createTempFile("body", "pdf");
-            FileOutputStream bodyTmpFos = new FileOutputStream(parentFile);
-
-            firstPageFile = File.createTempFile("head", "pdf");
-            FileOutputStream fpageFos = new FileOutputStream(firstPageFile);
+            final FirstPagePDFService firstPage = fp == FirstPage.IMAGES ? this.imageFirstPage : this.textFirstPage;
+            return pdf(rdoc, fmap, (doc, writer) -> firstPage.parent(rdoc, doc, writer, path, fmap));
+        } catch (OutOfRangeException e) {
+            throw new PDFResourceBadRequestException(e.getMessage());
+        }
+    }
 
-            if (fp == FirstPage.IMAGES) {
-                this.imageFirstPage.parent(rdoc, fpageFos, path, fmap);
-            } else {
-                this.textFirstPage.parent(rdoc, fpageFos, path, fmap);
+    /**
+     * Single pass rendering; the first page and the body are written into one document directly to the output
+     */
+    StreamingOutput pdf(final PreparedDocument rdoc, final FontMap fmap, final FirstPageRenderer firstPage) {
+        return new StreamingOutput() {
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                try {
+                    Document doc = DocumentUtils.createDocument(rdoc);
+                    PdfWriter writer = PdfWriter.getInstance(doc, output);
+                    doc.open();
+
+                    firstPage.render(doc, writer);
+                    doc.newPage();
+                    simplePdfService.pdf(rdoc, doc, writer, fmap);
+
+                    doc.close();
+                    output.flush();
+                } catch (DocumentException e) {
+                    throw new WebApplicationException(e);
+                }
             }
+        };
+    }
 
-            this.simplePdfService.pdf(rdoc, bodyTmpFos, fmap);
-
-            File generatedPDF = File.createTempFile("rendered", "pdf");
-            FileOutputStream fos = new FileOutputStream(generatedPDF);
+    /**
+     * Renders the first page into opened document
+     */
+    interface FirstPageRenderer {
 
-            AbstractPDFResource.mergeToOutput(fos, parentFile, firstPageFile);
-            return generatedPDF;
-        } catch (OutOfRangeException e) {
-            throw new PDFResourceBadRequestException(e.getMessage());
-        } finally {
-            saveDeleteFile(parentFile, firstPageFile);
-        }
+        void render(Document doc, PdfWriter writer) throws IOException, DocumentException;
     }
 
     private void checkRenderedPDFDoc(PreparedDocument rdoc) throws IOException {
@@ -232,14 +230,6 @@ public class AbstractPDFResource {
         }
     }
 
-    private static void saveDeleteFile(File ... files) {
-        for (File f : files) {
-            if (f != null) {
-                f.delete();
-            }
-        }
-    }
-
     static ObjectPidsPath selectOnePath(String requestedPid, ObjectPidsPath[] paths) {
         ObjectPidsPath path;
         if (paths.length > 0) {
@@ -250,14 +240,6 @@ public class AbstractPDFResource {
         return path;
     }
 
-    static void mergeToOutput(OutputStream fos, File bodyFile, File firstPageFile) throws IOException {
-        PDFMergerUtility utility = new PDFMergerUtility();
-        utility.addSource(firstPageFile);
-        utility.addSource(bodyFile);
-        utility.setDestinationStream(fos);
-        utility.mergeDocuments();
-    }
-
     private boolean canBeRenderedAsPDF(String pid) throws IOException {
         ObjectPidsPath[] paths = solrAccess.getPidPaths(pid);
         for (ObjectPidsPath pth : paths) {
@@ -2,7 +2,7 @@ package cz.incad.kramerius.rest.api.k5.client.pdf;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -34,7 +34,17 @@ public class AsyncPDFResource  extends AbstractPDFResource{
 
     //private boolean acquired;
 
-    public JSONObject outputJSON(File generatedPDF) throws IOException, JSONException {
+    /**
+     * Renders pdf into the store of prepared files and returns its handle
+     */
+    public JSONObject outputJSON(StreamingOutput pdf) throws IOException, JSONException {
+        File generatedPDF = File.createTempFile("rendered", "pdf");
+        try (OutputStream fos = new FileOutputStream(generatedPDF)) {
+            pdf.write(fos);
+        } catch (IOException | RuntimeException e) {
+            generatedPDF.delete();
+            throw e;
+        }
         String uuid = UUID.randomUUID().toString();
         PDFExlusiveGenerateSupport.pushFile(uuid, generatedPDF);
         JSONObject obj = new JSONObject();
@@ -48,32 +58,26 @@ public class AsyncPDFResource  extends AbstractPDFResource{
     public Response handle(@QueryParam("handle") String handle) {
         final File pFile = PDFExlusiveGenerateSupport.popFile(handle);
         if (pFile != null) {
-            try {
-                final InputStream fis = new FileInputStream(pFile);
-                StreamingOutput stream = new StreamingOutput() {
-                    public void write(OutputStream output)
-                            throws IOException, WebApplicationException {
-                        try {
-                            IOUtils.copyStreams(fis, output);
-                        } catch (Exception e) {
-                            throw new WebApplicationException(e);
-                        } finally {
-                            if (pFile != null)
-                                pFile.delete();
-                        }
+            StreamingOutput stream = new StreamingOutput() {
+                public void write(OutputStream output)
+                        throws IOException, WebApplicationException {
+                    try (InputStream fis = new FileInputStream(pFile)) {
+                        IOUtils.copyStreams(fis, output);
+                    } catch (Exception e) {
+                        throw new WebApplicationException(e);
+                    } finally {
+                        pFile.delete();
                     }
-                };
-                SimpleDateFormat sdate = new SimpleDateFormat(
-                        "yyyyMMdd_mmhhss");
-                return Response
-                        .ok()
-                        .header("Content-disposition",
-                                    "attachment; filename="
-                                            + sdate.format(new Date()) + ".pdf")
-                        .entity(stream).build();
-            } catch (FileNotFoundException e) {
-                throw new PDFResourceNotFound("uuid not found");
-            }
+                }
+            };
+            SimpleDateFormat sdate = new SimpleDateFormat(
+                    "yyyyMMdd_mmhhss");
+            return Response
+                    .ok()
+                    .header("Content-disposition",
+                                "attachment; filename="
+                                        + sdate.format(new Date()) + ".pdf")
+                    .entity(stream).build();
         } else {
             throw new PDFResourceNotFound("uuid not found");
         }
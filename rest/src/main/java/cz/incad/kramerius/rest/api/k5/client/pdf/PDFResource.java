@@ -18,11 +18,9 @@ package cz.incad.kramerius.rest.api.k5.client.pdf;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.text.SimpleDateFormat;
@@ -65,7 +63,6 @@ import cz.incad.kramerius.rest.api.exceptions.GenericApplicationException;
 import cz.incad.kramerius.security.SecurityException;
 import cz.incad.kramerius.statistics.ReportedAction;
 import cz.incad.kramerius.utils.FedoraUtils;
-import cz.incad.kramerius.utils.IOUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.incad.kramerius.utils.imgs.ImageMimeType;
 import cz.incad.kramerius.utils.imgs.KrameriusImageSupport;
@@ -261,21 +258,9 @@ public class PDFResource extends AbstractPDFResource  {
                         ConfigurationUtils.checkNumber(pids);
 
                         Rectangle formatRect = formatRect(format);
-                        final File generatedPDF = super.selection(pids, formatRect, fp);
-                        final InputStream fis = new FileInputStream(generatedPDF);
-                        StreamingOutput stream = new StreamingOutput() {
-                            public void write(OutputStream output)
-                                    throws IOException, WebApplicationException {
-                                try {
-                                    IOUtils.copyStreams(fis, output);
-                                } catch (Exception e) {
-                                    throw new WebApplicationException(e);
-                                } finally {
-                                    if (generatedPDF != null)
-                                        generatedPDF.delete();
-                                }
-                            }
-                        };
+                        StreamingOutput stream = releasing(super.selection(pids, formatRect, fp), PDFExlusiveGenerateSupport.handOverPermit());
+                        // permit is released by the stream (or by its timeout, if the stream is never written)
+                        acquired = false;
                         SimpleDateFormat sdate = new SimpleDateFormat(
                                 "yyyyMMdd_mmhhss");
                         return Response
@@ -339,22 +324,9 @@ public class PDFResource extends AbstractPDFResource  {
                     int n = ConfigurationUtils.checkNumber(number);
                     Rectangle formatRect = formatRect(format);
 
-                    final File generatedPdf = super.parent(pid, n, formatRect, fp);
-
-                    final InputStream fis = new FileInputStream(generatedPdf);
-                    StreamingOutput stream = new StreamingOutput() {
-                        public void write(OutputStream output)
-                                throws IOException, WebApplicationException {
-                            try {
-                                IOUtils.copyStreams(fis, output);
-                            } catch (Exception e) {
-                                throw new WebApplicationException(e);
-                            } finally {
-                                if (generatedPdf != null)
-                                    generatedPdf.delete();
-                            }
-                        }
-                    };
+                    StreamingOutput stream = releasing(super.parent(pid, n, formatRect, fp), PDFExlusiveGenerateSupport.handOverPermit());
+                    // permit is released by the stream (or by its timeout, if the stream is never written)
+                    acquired = false;
 
                     SimpleDateFormat sdate = new SimpleDateFormat(
                             "yyyyMMdd_mmhhss");
@@ -367,9 +339,6 @@ public class PDFResource extends AbstractPDFResource  {
                 } catch (NumberFormatException e) {
                     LOGGER.log(Level.SEVERE, e.getMessage(), e);
                     throw new GenericApplicationException(e.getMessage());
-                } catch (FileNotFoundException e) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                    throw new GenericApplicationException(e.getMessage());
                 } catch (DocumentException e) {
                     LOGGER.log(Level.SEVERE, e.getMessage(), e);
                     throw new GenericApplicationException(e.getMessage());
@@ -413,6 +382,23 @@ public class PDFResource extends AbstractPDFResource  {
                 widthPerctDouble, heightPerctDouble);
     }
 
+    /**
+     * Holds the generating permit until the pdf is written
+     */
+    private static StreamingOutput releasing(final StreamingOutput pdf, final PDFExlusiveGenerateSupport.Permit permit) {
+        return new StreamingOutput() {
+            public void write(OutputStream output)
+                    throws IOException, WebApplicationException {
+                permit.writing();
+                try {
+                    pdf.write(output);
+                } finally {
+                    permit.release();
+                }
+            }
+        };
+    }
+
     private static StreamingOutput streamingOutput(final File file, final String format) {
         return new StreamingOutput() {
             public void write(OutputStream output)
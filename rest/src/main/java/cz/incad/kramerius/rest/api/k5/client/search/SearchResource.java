@@ -19,8 +19,8 @@ package cz.incad.kramerius.rest.api.k5.client.search;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
@@ -38,14 +38,15 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.HttpResponseException;
@@ -89,13 +90,17 @@ public class SearchResource {
     public Response selectXML(@Context UriInfo uriInfo, @QueryParam("wt") String wt) {
         if ("json".equals(wt)) {
             return Response.ok().type(MediaType.APPLICATION_JSON+ ";charset=utf-8")
-                    .entity(getEntityJSON(uriInfo).toString()).build();
+                    .entity(getEntityJSON(uriInfo)).build();
         } else {
-            return Response.ok().entity(getEntityXML(uriInfo).toString()).build();
+            return Response.ok().entity(getEntityXML(uriInfo)).build();
         }
     }
 
-    private String getEntityXML(UriInfo uriInfo) {
+    /**
+     * Solr response is requested immediately (errors are reported by status code); the response is changed while it is
+     * written to the client (see {@link SearchResultStreams})
+     */
+    private StreamingOutput getEntityXML(UriInfo uriInfo) {
         try {
             MultivaluedMap<String, String> queryParameters = uriInfo
                     .getQueryParameters();
@@ -112,20 +117,17 @@ public class SearchResource {
                     builder.append("&");
                 }
             }
-            InputStream istream = this.solrAccess.requestWithSelectReturningInputStream(builder.toString(), "xml");
-
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            IOUtils.copyStreams(istream, bos);
-            String rawString = new String(bos.toByteArray(), "UTF-8");
-
-            String uri = UriBuilder.fromResource(SearchResource.class).path("")
-                    .build().toString();
-            Document domObject = changeXMLResult(rawString, uri);
-
-            StringWriter strWriter = new StringWriter();
-            XMLUtils.print(domObject, strWriter);
-
-            return strWriter.toString();
+            final InputStream istream = this.solrAccess.requestWithSelectReturningInputStream(builder.toString(), "xml");
+            return new StreamingOutput() {
+                @Override
+                public void write(OutputStream output) throws IOException, WebApplicationException {
+                    try {
+                        SearchResultStreams.xml(istream, output);
+                    } finally {
+                        IOUtils.tryClose(istream);
+                    }
+                }
+            };
         } catch (HttpResponseException e) {
             if (e.getStatusCode() == SC_BAD_REQUEST) {
                 LOGGER.log(Level.INFO, "SOLR Bad Request: " + uriInfo.getRequestUri());
@@ -137,15 +139,6 @@ public class SearchResource {
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new GenericApplicationException(e.getMessage());
-        } catch (TransformerException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new GenericApplicationException(e.getMessage());
-        } catch (ParserConfigurationException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new GenericApplicationException(e.getMessage());
-        } catch (SAXException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new GenericApplicationException(e.getMessage());
         }
     }
 
@@ -185,13 +178,13 @@ public class SearchResource {
     public Response selectJSON(@Context UriInfo uriInfo, @QueryParam("wt") String wt) {
         if ("xml".equals(wt)) {
             return Response.ok().type(MediaType.APPLICATION_XML+ ";charset=utf-8")
-                    .entity(getEntityXML(uriInfo).toString()).build();
+                    .entity(getEntityXML(uriInfo)).build();
         } else {
-            return Response.ok().entity(getEntityJSON(uriInfo).toString()).build();
+            return Response.ok().entity(getEntityJSON(uriInfo)).build();
         }
     }
 
-    private String getEntityJSON(UriInfo uriInfo) {
+    private StreamingOutput getEntityJSON(UriInfo uriInfo) {
         try {
 
             MultivaluedMap<String, String> queryParameters = uriInfo
@@ -209,17 +202,21 @@ public class SearchResource {
                     builder.append("&");
                 }
             }
-            InputStream istream = this.solrAccess.requestWithSelectReturningInputStream(builder.toString(), "json");
-
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            IOUtils.copyStreams(istream, bos);
-            String rawString = new String(bos.toByteArray(), "UTF-8");
+            final InputStream istream = this.solrAccess.requestWithSelectReturningInputStream(builder.toString(), "json");
 
-            String uri = UriBuilder.fromResource(SearchResource.class).path("")
+            final String uri = UriBuilder.fromResource(SearchResource.class).path("")
                     .build().toString();
-            JSONObject jsonObject = changeJSONResult(rawString, uri, this.jsonDecoratorAggregates.getDecorators());
-
-            return jsonObject.toString();
+            final List<JSONDecorator> decorators = this.jsonDecoratorAggregates.getDecorators();
+            return new StreamingOutput() {
+                @Override
+                public void write(OutputStream output) throws IOException, WebApplicationException {
+                    try {
+                        SearchResultStreams.json(istream, output, uri, decorators);
+                    } finally {
+                        IOUtils.tryClose(istream);
+                    }
+                }
+            };
         } catch (HttpResponseException e) {
             if (e.getStatusCode() == SC_BAD_REQUEST) {
                 LOGGER.log(Level.INFO, "SOLR Bad Request: " + uriInfo.getRequestUri());
@@ -231,9 +228,6 @@ public class SearchResource {
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new GenericApplicationException(e.getMessage());
-        } catch (JSONException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new GenericApplicationException(e.getMessage());
         }
     }
 
@@ -0,0 +1,210 @@
+package cz.incad.kramerius.rest.api.k5.client.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cz.incad.kramerius.rest.api.k5.client.JSONDecorator;
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+/**
+ * Streaming variants of {@link SearchResource#changeXMLResult(String, String)} and
+ * {@link SearchResource#changeJSONResult(String, String, List)}.
+ * <br>
+ * Solr response is piped to the client; only one field (xml) or one document (json) is held in memory at a time.
+ * Fields are changed in the same way: master pid is repaired, filtered fields are removed and pids in the
+ * fields from <code>api.solr.replace</code> are repaired.
+ */
+public class SearchResultStreams {
+
+    private static final QName NAME_ATTR = new QName("name");
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectMapper MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    private SearchResultStreams() {}
+
+    /**
+     * Copies xml solr response from the input to the output and changes fields of all documents
+     * @param is Solr response; it is not closed
+     * @param os Output; it is not closed
+     * @throws IOException
+     */
+    public static void xml(InputStream is, OutputStream os) throws IOException {
+        Set<String> filters = new HashSet<String>(Arrays.asList(KConfiguration.getInstance().getAPISolrFilter()));
+        Set<String> replaced = new HashSet<String>(Arrays.asList(KConfiguration.getInstance().getAPIPIDReplace()));
+        // already replaced
+        replaced.remove("PID");
+
+        XMLEventReader reader = null;
+        XMLEventWriter writer = null;
+        try {
+            reader = INPUT_FACTORY.createXMLEventReader(is);
+            writer = OUTPUT_FACTORY.createXMLEventWriter(os, "UTF-8");
+
+            // true for doc elements
+            Deque<Boolean> elements = new ArrayDeque<Boolean>();
+            int skipped = 0;
+            // text of the field being changed
+            StringBuilder text = null;
+            boolean masterPid = false;
+            int replacedArr = -1;
+
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (skipped > 0) {
+                    if (event.isStartElement()) skipped++;
+                    if (event.isEndElement()) skipped--;
+                    continue;
+                }
+                if (event.isStartElement()) {
+                    StartElement start = event.asStartElement();
+                    String localName = start.getName().getLocalPart();
+                    boolean inDoc = !elements.isEmpty() && elements.peek();
+                    String field = inDoc ? attribute(start, NAME_ATTR) : null;
+                    if (field != null && filters.contains(field)) {
+                        skipped = 1;
+                        continue;
+                    }
+                    if (field != null && field.equals("PID") && localName.equals("str")) {
+                        masterPid = true;
+                        text = new StringBuilder();
+                    } else if (field != null && replaced.contains(field) && localName.equals("str")) {
+                        text = new StringBuilder();
+                    } else if (field != null && replaced.contains(field) && localName.equals("arr")) {
+                        replacedArr = elements.size();
+                    } else if (replacedArr >= 0 && elements.size() == replacedArr + 1 && localName.equals("str")) {
+                        text = new StringBuilder();
+                    }
+                    elements.push(localName.equals("doc"));
+                    writer.add(event);
+                } else if (event.isCharacters() && text != null) {
+                    text.append(event.asCharacters().getData());
+                } else if (event.isEndElement()) {
+                    elements.pop();
+                    if (text != null) {
+                        String value = text.toString();
+                        if (masterPid) {
+                            value = value.replace("/", "");
+                        } else if (replacedArr >= 0 || value.indexOf("/@") > 0) {
+                            value = value.replace("/@", "@");
+                        }
+                        writer.add(EVENT_FACTORY.createCharacters(value));
+                        text = null;
+                        masterPid = false;
+                    } else if (replacedArr == elements.size()) {
+                        replacedArr = -1;
+                    }
+                    writer.add(event);
+                } else {
+                    writer.add(event);
+                }
+            }
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            close(reader, writer);
+        }
+    }
+
+    /**
+     * Copies json solr response from the input to the output and changes all documents; every document is also
+     * decorated by given decorators
+     * @param is Solr response; it is not closed
+     * @param os Output; it is not closed
+     * @param context Calling context
+     * @param decs Decorators
+     * @throws IOException
+     */
+    public static void json(InputStream is, OutputStream os, String context, List<JSONDecorator> decs) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(is);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(os, JsonEncoding.UTF8);
+        try {
+            // depth of the docs array
+            int docsDepth = -1;
+            int depth = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (docsDepth >= 0 && depth == docsDepth && token == JsonToken.START_OBJECT) {
+                    JSONObject docJSON = new JSONObject(MAPPER.readTree(parser).toString());
+                    SearchResource.changeMasterPidInJSON(docJSON);
+                    SearchResource.filterFieldsInJSON(docJSON);
+                    SearchResource.decorators(context, decs, docJSON);
+                    SearchResource.replacePidsInJSON(docJSON);
+                    generator.writeRawValue(docJSON.toString());
+                    continue;
+                }
+                if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+                    depth++;
+                    if (token == JsonToken.START_ARRAY && docsDepth < 0 && "docs".equals(parser.getCurrentName())) {
+                        docsDepth = depth;
+                    }
+                } else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                    if (depth == docsDepth) {
+                        docsDepth = -1;
+                    }
+                    depth--;
+                }
+                generator.copyCurrentEvent(parser);
+            }
+            generator.flush();
+        } catch (JSONException e) {
+            throw new IOException(e);
+        } finally {
+            generator.close();
+            parser.close();
+        }
+    }
+
+    private static String attribute(StartElement start, QName name) {
+        Attribute attr = start.getAttributeByName(name);
+        return attr != null ? attr.getValue() : null;
+    }
+
+    private static void close(XMLEventReader reader, XMLEventWriter writer) throws IOException {
+        try {
+            if (writer != null) writer.close();
+            if (reader != null) reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -8,8 +8,15 @@ import cz.incad.kramerius.rest.apiNew.exceptions.BadRequestException;
 import cz.incad.kramerius.rest.apiNew.exceptions.InternalErrorException;
 import cz.incad.kramerius.rest.apiNew.exceptions.NotFoundException;
 
+import cz.incad.kramerius.repository.RepositoryApi;
+import cz.incad.kramerius.utils.java.Pair;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import javax.inject.Inject;
 import java.io.IOException;
+import java.util.List;
 import java.util.regex.Pattern;
 
 public abstract class ApiResource {
@@ -90,4 +97,49 @@ public abstract class ApiResource {
             throw new BadRequestException("'%s' is not in supported PID format for this operation", pid);
         }
     }
+
+    /**
+     * Model, parents and children of the object (own and foster)
+     */
+    protected final JSONObject extractStructureInfo(String pid) throws RepositoryException, SolrServerException, IOException {
+        JSONObject structure = new JSONObject();
+        //parents
+        JSONObject parents = new JSONObject();
+        Pair<RepositoryApi.Triplet, List<RepositoryApi.Triplet>> parentsTpls = krameriusRepositoryApi.getParents(pid);
+        if (parentsTpls.getFirst() != null) {
+            parents.put("own", pidAndRelationToJson(parentsTpls.getFirst().source, parentsTpls.getFirst().relation));
+        }
+        JSONArray fosterParents = new JSONArray();
+        for (RepositoryApi.Triplet fosterParentTpl : parentsTpls.getSecond()) {
+            fosterParents.put(pidAndRelationToJson(fosterParentTpl.source, fosterParentTpl.relation));
+        }
+        parents.put("foster", fosterParents);
+        structure.put("parents", parents);
+        //children
+        JSONObject children = new JSONObject();
+        Pair<List<RepositoryApi.Triplet>, List<RepositoryApi.Triplet>> childrenTpls = krameriusRepositoryApi.getChildren(pid);
+        JSONArray ownChildren = new JSONArray();
+        for (RepositoryApi.Triplet ownChildTpl : childrenTpls.getFirst()) {
+            ownChildren.put(pidAndRelationToJson(ownChildTpl.target, ownChildTpl.relation));
+        }
+        children.put("own", ownChildren);
+        JSONArray fosterChildren = new JSONArray();
+        for (RepositoryApi.Triplet fosterChildTpl : childrenTpls.getSecond()) {
+            fosterChildren.put(pidAndRelationToJson(fosterChildTpl.target, fosterChildTpl.relation));
+        }
+        children.put("foster", fosterChildren);
+        structure.put("children", children);
+        //model
+        String model = krameriusRepositoryApi.getModel(pid);
+        structure.put("model", model);
+
+        return structure;
+    }
+
+    private JSONObject pidAndRelationToJson(String pid, String relation) {
+        JSONObject json = new JSONObject();
+        json.put("pid", pid);
+        json.put("relation", relation);
+        return json;
+    }
 }
@@ -10,6 +10,7 @@ import cz.incad.kramerius.utils.java.Pair;
 import org.apache.commons.io.IOUtils;
 import org.dom4j.Document;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import javax.ws.rs.*;
@@ -17,8 +18,18 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 @Path("/admin/v1.0/items")
 public class ItemsResource extends AdminApiResource {
@@ -27,6 +38,8 @@ public class ItemsResource extends AdminApiResource {
 
     private static final Integer DEFAULT_OFFSET = 0;
     private static final Integer DEFAULT_LIMIT = 10;
+    private static final int MAX_BUNDLES = 1000;
+    private static final Set<String> BUNDLE_PARTS = new HashSet<>(Arrays.asList("foxml", "mods", "relsExt", "ocr", "imgFullMimetype"));
 
     //TODO: prejmenovat role podle spravy uctu
     private static final String ROLE_READ_ITEMS = "kramerius_admin";
@@ -174,6 +187,120 @@ public class ItemsResource extends AdminApiResource {
         }
     }
 
+    /**
+     * Returns data of given objects needed for indexation in one response, so that indexer doesn't need several requests per object.
+     * Response is json array of bundles written object by object (gzip compressed, if client accepts it).
+     * Every bundle contains structure (as in client API {pid}/info/structure) and parts selected by query param include:
+     * foxml, mods, relsExt, ocr (text), imgFullMimetype; all parts by default, missing datastreams are omitted.
+     * Missing object is returned as {"pid":"...","exists":false}, error of single object as {"pid":"...","error":"..."}.
+     *
+     * @param pidsJson json array of pids
+     * @param include  comma separated parts of the bundle
+     * @return json array of bundles in the order of pids
+     */
+    @POST
+    @Path("bundles")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+    public Response getBundles(String pidsJson, @QueryParam("include") String include) {
+        try {
+            //authentication
+            AuthenticatedUser user = getAuthenticatedUserByOauth();
+            //authorization
+            String role = ROLE_READ_FOXML;
+            if (!user.getRoles().contains(role)) {
+                throw new ForbiddenException("user '%s' is not allowed to do this (missing role '%s')", user.getName(), role); //403
+            }
+            List<String> pids = new ArrayList<>();
+            try {
+                JSONArray pidsArray = new JSONArray(pidsJson);
+                for (int i = 0; i < pidsArray.length(); i++) {
+                    pids.add(pidsArray.getString(i));
+                }
+            } catch (JSONException e) {
+                throw new BadRequestException("body must be json array of pids: %s", e.getMessage());
+            }
+            if (pids.size() > MAX_BUNDLES) {
+                throw new BadRequestException("too many pids (%d), maximum is %d", pids.size(), MAX_BUNDLES);
+            }
+            for (String pid : pids) {
+                checkSupportedObjectPid(pid);
+            }
+            Set<String> parts = BUNDLE_PARTS;
+            if (StringUtils.isAnyString(include)) {
+                parts = new HashSet<>(Arrays.asList(include.split(",")));
+                parts.retainAll(BUNDLE_PARTS);
+            }
+            final Set<String> selectedParts = parts;
+            String acceptEncoding = requestProvider.get().getHeader("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            StreamingOutput stream = output -> {
+                //synchronous flush, client can process first objects before the last ones are read from the repository
+                OutputStream os = gzip ? new GZIPOutputStream(output, 1 << 16, true) : output;
+                Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+                writer.write('[');
+                for (int i = 0; i < pids.size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(buildBundle(pids.get(i), selectedParts).toString());
+                    writer.flush();
+                }
+                writer.write(']');
+                writer.flush();
+                if (gzip) {
+                    ((GZIPOutputStream) os).finish();
+                }
+            };
+            Response.ResponseBuilder builder = Response.ok().entity(stream);
+            if (gzip) {
+                builder.header("Content-Encoding", "gzip");
+            }
+            return builder.build();
+        } catch (WebApplicationException e) {
+            throw e;
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            throw new InternalErrorException(e.getMessage());
+        }
+    }
+
+    private JSONObject buildBundle(String pid, Set<String> parts) {
+        JSONObject bundle = new JSONObject();
+        bundle.put("pid", pid);
+        try {
+            if (!krameriusRepositoryApi.getLowLevelApi().objectExists(pid)) {
+                bundle.put("exists", false);
+                return bundle;
+            }
+            bundle.put("exists", true);
+            bundle.put("structure", extractStructureInfo(pid));
+            if (parts.contains("foxml")) {
+                bundle.put("foxml", krameriusRepositoryApi.getLowLevelApi().getFoxml(pid).asXML());
+            }
+            if (parts.contains("mods") && krameriusRepositoryApi.isModsAvailable(pid)) {
+                bundle.put("mods", krameriusRepositoryApi.getMods(pid, true).asXML());
+            }
+            if (parts.contains("relsExt") && krameriusRepositoryApi.isRelsExtAvailable(pid)) {
+                bundle.put("relsExt", krameriusRepositoryApi.getRelsExt(pid, true).asXML());
+            }
+            if (parts.contains("ocr") && krameriusRepositoryApi.isOcrTextAvailable(pid)) {
+                bundle.put("ocr", krameriusRepositoryApi.getOcrText(pid));
+            }
+            if (parts.contains("imgFullMimetype") && krameriusRepositoryApi.isImgFullAvailable(pid)) {
+                bundle.put("imgFullMimetype", krameriusRepositoryApi.getImgFullMimetype(pid));
+            }
+            return bundle;
+        } catch (Exception e) {
+            //error of one object must not break the whole response
+            LOGGER.log(Level.WARNING, "error building bundle of " + pid, e);
+            JSONObject error = new JSONObject();
+            error.put("pid", pid);
+            error.put("error", e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+            return error;
+        }
+    }
+
     @DELETE
     @Path("{pid}")
     public Response deleteObject(@PathParam("pid") String pid) {
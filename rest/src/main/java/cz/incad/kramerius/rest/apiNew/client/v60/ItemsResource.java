@@ -4,7 +4,6 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import cz.incad.kramerius.fedora.om.RepositoryException;
 import cz.incad.kramerius.repository.KrameriusRepositoryApi;
-import cz.incad.kramerius.repository.RepositoryApi;
 import cz.incad.kramerius.rest.apiNew.exceptions.BadRequestException;
 import cz.incad.kramerius.rest.apiNew.exceptions.InternalErrorException;
 import cz.incad.kramerius.rest.apiNew.exceptions.NotFoundException;
@@ -12,10 +11,8 @@ import cz.incad.kramerius.utils.ApplicationURL;
 import cz.incad.kramerius.utils.Dom4jUtils;
 import cz.incad.kramerius.utils.java.Pair;
 import org.apache.commons.io.IOUtils;
-import org.apache.solr.client.solrj.SolrServerException;
 import org.dom4j.Document;
 import org.dom4j.Element;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
@@ -27,7 +24,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -205,41 +201,6 @@ public class ItemsResource extends ClientApiResource {
         return dataAvailable;
     }
 
-    private JSONObject extractStructureInfo(String pid) throws RepositoryException, SolrServerException, IOException {
-        JSONObject structure = new JSONObject();
-        //parents
-        JSONObject parents = new JSONObject();
-        Pair<RepositoryApi.Triplet, List<RepositoryApi.Triplet>> parentsTpls = krameriusRepositoryApi.getParents(pid);
-        if (parentsTpls.getFirst() != null) {
-            parents.put("own", pidAndRelationToJson(parentsTpls.getFirst().source, parentsTpls.getFirst().relation));
-        }
-        JSONArray fosterParents = new JSONArray();
-        for (RepositoryApi.Triplet fosterParentTpl : parentsTpls.getSecond()) {
-            fosterParents.put(pidAndRelationToJson(fosterParentTpl.source, fosterParentTpl.relation));
-        }
-        parents.put("foster", fosterParents);
-        structure.put("parents", parents);
-        //children
-        JSONObject children = new JSONObject();
-        Pair<List<RepositoryApi.Triplet>, List<RepositoryApi.Triplet>> childrenTpls = krameriusRepositoryApi.getChildren(pid);
-        JSONArray ownChildren = new JSONArray();
-        for (RepositoryApi.Triplet ownChildTpl : childrenTpls.getFirst()) {
-            ownChildren.put(pidAndRelationToJson(ownChildTpl.target, ownChildTpl.relation));
-        }
-        children.put("own", ownChildren);
-        JSONArray fosterChildren = new JSONArray();
-        for (RepositoryApi.Triplet fosterChildTpl : childrenTpls.getSecond()) {
-            fosterChildren.put(pidAndRelationToJson(fosterChildTpl.target, fosterChildTpl.relation));
-        }
-        children.put("foster", fosterChildren);
-        structure.put("children", children);
-        //model
-        String model = krameriusRepositoryApi.getModel(pid);
-        structure.put("model", model);
-
-        return structure;
-    }
-
     private Object extractImageSourceInfo(String pid) throws IOException, RepositoryException {
         JSONObject json = new JSONObject();
         Document relsExt = krameriusRepositoryApi.getRelsExt(pid, false);
@@ -260,13 +221,6 @@ public class ItemsResource extends ClientApiResource {
         return json;
     }
 
-    private JSONObject pidAndRelationToJson(String pid, String relation) {
-        JSONObject json = new JSONObject();
-        json.put("pid", pid);
-        json.put("relation", relation);
-        return json;
-    }
-
     @HEAD
     @Path("{pid}/metadata/mods")
     public Response isMetadataModsAvailable(@PathParam("pid") String pid) {
@@ -129,7 +129,6 @@ public class ZoomifyHelper {
             }
 
             Dimension originalResolution = cacheService.getResolutionFromFile(pid);
-            int maxLevels = tileSupport.getLevels(originalResolution, tileSupport.getTileSize());
 
             int offset = tileSupport.getClosestLevel(originalResolution, tileSupport.getTileSize(), 1);
             //deepzoom level
@@ -137,27 +136,7 @@ public class ZoomifyHelper {
 
             boolean tileCached = cacheService.isDeepZoomTilePresent(pid, offsetLevel, srow, scol);
             if (!tileCached) {
-                // File dFile = cacheService.getDeepZoomLevelsFile(uuid);
-                BufferedImage original = null;
-                if (cacheService.isDeepZoomOriginalPresent(pid)) {
-                    original = cacheService.getDeepZoomOriginal(pid);
-                } else {
-                    original = cacheService.createDeepZoomOriginalImageFromFedoraRAW(pid);
-                    cacheService.writeDeepZoomOriginalImage(pid, original);
-                }
-
-                double scale = tileSupport.getScale(requestedLevel, maxLevels);
-                Dimension scaled = tileSupport.getScaledDimension(new Dimension(original.getWidth(null), original.getHeight(null)), scale);
-                int rows = tileSupport.getRows(scaled);
-                int cols = tileSupport.getCols(scaled);
-                int base = srow * cols;
-                base = base + scol;
-                LOGGER.info("scale is " + scale + " and dimension is " + scaled);
-
-                KrameriusImageSupport.ScalingMethod method = KrameriusImageSupport.ScalingMethod.valueOf(KConfiguration.getInstance().getProperty("deepZoom.scalingMethod", "BICUBIC_STEPPED"));
-                boolean iterateScaling = KConfiguration.getInstance().getConfiguration().getBoolean("deepZoom.iterateScaling", true);
-                BufferedImage tile = this.tileSupport.getTileFromBigImage(original, requestedLevel, base, tileSupport.getTileSize(), method, iterateScaling);
-                cacheService.writeDeepZoomTile(pid, offsetLevel, srow, scol, tile);
+                cacheService.prepareCacheLevel(pid, offsetLevel, requestedLevel, tileSupport.getTileSize());
             }
             InputStream is = cacheService.getDeepZoomTileStream(pid, offsetLevel, srow, scol);
             StreamingOutput stream = output -> {
@@ -45,6 +45,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import cz.incad.kramerius.rest.api.k5.client.JSONDecorator;
 import cz.incad.kramerius.rest.api.k5.client.item.utils.ItemResourceUtils;
 import cz.incad.kramerius.rest.api.k5.client.utils.SOLRUtils;
@@ -121,6 +123,41 @@ public class SearchResultTest {
     }
     
     
+    @Test
+    public void testStreamedXML() throws ParserConfigurationException,
+        SAXException, IOException, XPathExpressionException {
+        URL urlRes = SearchResultTest.class.getResource("search_group.xml");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        SearchResultStreams.xml(urlRes.openStream(), bos);
+
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        Document changed = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(bos.toByteArray()));
+        Assert.assertEquals(0, ((NodeList) xpath.evaluate("//*[@name='text_ocr']", changed, XPathConstants.NODESET)).getLength());
+        Assert.assertEquals(0, ((NodeList) xpath.evaluate("//*[@name='text']", changed, XPathConstants.NODESET)).getLength());
+
+        // other fields are kept
+        Document original = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(urlRes.openStream());
+        Assert.assertEquals(((NodeList) xpath.evaluate("//doc/*[@name='PID']", original, XPathConstants.NODESET)).getLength(),
+                ((NodeList) xpath.evaluate("//doc/*[@name='PID']", changed, XPathConstants.NODESET)).getLength());
+        NodeList paths = (NodeList) xpath.evaluate("//doc/arr[@name='pid_path']/str", changed, XPathConstants.NODESET);
+        for (int i = 0, ll = paths.getLength(); i < ll; i++) {
+            Assert.assertTrue(paths.item(i).getTextContent().indexOf("/@") == -1);
+        }
+    }
+
+    @Test
+    public void testStreamedJSON() throws IOException, JSONException {
+        URL urlRes = SearchResultTest.class.getResource("search_group.json");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        SearchResultStreams.json(urlRes.openStream(), bos, "", new ArrayList<JSONDecorator>());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        IOUtils.copyStreams(urlRes.openStream(), expected);
+        JSONObject changedInMemory = SearchResource.changeJSONResult(new String(expected.toByteArray(), "UTF-8"), "", new ArrayList<JSONDecorator>());
+        ObjectMapper mapper = new ObjectMapper();
+        Assert.assertEquals(mapper.readTree(changedInMemory.toString()), mapper.readTree(bos.toByteArray()));
+    }
+
     @Test
     public void testChangeViewableXML() throws ParserConfigurationException,
         SAXException, IOException, TransformerException {
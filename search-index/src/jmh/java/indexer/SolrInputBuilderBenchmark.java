@@ -0,0 +1,131 @@
+package indexer;
+
+import cz.kramerius.searchIndex.indexer.SolrInput;
+import cz.kramerius.searchIndex.indexer.conversions.SolrInputBuilder;
+import cz.kramerius.searchIndex.indexer.conversions.extraction.AuthorsExtractor;
+import cz.kramerius.searchIndex.indexer.conversions.extraction.DateExtractor;
+import cz.kramerius.searchIndex.indexer.conversions.extraction.LanguagesExtractor;
+import cz.kramerius.searchIndex.indexer.conversions.extraction.TitlesExtractor;
+import cz.kramerius.searchIndex.repositoryAccess.Utils;
+import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNode;
+import cz.kramerius.shared.AuthorInfo;
+import cz.kramerius.shared.DateInfo;
+import cz.kramerius.shared.Dom4jUtils;
+import cz.kramerius.shared.NamespaceRemovingVisitor;
+import cz.kramerius.shared.Title;
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of FOXML to Solr document as done by the indexer for every object: data of the node extracted from MODS
+ * (as in RepositoryNodeManager) and SolrInputBuilder.processObjectFromRepository.
+ * Result is objects per second per thread, i.e. per core with the default single thread (more threads with -t N).
+ * Corpus are FOXML files from the directory in system property benchmark.foxmlDir (-jvmArgs -Dbenchmark.foxmlDir=...),
+ * sample FOXML files from test resources by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SolrInputBuilderBenchmark {
+
+    private static final String[] SAMPLES = {"minimal.foxml.xml", "original.foxml.xml"};
+
+    private final SolrInputBuilder solrInputBuilder = new SolrInputBuilder();
+    private final List<Sample> corpus = new ArrayList<>();
+    private int next = 0;
+
+    @Setup
+    public void loadCorpus() throws IOException {
+        String dir = System.getProperty("benchmark.foxmlDir");
+        if (dir != null) {
+            File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".xml"));
+            if (files == null || files.length == 0) {
+                throw new IOException("no FOXML files in " + dir);
+            }
+            for (File file : files) {
+                try (InputStream is = new FileInputStream(file)) {
+                    corpus.add(new Sample(Utils.inputstreamToDocument(is, true)));
+                }
+            }
+        } else {
+            for (String sample : SAMPLES) {
+                try (InputStream is = SolrInputBuilderBenchmark.class.getClassLoader().getResourceAsStream(sample)) {
+                    corpus.add(new Sample(Utils.inputstreamToDocument(is, true)));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public SolrInput convertObject() throws Exception {
+        Sample sample = corpus.get(next);
+        next = (next + 1) % corpus.size();
+        //builder removes namespaces from the document in place
+        Document foxml = (Document) sample.foxml.clone();
+        Element modsRootEl = sample.mods == null ? null : sample.mods.getRootElement();
+        List<String> languages = new ArrayList<>();
+        List<AuthorInfo> primaryAuthors = new ArrayList<>();
+        List<AuthorInfo> otherAuthors = new ArrayList<>();
+        Title title = null;
+        DateInfo dateInfo = null;
+        if (modsRootEl != null) {
+            title = new TitlesExtractor().extractPrimaryTitle(modsRootEl, sample.model);
+            languages = new LanguagesExtractor().extractLanguages(modsRootEl, sample.model);
+            primaryAuthors = new AuthorsExtractor().extractPrimaryAuthors(modsRootEl, sample.model);
+            otherAuthors = new AuthorsExtractor().extractNonPrimaryAuthors(modsRootEl, sample.model);
+            dateInfo = new DateExtractor().extractDateInfoFromMultipleSources(modsRootEl, sample.pid);
+        }
+        RepositoryNode node = new RepositoryNode(
+                sample.pid, sample.model, title,
+                sample.pid, sample.model,
+                sample.pid, sample.model, title,
+                null, null, null, null,
+                null, null, null,
+                null, null,
+                languages, primaryAuthors, otherAuthors, dateInfo
+        );
+        return solrInputBuilder.processObjectFromRepository(foxml, null, node, null, null, false);
+    }
+
+    private static class Sample {
+        private final Document foxml;
+        private final String pid;
+        private final String model;
+        //MODS without namespaces, as the node manager gets it from the repository
+        private final Document mods;
+
+        Sample(Document foxml) {
+            this.foxml = foxml;
+            Document withoutNs = (Document) foxml.clone();
+            withoutNs.accept(new NamespaceRemovingVisitor(true, true));
+            this.pid = Dom4jUtils.stringOrNullFromAttributeByXpath(withoutNs.getRootElement(), "/digitalObject/@PID");
+            Attribute modelAttr = (Attribute) Dom4jUtils.buildXpath("/digitalObject/datastream[@ID='RELS-EXT']/datastreamVersion[last()]/xmlContent/RDF/Description/hasModel/@resource").selectSingleNode(withoutNs);
+            this.model = modelAttr == null ? null : modelAttr.getValue().substring("info:fedora/model:".length());
+            Element modsEl = (Element) Dom4jUtils.buildXpath("/digitalObject/datastream[@ID='BIBLIO_MODS']/datastreamVersion[last()]/xmlContent/*").selectSingleNode(withoutNs);
+            this.mods = modsEl == null ? null : DocumentHelper.createDocument(modsEl.createCopy());
+        }
+    }
+}
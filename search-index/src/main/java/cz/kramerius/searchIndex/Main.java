@@ -1,6 +1,7 @@
 package cz.kramerius.searchIndex;
 
 import com.google.common.collect.ObjectArrays;
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.kramerius.adapters.FedoraAccess;
 import cz.kramerius.adapters.IResourceIndex;
 import cz.kramerius.searchIndex.indexer.SolrConfig;
@@ -10,8 +11,10 @@ import cz.kramerius.searchIndex.indexer.conversions.SolrInputBuilder;
 import cz.kramerius.searchIndex.indexerProcess.IndexationType;
 import cz.kramerius.searchIndex.indexerProcess.Indexer;
 import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryAccessAdapter;
+import cz.kramerius.searchIndex.repositoryAccess.ObjectBundlePrefetcher;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNode;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNodeManager;
+import cz.kramerius.searchIndex.repositoryAccessImpl.krameriusNewApi.ObjectBundlesByKrameriusNewApis;
 import cz.kramerius.searchIndex.repositoryAccessImpl.krameriusNewApi.RepositoryAccessImplByKrameriusNewApis;
 import cz.kramerius.searchIndex.repositoryAccessImpl.krameriusNewApi.ResourceIndexImplByKrameriusNewApis;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -347,23 +350,29 @@ public class Main {
 
             //pids
             String[] pids = subArray(args, 5);
+            RepositoryAccessImplByKrameriusNewApis.Credentials credentials = new RepositoryAccessImplByKrameriusNewApis.Credentials(krameriusApiAuthClient, krameriusApiAuthUid, krameriusApiAuthAccessToken);
+            //data of the objects of the tree are fetched in bulk ahead of the indexer
+            ObjectBundlePrefetcher bundles = new ObjectBundlePrefetcher(new ObjectBundlesByKrameriusNewApis(krameriusBackendBaseUrl, credentials),
+                    KConfiguration.getInstance().getConfiguration().getInt("searchIndex.bundles.batchSize", 50),
+                    KConfiguration.getInstance().getConfiguration().getInt("searchIndex.bundles.threads", 2),
+                    KConfiguration.getInstance().getConfiguration().getInt("searchIndex.bundles.capacity", 1000));
             for (String pid : pids) {
                 SolrConfig solrConfig = new SolrConfig(solrBaseUrl, solrCollection, solrUseHttps, solrLogin, solrPassword);
                 //TODO: extract to param
                 //String krameriusBackendBaseUrl = "http://localhost:8080/search";
                 //FedoraAccess repository = new RepositoryAccessImplDummy();
                 //FedoraAccess repository = new RepositoryAccessImplByKrameriusOldApis(krameriusBackendBaseUrl);
-                FedoraAccess repository = new RepositoryAccessImplByKrameriusNewApis(krameriusBackendBaseUrl,
-                        new RepositoryAccessImplByKrameriusNewApis.Credentials(krameriusApiAuthClient, krameriusApiAuthUid, krameriusApiAuthAccessToken));
+                FedoraAccess repository = new RepositoryAccessImplByKrameriusNewApis(krameriusBackendBaseUrl, credentials);
                 //IResourceIndex resourceIndex = new ResourceIndexImplByKrameriusOldApis(krameriusBackendBaseUrl);
                 IResourceIndex resourceIndex = new ResourceIndexImplByKrameriusNewApis(krameriusBackendBaseUrl);
-                KrameriusRepositoryAccessAdapter repositoryAdapter = new KrameriusRepositoryAccessAdapter(repository, resourceIndex);
+                KrameriusRepositoryAccessAdapter repositoryAdapter = new KrameriusRepositoryAccessAdapter(repository, resourceIndex, bundles);
                 Indexer process = new Indexer(repositoryAdapter, solrConfig, System.out, false);
                 //process.indexByObjectPid(pid, IndexationType.TREE);
                 //process.indexByObjectPid(pid, IndexationType.OBJECT);
                 //process.indexByObjectPid(pid, IndexationType.OBJECT_AND_CHILDREN);
                 process.indexByObjectPid(pid, IndexationType.TREE, null);
             }
+            bundles.shutdown();
         }
     }
 
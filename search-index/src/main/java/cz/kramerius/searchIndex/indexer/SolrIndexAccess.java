@@ -6,11 +6,13 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.MapSolrParams;
@@ -23,6 +25,7 @@ import org.dom4j.io.SAXReader;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -113,6 +116,10 @@ public class SolrIndexAccess {
         return addResponse;
     }
 
+    public UpdateResponse indexDocuments(Collection<SolrInputDocument> docs) throws IOException, SolrServerException {
+        return solrClient.add(collection, docs, MAX_TIME_WITHOUT_COMMIT_MS);
+    }
+
     private List<SolrInputDocument> extractSolrInputDocuments(InputStream in) throws DocumentException {
         ArrayList<SolrInputDocument> solrDocList = new ArrayList<>();
         SAXReader reader = new SAXReader();
@@ -178,6 +185,31 @@ public class SolrIndexAccess {
         return response.getResults();
     }
 
+    /**
+     * Finds indexed documents of given objects in one request
+     *
+     * @param pids            pids of the objects
+     * @param outputFieldList fields of the returned documents
+     * @return documents by pid; objects that are not in the index are missing
+     */
+    public Map<String, SolrDocument> getDocumentsByPids(List<String> pids, String outputFieldList) throws IOException, SolrServerException {
+        Map<String, SolrDocument> result = new HashMap<>();
+        if (pids.isEmpty()) {
+            return result;
+        }
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        //terms parser, pids need no escaping
+        params.set("q", "{!terms f=pid}" + String.join(",", pids));
+        params.set("rows", pids.size());
+        params.set("fl", outputFieldList);
+        //list of pids may be too long for url
+        QueryResponse response = solrClient.query(collection, params, SolrRequest.METHOD.POST);
+        for (SolrDocument doc : response.getResults()) {
+            result.put((String) doc.getFieldValue("pid"), doc);
+        }
+        return result;
+    }
+
     public void commit() throws IOException, SolrServerException {
         solrClient.commit(collection);
     }
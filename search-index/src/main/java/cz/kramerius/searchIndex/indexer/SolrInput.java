@@ -1,5 +1,6 @@
 package cz.kramerius.searchIndex.indexer;
 
+import org.apache.solr.common.SolrInputDocument;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
@@ -72,6 +73,19 @@ public class SolrInput {
         return doc;
     }
 
+    /**
+     * Same fields as in {@link #getDocument()}, but without building and parsing xml
+     */
+    public SolrInputDocument toSolrInputDocument() {
+        SolrInputDocument solrInputDoc = new SolrInputDocument();
+        for (String fieldName : fields.keySet()) {
+            for (String value : fields.get(fieldName)) {
+                solrInputDoc.addField(fieldName, value);
+            }
+        }
+        return solrInputDoc;
+    }
+
     public Map<String, List<String>> getFieldsCopy() {
         Map<String, List<String>> fieldsCopy = new HashMap<>();
         for (String key : fields.keySet()) {
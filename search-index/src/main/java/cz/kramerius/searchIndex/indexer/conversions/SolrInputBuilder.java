@@ -4,6 +4,7 @@ import cz.kramerius.searchIndex.indexer.SolrInput;
 import cz.kramerius.searchIndex.indexer.conversions.extraction.*;
 import cz.kramerius.searchIndex.indexer.utils.NamespaceRemovingVisitor;
 import cz.kramerius.searchIndex.indexerProcess.Indexer;
+import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryUtils;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNode;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNodeManager;
 import cz.kramerius.shared.AuthorInfo;
@@ -188,6 +189,10 @@ public class SolrInputBuilder {
         //modified_date
         addSolrField(solrInput, "modified", extractProperty(foxmlDoc, "info:fedora/fedora-system:def/view#lastModifiedDate"));
 
+        //last change of the object including datastreams, compared by ChangeDetector
+        Date sourceModified = KrameriusRepositoryUtils.extractLastModified(foxmlDoc);
+        addSolrField(solrInput, "indexed_source_modified", sourceModified == null ? null : sourceModified.toInstant().toString());
+
         //indexation date (only total reindexation updates this)
         addSolrField(solrInput, "indexed", ZonedDateTime.now().format(DateTimeFormatter.ISO_INSTANT));
 
@@ -0,0 +1,111 @@
+package cz.kramerius.searchIndex.indexerProcess;
+
+import cz.kramerius.searchIndex.indexer.SolrIndexAccess;
+import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryAccessAdapter;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides which objects changed since their last indexation (TREE_INDEX_ONLY_NEWER, TREE_PROCESS_ONLY_NEWER).
+ * Object is newer if it is not in the index, it was indexed by an older version of the indexer
+ * or it was changed in the repository after the time stored in the field "indexed_source_modified" (field "indexed" if missing).
+ * Indexed documents are fetched in bulk for all children of an object, the repository is asked for each child.
+ */
+public class ChangeDetector {
+    private static final Logger LOGGER = Logger.getLogger(ChangeDetector.class.getName());
+
+    private static final String FIELDS = "pid,indexed_source_modified,indexed,indexer_version";
+
+    private final SolrIndexAccess solrIndexer;
+    private final KrameriusRepositoryAccessAdapter repositoryConnector;
+    private final int batchSize;
+
+    public ChangeDetector(SolrIndexAccess solrIndexer, KrameriusRepositoryAccessAdapter repositoryConnector, int batchSize) {
+        this.solrIndexer = solrIndexer;
+        this.repositoryConnector = repositoryConnector;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /**
+     * @param pids pids of the objects (typically children of one object)
+     * @return indexed documents by pid; in case of error an empty map, i.e. all objects are considered newer
+     */
+    public Map<String, SolrDocument> getIndexedDocuments(List<String> pids) {
+        Map<String, SolrDocument> result = new HashMap<>();
+        try {
+            for (int from = 0; from < pids.size(); from += batchSize) {
+                result.putAll(solrIndexer.getDocumentsByPids(pids.subList(from, Math.min(from + batchSize, pids.size())), FIELDS));
+            }
+            return result;
+        } catch (IOException | SolrServerException e) {
+            LOGGER.log(Level.WARNING, "cannot fetch indexed documents, objects will be indexed", e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * @param pid        pid of the object
+     * @param indexedDoc indexed document of the object from {@link #getIndexedDocuments(List)} or null
+     * @return true if the object should be indexed
+     */
+    public boolean isNewer(String pid, SolrDocument indexedDoc) {
+        if (indexedDoc == null) {
+            return true;
+        }
+        Integer indexerVersion = toInteger(indexedDoc.getFieldValue("indexer_version"));
+        if (indexerVersion == null || indexerVersion < Indexer.INDEXER_VERSION) {
+            return true;
+        }
+        Date indexedModified = toDate(indexedDoc.getFieldValue("indexed_source_modified"));
+        if (indexedModified == null) {
+            indexedModified = toDate(indexedDoc.getFieldValue("indexed"));
+        }
+        if (indexedModified == null) {
+            return true;
+        }
+        try {
+            Date lastModified = repositoryConnector.getObjectLastModified(pid);
+            return lastModified == null || lastModified.after(indexedModified);
+        } catch (IOException e) {
+            //missing object is removed from the index by indexation
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+            return true;
+        }
+    }
+
+    private static Integer toInteger(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            try {
+                return Integer.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Date toDate(Object value) {
+        if (value instanceof Date) {
+            return (Date) value;
+        } else if (value != null) {
+            try {
+                return Date.from(Instant.parse(value.toString()));
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
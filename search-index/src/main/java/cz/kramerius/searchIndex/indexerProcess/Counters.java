@@ -1,41 +1,44 @@
 package cz.kramerius.searchIndex.indexerProcess;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Counters {
-    private int processed = 0;
-    private int indexed = 0;
-    private int removed = 0;
-    private int errors = 0;
+    //updated by all indexing threads
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger removed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
 
     public void incrementProcessed() {
-        processed += 1;
+        processed.incrementAndGet();
     }
 
     public void incrementIndexed() {
-        indexed += 1;
+        indexed.incrementAndGet();
     }
 
     public void incrementRemoved() {
-        removed += 1;
+        removed.incrementAndGet();
     }
 
     public void incrementErrors() {
-        errors += 1;
+        errors.incrementAndGet();
     }
 
     public int getProcessed() {
-        return processed;
+        return processed.get();
     }
 
     public int getIndexed() {
-        return indexed;
+        return indexed.get();
     }
 
     public int getRemoved() {
-        return removed;
+        return removed.get();
     }
 
     public int getErrors() {
-        return errors;
+        return errors.get();
     }
 
 }
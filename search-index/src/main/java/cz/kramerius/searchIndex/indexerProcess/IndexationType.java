@@ -24,28 +24,28 @@ public enum IndexationType {
 
     /**
      * Prochází se celý strom s tímto objektem jak kořenem, indexují se ale jen novejší záznamy.
-     * Novější záznamy jsou ty, u kterých je datum v repozitáři novější než datum v indexu.
+     * Novější záznamy jsou ty, u kterých je datum v repozitáři novější než datum v indexu, které v indexu chybí nebo byly zaindexovány starší verzí indexeru.
      */
-    TREE_INDEX_ONLY_NEWER, //TODO: not properly implemented yet, works as if everything was newer
+    TREE_INDEX_ONLY_NEWER,
 
     /**
      * Prochází se strom s tímto objektem jak kořenem, ale jen ty záznamy, které jsou novější, všechny takové záznamy se indexují (dříve fromKrameriusModel).
      * Tedy záznamy, jejichž datum v repozitáři není novější, než datum v indexu, se přeskočí a jejich strom se nezpracovává.
      */
-    TREE_PROCESS_ONLY_NEWER, //TODO: not properly implemented yet, works as if everything was newer
+    TREE_PROCESS_ONLY_NEWER,
 
     /**
      * Indexují se jen stránky, které jsou součástí stromu. Zbytek stromu se prochází, ale neinxexuje.
      * Určeno pro změny v OCR datech.
      */
-    TREE_INDEX_ONLY_PAGES, //TODO: not properly implemented yet, works as if nothing was page
+    TREE_INDEX_ONLY_PAGES,
 
     /**
      * Indexují se všechny objekty, které jsou součástí stromu, kromě stránek.
      * Určeno pro změny ve struktuře bez nutnosti reindexace OCR dat.
      * Pozor na změny v názvu rootu a pozici stránek, případně další informace, které by se měly propsat do indexů stránek.
      */
-    TREE_INDEX_ONLY_NONPAGES, //TODO: not properly implemented yet, works as if nothing was page
+    TREE_INDEX_ONLY_NONPAGES,
 
     /*
      Indexuje se celý strom a také stromy všech nevlastních potomků (dříve reindexDoc).
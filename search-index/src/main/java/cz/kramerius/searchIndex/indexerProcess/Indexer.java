@@ -1,14 +1,17 @@
 package cz.kramerius.searchIndex.indexerProcess;
 
 
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.kramerius.searchIndex.indexer.SolrConfig;
 import cz.kramerius.searchIndex.indexer.SolrIndexAccess;
 import cz.kramerius.searchIndex.indexer.SolrInput;
 import cz.kramerius.searchIndex.indexer.conversions.SolrInputBuilder;
 import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryAccessAdapter;
+import cz.kramerius.searchIndex.repositoryAccess.nodes.NodeCache;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNode;
 import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNodeManager;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrException;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
@@ -17,7 +20,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,7 +37,7 @@ public class Indexer {
 
     private final SolrConfig solrConfig;
     //only state variable
-    private boolean shutDown = false;
+    private volatile boolean shutDown = false;
     //helpers
     private final ReportLogger reportLogger;
     private final KrameriusRepositoryAccessAdapter repositoryConnector;
@@ -36,6 +45,12 @@ public class Indexer {
 
     private final SolrInputBuilder solrInputBuilder;
     private SolrIndexAccess solrIndexer = null;
+    private ChangeDetector changeDetector = null;
+
+    //objects are fetched and converted by these threads, documents are sent to Solr by a single writer in batches
+    private final int threads;
+    private final int batchSize;
+    private final int queueSize;
 
     public Indexer(KrameriusRepositoryAccessAdapter repositoryConnector, SolrConfig solrConfig, OutputStream reportLoggerStream, boolean ignoreInconsistentObjects) {
         this.repositoryConnector = repositoryConnector;
@@ -43,7 +58,11 @@ public class Indexer {
         this.solrInputBuilder = new SolrInputBuilder();
         this.solrConfig = solrConfig;
         this.reportLogger = new ReportLogger(reportLoggerStream);
+        this.threads = KConfiguration.getInstance().getConfiguration().getInt("searchIndex.indexer.threads", 4);
+        this.batchSize = KConfiguration.getInstance().getConfiguration().getInt("searchIndex.indexer.batchSize", 100);
+        this.queueSize = KConfiguration.getInstance().getConfiguration().getInt("searchIndex.indexer.queueSize", 500);
         init();
+        this.changeDetector = new ChangeDetector(solrIndexer, repositoryConnector, batchSize);
     }
 
     private void report(String message) {
@@ -86,9 +105,18 @@ public class Indexer {
             if (setFullIndexationInProgress) {
                 setFullIndexationInProgress(pid);
             }
-            RepositoryNode node = nodeManager.getKrameriusNode(pid);
-            indexObjectWithCounters(pid, node, counters, setFullIndexationInProgress, progressListener);
-            processChildren(pid, node, counters, type, true, progressListener);
+            Pipeline pipeline = new Pipeline(counters, progressListener);
+            try {
+                RepositoryNode node = nodeManager.getKrameriusNode(pid);
+                indexObjectWithCounters(pid, node, pipeline, setFullIndexationInProgress);
+                processChildren(pid, node, pipeline, type, true);
+                pipeline.walker.awaitCompletion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                pipeline.close();
+            }
             if (setFullIndexationInProgress) {
                 clearFullIndexationInProgress(pid);
             }
@@ -106,6 +134,9 @@ public class Indexer {
             report(" objects erroneous: " + counters.getErrors());
             report(" *counters include pages from pdf, i.e. not real objects in repository");
             report(" records processing duration: " + formatTime(System.currentTimeMillis() - start));
+            NodeCache nodeCache = nodeManager.getNodeCache();
+            report(" node cache (since start of the indexer): " + nodeCache.getHits() + " hits, " + nodeCache.getMisses() + " misses, " + nodeCache.getEvictions() + " evictions");
+            report(" node cache size: " + nodeCache.getSize() + " nodes, " + (nodeCache.getBytes() / 1024) + " kB");
             report("=======================================");
             report("");
             if (progressListener != null) {
@@ -120,8 +151,7 @@ public class Indexer {
             solrInput.addField("pid", pid);
             solrInput.addField("full_indexation_in_progress", Boolean.TRUE.toString());
             solrInput.addField("indexer_version", String.valueOf(INDEXER_VERSION));
-            String solrInputStr = solrInput.getDocument().asXML();
-            solrIndexer.indexFromXmlString(solrInputStr, false);
+            solrIndexer.indexDocuments(Collections.singletonList(solrInput.toSolrInputDocument()));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -134,7 +164,8 @@ public class Indexer {
         solrIndexer.setSingleFieldValue(pid, "full_indexation_in_progress", null, false);
     }
 
-    private void indexObjectWithCounters(String pid, RepositoryNode repositoryNode, Counters counters, boolean setFullIndexationInProgress, ProgressListener progressListener) {
+    private void indexObjectWithCounters(String pid, RepositoryNode repositoryNode, Pipeline pipeline, boolean setFullIndexationInProgress) {
+        Counters counters = pipeline.counters;
         try {
             counters.incrementProcessed();
             boolean objectAvailable = repositoryNode != null;
@@ -143,12 +174,11 @@ public class Indexer {
                 System.err.println("object not found in repository (or found in inconsistent state), removing from index: " + pid);
                 solrIndexer.deleteById(pid);
                 counters.incrementRemoved();
-                report("");
             } else {
                 LOGGER.info("Indexing " + pid);
                 Document foxmlDoc = repositoryConnector.getObjectFoxml(pid, true);
-                report("model: " + repositoryNode.getModel());
-                report("title: " + repositoryNode.getTitle());
+                //objects are indexed in parallel, so every line of the report identifies its object
+                report(pid + " model: " + repositoryNode.getModel() + ", title: " + repositoryNode.getTitle());
                 //the isOcrTextAvailable method (and for other datastreams) is inefficient for implementation through http stack (because of HEAD requests)
                 //String ocrText = repositoryConnector.isOcrTextAvailable(pid) ? repositoryConnector.getOcrText(pid) : null;
                 String ocrText = normalizeWhitespacesForOcrText(repositoryConnector.getOcrText(pid));
@@ -156,31 +186,32 @@ public class Indexer {
                 //IMG_FULL mimetype
                 String imgFullMime = repositoryConnector.getImgFullMimetype(pid);
                 SolrInput solrInput = solrInputBuilder.processObjectFromRepository(foxmlDoc, ocrText, repositoryNode, nodeManager, imgFullMime, setFullIndexationInProgress);
-                String solrInputStr = solrInput.getDocument().asXML();
-                solrIndexer.indexFromXmlString(solrInputStr, false);
-                counters.incrementIndexed();
-                report("");
+                //counted as indexed by the writer
+                pipeline.writer.add(solrInput.toSolrInputDocument());
                 if ("application/pdf".equals(imgFullMime)) {
-                    indexPagesFromPdf(pid, repositoryNode, counters);
+                    indexPagesFromPdf(pid, repositoryNode, pipeline);
                 }
             }
         } catch (DocumentException e) {
             counters.incrementErrors();
-            report(" Document error", e);
+            report(pid + " Document error", e);
         } catch (IOException e) {
             counters.incrementErrors();
-            report(" I/O error", e);
+            report(pid + " I/O error", e);
         } catch (SolrServerException e) {
             counters.incrementErrors();
-            report(" Solr server error", e);
+            report(pid + " Solr server error", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counters.incrementErrors();
+            report(pid + " Interrupted", e);
         } finally {
-            if (progressListener != null) {
-                progressListener.onProgress(counters.getProcessed());
-            }
+            pipeline.progress();
         }
     }
 
-    private void indexPagesFromPdf(String pid, RepositoryNode repositoryNode, Counters counters) throws IOException, DocumentException, SolrServerException {
+    private void indexPagesFromPdf(String pid, RepositoryNode repositoryNode, Pipeline pipeline) throws IOException, InterruptedException {
+        Counters counters = pipeline.counters;
         report("object " + pid + " contains PDF, extracting pages");
         InputStream imgFull = repositoryConnector.getImgFull(pid);
         PdfExtractor extractor = new PdfExtractor(pid, imgFull);
@@ -188,13 +219,10 @@ public class Indexer {
         for (int i = 0; i < pages; i++) {
             int pageNumber = i + 1;
             counters.incrementProcessed();
-            report("extracting page " + pageNumber + "/" + pages);
+            report(pid + " extracting page " + pageNumber + "/" + pages);
             String ocrText = normalizeWhitespacesForOcrText(extractor.getPageText(i));
             SolrInput solrInput = solrInputBuilder.processPageFromPdf(nodeManager, repositoryNode, pageNumber, ocrText);
-            String solrInputStr = solrInput.getDocument().asXML();
-            solrIndexer.indexFromXmlString(solrInputStr, false);
-            counters.incrementIndexed();
-            report("");
+            pipeline.writer.add(solrInput.toSolrInputDocument());
         }
     }
 
@@ -206,11 +234,21 @@ public class Indexer {
                 .replaceAll("\\s+", " ");
     }
 
-    private void processChildren(String parentPid, RepositoryNode parentNode, Counters counters, IndexationType type, boolean isIndexationRoot, ProgressListener progressListener) {
+    private void processChildren(String parentPid, RepositoryNode parentNode, Pipeline pipeline, IndexationType type, boolean isIndexationRoot) {
         if (parentNode == null) {
             System.err.println("object not found in repository (or found in inconsistent state), ignoring it's children: " + parentPid);
             return;
         }
+        prefetchChildren(parentNode, type, isIndexationRoot);
+        ParentPin pin = new ParentPin(parentPid);
+        try {
+            submitChildren(parentNode, pipeline, type, isIndexationRoot, pin);
+        } finally {
+            pin.release();
+        }
+    }
+
+    private void submitChildren(RepositoryNode parentNode, Pipeline pipeline, IndexationType type, boolean isIndexationRoot, ParentPin pin) {
         switch (type) {
             case OBJECT: {
                 //nothing
@@ -219,76 +257,183 @@ public class Indexer {
             case OBJECT_AND_CHILDREN: {
                 if (isIndexationRoot) {
                     for (String childPid : parentNode.getPidsOfOwnChildren()) {
-                        RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                        indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
+                        submitChild(childPid, pipeline, pin, childNode -> {
+                            indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        });
                     }
                 }
             }
             break;
             case TREE: {
                 for (String childPid : parentNode.getPidsOfOwnChildren()) { //index own children
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                    processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                    });
                 }
             }
             break;
             case TREE_INDEX_ONLY_NEWER: {
+                Map<String, SolrDocument> indexedChildren = changeDetector.getIndexedDocuments(parentNode.getPidsOfOwnChildren());
                 for (String childPid : parentNode.getPidsOfOwnChildren()) { //index own children
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    boolean isNewer = true; //TODO: detect
-                    if (isNewer) {
-                        indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                    }
-                    processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        boolean isNewer = changeDetector.isNewer(childPid, indexedChildren.get(childPid));
+                        if (isNewer) {
+                            indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        }
+                        processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                    });
                 }
             }
             break;
             case TREE_PROCESS_ONLY_NEWER: {
+                Map<String, SolrDocument> indexedChildren = changeDetector.getIndexedDocuments(parentNode.getPidsOfOwnChildren());
                 for (String childPid : parentNode.getPidsOfOwnChildren()) { //index own children
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    boolean isNewer = true; //TODO: detect
-                    if (isNewer) {
-                        indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                        processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
-                    }
+                    //subtree of unchanged object is not processed at all, not even its node is built
+                    submitChild(childPid, pipeline, pin, pid -> changeDetector.isNewer(pid, indexedChildren.get(pid)), childNode -> {
+                        indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                    });
                 }
             }
             break;
             case TREE_INDEX_ONLY_PAGES: {
                 for (String childPid : parentNode.getPidsOfOwnChildren()) { //index own children
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    boolean isPage = true; //TODO: detect
-                    if (isPage) {
-                        indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                    } else {
-                        processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
-                    }
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        boolean isPage = isPage(childNode);
+                        if (isPage) {
+                            indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        } else {
+                            processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                        }
+                    });
                 }
             }
             break;
             case TREE_INDEX_ONLY_NONPAGES: {
                 for (String childPid : parentNode.getPidsOfOwnChildren()) { //index own children
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    boolean isPage = false; //TODO: detect
-                    if (!isPage) {
-                        indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                        processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
-                    }
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        boolean isPage = isPage(childNode);
+                        if (!isPage) {
+                            indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                            processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                        }
+                    });
                 }
             }
             break;
             case TREE_AND_FOSTER_TREES: {
                 for (String childPid : parentNode.getPidsOfOwnChildren()) {
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index own child
-                    processChildren(childPid, childNode, counters, type, false, progressListener); //process own child's tree
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        indexObjectWithCounters(childPid, childNode, pipeline, false); //index own child
+                        processChildren(childPid, childNode, pipeline, type, false); //process own child's tree
+                    });
                 }
                 for (String childPid : parentNode.getPidsOfFosterChildren()) {
-                    RepositoryNode childNode = nodeManager.getKrameriusNode(childPid);
-                    indexObjectWithCounters(childPid, childNode, counters, false, progressListener); //index foster child
-                    processChildren(childPid, childNode, counters, type, false, progressListener); //process foster child's tree
+                    submitChild(childPid, pipeline, pin, childNode -> {
+                        indexObjectWithCounters(childPid, childNode, pipeline, false); //index foster child
+                        processChildren(childPid, childNode, pipeline, type, false); //process foster child's tree
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Children are announced to the repository connector before they are submitted, so their data can be fetched in bulk
+     */
+    private void prefetchChildren(RepositoryNode parentNode, IndexationType type, boolean isIndexationRoot) {
+        switch (type) {
+            case OBJECT:
+                break;
+            case OBJECT_AND_CHILDREN:
+                if (isIndexationRoot) {
+                    repositoryConnector.prefetch(parentNode.getPidsOfOwnChildren());
+                }
+                break;
+            case TREE_AND_FOSTER_TREES:
+                List<String> children = new ArrayList<>(parentNode.getPidsOfOwnChildren());
+                children.addAll(parentNode.getPidsOfFosterChildren());
+                repositoryConnector.prefetch(children);
+                break;
+            default:
+                repositoryConnector.prefetch(parentNode.getPidsOfOwnChildren());
+        }
+    }
+
+    private boolean isPage(RepositoryNode node) {
+        return node != null && "page".equals(node.getModel());
+    }
+
+    /**
+     * Node of the child is built and the child is processed by one of the indexing threads
+     */
+    private void submitChild(String childPid, Pipeline pipeline, ParentPin pin, Consumer<RepositoryNode> childProcessing) {
+        submitChild(childPid, pipeline, pin, pid -> true, childProcessing);
+    }
+
+    /**
+     * Same as {@link #submitChild(String, Pipeline, ParentPin, Consumer)}, child is skipped without building its node if the condition is not met
+     */
+    private void submitChild(String childPid, Pipeline pipeline, ParentPin pin, Predicate<String> condition, Consumer<RepositoryNode> childProcessing) {
+        if (shutDown) {
+            return;
+        }
+        Runnable releasePin = pin.acquire();
+        try {
+            boolean submitted = pipeline.walker.submit(() -> {
+                RepositoryNode childNode;
+                boolean accepted;
+                try {
+                    accepted = !shutDown && condition.test(childPid);
+                    childNode = accepted ? nodeManager.getKrameriusNode(childPid) : null;
+                } finally {
+                    releasePin.run();
                 }
+                if (accepted && !shutDown) {
+                    childProcessing.accept(childNode);
+                }
+            });
+            if (!submitted) {
+                releasePin.run();
+            }
+        } catch (RuntimeException e) {
+            //with a single thread the child is processed (and may fail) right in submit()
+            releasePin.run();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps node of the parent in the node cache until nodes of all its submitted children are built,
+     * children of large objects would otherwise build the parent (and its ancestors) again after its eviction
+     */
+    private class ParentPin {
+        private final String parentPid;
+        //submitted children with nodes not built yet, plus one for the submitting thread
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        ParentPin(String parentPid) {
+            this.parentPid = parentPid;
+            nodeManager.pinNode(parentPid);
+        }
+
+        /**
+         * @return release for one child, calling it more than once has no effect
+         */
+        Runnable acquire() {
+            pending.incrementAndGet();
+            AtomicBoolean released = new AtomicBoolean(false);
+            return () -> {
+                if (released.compareAndSet(false, true)) {
+                    release();
+                }
+            };
+        }
+
+        void release() {
+            if (pending.decrementAndGet() == 0) {
+                nodeManager.unpinNode(parentPid);
             }
         }
     }
@@ -298,10 +443,10 @@ public class Indexer {
             solrIndexer.commit();
         } catch (IOException e) {
             counters.incrementErrors();
-            report(" I/O error", e);
+            report(pid + " I/O error", e);
         } catch (SolrServerException e) {
             counters.incrementErrors();
-            report(" Solr server error", e);
+            report(pid + " Solr server error", e);
         }
     }
 
@@ -351,16 +496,16 @@ public class Indexer {
             counters.incrementIndexed();
         } catch (IOException e) {
             counters.incrementErrors();
-            report(" I/O error", e);
+            report(pid + " I/O error", e);
         } catch (SolrServerException e) {
             counters.incrementErrors();
-            report(" Solr server error", e);
+            report(pid + " Solr server error", e);
         } catch (SolrException e) {
             counters.incrementErrors();
             report(" Solr error", e);
         } catch (DocumentException e) {
             counters.incrementErrors();
-            report(" Document error", e);
+            report(pid + " Document error", e);
         }
         if (progressListener != null) {
             progressListener.onProgress(counters.getProcessed());
@@ -384,6 +529,59 @@ public class Indexer {
         report(" ");
     }
 
+    /**
+     * State of one indexation: threads walking the tree, writer to Solr and counters
+     */
+    private class Pipeline {
+        private final Counters counters;
+        private final ProgressListener progressListener;
+        private final ParallelTreeWalker walker;
+        private final SolrBatchWriter writer;
+
+        Pipeline(Counters counters, ProgressListener progressListener) {
+            this.counters = counters;
+            this.progressListener = progressListener;
+            this.walker = new ParallelTreeWalker(threads);
+            this.writer = new SolrBatchWriter(solrIndexer, batchSize, queueSize, new SolrBatchWriter.Listener() {
+                @Override
+                public void onIndexed(String pid) {
+                    counters.incrementIndexed();
+                }
+
+                @Override
+                public void onError(String pid, Exception e) {
+                    counters.incrementErrors();
+                    report(" Solr error (" + pid + ")", e);
+                }
+            });
+        }
+
+        void progress() {
+            if (progressListener != null) {
+                //listeners are not expected to be thread safe
+                synchronized (progressListener) {
+                    progressListener.onProgress(counters.getProcessed());
+                }
+            }
+        }
+
+        /**
+         * Sends documents waiting in the writer (also when the tree walk failed) and stops the pipeline;
+         * documents that cannot be sent are counted as errors
+         */
+        void close() {
+            walker.shutdown();
+            if (!Thread.currentThread().isInterrupted()) {
+                try {
+                    writer.flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            writer.close();
+        }
+    }
+
     public void shutDown() {
         shutDown = true;
     }
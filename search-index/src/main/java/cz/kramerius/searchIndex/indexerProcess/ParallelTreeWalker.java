@@ -0,0 +1,90 @@
+package cz.kramerius.searchIndex.indexerProcess;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs processing of the objects of the tree in a fixed pool of threads.
+ * Task usually submits tasks for children of its object, {@link #awaitCompletion()} waits until the whole tree is processed.
+ * With one thread (or less) tasks run directly in the submitting thread, i.e. depth-first as before.
+ */
+public class ParallelTreeWalker {
+
+    private final ExecutorService executor;
+    //tasks submitted and not yet finished
+    private int pending = 0;
+    private RuntimeException failure = null;
+
+    public ParallelTreeWalker(int threads) {
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "indexer-tree-walker");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Submits task; it is ignored when some task has already failed
+     * @return false if the task was ignored
+     */
+    public boolean submit(Runnable task) {
+        if (executor == null) {
+            task.run();
+            return true;
+        }
+        synchronized (this) {
+            if (failure != null) {
+                return false;
+            }
+            pending++;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    fail(e);
+                } finally {
+                    finished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finished();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all submitted tasks (including tasks submitted by them) are finished
+     * @throws RuntimeException first failure of a task, as if the tree was processed by the calling thread
+     */
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (pending > 0) {
+            wait();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private synchronized void fail(RuntimeException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private synchronized void finished() {
+        pending--;
+        if (pending == 0) {
+            notifyAll();
+        }
+    }
+}
@@ -15,13 +15,13 @@ public class ReportLogger {
         this.stream = outputStream == null ? null : new PrintStream(outputStream);
     }
 
-    public void report(String message) {
+    public synchronized void report(String message) {
         if (stream != null) {
             stream.println(message);
         }
     }
 
-    public void report(String message, Throwable e) {
+    public synchronized void report(String message, Throwable e) {
         if (stream != null) {
             stream.print(message + ": ");
             e.printStackTrace(stream);
@@ -0,0 +1,200 @@
+package cz.kramerius.searchIndex.indexerProcess;
+
+import cz.kramerius.searchIndex.indexer.SolrIndexAccess;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends documents to Solr in batches from a single thread.
+ * Queue of the documents is bounded, so the indexing threads wait when Solr is slower than fetching of the objects.
+ * Batch contains everything that is waiting in the queue (up to batchSize), no document waits for a full batch.
+ */
+public class SolrBatchWriter {
+    private static final Logger LOGGER = Logger.getLogger(SolrBatchWriter.class.getName());
+    //longer than socket timeout of SolrIndexAccess, request in progress is not aborted on close
+    private static final long CLOSE_TIMEOUT_MS = 90000;
+
+    public interface Listener {
+
+        public void onIndexed(String pid);
+
+        public void onError(String pid, Exception e);
+    }
+
+    private final SolrIndexAccess solrIndexer;
+    private final int batchSize;
+    private final Listener listener;
+    private final BlockingQueue<Item> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    public SolrBatchWriter(SolrIndexAccess solrIndexer, int batchSize, int queueSize, Listener listener) {
+        this.solrIndexer = solrIndexer;
+        this.batchSize = Math.max(batchSize, 1);
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+        this.thread = new Thread(this::run, "solr-batch-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Adds document to the queue, blocks while the queue is full
+     */
+    public void add(SolrInputDocument doc) throws InterruptedException {
+        if (closed) {
+            notifyError(doc, new IllegalStateException("writer closed before the document was sent"));
+            return;
+        }
+        queue.put(new Item(doc, null));
+    }
+
+    /**
+     * Waits until all documents added so far are sent to Solr
+     */
+    public void flush() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        CountDownLatch flushed = new CountDownLatch(1);
+        queue.put(new Item(null, flushed));
+        flushed.await();
+    }
+
+    /**
+     * Stops the writer thread, documents that are not flushed are not sent and reported to the listener as errors.
+     * Request that is already in progress is finished, the thread is interrupted only when it does not stop in time.
+     */
+    public void close() {
+        closed = true;
+        //wakes up the writer waiting for documents, writer that is sending a batch finds the queue non-empty anyway
+        queue.offer(new Item(null, null));
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+            if (thread.isAlive()) {
+                LOGGER.warning("writer did not stop in " + CLOSE_TIMEOUT_MS + " ms, interrupting");
+                thread.interrupt();
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        List<Item> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        discard(unsent);
+    }
+
+    private void run() {
+        List<Item> items = new ArrayList<>(batchSize);
+        List<SolrInputDocument> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                items.add(queue.take());
+                queue.drainTo(items, batchSize - 1);
+                if (closed) {
+                    discard(items);
+                    return;
+                }
+                for (Item item : items) {
+                    if (item.doc != null) {
+                        batch.add(item.doc);
+                    } else if (item.flushed != null) {
+                        send(batch);
+                        batch.clear();
+                        item.flushed.countDown();
+                    }
+                }
+                send(batch);
+                batch.clear();
+                items.clear();
+            }
+        } catch (InterruptedException e) {
+            //closed
+        }
+    }
+
+    private void discard(List<Item> items) {
+        for (Item item : items) {
+            if (item.doc != null) {
+                notifyError(item.doc, new IllegalStateException("writer closed before the document was sent"));
+            } else if (item.flushed != null) {
+                item.flushed.countDown();
+            }
+        }
+        items.clear();
+    }
+
+    private void send(List<SolrInputDocument> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Exception error = null;
+        try {
+            solrIndexer.indexDocuments(batch);
+        } catch (IOException | SolrServerException | RuntimeException e) {
+            error = e;
+        }
+        if (error == null) {
+            for (SolrInputDocument doc : batch) {
+                notifyIndexed(doc);
+            }
+        } else if (batch.size() == 1) {
+            notifyError(batch.get(0), error);
+        } else {
+            //one bad document must not spoil the whole batch, documents are sent one by one
+            LOGGER.log(Level.WARNING, "batch of " + batch.size() + " documents failed, sending documents one by one", error);
+            for (SolrInputDocument doc : batch) {
+                if (closed) {
+                    notifyError(doc, new IllegalStateException("writer closed before the document was sent"));
+                } else {
+                    send(Collections.singletonList(doc));
+                }
+            }
+        }
+    }
+
+    private void notifyIndexed(SolrInputDocument doc) {
+        try {
+            listener.onIndexed(pid(doc));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    private void notifyError(SolrInputDocument doc, Exception error) {
+        try {
+            listener.onError(pid(doc), error);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    private static String pid(SolrInputDocument doc) {
+        Object pid = doc.getFieldValue("pid");
+        return pid == null ? null : pid.toString();
+    }
+
+    /**
+     * Document to send, flush request (only flushed set) or wake-up on close (both null)
+     */
+    private static class Item {
+        private final SolrInputDocument doc;
+        private final CountDownLatch flushed;
+
+        Item(SolrInputDocument doc, CountDownLatch flushed) {
+            this.doc = doc;
+            this.flushed = flushed;
+        }
+    }
+}
@@ -6,21 +6,58 @@ import cz.kramerius.adapters.IResourceIndex;
 import cz.kramerius.shared.Pair;
 import org.dom4j.Document;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.List;
 
 /**
  * This class is an adapter for Kramerius-specific operations over general repository (formally Fedora, newly Akubra) and Resource Index.
+ * If it has a {@link ObjectBundlePrefetcher}, data of objects announced by {@link #prefetch(List)} are taken from the prefetched bundles.
  */
 public class KrameriusRepositoryAccessAdapter {
 
     private final FedoraAccess repository;
     private final IResourceIndex resourceIndex;
+    private final ObjectBundlePrefetcher bundles;
 
     public KrameriusRepositoryAccessAdapter(FedoraAccess repository, IResourceIndex resourceIndex) {
+        this(repository, resourceIndex, null);
+    }
+
+    public KrameriusRepositoryAccessAdapter(FedoraAccess repository, IResourceIndex resourceIndex, ObjectBundlePrefetcher bundles) {
         this.repository = repository;
         this.resourceIndex = resourceIndex;
+        this.bundles = bundles;
+    }
+
+    /**
+     * Announces objects that will be needed soon, their data are fetched in bulk in background (if bundles are available)
+     *
+     * @param pids
+     */
+    public void prefetch(List<String> pids) {
+        if (bundles != null && !pids.isEmpty()) {
+            bundles.prefetch(pids);
+        }
+    }
+
+    /**
+     * @param pid
+     * @return prefetched bundle of existing object or null
+     */
+    private ObjectBundle getBundle(String pid) {
+        if (bundles == null) {
+            return null;
+        }
+        ObjectBundle bundle = bundles.get(pid);
+        return bundle != null && bundle.exists ? bundle : null;
+    }
+
+    private Document toDocument(String xml, boolean nsAware) throws IOException {
+        return xml == null ? null : Utils.inputstreamToDocument(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), nsAware);
     }
 
     //OBJECT
@@ -30,17 +67,42 @@ public class KrameriusRepositoryAccessAdapter {
      So client classes will probably use only this and not FedoraAccess directly
      */
     public boolean isObjectAvailable(String pid) throws IOException {
+        ObjectBundle bundle = bundles == null ? null : bundles.get(pid);
+        if (bundle != null) {
+            return bundle.exists;
+        }
         return repository.isObjectAvailable(pid);
     }
 
     public Document getObjectFoxml(String pid, boolean nsAware) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.foxml != null) {
+            return toDocument(bundle.foxml, nsAware);
+        }
         InputStream is = repository.getFoxml(pid);
         return Utils.inputstreamToDocument(is, nsAware);
     }
 
+    /**
+     * @param pid
+     * @return time of the last change of the object or any of its datastreams
+     * @throws IOException
+     */
+    public Date getObjectLastModified(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.foxml != null) {
+            return KrameriusRepositoryUtils.extractLastModified(toDocument(bundle.foxml, false));
+        }
+        return repository.getObjectLastmodifiedFlag(pid);
+    }
+
     //structure
 
     public String getModel(String pid) throws ResourceIndexException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null) {
+            return bundle.model;
+        }
         return resourceIndex.getModel(pid);
     }
 
@@ -50,6 +112,10 @@ public class KrameriusRepositoryAccessAdapter {
      * @throws ResourceIndexException
      */
     public Pair<String, List<String>> getPidsOfParents(String pid) throws ResourceIndexException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null) {
+            return bundle.parents;
+        }
         return resourceIndex.getPidsOfParents(pid);
     }
 
@@ -59,16 +125,29 @@ public class KrameriusRepositoryAccessAdapter {
      * @throws ResourceIndexException
      */
     public Pair<List<String>, List<String>> getPidsOfChildren(String pid) throws ResourceIndexException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null) {
+            return bundle.children;
+        }
         return resourceIndex.getPidsOfChildren(pid);
     }
 
     //RELS-EXT
 
     public boolean isRelsExtAvailable(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.RELS_EXT)) {
+            return bundle.relsExt != null;
+        }
         return repository.isStreamAvailable(pid, KnownDatastreams.RELS_EXT_STREAM);
     }
 
     public Document getRelsExt(String pid, boolean nsAware) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.RELS_EXT)) {
+            //datastream missing in the bundle does not exist, it is not fetched again
+            return toDocument(bundle.relsExt, nsAware);
+        }
         InputStream is = repository.getDataStream(pid, KnownDatastreams.RELS_EXT_STREAM);
         return Utils.inputstreamToDocument(is, nsAware);
     }
@@ -87,19 +166,35 @@ public class KrameriusRepositoryAccessAdapter {
     //MODS
 
     public boolean isModsAvailable(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.MODS)) {
+            return bundle.mods != null;
+        }
         return repository.isStreamAvailable(pid, KnownDatastreams.BIBLIO_MODS_STREAM);
     }
 
     public Document getMods(String pid, boolean nsAware) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.MODS)) {
+            return toDocument(bundle.mods, nsAware);
+        }
         InputStream is = repository.getDataStream(pid, KnownDatastreams.BIBLIO_MODS_STREAM);
         return Utils.inputstreamToDocument(is, nsAware);
     }
 
     public boolean isOcrTextAvailable(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.OCR)) {
+            return bundle.ocrText != null;
+        }
         return repository.isStreamAvailable(pid, KnownDatastreams.TEXT_OCR_STREAM);
     }
 
     public String getOcrText(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.OCR)) {
+            return bundle.ocrText == null ? null : bundle.ocrText.trim();
+        }
         InputStream is = repository.getDataStream(pid, KnownDatastreams.TEXT_OCR_STREAM);
         String result = Utils.inputstreamToString(is);
         return result == null ? null : result.trim();
@@ -107,6 +202,10 @@ public class KrameriusRepositoryAccessAdapter {
 
     //IMAGE
     public String getImgFullMimetype(String pid) throws IOException {
+        ObjectBundle bundle = getBundle(pid);
+        if (bundle != null && bundle.isIncluded(ObjectBundle.IMG_FULL_MIMETYPE)) {
+            return bundle.imgFullMimetype;
+        }
         return repository.getDatastreamMimeType(pid, KnownDatastreams.IMG_FULL_STREAM);
     }
 
@@ -7,7 +7,10 @@ import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.Node;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -31,6 +34,28 @@ public class KrameriusRepositoryUtils {
         }
     }
 
+    /**
+     * Extracts time of the last change of the object, i.e. lastModifiedDate or creation of the newest datastream version, whichever is later
+     *
+     * @param foxml input document (without namespaces)
+     * @return time of the last change or null if foxml contains no dates
+     */
+    public static Date extractLastModified(Document foxml) {
+        Instant lastModified = null;
+        List<Node> dates = Dom4jUtils.buildXpath("/digitalObject/objectProperties/property[@NAME='info:fedora/fedora-system:def/view#lastModifiedDate']/@VALUE|/digitalObject/datastream/datastreamVersion/@CREATED").selectNodes(foxml);
+        for (Node date : dates) {
+            try {
+                Instant instant = Instant.parse(date.getText().trim());
+                if (lastModified == null || instant.isAfter(lastModified)) {
+                    lastModified = instant;
+                }
+            } catch (DateTimeParseException e) {
+                LOGGER.warning("invalid date in foxml: " + date.getText());
+            }
+        }
+        return lastModified == null ? null : Date.from(lastModified);
+    }
+
     /**
      * Extacts pids of children, own-children and foster-children separate
      *
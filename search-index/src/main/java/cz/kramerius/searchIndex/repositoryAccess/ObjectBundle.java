@@ -0,0 +1,64 @@
+package cz.kramerius.searchIndex.repositoryAccess;
+
+import cz.kramerius.shared.Pair;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data of one object needed for its indexation, fetched together with data of other objects in one request.
+ * Xml parts are kept as strings and parsed when used, missing datastreams are null.
+ * Parts that were not requested are not in {@link #included}, null of an included part means that the datastream does not exist.
+ */
+public class ObjectBundle {
+
+    public static final String FOXML = "foxml";
+    public static final String MODS = "mods";
+    public static final String RELS_EXT = "relsExt";
+    public static final String OCR = "ocr";
+    public static final String IMG_FULL_MIMETYPE = "imgFullMimetype";
+
+    public static final Set<String> ALL_PARTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(FOXML, MODS, RELS_EXT, OCR, IMG_FULL_MIMETYPE)));
+
+    public final String pid;
+    public final boolean exists;
+    public final String model;
+    public final Pair<String, List<String>> parents;
+    public final Pair<List<String>, List<String>> children;
+    public final String foxml;
+    public final String mods;
+    public final String relsExt;
+    public final String ocrText;
+    public final String imgFullMimetype;
+    public final Set<String> included;
+
+    public ObjectBundle(String pid, boolean exists, String model, Pair<String, List<String>> parents, Pair<List<String>, List<String>> children,
+                        String foxml, String mods, String relsExt, String ocrText, String imgFullMimetype, Set<String> included) {
+        this.pid = pid;
+        this.exists = exists;
+        this.model = model;
+        this.parents = parents;
+        this.children = children;
+        this.foxml = foxml;
+        this.mods = mods;
+        this.relsExt = relsExt;
+        this.ocrText = ocrText;
+        this.imgFullMimetype = imgFullMimetype;
+        this.included = included;
+    }
+
+    public static ObjectBundle missing(String pid) {
+        return new ObjectBundle(pid, false, null, null, null, null, null, null, null, null, Collections.emptySet());
+    }
+
+    /**
+     * @param part one of the part names (FOXML, MODS, ...)
+     * @return true if the part was requested, i.e. its null value means that the object does not have it
+     */
+    public boolean isIncluded(String part) {
+        return included.contains(part);
+    }
+}
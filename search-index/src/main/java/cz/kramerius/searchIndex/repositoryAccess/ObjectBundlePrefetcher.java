@@ -0,0 +1,179 @@
+package cz.kramerius.searchIndex.repositoryAccess;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fetches bundles of objects in advance, in batches and in background threads.
+ * Indexer announces children of an object before it starts processing them, so that the data of the next objects
+ * are usually ready when they are needed.
+ * At most half of the capacity is fetched ahead of the objects actually used, further batches wait until the indexer catches up.
+ * Number of kept bundles is limited by the capacity, the oldest ones are dropped.
+ */
+public class ObjectBundlePrefetcher {
+    private static final Logger LOGGER = Logger.getLogger(ObjectBundlePrefetcher.class.getName());
+
+    private final ObjectBundleSource source;
+    private final int batchSize;
+    private final int maxAhead;
+    private final ExecutorService executor;
+    private final Object lock = new Object();
+    private final Map<String, CompletableFuture<ObjectBundle>> bundles;
+    //announced batches not yet started
+    private final Deque<List<String>> waitingBatches = new ArrayDeque<>();
+    private final Set<String> waitingPids = new HashSet<>();
+    //pids fetched (or being fetched) and not yet used
+    private final Set<String> aheadPids = new HashSet<>();
+
+    public ObjectBundlePrefetcher(ObjectBundleSource source, int batchSize, int threads, int capacity) {
+        this.source = source;
+        this.batchSize = Math.max(batchSize, 1);
+        int maxBundles = Math.max(capacity, 2 * this.batchSize);
+        this.maxAhead = maxBundles / 2;
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            Thread thread = new Thread(r, "object-bundle-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.bundles = new LinkedHashMap<String, CompletableFuture<ObjectBundle>>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ObjectBundle>> eldest) {
+                if (size() > maxBundles) {
+                    aheadPids.remove(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Announces objects that will be needed soon, in this order
+     */
+    public void prefetch(List<String> pids) {
+        synchronized (lock) {
+            List<String> batch = new ArrayList<>(batchSize);
+            for (String pid : pids) {
+                if (!bundles.containsKey(pid) && waitingPids.add(pid)) {
+                    batch.add(pid);
+                    if (batch.size() == batchSize) {
+                        waitingBatches.add(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                waitingBatches.add(batch);
+            }
+            startBatches();
+        }
+    }
+
+    /**
+     * @param pid pid of the object
+     * @return bundle of the object, waits if it is being fetched; null if the object was not announced or fetching failed
+     */
+    public ObjectBundle get(String pid) {
+        CompletableFuture<ObjectBundle> future;
+        synchronized (lock) {
+            if (waitingPids.contains(pid)) {
+                //indexer got ahead of prefetching (e.g. other threads took the children in different order)
+                startBatchOf(pid);
+            }
+            future = bundles.get(pid);
+            if (aheadPids.remove(pid)) {
+                startBatches();
+            }
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        //nobody must wait for a batch that will never be fetched
+        synchronized (lock) {
+            for (CompletableFuture<ObjectBundle> future : bundles.values()) {
+                future.cancel(false);
+            }
+            bundles.clear();
+            waitingBatches.clear();
+            waitingPids.clear();
+            aheadPids.clear();
+        }
+    }
+
+    private void startBatches() {
+        while (!waitingBatches.isEmpty() && aheadPids.size() + waitingBatches.peek().size() <= maxAhead) {
+            start(waitingBatches.poll());
+        }
+    }
+
+    private void startBatchOf(String pid) {
+        Iterator<List<String>> it = waitingBatches.iterator();
+        while (it.hasNext()) {
+            List<String> batch = it.next();
+            if (batch.contains(pid)) {
+                it.remove();
+                start(batch);
+                return;
+            }
+        }
+    }
+
+    private void start(List<String> batch) {
+        List<CompletableFuture<ObjectBundle>> futures = new ArrayList<>(batch.size());
+        for (String pid : batch) {
+            CompletableFuture<ObjectBundle> future = new CompletableFuture<>();
+            waitingPids.remove(pid);
+            aheadPids.add(pid);
+            bundles.put(pid, future);
+            futures.add(future);
+        }
+        executor.execute(() -> fetch(batch, futures));
+    }
+
+    private void fetch(List<String> pids, List<CompletableFuture<ObjectBundle>> futures) {
+        try {
+            Map<String, ObjectBundle> fetched = source.getBundles(pids);
+            for (int i = 0; i < pids.size(); i++) {
+                ObjectBundle bundle = fetched.get(pids.get(i));
+                if (bundle != null) {
+                    futures.get(i).complete(bundle);
+                } else {
+                    futures.get(i).completeExceptionally(new IOException("bundle of " + pids.get(i) + " not available"));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //objects will be fetched one by one by the adapter
+            LOGGER.log(Level.WARNING, "cannot fetch bundles of " + pids.size() + " objects", e);
+            for (CompletableFuture<ObjectBundle> future : futures) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cz.kramerius.searchIndex.repositoryAccess;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Source of {@link ObjectBundle}s for several objects at once
+ */
+public interface ObjectBundleSource {
+
+    /**
+     * @param pids pids of the objects
+     * @return bundles by pid; objects that failed on the side of the repository are missing in the map
+     * @throws IOException
+     */
+    public Map<String, ObjectBundle> getBundles(List<String> pids) throws IOException;
+}
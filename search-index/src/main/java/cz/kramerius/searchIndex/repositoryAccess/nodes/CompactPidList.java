@@ -0,0 +1,99 @@
+package cz.kramerius.searchIndex.repositoryAccess.nodes;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Immutable list of pids in form uuid:..., every pid is kept as two longs instead of a string.
+ * Children of large objects (thousands of pages) stay in the node cache for the whole indexation of the object,
+ * strings would take several times more memory.
+ */
+public class CompactPidList extends AbstractList<String> implements RandomAccess {
+
+    private static final String PREFIX = "uuid:";
+
+    //most and least significant bits of the uuids, interleaved
+    private final long[] bits;
+
+    private CompactPidList(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @param pids
+     * @return compact list, or the original list if some pid is not in the canonical form uuid:... (or pids is null)
+     */
+    public static List<String> of(List<String> pids) {
+        if (pids == null) {
+            return null;
+        }
+        long[] bits = new long[pids.size() * 2];
+        for (int i = 0; i < pids.size(); i++) {
+            UUID uuid = toUuid(pids.get(i));
+            if (uuid == null) {
+                return pids;
+            }
+            bits[2 * i] = uuid.getMostSignificantBits();
+            bits[2 * i + 1] = uuid.getLeastSignificantBits();
+        }
+        return new CompactPidList(bits);
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+        return PREFIX + new UUID(bits[2 * index], bits[2 * index + 1]);
+    }
+
+    @Override
+    public int size() {
+        return bits.length / 2;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        //compares bits, no strings are built
+        UUID uuid = o instanceof String ? toUuid((String) o) : null;
+        if (uuid == null) {
+            return -1;
+        }
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        for (int i = 0; i < bits.length; i += 2) {
+            if (bits[i] == most && bits[i + 1] == least) {
+                return i / 2;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * @return estimated size in memory (bytes)
+     */
+    long estimateSize() {
+        return 32 + 8L * bits.length;
+    }
+
+    private static UUID toUuid(String pid) {
+        if (pid == null || !pid.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            String value = pid.substring(PREFIX.length());
+            UUID uuid = UUID.fromString(value);
+            //only canonical form, so that get() returns the same string
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package cz.kramerius.searchIndex.repositoryAccess.nodes;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe LRU cache of repository nodes limited by their estimated size in memory (not by their count).
+ * Pinned nodes (typically ancestors of objects that are being indexed) are never evicted, so their subtrees
+ * don't build them again. If pinned nodes alone exceed the limit, the cache temporarily grows over it.
+ */
+public class NodeCache {
+
+    private final long maxBytes;
+    //access order, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public NodeCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized RepositoryNode get(String pid) {
+        Entry entry = entries.get(pid);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.node;
+    }
+
+    /**
+     * Node already in the cache is kept (nodes built concurrently by several threads are equal)
+     */
+    public synchronized void put(String pid, RepositoryNode node) {
+        if (entries.containsKey(pid)) {
+            return;
+        }
+        Entry entry = new Entry(node, node.estimateSize());
+        entries.put(pid, entry);
+        bytes += entry.size;
+        evict();
+    }
+
+    /**
+     * Node of given pid will not be evicted until {@link #unpin(String)} is called (as many times as this method)
+     */
+    public synchronized void pin(String pid) {
+        pins.merge(pid, 1, Integer::sum);
+    }
+
+    public synchronized void unpin(String pid) {
+        Integer count = pins.get(pid);
+        if (count == null) {
+            return;
+        }
+        if (count <= 1) {
+            pins.remove(pid);
+            evict();
+        } else {
+            pins.put(pid, count - 1);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (!pins.containsKey(eldest.getKey())) {
+                it.remove();
+                bytes -= eldest.getValue().size;
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated size of cached nodes (bytes)
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static class Entry {
+        private final RepositoryNode node;
+        private final long size;
+
+        Entry(RepositoryNode node, long size) {
+            this.node = node;
+            this.size = size;
+        }
+    }
+}
@@ -178,4 +178,52 @@ public class RepositoryNode {
         return dateInfo;
     }
 
+    /**
+     * @return rough estimate of the size in memory (bytes), used to limit the node cache
+     */
+    long estimateSize() {
+        long size = 160; //object header and references
+        size += sizeOf(pid) + sizeOf(pidPath) + sizeOf(ownParentPid);
+        //models and root pid are shared with other nodes
+        size += sizeOf(title) + sizeOf(rootTitle) + sizeOf(ownParentTitle);
+        size += sizeOf(pidsOfFosterParents) + sizeOf(pidsOfFosterParentsOfTypeCollection) + sizeOf(pidsOfAnyAncestorsOfTypeCollection);
+        size += sizeOf(pidsOfOwnChildren) + sizeOf(pidsOfFosterChildren);
+        size += sizeOf(languages);
+        size += sizeOfAuthors(primaryAuthors) + sizeOfAuthors(otherAuthors);
+        size += dateInfo == null ? 0 : 200;
+        return size;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    private static long sizeOf(Title value) {
+        return value == null ? 0 : 24 + sizeOf(value.toString());
+    }
+
+    private static long sizeOf(List<String> values) {
+        if (values == null) {
+            return 0;
+        } else if (values instanceof CompactPidList) {
+            return ((CompactPidList) values).estimateSize();
+        }
+        long size = 40 + 8L * values.size();
+        for (String value : values) {
+            size += sizeOf(value);
+        }
+        return size;
+    }
+
+    private static long sizeOfAuthors(List<AuthorInfo> authors) {
+        if (authors == null) {
+            return 0;
+        }
+        long size = 40 + 8L * authors.size();
+        for (AuthorInfo author : authors) {
+            size += 24 + sizeOf(author.name) + sizeOf(author.date);
+        }
+        return size;
+    }
+
 }
@@ -1,6 +1,7 @@
 package cz.kramerius.searchIndex.repositoryAccess.nodes;
 
 import cz.incad.kramerius.resourceindex.ResourceIndexException;
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.kramerius.searchIndex.indexer.conversions.extraction.AuthorsExtractor;
 import cz.kramerius.searchIndex.indexer.conversions.extraction.DateExtractor;
 import cz.kramerius.searchIndex.indexer.conversions.extraction.LanguagesExtractor;
@@ -22,12 +23,29 @@ import java.util.stream.Collectors;
 public class RepositoryNodeManager {
 
     private final KrameriusRepositoryAccessAdapter krameriusRepositoryAccessAdapter;
-    private final LRUCache<String, RepositoryNode> nodesByPid = new LRUCache<>(1024);
+    private final NodeCache nodesByPid;
     private final boolean surviveInconsistentObjects;
 
     public RepositoryNodeManager(KrameriusRepositoryAccessAdapter krameriusRepositoryAccessAdapter, boolean surviveInconsistentObjects) {
         this.krameriusRepositoryAccessAdapter = krameriusRepositoryAccessAdapter;
         this.surviveInconsistentObjects = surviveInconsistentObjects;
+        long maxSizeMB = KConfiguration.getInstance().getConfiguration().getLong("searchIndex.nodeCache.maxSizeMB", 64);
+        this.nodesByPid = new NodeCache(maxSizeMB * 1024 * 1024);
+    }
+
+    /**
+     * Node of the object stays in the cache until {@link #unpinNode(String)}, e.g. while its children are being built
+     */
+    public void pinNode(String pid) {
+        nodesByPid.pin(pid);
+    }
+
+    public void unpinNode(String pid) {
+        nodesByPid.unpin(pid);
+    }
+
+    public NodeCache getNodeCache() {
+        return nodesByPid;
     }
 
     public RepositoryNode getKrameriusNode(String pid) {
@@ -46,13 +64,15 @@ public class RepositoryNodeManager {
 
     private RepositoryNode getKrameriusNodeWithCycleDetection(String pid, List<String> path) {
         //http://admin.k7-test.mzk.cz/processes/8410 and uuid:51f84b60-5542-11e9-8854-005056827e51
-        if (nodesByPid.containsKey(pid)) {
-            return nodesByPid.get(pid);
+        RepositoryNode cached = nodesByPid.get(pid);
+        if (cached != null) {
+            return cached;
         } else {
             if (path.contains(pid)) {
                 throw new RuntimeException("parent cycle detected: " + buildPath(pid, path));
             }
             path.add(pid);
+            //built outside of the lock, two threads may build the same node, but the cache keeps only the first one
             RepositoryNode node = buildKrameriusNodeFromRepository(pid, path);
             if (node != null) {
                 this.nodesByPid.put(pid, node);
@@ -110,13 +130,17 @@ public class RepositoryNodeManager {
             //Document relsExtDoc = krameriusRepositoryAccessAdapter.getRelsExt(pid, true);
             //String model = KrameriusRepositoryUtils.extractKrameriusModelName(relsExtDoc);
             String model = krameriusRepositoryAccessAdapter.getModel(pid);
+            if (model != null) {
+                //few distinct values shared by all nodes
+                model = model.intern();
+            }
             List<String> ownChildren = null;
             List<String> fosterChildren = null;
             if (!"page".equals(model) && !"track".equals(model)) { //just optimization, pages and tracks never have children
                 //Pair<List<String>, List<String>> children = KrameriusRepositoryUtils.extractChildren(relsExtDoc);
                 Pair<List<String>, List<String>> children = krameriusRepositoryAccessAdapter.getPidsOfChildren(pid);
-                ownChildren = children.getFirst();
-                fosterChildren = children.getSecond();
+                ownChildren = CompactPidList.of(children.getFirst());
+                fosterChildren = CompactPidList.of(children.getSecond());
             }
             //System.out.println("own children: " + (ownChildren == null? null : ownChildren.size()));
 
@@ -156,7 +180,7 @@ public class RepositoryNodeManager {
             }
 
             String pidPath = ownParent == null ? pid : ownParent.getPidPath() + "/" + pid;
-            String modelPath = ownParent == null ? model : ownParent.getModelPath() + "/" + model;
+            String modelPath = ownParent == null ? model : (ownParent.getModelPath() + "/" + model).intern();
 
             String rootPid = ownParent == null ? pid : ownParent.getRootPid();
             String rootModel = ownParent == null ? model : ownParent.getRootModel();
@@ -6,6 +6,8 @@ import cz.incad.kramerius.StreamHeadersObserver;
 import cz.incad.kramerius.TreeNodeProcessor;
 import cz.incad.kramerius.fedora.om.Repository;
 import cz.incad.kramerius.fedora.om.RepositoryException;
+import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryUtils;
+import cz.kramerius.searchIndex.repositoryAccess.Utils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -223,9 +225,16 @@ public abstract class RepositoryAccessImplAbstract implements FedoraAccess {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Computed from foxml, implementations with direct access to the repository should override this
+     */
     @Override
     public Date getObjectLastmodifiedFlag(String pid) throws IOException {
-        throw new UnsupportedOperationException();
+        org.dom4j.Document foxml = Utils.inputstreamToDocument(getFoxml(pid), false);
+        if (foxml == null) {
+            throw new IOException("Object not found: " + pid);
+        }
+        return KrameriusRepositoryUtils.extractLastModified(foxml);
     }
 
     @Override
@@ -0,0 +1,106 @@
+package cz.kramerius.searchIndex.repositoryAccessImpl.krameriusNewApi;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import cz.kramerius.searchIndex.repositoryAccess.ObjectBundle;
+import cz.kramerius.searchIndex.repositoryAccess.ObjectBundleSource;
+import cz.kramerius.searchIndex.repositoryAccess.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches bundles of several objects in one request to the admin API (POST /api/admin/v1.0/items/bundles).
+ * Response is gzip compressed and it is read object by object, so that the whole response is never held as one json.
+ */
+public class ObjectBundlesByKrameriusNewApis implements ObjectBundleSource {
+    private static final Logger LOGGER = Logger.getLogger(ObjectBundlesByKrameriusNewApis.class.getName());
+
+    private final String coreBaseUrl;
+    private final RepositoryAccessImplByKrameriusNewApis.Credentials credentials;
+
+    public ObjectBundlesByKrameriusNewApis(String coreBaseUrl, RepositoryAccessImplByKrameriusNewApis.Credentials credentials) {
+        this.coreBaseUrl = coreBaseUrl;
+        this.credentials = credentials;
+    }
+
+    @Override
+    public Map<String, ObjectBundle> getBundles(List<String> pids) throws IOException {
+        //POST http://localhost:8080/search/api/admin/v1.0/items/bundles
+        URL url = new URL(coreBaseUrl + "/api/admin/v1.0/items/bundles");
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestMethod("POST");
+        con.setRequestProperty("client", credentials.client);
+        con.setRequestProperty("uid", credentials.uid);
+        con.setRequestProperty("access-token", credentials.accessToken);
+        con.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        con.setRequestProperty("Accept-Encoding", "gzip");
+        con.setConnectTimeout(3000);
+        con.setReadTimeout(60000);
+        con.setDoOutput(true);
+        JsonArray pidsJson = new JsonArray();
+        for (String pid : pids) {
+            pidsJson.add(pid);
+        }
+        try (OutputStream os = con.getOutputStream()) {
+            os.write(pidsJson.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        int code = con.getResponseCode();
+        if (code != 200) {
+            String errorMessage = Utils.inputstreamToString(con.getErrorStream());
+            throw new IOException(String.format("error fetching bundles (%d): %s", code, errorMessage));
+        }
+        InputStream is = con.getInputStream();
+        if ("gzip".equalsIgnoreCase(con.getContentEncoding())) {
+            is = new GZIPInputStream(is);
+        }
+        Map<String, ObjectBundle> result = new HashMap<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                JsonObject bundleJson = new JsonParser().parse(reader).getAsJsonObject();
+                String pid = bundleJson.get("pid").getAsString();
+                if (bundleJson.has("error")) {
+                    LOGGER.warning(String.format("bundle of %s not available: %s", pid, bundleJson.get("error").getAsString()));
+                } else if (!bundleJson.get("exists").getAsBoolean()) {
+                    result.put(pid, ObjectBundle.missing(pid));
+                } else {
+                    result.put(pid, toBundle(pid, bundleJson));
+                }
+            }
+            reader.endArray();
+        }
+        return result;
+    }
+
+    private ObjectBundle toBundle(String pid, JsonObject bundleJson) {
+        JsonObject structure = bundleJson.getAsJsonObject("structure");
+        return new ObjectBundle(pid, true,
+                structure.get("model").getAsString(),
+                ResourceIndexImplByKrameriusNewApis.extractParents(structure),
+                ResourceIndexImplByKrameriusNewApis.extractChildren(structure),
+                getString(bundleJson, ObjectBundle.FOXML),
+                getString(bundleJson, ObjectBundle.MODS),
+                getString(bundleJson, ObjectBundle.RELS_EXT),
+                getString(bundleJson, ObjectBundle.OCR),
+                getString(bundleJson, ObjectBundle.IMG_FULL_MIMETYPE),
+                //no include param in the request, i.e. all parts are in the bundle and missing ones do not exist
+                ObjectBundle.ALL_PARTS);
+    }
+
+    private String getString(JsonObject json, String key) {
+        return json.has(key) && !json.get(key).isJsonNull() ? json.get(key).getAsString() : null;
+    }
+}
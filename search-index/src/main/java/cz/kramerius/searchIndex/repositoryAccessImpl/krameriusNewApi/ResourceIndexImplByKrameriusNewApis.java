@@ -25,9 +25,9 @@ public class ResourceIndexImplByKrameriusNewApis extends ResourceIndexImplAbstra
     }
 
     //cache (TODO: just temporary, we don't want to break api (FedoraAccess) now)
+    //pid and structure are replaced together, the indexer calls this from several threads
     private boolean cachingEndabled = true;
-    String pidOfCachedStructure = null;
-    JsonObject cachedStructure = null;
+    private volatile Pair<String, JsonObject> cachedStructure = null;
 
     @Override
     public String getModel(String pid) throws ResourceIndexException {
@@ -37,7 +37,19 @@ public class ResourceIndexImplByKrameriusNewApis extends ResourceIndexImplAbstra
 
     @Override
     public Pair<String, List<String>> getPidsOfParents(String pid) throws ResourceIndexException {
-        JsonObject structure = getStructure(pid);
+        return extractParents(getStructure(pid));
+    }
+
+    @Override
+    public Pair<List<String>, List<String>> getPidsOfChildren(String pid) throws ResourceIndexException {
+        return extractChildren(getStructure(pid));
+    }
+
+    /**
+     * @param structure structure of the object as returned by /api/client/v6.0/items/{pid}/info/structure
+     * @return pids of own parent and foster parents
+     */
+    static Pair<String, List<String>> extractParents(JsonObject structure) {
         JsonObject parentsJson = structure.getAsJsonObject("parents");
         //own
         String ownParent = null;
@@ -54,9 +66,11 @@ public class ResourceIndexImplByKrameriusNewApis extends ResourceIndexImplAbstra
         return new Pair<>(ownParent, fosterParents);
     }
 
-    @Override
-    public Pair<List<String>, List<String>> getPidsOfChildren(String pid) throws ResourceIndexException {
-        JsonObject structure = getStructure(pid);
+    /**
+     * @param structure structure of the object as returned by /api/client/v6.0/items/{pid}/info/structure
+     * @return pids of own children and foster children
+     */
+    static Pair<List<String>, List<String>> extractChildren(JsonObject structure) {
         JsonObject childrenJson = structure.getAsJsonObject("children");
         //own
         JsonArray ownChildrenJson = childrenJson.getAsJsonArray("own");
@@ -77,12 +91,12 @@ public class ResourceIndexImplByKrameriusNewApis extends ResourceIndexImplAbstra
 
     private JsonObject getStructure(String pid) throws ResourceIndexException {
         if (cachingEndabled) {
-            if (pidOfCachedStructure != null && pidOfCachedStructure.equals(pid)) {
-                return cachedStructure;
+            Pair<String, JsonObject> cached = cachedStructure;
+            if (cached != null && cached.getFirst().equals(pid)) {
+                return cached.getSecond();
             } else {
                 JsonObject structure = fetchStructure(pid);
-                pidOfCachedStructure = pid;
-                cachedStructure = structure;
+                cachedStructure = new Pair<>(pid, structure);
                 return structure;
             }
         } else {
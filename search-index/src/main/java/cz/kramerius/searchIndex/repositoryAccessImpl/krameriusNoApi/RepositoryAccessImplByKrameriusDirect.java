@@ -5,6 +5,7 @@ import cz.kramerius.searchIndex.repositoryAccessImpl.RepositoryAccessImplAbstrac
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
 
 /**
  * This implementation uses FedoraAccess, i.e. avoids overhead of the HTTPS stack.
@@ -46,6 +47,12 @@ public class RepositoryAccessImplByKrameriusDirect extends RepositoryAccessImplA
         return fedoraAccess.isStreamAvailable(pid, datastreamName);
     }
 
+    @Override
+    public Date getObjectLastmodifiedFlag(String pid) throws IOException {
+        //repository updates lastModifiedDate with every change of a datastream
+        return fedoraAccess.getObjectLastmodifiedFlag(pid);
+    }
+
     @Override
     public String getDatastreamMimeType(String pid, String datastreamName) throws IOException {
         if (isStreamAvailable(pid, datastreamName)) {
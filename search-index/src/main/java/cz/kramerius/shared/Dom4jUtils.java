@@ -13,6 +13,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Dom4jUtils {
 
@@ -28,6 +29,11 @@ public class Dom4jUtils {
         //NAMESPACE_URIS.put("", "");
     }
 
+    //compiled expressions by their text, shared by all threads
+    //dom4j XPath with namespaces set in advance is not modified during evaluation, jaxen creates new context for every evaluation
+    private static final int MAX_CACHED_XPATHS = 1000;
+    private static final Map<String, XPath> XPATHS = new ConcurrentHashMap<>();
+
     public static Document parseXmlFromFile(File xmlFile) throws DocumentException {
         SAXReader reader = new SAXReader();
         Document document = reader.read(xmlFile);
@@ -56,7 +62,27 @@ public class Dom4jUtils {
         }
     }
 
+    /**
+     * @param xpathExpr
+     * @return compiled expression, the same instance for the same expression (up to MAX_CACHED_XPATHS distinct expressions);
+     * it can be evaluated concurrently, but must not be modified (namespaces, variables, function context)
+     */
     public static XPath buildXpath(String xpathExpr) {
+        XPath xPath = XPATHS.get(xpathExpr);
+        if (xPath == null) {
+            xPath = compileXpath(xpathExpr);
+            //just protection against expressions built from data, all expressions in the code fit easily
+            if (XPATHS.size() < MAX_CACHED_XPATHS) {
+                XPath previous = XPATHS.putIfAbsent(xpathExpr, xPath);
+                if (previous != null) {
+                    xPath = previous;
+                }
+            }
+        }
+        return xPath;
+    }
+
+    private static XPath compileXpath(String xpathExpr) {
         XPath xPath = DocumentHelper.createXPath(xpathExpr);
         xPath.setNamespaceURIs(NAMESPACE_URIS);
         return xPath;
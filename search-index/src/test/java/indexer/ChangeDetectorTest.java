@@ -0,0 +1,90 @@
+package indexer;
+
+import cz.kramerius.searchIndex.indexerProcess.ChangeDetector;
+import cz.kramerius.searchIndex.indexerProcess.Indexer;
+import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryAccessAdapter;
+import org.apache.solr.common.SolrDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ChangeDetectorTest {
+
+    private final Map<String, Date> lastModified = new HashMap<>();
+
+    private final ChangeDetector changeDetector = new ChangeDetector(null, new KrameriusRepositoryAccessAdapter(null, null) {
+        @Override
+        public Date getObjectLastModified(String pid) throws IOException {
+            if (!lastModified.containsKey(pid)) {
+                throw new IOException("object not found: " + pid);
+            }
+            return lastModified.get(pid);
+        }
+    }, 10);
+
+    private SolrDocument indexed(String pid, Object sourceModified, int indexerVersion) {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("pid", pid);
+        doc.setField("indexed_source_modified", sourceModified);
+        doc.setField("indexed", new Date());
+        doc.setField("indexer_version", indexerVersion);
+        return doc;
+    }
+
+    private Date date(String value) {
+        return Date.from(Instant.parse(value));
+    }
+
+    @Test
+    public void testMissingDocument() {
+        lastModified.put("uuid:1", date("2020-01-01T00:00:00Z"));
+        assertTrue(changeDetector.isNewer("uuid:1", null));
+    }
+
+    @Test
+    public void testOlderIndexerVersion() {
+        lastModified.put("uuid:1", date("2020-01-01T00:00:00Z"));
+        assertTrue(changeDetector.isNewer("uuid:1", indexed("uuid:1", date("2020-01-01T00:00:00Z"), Indexer.INDEXER_VERSION - 1)));
+    }
+
+    @Test
+    public void testChangedInRepository() {
+        lastModified.put("uuid:1", date("2021-03-01T08:30:00.001Z"));
+        assertTrue(changeDetector.isNewer("uuid:1", indexed("uuid:1", date("2021-03-01T08:30:00Z"), Indexer.INDEXER_VERSION)));
+    }
+
+    @Test
+    public void testUnchanged() {
+        lastModified.put("uuid:1", date("2021-03-01T08:30:00.123Z"));
+        assertFalse(changeDetector.isNewer("uuid:1", indexed("uuid:1", date("2021-03-01T08:30:00.123Z"), Indexer.INDEXER_VERSION)));
+        //value stored by SolrInputBuilder as a string
+        assertFalse(changeDetector.isNewer("uuid:1", indexed("uuid:1", "2021-03-01T08:30:00.123Z", Indexer.INDEXER_VERSION)));
+        assertFalse(changeDetector.isNewer("uuid:1", indexed("uuid:1", date("2021-05-01T00:00:00Z"), Indexer.INDEXER_VERSION)));
+    }
+
+    @Test
+    public void testIndexedBeforeSourceModifiedField() {
+        //documents indexed without the field are compared with the indexation time
+        lastModified.put("uuid:1", date("2021-03-01T08:30:00Z"));
+        SolrDocument doc = indexed("uuid:1", null, Indexer.INDEXER_VERSION);
+        doc.removeFields("indexed_source_modified");
+        doc.setField("modified", date("2021-01-01T00:00:00Z"));
+        doc.setField("indexed", date("2021-02-01T00:00:00Z"));
+        assertTrue(changeDetector.isNewer("uuid:1", doc));
+        doc.setField("indexed", date("2021-04-01T00:00:00Z"));
+        assertFalse(changeDetector.isNewer("uuid:1", doc));
+    }
+
+    @Test
+    public void testMissingInRepository() {
+        assertTrue(changeDetector.isNewer("uuid:missing", indexed("uuid:missing", date("2021-03-01T08:30:00Z"), Indexer.INDEXER_VERSION)));
+    }
+}
@@ -0,0 +1,55 @@
+package indexer;
+
+import cz.kramerius.shared.Dom4jUtils;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.XPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+public class Dom4jUtilsTest {
+
+    @Test
+    public void testXpathCompiledOnce() {
+        XPath first = Dom4jUtils.buildXpath("mods/titleInfo/title");
+        XPath second = Dom4jUtils.buildXpath("mods/titleInfo/title");
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws DocumentException, InterruptedException, ExecutionException {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            StringBuilder builder = new StringBuilder("<modsCollection><mods>");
+            for (int j = 0; j <= i; j++) {
+                builder.append("<titleInfo><title>title ").append(j).append("</title></titleInfo>");
+            }
+            builder.append("</mods></modsCollection>");
+            docs.add(Dom4jUtils.parseXmlFromString(builder.toString()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int round = 0; round < 100; round++) {
+                for (Document doc : docs) {
+                    results.add(executor.submit(() -> Dom4jUtils.buildXpath("mods/titleInfo/title").selectNodes(doc.getRootElement()).size()));
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % docs.size() + 1, results.get(i).get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package indexer;
+
+import cz.kramerius.searchIndex.repositoryAccess.KrameriusRepositoryUtils;
+import cz.kramerius.searchIndex.repositoryAccess.Utils;
+import org.dom4j.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class LastModifiedTest {
+
+    private Document foxml(String lastModified, String... datastreamVersionsCreated) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<foxml:digitalObject xmlns:foxml=\"info:fedora/fedora-system:def/foxml#\" PID=\"uuid:1\">");
+        builder.append("<foxml:objectProperties>");
+        builder.append("<foxml:property NAME=\"info:fedora/fedora-system:def/model#createdDate\" VALUE=\"2010-01-01T00:00:00.000Z\"/>");
+        if (lastModified != null) {
+            builder.append("<foxml:property NAME=\"info:fedora/fedora-system:def/view#lastModifiedDate\" VALUE=\"").append(lastModified).append("\"/>");
+        }
+        builder.append("</foxml:objectProperties>");
+        builder.append("<foxml:datastream ID=\"BIBLIO_MODS\">");
+        for (String created : datastreamVersionsCreated) {
+            builder.append("<foxml:datastreamVersion CREATED=\"").append(created).append("\"/>");
+        }
+        builder.append("</foxml:datastream>");
+        builder.append("</foxml:digitalObject>");
+        return Utils.inputstreamToDocument(new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private Date date(String value) {
+        return Date.from(Instant.parse(value));
+    }
+
+    @Test
+    public void testObjectLastModified() throws IOException {
+        Document foxml = foxml("2020-05-01T10:00:00.123Z", "2019-01-01T00:00:00.000Z", "2020-02-01T00:00:00Z");
+        assertEquals(date("2020-05-01T10:00:00.123Z"), KrameriusRepositoryUtils.extractLastModified(foxml));
+    }
+
+    @Test
+    public void testNewerDatastreamVersion() throws IOException {
+        Document foxml = foxml("2020-05-01T10:00:00.123Z", "2020-05-01T10:00:00.123Z", "2021-03-01T08:30:00.000Z");
+        assertEquals(date("2021-03-01T08:30:00.000Z"), KrameriusRepositoryUtils.extractLastModified(foxml));
+    }
+
+    @Test
+    public void testNoDates() throws IOException {
+        assertNull(KrameriusRepositoryUtils.extractLastModified(foxml(null)));
+    }
+}
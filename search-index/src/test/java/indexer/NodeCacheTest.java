@@ -0,0 +1,86 @@
+package indexer;
+
+import cz.kramerius.searchIndex.repositoryAccess.nodes.CompactPidList;
+import cz.kramerius.searchIndex.repositoryAccess.nodes.NodeCache;
+import cz.kramerius.searchIndex.repositoryAccess.nodes.RepositoryNode;
+import cz.kramerius.shared.Title;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class NodeCacheTest {
+
+    private RepositoryNode node(String pid, List<String> children) {
+        return new RepositoryNode(pid, "page", new Title("title"),
+                pid, "page",
+                pid, "page", new Title("title"),
+                null, null, null, null,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                children, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null);
+    }
+
+    private List<String> pids(int count) {
+        List<String> pids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pids.add("uuid:" + UUID.randomUUID());
+        }
+        return pids;
+    }
+
+    @Test
+    public void testEvictionBySize() {
+        NodeCache cache = new NodeCache(4000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("uuid:" + i, node("uuid:" + i, null));
+        }
+        assertTrue(cache.getBytes() <= 4000);
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(100, cache.getSize() + cache.getEvictions());
+        assertNull(cache.get("uuid:0"));
+        assertNotNull(cache.get("uuid:99"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPinnedNodeNotEvicted() {
+        NodeCache cache = new NodeCache(4000);
+        RepositoryNode parent = node("uuid:parent", CompactPidList.of(pids(10)));
+        cache.put("uuid:parent", parent);
+        cache.pin("uuid:parent");
+        for (int i = 0; i < 100; i++) {
+            cache.put("uuid:" + i, node("uuid:" + i, null));
+        }
+        assertSame(parent, cache.get("uuid:parent"));
+        cache.unpin("uuid:parent");
+        for (int i = 100; i < 200; i++) {
+            cache.put("uuid:" + i, node("uuid:" + i, null));
+        }
+        assertNull(cache.get("uuid:parent"));
+    }
+
+    @Test
+    public void testCompactPidList() {
+        List<String> pids = pids(1000);
+        List<String> compact = CompactPidList.of(pids);
+        assertTrue(compact instanceof CompactPidList);
+        assertEquals(pids, compact);
+        assertEquals(500, compact.indexOf(pids.get(500)));
+        assertEquals(-1, compact.indexOf("uuid:" + UUID.randomUUID()));
+        //pids not in canonical form are kept as they are
+        List<String> other = Arrays.asList("uuid:" + UUID.randomUUID(), "uuid:ABC");
+        assertSame(other, CompactPidList.of(other));
+    }
+}
@@ -0,0 +1,69 @@
+package indexer;
+
+import cz.kramerius.searchIndex.repositoryAccess.ObjectBundle;
+import cz.kramerius.searchIndex.repositoryAccess.ObjectBundlePrefetcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class ObjectBundlePrefetcherTest {
+
+    private List<String> pids(int count) {
+        List<String> pids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pids.add("uuid:" + i);
+        }
+        return pids;
+    }
+
+    @Test
+    public void testBundlesFetchedInBatches() {
+        AtomicInteger requests = new AtomicInteger();
+        ObjectBundlePrefetcher prefetcher = new ObjectBundlePrefetcher(pids -> {
+            requests.incrementAndGet();
+            Map<String, ObjectBundle> result = new HashMap<>();
+            for (String pid : pids) {
+                result.put(pid, ObjectBundle.missing(pid));
+            }
+            return result;
+        }, 3, 2, 4);
+        try {
+            List<String> pids = pids(10);
+            prefetcher.prefetch(pids);
+            for (String pid : pids) {
+                ObjectBundle bundle = prefetcher.get(pid);
+                assertEquals(pid, bundle.pid);
+                assertFalse(bundle.exists);
+            }
+            assertEquals(4, requests.get());
+            assertNull(prefetcher.get("uuid:not-announced"));
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedBatch() {
+        ObjectBundlePrefetcher prefetcher = new ObjectBundlePrefetcher(pids -> {
+            throw new IOException("repository not available");
+        }, 10, 1, 100);
+        try {
+            prefetcher.prefetch(Arrays.asList("uuid:1", "uuid:2"));
+            assertNull(prefetcher.get("uuid:1"));
+            assertNull(prefetcher.get("uuid:2"));
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+}
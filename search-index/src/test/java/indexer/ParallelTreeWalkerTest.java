@@ -0,0 +1,58 @@
+package indexer;
+
+import cz.kramerius.searchIndex.indexerProcess.ParallelTreeWalker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class ParallelTreeWalkerTest {
+
+    //every node has 3 children, tree of depth 4 has 1 + 3 + 9 + 27 + 81 nodes
+    private void walk(ParallelTreeWalker walker, String node, int depth, Set<String> processed) {
+        processed.add(node);
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                String child = node + "/" + i;
+                walker.submit(() -> walk(walker, child, depth - 1, processed));
+            }
+        }
+    }
+
+    @Test
+    public void testWholeTreeProcessed() throws InterruptedException {
+        for (int threads : new int[]{1, 4}) {
+            ParallelTreeWalker walker = new ParallelTreeWalker(threads);
+            Set<String> processed = ConcurrentHashMap.newKeySet();
+            try {
+                walk(walker, "root", 4, processed);
+                walker.awaitCompletion();
+            } finally {
+                walker.shutdown();
+            }
+            assertEquals(121, processed.size());
+        }
+    }
+
+    @Test
+    public void testFailureReported() {
+        ParallelTreeWalker walker = new ParallelTreeWalker(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                int task = i;
+                walker.submit(() -> {
+                    if (task == 5) {
+                        throw new IllegalStateException("parent cycle detected");
+                    }
+                });
+            }
+            assertThrows(IllegalStateException.class, walker::awaitCompletion);
+        } finally {
+            walker.shutdown();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package indexer;
+
+import cz.kramerius.searchIndex.indexer.SolrConfig;
+import cz.kramerius.searchIndex.indexer.SolrIndexAccess;
+import cz.kramerius.searchIndex.indexerProcess.SolrBatchWriter;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class SolrBatchWriterTest {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final List<String> indexed = new CopyOnWriteArrayList<>();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstBatch = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean interrupted = false;
+
+    //Solr stub, waits in the first request until released, rejects batches containing document "bad"
+    private final SolrIndexAccess solr = new SolrIndexAccess(new SolrConfig("localhost:8983/solr", "test", false, null, null)) {
+        @Override
+        public UpdateResponse indexDocuments(Collection<SolrInputDocument> docs) throws IOException, SolrServerException {
+            firstBatch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                throw new IOException(e);
+            }
+            batchSizes.add(docs.size());
+            for (SolrInputDocument doc : docs) {
+                if ("bad".equals(doc.getFieldValue("pid"))) {
+                    throw new SolrServerException("invalid document");
+                }
+            }
+            return new UpdateResponse();
+        }
+    };
+
+    private final SolrBatchWriter writer = new SolrBatchWriter(solr, 100, 1000, new SolrBatchWriter.Listener() {
+        @Override
+        public void onIndexed(String pid) {
+            indexed.add(pid);
+        }
+
+        @Override
+        public void onError(String pid, Exception e) {
+            errors.add(pid);
+        }
+    });
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        writer.close();
+    }
+
+    private SolrInputDocument doc(String pid) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("pid", pid);
+        return doc;
+    }
+
+    //writer waits in the first request until the other documents are queued
+    private void blockFirstBatch() throws InterruptedException {
+        writer.add(doc("first"));
+        assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBatches() throws InterruptedException {
+        blockFirstBatch();
+        for (int i = 0; i < 250; i++) {
+            writer.add(doc("uuid:" + i));
+        }
+        release.countDown();
+        writer.flush();
+        assertEquals(Arrays.asList(1, 100, 100, 50), batchSizes);
+        assertEquals(251, indexed.size());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testFailedBatchSentOneByOne() throws InterruptedException {
+        blockFirstBatch();
+        writer.add(doc("a"));
+        writer.add(doc("bad"));
+        writer.add(doc("c"));
+        release.countDown();
+        writer.flush();
+        assertEquals(Arrays.asList(1, 3, 1, 1, 1), batchSizes);
+        assertEquals(new HashSet<>(Arrays.asList("first", "a", "c")), new HashSet<>(indexed));
+        assertEquals(Arrays.asList("bad"), errors);
+    }
+
+    @Test
+    public void testFlush() throws InterruptedException {
+        release.countDown();
+        writer.flush();
+        assertTrue(batchSizes.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            writer.add(doc("uuid:" + i));
+        }
+        writer.flush();
+        assertEquals(5, indexed.size());
+        writer.add(doc("uuid:5"));
+        writer.flush();
+        assertEquals(6, indexed.size());
+    }
+
+    @Test
+    public void testQueuedDocumentsReportedOnClose() throws InterruptedException {
+        blockFirstBatch();
+        writer.add(doc("a"));
+        writer.add(doc("b"));
+        writer.add(doc("c"));
+        Thread closing = new Thread(writer::close);
+        closing.start();
+        //close waits for the request in progress
+        long deadline = System.currentTimeMillis() + 5000;
+        while (closing.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(closing.isAlive());
+        release.countDown();
+        closing.join(5000);
+        assertFalse(closing.isAlive());
+        assertFalse(interrupted);
+        assertEquals(Arrays.asList("first"), indexed);
+        Set<String> expectedErrors = new HashSet<>(Arrays.asList("a", "b", "c"));
+        assertEquals(expectedErrors, new HashSet<>(errors));
+        assertEquals(3, errors.size());
+
+        //documents added after close are reported too
+        writer.add(doc("d"));
+        assertEquals(4, errors.size());
+    }
+}
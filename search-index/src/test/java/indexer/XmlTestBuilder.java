@@ -139,6 +139,7 @@ public class XmlTestBuilder {
                     "indexer_version",
                     "full_indexation_in_progress",
                     "indexed",
+                    "indexed_source_modified",
                     "model",
                     "root.pid",
                     "root.model",
@@ -179,6 +180,7 @@ public class XmlTestBuilder {
                     "indexer_version",
                     "full_indexation_in_progress",
                     "indexed",
+                    "indexed_source_modified",
                     "model",
                     "root.pid",
                     "root.model",
@@ -34,6 +34,7 @@ import cz.incad.kramerius.statistics.StatisticReport;
 import cz.incad.kramerius.statistics.StatisticsAccessLog;
 import cz.incad.kramerius.statistics.accesslogs.database.DatabaseStatisticsAccessLogImpl;
 import cz.incad.kramerius.statistics.accesslogs.dnnt.DNNTStatisticsAccessLogImpl;
+import cz.incad.kramerius.statistics.database.StatisticsRollupLifeCycleHook;
 import cz.incad.kramerius.statistics.impl.*;
 import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.incad.kramerius.virtualcollections.Collection;
@@ -111,6 +112,7 @@ public class BaseModule extends AbstractModule {
         Multibinder<LifeCycleHook> lfhooks = Multibinder.newSetBinder(binder(), LifeCycleHook.class);
         lfhooks.addBinding().to(CacheLifeCycleHook.class);
         lfhooks.addBinding().to(HttpAsyncClientLifeCycleHook.class);
+        lfhooks.addBinding().to(StatisticsRollupLifeCycleHook.class).in(Scopes.SINGLETON);
     }
 
     @Provides
@@ -244,26 +244,8 @@ public class DeepZoomServlet extends AbstractImageServlet {
                     // bereme z cache nebo pocitame, vykresulejeme, ukladame a vracime
                     boolean tilePresent = cacheService.isDeepZoomTilePresent(pid, ilevel, Integer.parseInt(srow), Integer.parseInt(scol));
                     if (!tilePresent) {
-                        // File dFile = cacheService.getDeepZoomLevelsFile(uuid);
-                        BufferedImage original = null;
-                        if (cacheService.isDeepZoomOriginalPresent(pid)) {
-                            original = cacheService.getDeepZoomOriginal(pid);
-                        } else {
-                            original = cacheService.createDeepZoomOriginalImageFromFedoraRAW(pid);
-                            cacheService.writeDeepZoomOriginalImage(pid, original);
-                        }
-
-                        long levels = tileSupport.getLevels(original, 1);
-                        double scale = tileSupport.getScale(ilevel, levels);
-
-                        Dimension scaled = tileSupport.getScaledDimension(new Dimension(original.getWidth(null), original.getHeight(null)), scale);
-                        int rows = tileSupport.getRows(scaled);
-                        int cols = tileSupport.getCols(scaled);
-                        int base = Integer.parseInt(srow) * cols;
-                        base = base + Integer.parseInt(scol);
-
-                        BufferedImage tile = this.tileSupport.getTileFromBigImage(original, ilevel, base, 1, getScalingMethod(), turnOnIterateScaling());
-                        cacheService.writeDeepZoomTile(pid, ilevel, Integer.parseInt(srow), Integer.parseInt(scol), tile);
+                        // cely level z jednoho dekodovani
+                        cacheService.prepareCacheLevel(pid, ilevel, ilevel, 1);
                     }
                     InputStream is = cacheService.getDeepZoomTileStream(pid, ilevel, Integer.parseInt(srow), Integer.parseInt(scol));
                     resp.setContentType(ImageMimeType.JPEG.getValue());
@@ -301,7 +301,6 @@ public class ZoomifyServlet extends AbstractImageServlet {
 
             Dimension originalResolution = cacheService.getResolutionFromFile(pid);
             int requestedLevel = Integer.parseInt(slevel);
-            int maxLevels = tileSupport.getLevels(originalResolution, tileSupport.getTileSize());
 
             int offset = tileSupport.getClosestLevel(originalResolution , tileSupport.getTileSize(), 1);
             //deepzoom level
@@ -312,28 +311,7 @@ public class ZoomifyServlet extends AbstractImageServlet {
             
             boolean tilePresent = cacheService.isDeepZoomTilePresent(pid, offsetLevel, Integer.parseInt(srow), Integer.parseInt(scol));
             if (!tilePresent) {
-                // File dFile = cacheService.getDeepZoomLevelsFile(uuid);
-                BufferedImage original = null;
-                if (cacheService.isDeepZoomOriginalPresent(pid)) {
-                    original = cacheService.getDeepZoomOriginal(pid);
-                } else {
-                    original = cacheService.createDeepZoomOriginalImageFromFedoraRAW(pid);
-                    cacheService.writeDeepZoomOriginalImage(pid, original);
-                }
-
-                double scale = tileSupport.getScale(requestedLevel, maxLevels);
-                //ilevel = 
-                // TODO: vyzkouset
-                Dimension scaled = tileSupport.getScaledDimension(new Dimension(original.getWidth(null), original.getHeight(null)), scale);
-                int rows = tileSupport.getRows(scaled);
-                int cols = tileSupport.getCols(scaled);
-                int base = Integer.parseInt(srow) * cols;
-                base = base + Integer.parseInt(scol);
-
-                LOGGER.info("scale is "+scale+" and dimension is "+scaled);
-                
-                BufferedImage tile = this.tileSupport.getTileFromBigImage(original, requestedLevel, base, tileSupport.getTileSize(), getScalingMethod(), turnOnIterateScaling());
-                cacheService.writeDeepZoomTile(pid, offsetLevel, Integer.parseInt(srow), Integer.parseInt(scol), tile);
+                cacheService.prepareCacheLevel(pid, offsetLevel, requestedLevel, tileSupport.getTileSize());
             }
             InputStream is = cacheService.getDeepZoomTileStream(pid, offsetLevel, Integer.parseInt(srow), Integer.parseInt(scol));
             resp.setContentType(ImageMimeType.JPEG.getValue());
@@ -0,0 +1,132 @@
+package cz.incad.kramerius.fedora.om.impl;
+
+import com.qbizm.kramerius.imp.jaxb.DatastreamVersionType;
+import com.qbizm.kramerius.imp.jaxb.DigitalObject;
+import cz.incad.kramerius.repository.utils.Utils;
+import org.apache.commons.io.IOUtils;
+import org.dom4j.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repository reads behind one items/{pid}/info request (ten datastream existence checks, RELS-EXT content, IMG_FULL mimetype).
+ * digitalObject* is the former way (RepositoryApiImpl over the unmarshalled DigitalObject, RELS-EXT serialized from its DOM),
+ * objectView* is the current one (RepositoryApiImpl over FoxmlObjectView, RELS-EXT parsed from the kept inline content).
+ * *Cold variants read an object missing in the cache (unmarshall or parse FOXML first), *Cached variants an object already in the cache.
+ * Result is requests per second of all threads (4 by default, other count with -t N).
+ * Corpus are FOXML files from the directory in system property benchmark.foxmlDir (-jvmArgs -Dbenchmark.foxmlDir=...),
+ * sample FOXML file from test resources by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FoxmlInfoBenchmark {
+
+    private static final String SAMPLE = "cz/incad/kramerius/service/impl/export/foxml.xml";
+    private static final String[] INFO_DATASTREAMS = {"BIBLIO_MODS", "DC", "TEXT_OCR", "ALTO", "IMG_FULL", "IMG_THUMB", "IMG_PREVIEW", "MP3", "OGG", "WAV"};
+
+    private final List<byte[]> corpus = new ArrayList<>();
+    private final List<DigitalObject> cachedObjects = new ArrayList<>();
+    private final List<FoxmlObjectView> cachedViews = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void loadCorpus() throws Exception {
+        String dir = System.getProperty("benchmark.foxmlDir");
+        if (dir != null) {
+            File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".xml"));
+            if (files == null || files.length == 0) {
+                throw new IOException("no FOXML files in " + dir);
+            }
+            for (File file : files) {
+                corpus.add(Files.readAllBytes(file.toPath()));
+            }
+        } else {
+            try (InputStream is = FoxmlInfoBenchmark.class.getClassLoader().getResourceAsStream(SAMPLE)) {
+                corpus.add(IOUtils.toByteArray(is));
+            }
+        }
+        for (byte[] foxml : corpus) {
+            cachedObjects.add((DigitalObject) DigitalObjectJaxb.unmarshall(new ByteArrayInputStream(foxml)));
+            cachedViews.add(FoxmlObjectView.parse("uuid:benchmark", new ByteArrayInputStream(foxml)));
+        }
+    }
+
+    private int nextIndex() {
+        return Math.floorMod(next.getAndIncrement(), corpus.size());
+    }
+
+    @Benchmark
+    public void digitalObjectCold(Blackhole bh) throws Exception {
+        DigitalObject object = (DigitalObject) DigitalObjectJaxb.unmarshall(new ByteArrayInputStream(corpus.get(nextIndex())));
+        infoFromDigitalObject(object, bh);
+    }
+
+    @Benchmark
+    public void digitalObjectCached(Blackhole bh) throws Exception {
+        infoFromDigitalObject(cachedObjects.get(nextIndex()), bh);
+    }
+
+    @Benchmark
+    public void objectViewCold(Blackhole bh) throws Exception {
+        FoxmlObjectView view = FoxmlObjectView.parse("uuid:benchmark", new ByteArrayInputStream(corpus.get(nextIndex())));
+        infoFromView(view, bh);
+    }
+
+    @Benchmark
+    public void objectViewCached(Blackhole bh) throws Exception {
+        infoFromView(cachedViews.get(nextIndex()), bh);
+    }
+
+    private void infoFromDigitalObject(DigitalObject object, Blackhole bh) throws Exception {
+        for (String dsId : INFO_DATASTREAMS) {
+            bh.consume(AkubraUtils.streamExists(object, dsId));
+        }
+        DatastreamVersionType relsExt = AkubraUtils.getLastStreamVersion(object, "RELS-EXT");
+        if (relsExt != null) {
+            Document relsExtDoc = Utils.inputstreamToDocument(AkubraUtils.getStreamContent(relsExt, null), true);
+            bh.consume(relsExtDoc);
+        }
+        DatastreamVersionType imgFull = AkubraUtils.getLastStreamVersion(object, "IMG_FULL");
+        bh.consume(imgFull == null ? null : imgFull.getMIMETYPE());
+    }
+
+    private void infoFromView(FoxmlObjectView view, Blackhole bh) throws Exception {
+        for (String dsId : INFO_DATASTREAMS) {
+            bh.consume(view.datastreamExists(dsId));
+        }
+        FoxmlObjectView.Datastream relsExt = view.getDatastream("RELS-EXT");
+        if (relsExt != null && relsExt.getLatestVersion().getXmlContent() != null) {
+            byte[] content = relsExt.getLatestVersion().getXmlContent().getBytes(StandardCharsets.UTF_8);
+            Document relsExtDoc = Utils.inputstreamToDocument(new ByteArrayInputStream(content), true);
+            bh.consume(relsExtDoc);
+        }
+        FoxmlObjectView.Datastream imgFull = view.getDatastream("IMG_FULL");
+        bh.consume(imgFull == null || imgFull.getLatestVersion() == null ? null : imgFull.getLatestVersion().getMimetype());
+    }
+}
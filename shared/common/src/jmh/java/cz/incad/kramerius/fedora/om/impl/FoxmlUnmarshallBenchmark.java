@@ -0,0 +1,85 @@
+package cz.incad.kramerius.fedora.om.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FOXML unmarshalling as done by AkubraDOManager for every object read from the storage.
+ * sharedSynchronized is the former way (one unmarshaller for the JVM under a monitor, reading the stream directly),
+ * perThreadStax is the current one (unmarshaller per thread, stream read through StAX).
+ * Result is objects per second of all threads (4 by default, other count with -t N).
+ * Corpus are FOXML files from the directory in system property benchmark.foxmlDir (-jvmArgs -Dbenchmark.foxmlDir=...),
+ * sample FOXML file from test resources by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FoxmlUnmarshallBenchmark {
+
+    private static final String SAMPLE = "cz/incad/kramerius/service/impl/export/foxml.xml";
+
+    private final List<byte[]> corpus = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private Unmarshaller sharedUnmarshaller;
+
+    @Setup
+    public void loadCorpus() throws Exception {
+        String dir = System.getProperty("benchmark.foxmlDir");
+        if (dir != null) {
+            File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".xml"));
+            if (files == null || files.length == 0) {
+                throw new IOException("no FOXML files in " + dir);
+            }
+            for (File file : files) {
+                corpus.add(Files.readAllBytes(file.toPath()));
+            }
+        } else {
+            try (InputStream is = FoxmlUnmarshallBenchmark.class.getClassLoader().getResourceAsStream(SAMPLE)) {
+                corpus.add(IOUtils.toByteArray(is));
+            }
+        }
+        sharedUnmarshaller = DigitalObjectJaxb.getContext().createUnmarshaller();
+    }
+
+    private byte[] nextFoxml() {
+        return corpus.get(Math.floorMod(next.getAndIncrement(), corpus.size()));
+    }
+
+    @Benchmark
+    public Object sharedSynchronized() throws Exception {
+        byte[] foxml = nextFoxml();
+        synchronized (sharedUnmarshaller) {
+            return sharedUnmarshaller.unmarshal(new ByteArrayInputStream(foxml));
+        }
+    }
+
+    @Benchmark
+    public Object perThreadStax() throws Exception {
+        return DigitalObjectJaxb.unmarshall(new ByteArrayInputStream(nextFoxml()));
+    }
+}
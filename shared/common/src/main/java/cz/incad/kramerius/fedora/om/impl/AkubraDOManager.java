@@ -17,6 +17,8 @@ import org.ehcache.Cache;
 import org.ehcache.CacheManager;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
 import org.fcrepo.server.errors.LowlevelStorageException;
@@ -30,17 +32,18 @@ import org.fcrepo.server.storage.lowlevel.akubra.AkubraLowlevelStorage;
 import org.fcrepo.server.storage.lowlevel.akubra.HashPathIdMapper;
 import org.fcrepo.server.utilities.DDLConverter;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.logging.Level;
@@ -49,6 +52,8 @@ import java.util.logging.Logger;
 public class AkubraDOManager {
     public static final Logger LOGGER = Logger.getLogger(AkubraDOManager.class.getName());
     private ILowlevelStorage storage;
+    /** Reads bypass the distributed lock; valid only for storage with atomic (safe) object overwrites */
+    private boolean optimisticReads;
 
     private static HazelcastInstance hzInstance;
     //private static IMap<String, Integer> pidLocks;
@@ -56,27 +61,31 @@ public class AkubraDOManager {
     private static DistributedLockService lockService ;
     private static ITopic<String> cacheInvalidator;
 
+    /** Materialized (unmarshalled) objects, small heap tier for the hottest objects */
     private static Cache<String, DigitalObject> objectCache;
     private static final String DIGITALOBJECT_CACHE_ALIAS = "DigitalObjectCache";
 
-    private static Unmarshaller unmarshaller = null;
-    private static Marshaller marshaller = null;
+    /** Raw FOXML bytes; heap + off-heap tier, objects are unmarshalled only when requested */
+    private static Cache<String, byte[]> foxmlCache;
+    private static final String FOXML_CACHE_ALIAS = "FoxmlCache";
 
-    static {
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-
-            unmarshaller = jaxbContext.createUnmarshaller();
+    /** Parsed read only views (properties, datastreams, inline xml); heap only */
+    private static Cache<String, FoxmlObjectView> viewCache;
+    private static final String VIEW_CACHE_ALIAS = "FoxmlObjectViewCache";
 
+    private static final AtomicLong objectCacheHits = new AtomicLong();
+    private static final AtomicLong objectCacheMisses = new AtomicLong();
+    private static final AtomicLong foxmlCacheHits = new AtomicLong();
+    private static final AtomicLong foxmlCacheMisses = new AtomicLong();
+    private static final AtomicLong viewCacheHits = new AtomicLong();
+    private static final AtomicLong viewCacheMisses = new AtomicLong();
 
-            //JAXBContext jaxbdatastreamContext = JAXBContext.newInstance(DatastreamType.class);
-            marshaller = jaxbContext.createMarshaller();
+    /** Number of invalidation stamps, pids are hashed into them */
+    private static final int INVALIDATION_STRIPES = 1024;
+    /** Per-stripe counters bumped by each invalidation; used to validate lock-free reads before caching them */
+    private static final AtomicLongArray invalidationStamps = new AtomicLongArray(INVALIDATION_STRIPES);
 
-
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cannot init JAXB", e);
-            throw new RuntimeException(e);
-        }
+    static {
         ClientConfig config = null;
         File configFile = KConfiguration.getInstance().findConfigFile("hazelcast.clientconfig");
         if (configFile != null) {
@@ -99,8 +108,8 @@ public class AkubraDOManager {
         cacheInvalidator.addMessageListener(new MessageListener<String>() {
             @Override
             public void onMessage(Message<String> message) {
-                if (objectCache != null && message != null) {
-                    objectCache.remove(message.getMessageObject());
+                if (message != null) {
+                    invalidateLocally(message.getMessageObject());
                 }
             }
         });
@@ -109,11 +118,30 @@ public class AkubraDOManager {
     public AkubraDOManager(KConfiguration configuration, CacheManager cacheManager) throws IOException {
         try {
             this.storage = initLowLevelStorage(configuration);
+            this.optimisticReads = (this.storage instanceof AkubraLowlevelStorage) && configuration.getConfiguration().getBoolean("objectStore.optimisticReads", false);
             objectCache = cacheManager.getCache(DIGITALOBJECT_CACHE_ALIAS, String.class, DigitalObject.class);
             if (objectCache == null) {
                 objectCache = cacheManager.createCache(DIGITALOBJECT_CACHE_ALIAS,
                         CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, DigitalObject.class,
-                                ResourcePoolsBuilder.heap(3000))
+                                ResourcePoolsBuilder.heap(configuration.getConfiguration().getInt("objectStore.cache.heapObjects", 500)))
+                                .withExpiry(Expirations.timeToLiveExpiration(
+                                        Duration.of(configuration.getCacheTimeToLiveExpiration(), TimeUnit.SECONDS))).build());
+            }
+            foxmlCache = cacheManager.getCache(FOXML_CACHE_ALIAS, String.class, byte[].class);
+            if (foxmlCache == null) {
+                foxmlCache = cacheManager.createCache(FOXML_CACHE_ALIAS,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, byte[].class,
+                                ResourcePoolsBuilder.newResourcePoolsBuilder()
+                                        .heap(configuration.getConfiguration().getInt("objectStore.cache.heapFoxml", 2000), EntryUnit.ENTRIES)
+                                        .offheap(configuration.getConfiguration().getInt("objectStore.cache.offheapMB", 256), MemoryUnit.MB))
+                                .withExpiry(Expirations.timeToLiveExpiration(
+                                        Duration.of(configuration.getCacheTimeToLiveExpiration(), TimeUnit.SECONDS))).build());
+            }
+            viewCache = cacheManager.getCache(VIEW_CACHE_ALIAS, String.class, FoxmlObjectView.class);
+            if (viewCache == null) {
+                viewCache = cacheManager.createCache(VIEW_CACHE_ALIAS,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, FoxmlObjectView.class,
+                                ResourcePoolsBuilder.heap(configuration.getConfiguration().getInt("objectStore.cache.heapViews", 2000)))
                                 .withExpiry(Expirations.timeToLiveExpiration(
                                         Duration.of(configuration.getCacheTimeToLiveExpiration(), TimeUnit.SECONDS))).build());
             }
@@ -199,46 +227,117 @@ public class AkubraDOManager {
     private DigitalObject readObjectFromStorageOrCache(String pid, boolean useCache) throws IOException {
         DigitalObject retval = useCache ? objectCache.get(pid) : null;
         if (retval == null) {
-            Object obj = null;
-            Lock lock = getReadLock(pid);
-            try (InputStream inputStream = this.storage.retrieveObject(pid);){
-                synchronized (unmarshaller) {
-                    obj = unmarshaller.unmarshal(inputStream);
-                }
-            } catch (ObjectNotInLowlevelStorageException ex) {
+            if (useCache) {
+                objectCacheMisses.incrementAndGet();
+            }
+            long stamp = invalidationStamp(pid);
+            // clones are read from the storage; cached FOXML may be stale when the object was changed on another node
+            byte[] foxml = useCache ? readFoxmlFromStorageOrCache(pid) : readFoxmlFromStorage(pid);
+            if (foxml == null) {
                 return null;
+            }
+            try {
+                retval = (DigitalObject) DigitalObjectJaxb.unmarshall(new ByteArrayInputStream(foxml));
             } catch (Exception e) {
                 throw new IOException(e);
-            } finally {
-                lock.unlock();
             }
-            retval = (DigitalObject) obj;
-            if (useCache) {
+            // object changed while being read (lock-free read) -> return it, but do not cache it
+            if (useCache && stamp == invalidationStamp(pid)) {
                 objectCache.put(pid, retval);
             }
+        } else {
+            objectCacheHits.incrementAndGet();
         }
         return retval;
     }
 
-    public InputStream retrieveDatastream(String dsKey) throws IOException {
+    /**
+     * Returns parsed read only view of the object, using cache if possible
+     * @param pid
+     * @return view or null if the object does not exist
+     * @throws IOException
+     */
+    public FoxmlObjectView readObjectViewFromStorage(String pid) throws IOException {
+        FoxmlObjectView retval = viewCache.get(pid);
+        if (retval != null) {
+            viewCacheHits.incrementAndGet();
+            return retval;
+        }
+        viewCacheMisses.incrementAndGet();
+        long stamp = invalidationStamp(pid);
+        byte[] foxml = readFoxmlFromStorageOrCache(pid);
+        if (foxml == null) {
+            return null;
+        }
         try {
-            return storage.retrieveDatastream(dsKey);
+            retval = FoxmlObjectView.parse(pid, new ByteArrayInputStream(foxml));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        if (stamp == invalidationStamp(pid)) {
+            viewCache.put(pid, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns raw FOXML of the object from the FOXML cache or from the storage
+     * @param pid
+     * @return FOXML bytes or null if the object does not exist
+     * @throws IOException
+     */
+    private byte[] readFoxmlFromStorageOrCache(String pid) throws IOException {
+        byte[] retval = foxmlCache.get(pid);
+        if (retval != null) {
+            foxmlCacheHits.incrementAndGet();
+            return retval;
+        }
+        foxmlCacheMisses.incrementAndGet();
+        long stamp = invalidationStamp(pid);
+        retval = readFoxmlFromStorage(pid);
+        if (retval != null && stamp == invalidationStamp(pid)) {
+            foxmlCache.put(pid, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Returns raw FOXML of the object read from the storage, the cache is not used
+     * @param pid
+     * @return FOXML bytes or null if the object does not exist
+     * @throws IOException
+     */
+    private byte[] readFoxmlFromStorage(String pid) throws IOException {
+        Lock lock = this.optimisticReads ? null : getReadLock(pid);
+        try (InputStream inputStream = this.storage.retrieveObject(pid)) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (ObjectNotInLowlevelStorageException ex) {
+            return null;
         } catch (LowlevelStorageException e) {
             throw new IOException(e);
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
         }
     }
 
-    public InputStream retrieveObject(String objectKey) throws IOException {
-        Lock lock = getReadLock(objectKey);
+    public InputStream retrieveDatastream(String dsKey) throws IOException {
         try {
-            return storage.retrieveObject(objectKey);
+            return storage.retrieveDatastream(dsKey);
         } catch (LowlevelStorageException e) {
             throw new IOException(e);
-        } finally {
-            lock.unlock();
         }
     }
 
+    public InputStream retrieveObject(String objectKey) throws IOException {
+        byte[] foxml = readFoxmlFromStorageOrCache(objectKey);
+        if (foxml == null) {
+            throw new IOException(new ObjectNotInLowlevelStorageException("Object " + objectKey + " not found"));
+        }
+        return new ByteArrayInputStream(foxml);
+    }
+
     public void deleteObject(String pid, boolean includingManagedDatastreams) throws IOException {
         Lock lock = getWriteLock(pid);
         try {
@@ -275,11 +374,7 @@ public class AkubraDOManager {
             }
             try {
                 setLastModified(object);
-                StringWriter stringWriter = new StringWriter();
-                synchronized (marshaller) {
-                    marshaller.marshal(object, stringWriter);
-                }
-                addOrReplaceObject(pid, new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8")));
+                addOrReplaceObject(pid, new ByteArrayInputStream(DigitalObjectJaxb.marshallToBytes(object)));
             } catch (Exception e) {
                 LOGGER.warning("Could not replace object in Akubra: " + e);
             }
@@ -322,12 +417,7 @@ public class AkubraDOManager {
                 setLastModified(object);
                 ensureCreatedDate(object);
                 ensureActive(object);
-                StringWriter stringWriter = new StringWriter();
-                synchronized (marshaller) {
-                    marshaller.marshal(object, stringWriter);
-                }
-                addOrReplaceObject(object.getPID(), new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8")));
-
+                addOrReplaceObject(object.getPID(), new ByteArrayInputStream(DigitalObjectJaxb.marshallToBytes(object)));
             } catch (Exception e) {
                 LOGGER.warning("Could not replace object in Akubra: " + e);
             }
@@ -339,18 +429,13 @@ public class AkubraDOManager {
 
     public InputStream marshallObject(DigitalObject object) {
         try {
-            StringWriter stringWriter = new StringWriter();
-            synchronized (marshaller) {
-                marshaller.marshal(object, stringWriter);
-            }
-            return new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8"));
+            return new ByteArrayInputStream(DigitalObjectJaxb.marshallToBytes(object));
         } catch (Exception e) {
             LOGGER.warning("Could not marshall object: " + e);
             throw new RuntimeException(e);
         }
     }
 
-
     private void setLastModified(DigitalObject object) {
         boolean propertyExists = false;
         List<PropertyType> propertyTypeList = object.getObjectProperties().getProperty();
@@ -490,11 +575,51 @@ public class AkubraDOManager {
     }
 
     private static void invalidateCache(String pid) {
+        // local node sees its own change immediately, other nodes through the topic
+        invalidateLocally(pid);
         cacheInvalidator.publish(pid);
     }
 
+    private static void invalidateLocally(String pid) {
+        if (pid == null) return;
+        invalidationStamps.incrementAndGet(stripe(pid));
+        if (objectCache != null) {
+            objectCache.remove(pid);
+        }
+        if (foxmlCache != null) {
+            foxmlCache.remove(pid);
+        }
+        if (viewCache != null) {
+            viewCache.remove(pid);
+        }
+    }
+
+    /**
+     * Returns hit/miss counters of the cache tiers (materialized objects, raw FOXML and parsed views)
+     * @return counters by name
+     */
+    public static Map<String, Long> getCacheStatistics() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("objectCache.hits", objectCacheHits.get());
+        stats.put("objectCache.misses", objectCacheMisses.get());
+        stats.put("foxmlCache.hits", foxmlCacheHits.get());
+        stats.put("foxmlCache.misses", foxmlCacheMisses.get());
+        stats.put("viewCache.hits", viewCacheHits.get());
+        stats.put("viewCache.misses", viewCacheMisses.get());
+        return stats;
+    }
+
+    private static long invalidationStamp(String pid) {
+        return invalidationStamps.get(stripe(pid));
+    }
+
+    private static int stripe(String pid) {
+        return (pid.hashCode() & 0x7fffffff) % INVALIDATION_STRIPES;
+    }
+
 
     public static void shutdown() {
+        LOGGER.info("Object cache statistics: " + getCacheStatistics());
         if (lockService != null) {
             lockService.shutdown();
         }
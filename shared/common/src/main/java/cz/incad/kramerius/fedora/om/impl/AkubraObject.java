@@ -37,6 +37,7 @@ import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
 import org.fcrepo.client.*;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -197,10 +198,9 @@ public class AkubraObject implements RepositoryObject {
         try{
             manager.commit(digitalObject, streamId);
             if (streamId.equals(FedoraUtils.RELS_EXT_STREAM)) {
-                // process rels-ext and create all children and relations
-                this.feeder.deleteByRelationsForPid(pid);
+                // process rels-ext and replace all children and relations in one request
                 input.reset();
-                rebuildProcessingIndexImpl(input);
+                this.feeder.replaceRelationsForPid(pid, processingIndexDocuments(input));
             }
             return ds;
         }  catch (Exception ex) {
@@ -256,51 +256,50 @@ public class AkubraObject implements RepositoryObject {
      * Process one relation and feed processing index
      */
     public void processRELSEXTRelationAndFeedProcessingIndex(String object, String localName) throws RepositoryException {
-        if (localName.equals("hasModel")) {
-            try {
-
-                if (this.streamExists(FedoraUtils.DC_STREAM)) {
-
-                    try {
-                        InputStream stream = this.getStream(FedoraUtils.DC_STREAM).getContent();
-                        Element title = XMLUtils.findElement(XMLUtils.parseDocument(stream, true).getDocumentElement(), "title", FedoraNamespaces.DC_NAMESPACE_URI);
-                        if (title != null) {
-                            this.indexDescription(object, title.getTextContent());
-                        } else {
-                            this.indexDescription(object, "");
-                        }
-                    } catch (ParserConfigurationException e) {
-                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                        this.indexDescription(object, "");
-                    } catch (SAXException e) {
-                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                        this.indexDescription(object, "");
-                    }
-                } else {
-                    this.indexDescription(object, "");
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } catch (SolrServerException e) {
-                throw new RuntimeException(e);
-            }
-        } else {
-            try {
-                this.indexRelation(localName, object);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } catch (SolrServerException e) {
-                throw new RuntimeException(e);
+        try {
+            SolrInputDocument doc = createProcessingIndexDocument(object, localName);
+            if (localName.equals("hasModel")) {
+                this.feeder.feedDescriptionDocument(doc);
+            } else {
+                this.feeder.feedRelationDocument(doc);
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (SolrServerException e) {
+            throw new RuntimeException(e);
         }
     }
 
-    private void indexRelation(String localName, String object) throws IOException, SolrServerException {
-        this.feeder.feedRelationDocument(this.getPid(), localName, object);
+    /**
+     * Creates processing index document (description for hasModel, relation otherwise) for one relation
+     */
+    public SolrInputDocument createProcessingIndexDocument(String object, String localName) throws RepositoryException {
+        if (localName.equals("hasModel")) {
+            return this.feeder.createDescriptionDocument(this.getPid(), object, dcTitle().trim(), AkubraUtils.getAkubraInternalId(this.getPid()), new Date());
+        } else {
+            return this.feeder.createRelationDocument(this.getPid(), localName, object);
+        }
     }
 
-    private void indexDescription(String model, String dctitle) throws IOException, SolrServerException {
-        this.feeder.feedDescriptionDocument(this.getPid(), model, dctitle.trim(), AkubraUtils.getAkubraInternalId(this.getPid()), new Date());
+    private String dcTitle() throws RepositoryException {
+        try {
+            if (this.streamExists(FedoraUtils.DC_STREAM)) {
+                try {
+                    InputStream stream = this.getStream(FedoraUtils.DC_STREAM).getContent();
+                    Element title = XMLUtils.findElement(XMLUtils.parseDocument(stream, true).getDocumentElement(), "title", FedoraNamespaces.DC_NAMESPACE_URI);
+                    if (title != null) {
+                        return title.getTextContent();
+                    }
+                } catch (ParserConfigurationException e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                } catch (SAXException e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
+            }
+            return "";
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     public void deleteProcessingIndex() throws IOException, SolrServerException {
@@ -669,12 +668,30 @@ public class AkubraObject implements RepositoryObject {
 
     private void rebuildProcessingIndexImpl(InputStream content) throws RepositoryException {
         try {
+            this.feeder.feedDocuments(processingIndexDocuments(content));
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        } catch (SolrServerException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Creates all processing index documents of this object from given RELS-EXT
+     * @param content RELS-EXT stream
+     * @return description and relation documents
+     * @throws RepositoryException
+     */
+    public List<SolrInputDocument> processingIndexDocuments(InputStream content) throws RepositoryException {
+        try {
+            List<SolrInputDocument> docs = new ArrayList<>();
             String s = IOUtils.toString(content, "UTF-8");
             RELSEXTSPARQLBuilder sparqlBuilder = new RELSEXTSPARQLBuilderImpl();
             sparqlBuilder.sparqlProps(s.trim(), (object, localName) -> {
-                processRELSEXTRelationAndFeedProcessingIndex(object, localName);
+                docs.add(createProcessingIndexDocument(object, localName));
                 return object;
             });
+            return docs;
         } catch (IOException e) {
             throw new RepositoryException(e);
         } catch (SAXException e) {
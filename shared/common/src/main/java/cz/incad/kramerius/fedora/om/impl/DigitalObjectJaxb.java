@@ -0,0 +1,96 @@
+package cz.incad.kramerius.fedora.om.impl;
+
+import com.qbizm.kramerius.imp.jaxb.DigitalObject;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FOXML (un)marshalling of {@link DigitalObject} used by {@link AkubraDOManager}
+ */
+class DigitalObjectJaxb {
+
+    public static final Logger LOGGER = Logger.getLogger(DigitalObjectJaxb.class.getName());
+
+    /** JAXBContext is thread safe, (un)marshallers are not; they are kept per thread instead of being shared under a monitor */
+    private static JAXBContext jaxbContext = null;
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final ThreadLocal<Unmarshaller> UNMARSHALLERS = new ThreadLocal<Unmarshaller>() {
+        @Override
+        protected Unmarshaller initialValue() {
+            try {
+                return jaxbContext.createUnmarshaller();
+            } catch (JAXBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<Marshaller> MARSHALLERS = new ThreadLocal<Marshaller>() {
+        @Override
+        protected Marshaller initialValue() {
+            try {
+                return jaxbContext.createMarshaller();
+            } catch (JAXBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    static {
+        try {
+            jaxbContext = JAXBContext.newInstance(DigitalObject.class);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Cannot init JAXB", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private DigitalObjectJaxb() {
+    }
+
+    static JAXBContext getContext() {
+        return jaxbContext;
+    }
+
+    /**
+     * Unmarshalls FOXML stream with the unmarshaller of the current thread; the stream is read through StAX
+     * @param inputStream FOXML stream
+     * @return unmarshalled object
+     * @throws JAXBException
+     * @throws XMLStreamException
+     */
+    static Object unmarshall(InputStream inputStream) throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+        try {
+            return UNMARSHALLERS.get().unmarshal(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Marshalls the object directly into UTF-8 bytes with the marshaller of the current thread
+     * (no intermediate StringWriter/String copies)
+     * @param object Digital object
+     * @return FOXML bytes
+     * @throws JAXBException
+     */
+    static byte[] marshallToBytes(DigitalObject object) throws JAXBException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+        MARSHALLERS.get().marshal(object, bos);
+        return bos.toByteArray();
+    }
+}
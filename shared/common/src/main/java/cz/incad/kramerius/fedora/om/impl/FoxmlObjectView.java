@@ -0,0 +1,349 @@
+package cz.incad.kramerius.fedora.om.impl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, read only view of one FOXML object: object properties, datastreams, their versions
+ * and serialized content of the latest version of inline xml datastreams.
+ * <br>
+ * View is created by one streaming (StAX) pass over FOXML, no DOM is built. Intended for cheap repeated
+ * metadata lookups (datastream existence, mimetypes, properties, inline xml content).
+ * @see AkubraDOManager#readObjectViewFromStorage(String)
+ */
+public class FoxmlObjectView {
+
+    private static final String FOXML_NS = "info:fedora/fedora-system:def/foxml#";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_OUTPUT_FACTORY.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+    }
+
+    private final String pid;
+    private final Map<String, String> properties;
+    private final Map<String, Datastream> datastreams;
+
+    private FoxmlObjectView(String pid, Map<String, String> properties, Map<String, Datastream> datastreams) {
+        this.pid = pid;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.datastreams = Collections.unmodifiableMap(datastreams);
+    }
+
+    public String getPid() {
+        return pid;
+    }
+
+    /**
+     * Returns value of object property
+     * @param name Property name (for example info:fedora/fedora-system:def/model#label)
+     * @return property value or null
+     */
+    public String getProperty(String name) {
+        return properties.get(name);
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public boolean datastreamExists(String dsId) {
+        return datastreams.containsKey(dsId);
+    }
+
+    /**
+     * Returns datastream or null if the object has no such datastream
+     */
+    public Datastream getDatastream(String dsId) {
+        return datastreams.get(dsId);
+    }
+
+    public List<String> getDatastreamIds() {
+        return new ArrayList<>(datastreams.keySet());
+    }
+
+    public static class Datastream {
+
+        private final String id;
+        private final String controlGroup;
+        private final String state;
+        private final List<DatastreamVersion> versions;
+
+        private Datastream(String id, String controlGroup, String state, List<DatastreamVersion> versions) {
+            this.id = id;
+            this.controlGroup = controlGroup;
+            this.state = state;
+            this.versions = Collections.unmodifiableList(versions);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getControlGroup() {
+            return controlGroup;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public List<DatastreamVersion> getVersions() {
+            return versions;
+        }
+
+        /**
+         * Returns the last version in document order (the same version as {@link AkubraUtils#getLastStreamVersion})
+         */
+        public DatastreamVersion getLatestVersion() {
+            return versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        }
+    }
+
+    public static class DatastreamVersion {
+
+        private final String id;
+        private final String mimetype;
+        private final String created;
+        private final String formatUri;
+        private final String xmlContent;
+
+        private DatastreamVersion(String id, String mimetype, String created, String formatUri, String xmlContent) {
+            this.id = id;
+            this.mimetype = mimetype;
+            this.created = created;
+            this.formatUri = formatUri;
+            this.xmlContent = xmlContent;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getMimetype() {
+            return mimetype;
+        }
+
+        public String getCreated() {
+            return created;
+        }
+
+        public String getFormatUri() {
+            return formatUri;
+        }
+
+        /**
+         * Returns serialized content of the inline xml datastream version; the content is kept for the latest version only
+         * @return xml content or null if the version is not inline (managed, external, binary content) or it is not the latest one
+         */
+        public String getXmlContent() {
+            return xmlContent;
+        }
+
+        private DatastreamVersion withoutXmlContent() {
+            return new DatastreamVersion(id, mimetype, created, formatUri, null);
+        }
+    }
+
+    /**
+     * Parses FOXML stream into the view
+     * @param pid Object pid
+     * @param foxml FOXML stream
+     * @return parsed view
+     * @throws XMLStreamException
+     */
+    public static FoxmlObjectView parse(String pid, InputStream foxml) throws XMLStreamException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        Map<String, Datastream> datastreams = new LinkedHashMap<>();
+
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(foxml);
+        try {
+            String dsId = null, dsControlGroup = null, dsState = null;
+            List<DatastreamVersion> versions = null;
+            String verId = null, verMimetype = null, verCreated = null, verFormatUri = null, verXmlContent = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (!FOXML_NS.equals(reader.getNamespaceURI())) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "property":
+                        case "extproperty":
+                            String name = reader.getAttributeValue(null, "NAME");
+                            if (name != null) {
+                                properties.put(name, reader.getAttributeValue(null, "VALUE"));
+                            }
+                            break;
+                        case "datastream":
+                            dsId = reader.getAttributeValue(null, "ID");
+                            dsControlGroup = reader.getAttributeValue(null, "CONTROL_GROUP");
+                            dsState = reader.getAttributeValue(null, "STATE");
+                            versions = new ArrayList<>();
+                            break;
+                        case "datastreamVersion":
+                            verId = reader.getAttributeValue(null, "ID");
+                            verMimetype = reader.getAttributeValue(null, "MIMETYPE");
+                            verCreated = reader.getAttributeValue(null, "CREATED");
+                            verFormatUri = reader.getAttributeValue(null, "FORMAT_URI");
+                            verXmlContent = null;
+                            break;
+                        case "xmlContent":
+                            verXmlContent = copyXmlContent(reader);
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && FOXML_NS.equals(reader.getNamespaceURI())) {
+                    String localName = reader.getLocalName();
+                    if ("datastreamVersion".equals(localName) && versions != null) {
+                        // only the latest version keeps its inline content, older versions are metadata only
+                        int last = versions.size() - 1;
+                        if (last >= 0 && versions.get(last).xmlContent != null) {
+                            versions.set(last, versions.get(last).withoutXmlContent());
+                        }
+                        versions.add(new DatastreamVersion(verId, verMimetype, verCreated, verFormatUri, verXmlContent));
+                    } else if ("datastream".equals(localName) && dsId != null) {
+                        datastreams.put(dsId, new Datastream(dsId, dsControlGroup, dsState, versions));
+                        dsId = null;
+                        versions = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new FoxmlObjectView(pid, properties, datastreams);
+    }
+
+    /**
+     * Serializes child elements of foxml:xmlContent; reader is positioned at start of xmlContent
+     * and it is left at its end element
+     */
+    private static String copyXmlContent(XMLStreamReader reader) throws XMLStreamException {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out);
+        copyChildren(reader, writer);
+        writer.flush();
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Serializes one foxml:datastream element (all its versions and their content) by one streaming pass over FOXML,
+     * no DOM of the whole object is built
+     * @param foxml FOXML stream
+     * @param dsId Datastream ID
+     * @return serialized datastream element or null if the object has no such datastream
+     * @throws XMLStreamException
+     */
+    public static String copyDatastream(InputStream foxml, String dsId) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(foxml);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && FOXML_NS.equals(reader.getNamespaceURI())
+                        && "datastream".equals(reader.getLocalName()) && dsId.equals(reader.getAttributeValue(null, "ID"))) {
+                    StringWriter out = new StringWriter();
+                    XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out);
+                    writeStartElement(reader, writer);
+                    copyChildren(reader, writer);
+                    writer.writeEndElement();
+                    writer.flush();
+                    writer.close();
+                    return out.toString();
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Copies content of the current element; reader is positioned at its start element and it is left at its end element
+     */
+    private static void copyChildren(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    writeStartElement(reader, writer);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                    writer.writeEndElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    // whitespace between content elements is not part of the stream
+                    if (depth > 0) {
+                        writer.writeCharacters(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    if (depth > 0) {
+                        writer.writeCData(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (depth > 0) {
+                        writer.writeComment(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (depth > 0) {
+                        writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        throw new XMLStreamException("Unexpected end of element");
+    }
+
+    private static void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartElement(nullToEmpty(reader.getPrefix()), reader.getLocalName(), nullToEmpty(reader.getNamespaceURI()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            if (prefix == null || prefix.isEmpty()) {
+                writer.writeDefaultNamespace(nullToEmpty(reader.getNamespaceURI(i)));
+            } else {
+                writer.writeNamespace(prefix, reader.getNamespaceURI(i));
+            }
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attributeNs = reader.getAttributeNamespace(i);
+            if (attributeNs == null || attributeNs.isEmpty()) {
+                writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            } else {
+                writer.writeAttribute(nullToEmpty(reader.getAttributePrefix(i)), attributeNs, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+        }
+    }
+
+    private static String nullToEmpty(String str) {
+        return str == null ? "" : str;
+    }
+}
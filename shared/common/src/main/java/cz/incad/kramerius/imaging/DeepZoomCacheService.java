@@ -40,6 +40,16 @@ public interface DeepZoomCacheService {
      */
     public void prepareCacheImage(String pid, Dimension dimensionToFit, BufferedImage rawImage);
 
+    /**
+     * Prepare all tiles of one level from single decode of the image
+     * 
+     * @param pid PID of the image
+     * @param cacheLevel Level under which tiles are stored in cache
+     * @param displayLevel Scale level of the image
+     * @param minSize the smallest size of image (in deepZoom protocol is 1px, in IIP is tileSize)
+     * @throws IOException IO error has been occurred
+     */
+    public void prepareCacheLevel(String pid, int cacheLevel, int displayLevel, int minSize) throws IOException;
     
     /**
      * Walk the Rels-Ext and search pages and cache them
@@ -120,6 +120,30 @@ public interface DeepZoomTileSupport {
      */
     public BufferedImage getTileFromBigImage(BufferedImage image, int displayLevel, int displayTile, int minSize, ScalingMethod method, boolean iterateScaling) throws IOException;
 
+    /**
+     * Returns whole image of given level; all tiles of the level can be cut from it by {@link #getTileFromLevelImage(BufferedImage, int)}
+     *
+     * @param image Big image
+     * @param displayLevel Scale level of the image
+     * @param minSize
+     *            the smallest size of image (in deepZoom protocol is 1px, in
+     *            IIP is tileSize)
+     * @param method Scaling method
+     * @param iterateScaling flag for determine if algorithm should use iterate scaling
+     * @return scaled image of the level
+     * @throws IOException IO error has been occurred
+     */
+    public BufferedImage getLevelImage(BufferedImage image, int displayLevel, int minSize, ScalingMethod method, boolean iterateScaling) throws IOException;
+
+    /**
+     * Cuts one tile from already scaled image of the level
+     *
+     * @param levelImage Image of the level
+     * @param displayTile Tile coordinates
+     * @return one tile
+     */
+    public BufferedImage getTileFromLevelImage(BufferedImage levelImage, int displayTile);
+
     /**
      * Calculate and returns real scale
      * 
@@ -2,19 +2,26 @@ package cz.incad.kramerius.imaging.impl;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.net.URL;
 import java.util.Arrays;
+import java.util.UUID;
 import java.util.logging.Level;
 
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStreamImpl;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import org.antlr.stringtemplate.StringTemplate;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.FileWriterWithEncoding;
 
 import com.google.inject.Inject;
@@ -59,6 +66,11 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
     // CachingSupport cachingSupport= new CachingSupport();
     @Inject
     DiscStrucutreForStore discStructureStore;
+
+    // concurrent misses for the same image share one decode and one level build
+    private final SingleFlight<String, BufferedImage> originalFlights = new SingleFlight<String, BufferedImage>();
+    private final SingleFlight<String, Boolean> levelFlights = new SingleFlight<String, Boolean>();
+    private final TileMemoryCache tileMemoryCache = new TileMemoryCache();
     
 
     @Override
@@ -95,25 +107,13 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
             
             writeDeepZoomDescriptor(pid, rawDim, tileSupport.getTileSize());
             writeResolution(pid, rawDim);
-            
-            for (int i = startLevel ; i < maxLevel; i++) {
-
-                int curLevel = i;
-                double scale = tileSupport.getScale(curLevel, levels);
-                Dimension scaled = tileSupport.getScaledDimension(new Dimension(rawImage.getWidth(null), rawImage.getHeight(null)), scale);
-
-                int rows = tileSupport.getRows(scaled);
-                int cols = tileSupport.getCols(scaled);
-                for (int r = 0; r < rows; r++) {
-                    int b = r * cols;
-                    for (int c = 0; c < cols; c++) {
-                        int cell = b + c;
-                        ScalingMethod method = ScalingMethod.valueOf(kConfiguration.getProperty("deepZoom.scalingMethod", "BICUBIC_STEPPED"));
-                        boolean highQuality = kConfiguration.getConfiguration().getBoolean("deepZoom.iterateScaling", true);
-                        BufferedImage tile = this.tileSupport.getTileFromBigImage(rawImage, curLevel, cell, 1, method, highQuality);
-                        writeDeepZoomTile(pid, curLevel, r, c, tile);
-                    }
-                }
+
+            // from the biggest level to the smallest one; every level is scaled from the previous one
+            BufferedImage levelImage = rawImage;
+            for (int i = maxLevel - 1 ; i >= startLevel; i--) {
+                Dimension scaled = tileSupport.getScaledDimension(rawDim, tileSupport.getScale(i, levels));
+                levelImage = scaleTo(levelImage, scaled);
+                writeDeepZoomLevel(pid, i, levelImage);
             }
         } catch (IOException e) {
             LOGGER.severe(e.getMessage());
@@ -128,23 +128,11 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
             writeResolution(pid, rawDimension);
 
             int levels = (int) tileSupport.getLevels(rawImage, 1);
+            BufferedImage levelImage = rawImage;
             for (int i = levels - 1; i > 0; i--) {
-                int curLevel = i;
-                double scale = tileSupport.getScale(curLevel, levels);
-                Dimension scaled = tileSupport.getScaledDimension(new Dimension(rawImage.getWidth(null), rawImage.getHeight(null)), scale);
-
-                int rows = tileSupport.getRows(scaled);
-                int cols = tileSupport.getCols(scaled);
-                for (int r = 0; r < rows; r++) {
-                    int b = r * cols;
-                    for (int c = 0; c < cols; c++) {
-                        int cell = b + c;
-                        ScalingMethod method = ScalingMethod.valueOf(kConfiguration.getProperty("deepZoom.scalingMethod", "BICUBIC_STEPPED"));
-                        boolean highQuality = kConfiguration.getConfiguration().getBoolean("deepZoom.iterateScaling", true);
-                        BufferedImage tile = this.tileSupport.getTileFromBigImage(rawImage, curLevel, cell, 1, method, highQuality);
-                        writeDeepZoomTile(pid, curLevel, r, c, tile);
-                    }
-                }
+                Dimension scaled = tileSupport.getScaledDimension(rawDimension, tileSupport.getScale(i, levels));
+                levelImage = scaleTo(levelImage, scaled);
+                writeDeepZoomLevel(pid, i, levelImage);
                 // image fit to one tile, this is the end for me
                 if (!greaterThen(scaled, dimToFit)) {
                     break;
@@ -155,6 +143,91 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
         }
     }
 
+    @Override
+    public void prepareCacheLevel(final String pid, final int cacheLevel, final int displayLevel, final int minSize) throws IOException {
+        this.levelFlights.execute(pid + "/" + cacheLevel, new SingleFlight.Computation<Boolean>() {
+            @Override
+            public Boolean compute() throws IOException {
+                prepareCacheLevelImpl(pid, cacheLevel, displayLevel, minSize);
+                return Boolean.TRUE;
+            }
+        });
+    }
+
+    void prepareCacheLevelImpl(String pid, int cacheLevel, int displayLevel, int minSize) throws IOException {
+        BufferedImage levelImage = null;
+        // original is written under temporary name and renamed, so it is always complete when present
+        if (isDeepZoomOriginalPresent(pid)) {
+            // cached original is decoded only in the resolution needed for the level
+            URL originalURL = uuidFolder(pid).createChildFile(pid).toURL();
+            Dimension originalDim = KrameriusImageSupport.readDimension(originalURL, ImageMimeType.JPEG);
+            int levels = tileSupport.getLevels(originalDim, minSize);
+            Dimension scaled = tileSupport.getScaledDimension(originalDim, displayLevel, levels);
+            BufferedImage source = KrameriusImageSupport.readImage(originalURL, ImageMimeType.JPEG, 0, subsampling(originalDim, scaled));
+            levelImage = scaleTo(source, scaled);
+        } else {
+            BufferedImage original = createDeepZoomOriginal(pid);
+            levelImage = tileSupport.getLevelImage(original, displayLevel, minSize, scalingMethod(), iterateScaling());
+        }
+        writeDeepZoomLevel(pid, cacheLevel, levelImage);
+    }
+
+    /**
+     * Creates original from fedora RAW and stores it into cache; concurrent calls for the same pid share one decode
+     */
+    BufferedImage createDeepZoomOriginal(final String pid) throws IOException {
+        return this.originalFlights.execute(pid, new SingleFlight.Computation<BufferedImage>() {
+            @Override
+            public BufferedImage compute() throws IOException {
+                BufferedImage original = createDeepZoomOriginalImageFromFedoraRAW(pid);
+                writeDeepZoomOriginalImage(pid, original);
+                return original;
+            }
+        });
+    }
+
+    /**
+     * Cuts all tiles of the level and writes them into cache. Already cached tiles are skipped.
+     */
+    void writeDeepZoomLevel(String pid, int level, BufferedImage levelImage) throws IOException {
+        Dimension levelDim = new Dimension(levelImage.getWidth(), levelImage.getHeight());
+        int rows = tileSupport.getRows(levelDim);
+        int cols = tileSupport.getCols(levelDim);
+        for (int r = 0; r < rows; r++) {
+            int b = r * cols;
+            for (int c = 0; c < cols; c++) {
+                if (!isDeepZoomTilePresent(pid, level, r, c)) {
+                    BufferedImage tile = this.tileSupport.getTileFromLevelImage(levelImage, b + c);
+                    writeDeepZoomTile(pid, level, r, c, tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Subsampling used for decoding; leaves at least twice bigger image than requested for the final scaling
+     */
+    static int subsampling(Dimension original, Dimension scaled) {
+        int factor = Math.min(original.width / Math.max(1, scaled.width), original.height / Math.max(1, scaled.height));
+        return Math.max(1, factor / 2);
+    }
+
+    private BufferedImage scaleTo(BufferedImage image, Dimension dim) {
+        if (image.getWidth() == dim.width && image.getHeight() == dim.height) {
+            return image;
+        } else {
+            return KrameriusImageSupport.scale(image, dim.width, dim.height, scalingMethod(), iterateScaling());
+        }
+    }
+
+    private ScalingMethod scalingMethod() {
+        return ScalingMethod.valueOf(kConfiguration.getProperty("deepZoom.scalingMethod", "BICUBIC_STEPPED"));
+    }
+
+    private boolean iterateScaling() {
+        return kConfiguration.getConfiguration().getBoolean("deepZoom.iterateScaling", true);
+    }
+
    cz.incad.kramerius.imaging.paths.DirPath uuidFolder(String pid) throws IOException {
         try {
             PIDParser pidParser = new PIDParser(pid);
@@ -254,14 +327,22 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
         DirPath dpath = uuidFolder(uuid);
         FilePath fpath = (FilePath) dpath.child(uuid);
         if (fpath == null) {
-            fpath = dpath.createChildFile(uuid);
-            ImageOutputStreamImpl iostr = fpath.openImageOutputStream();
+            // readers must never see partially written original (other requests, other nodes sharing the cache)
+            String tmpName = uuid + "." + UUID.randomUUID() + ".tmp";
+            boolean written = false;
             try {
-                KrameriusImageSupport.writeImageToStream(rawImage, "JPG", iostr, kConfiguration.getDeepZoomJPEGQuality());
-            } finally {
-                if (iostr != null) {
+                ImageOutputStreamImpl iostr = dpath.createChildFile(tmpName).openImageOutputStream();
+                try {
+                    KrameriusImageSupport.writeImageToStream(rawImage, "JPG", iostr, kConfiguration.getDeepZoomJPEGQuality());
+                } finally {
                     iostr.close();
                 }
+                dpath.renameChild(tmpName, uuid);
+                written = true;
+            } finally {
+                if (!written) {
+                    dpath.deleteChild(tmpName);
+                }
             }
         }
     }
@@ -292,20 +373,43 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
     @Override
     public boolean isDeepZoomTilePresent(String pid, int ilevel, int row, int col) throws IOException {
         ilevel = repairLevel(pid, ilevel);
+        if (this.tileMemoryCache.contains(TileMemoryCache.key(pid, ilevel, row, col))) {
+            return true;
+        }
         DirPath dp = getTileImageFolder(pid, ilevel);
         return dp.child(getTileName(row, col)) != null;
     }
 
     @Override
     public void writeDeepZoomTile(String uuid, int ilevel, int row, int col, BufferedImage tile) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream mos = new MemoryCacheImageOutputStream(bos);
+        try {
+            KrameriusImageSupport.writeImageToStream(tile, "JPG", mos, kConfiguration.getDeepZoomJPEGQuality());
+        } finally {
+            mos.close();
+        }
+        byte[] encoded = bos.toByteArray();
+        // memory first; readers never see partially written file of hot tile
+        this.tileMemoryCache.put(TileMemoryCache.key(uuid, ilevel, row, col), encoded);
+
+        // written under temporary name and renamed as the original, tile file is always complete when present
         DirPath dp = getTileImageFolder(uuid, ilevel);
-        FilePath fp = dp.createChildFile(getTileName(row, col));
-        ImageOutputStreamImpl fosI = fp.openImageOutputStream();
+        String tileName = getTileName(row, col);
+        String tmpName = tileName + "." + UUID.randomUUID() + ".tmp";
+        boolean written = false;
         try {
-            KrameriusImageSupport.writeImageToStream(tile, "JPG", fosI, kConfiguration.getDeepZoomJPEGQuality());
+            OutputStream os = dp.createChildFile(tmpName).openOutputStream();
+            try {
+                os.write(encoded);
+            } finally {
+                os.close();
+            }
+            dp.renameChild(tmpName, tileName);
+            written = true;
         } finally {
-            if (fosI != null) {
-                fosI.close();
+            if (!written) {
+                dp.deleteChild(tmpName);
             }
         }
     }
@@ -313,9 +417,20 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
     @Override
     public InputStream getDeepZoomTileStream(String pid, int ilevel, int row, int col) throws IOException {
         ilevel = repairLevel(pid, ilevel);
-        DirPath dp = getTileImageFolder(pid, ilevel);
-        FilePath fp = dp.createChildFile(getTileName(row, col));
-        return fp.openInputStream();
+        String key = TileMemoryCache.key(pid, ilevel, row, col);
+        byte[] encoded = this.tileMemoryCache.get(key);
+        if (encoded == null) {
+            DirPath dp = getTileImageFolder(pid, ilevel);
+            FilePath fp = dp.createChildFile(getTileName(row, col));
+            InputStream is = fp.openInputStream();
+            try {
+                encoded = IOUtils.toByteArray(is);
+            } finally {
+                is.close();
+            }
+            this.tileMemoryCache.put(key, encoded);
+        }
+        return new ByteArrayInputStream(encoded);
     }
 
     /**
@@ -373,7 +488,7 @@ public class FileSystemCacheServiceImpl implements DeepZoomCacheService {
     }
 
     @Override
-    public synchronized BufferedImage getDeepZoomOriginal(String pid) throws IOException {
+    public BufferedImage getDeepZoomOriginal(String pid) throws IOException {
         if (isDeepZoomOriginalPresent(pid)) {
             DirPath dp = uuidFolder(pid);
             FilePath fp = dp.createChildFile(pid);
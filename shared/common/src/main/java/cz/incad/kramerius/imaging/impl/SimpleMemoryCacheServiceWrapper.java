@@ -56,6 +56,11 @@ public class SimpleMemoryCacheServiceWrapper implements DeepZoomCacheService {
 		this.memoryCache.registerToCache(uuid, rawImage);
 	}
 
+	@Override
+	public void prepareCacheLevel(String pid, int cacheLevel, int displayLevel, int minSize) throws IOException {
+		this.wrappingInstance.prepareCacheLevel(pid, cacheLevel, displayLevel, minSize);
+	}
+
 	@Override
 	public void prepareCacheForPID(String uuid) throws IOException, ProcessSubtreeException {
 		this.wrappingInstance.prepareCacheForPID(uuid);
@@ -0,0 +1,57 @@
+package cz.incad.kramerius.imaging.impl;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coordinates concurrent computations with the same key. <br>
+ * The first caller computes the value, other callers with the same key wait for its result.
+ * Computations with different keys never block each other.
+ */
+class SingleFlight<K, V> {
+
+    interface Computation<V> {
+        V compute() throws IOException;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+    V execute(K key, Computation<V> computation) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<V>();
+        CompletableFuture<V> running = this.flights.putIfAbsent(key, flight);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            V value = computation.compute();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.flights.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package cz.incad.kramerius.imaging.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+/**
+ * LRU cache of encoded tiles. <br>
+ * Size of the cache is limited by property 'deepZoom.memoryCache.tilesMB'. <br>
+ * Value 0 disables the cache. <br>
+ */
+class TileMemoryCache {
+
+    private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<String, byte[]>(256, 0.75f, true);
+    private long size = 0L;
+
+    private long getCacheLimit() {
+        return KConfiguration.getInstance().getConfiguration().getLong("deepZoom.memoryCache.tilesMB", 64L) * 1024L * 1024L;
+    }
+
+    static String key(String pid, int level, int row, int col) {
+        return pid + "/" + level + "/" + row + "_" + col;
+    }
+
+    synchronized byte[] get(String key) {
+        return this.tiles.get(key);
+    }
+
+    synchronized boolean contains(String key) {
+        return this.tiles.containsKey(key);
+    }
+
+    synchronized void put(String key, byte[] data) {
+        long limit = getCacheLimit();
+        if (data.length > limit) return;
+        byte[] previous = this.tiles.put(key, data);
+        if (previous != null) {
+            this.size -= previous.length;
+        }
+        this.size += data.length;
+        Iterator<Map.Entry<String, byte[]>> it = this.tiles.entrySet().iterator();
+        while (this.size > limit && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            this.size -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    synchronized long size() {
+        return this.size;
+    }
+}
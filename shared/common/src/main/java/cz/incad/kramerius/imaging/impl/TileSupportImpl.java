@@ -139,28 +139,34 @@ public class TileSupportImpl implements DeepZoomTileSupport {
     @Override
 	public BufferedImage getTileFromBigImage(BufferedImage image,int displayLevel, int displayTile,
 			int minSize, ScalingMethod method, boolean iterateScaling) {
-		long maxLevel = getLevels(image, minSize);
+        BufferedImage scaled = getLevelImage(image, displayLevel, minSize, method, iterateScaling);
+        return getTileFromLevelImage(scaled, displayTile);
+	}
+
+    @Override
+    public BufferedImage getLevelImage(BufferedImage image, int displayLevel, int minSize, ScalingMethod method, boolean iterateScaling) {
+        long maxLevel = getLevels(image, minSize);
         int width = image.getWidth(null);
         int height = image.getHeight(null);
         Dimension originalDim = new Dimension(width, height);
-        
+
         double scale = getScale(displayLevel, maxLevel);
-        LOGGER.info("tilesupport calculated scale : "+scale);
+        LOGGER.fine("tilesupport calculated scale : "+scale);
         Dimension scaledDim = getScaledDimension(originalDim, scale);
-        LOGGER.info("tilesupport calculated dim : "+scaledDim);
-        
-        //int rows = getRows(scaledDim);
-        int cols = getCols(scaledDim);
-        
-        Image scaled = null;
+        LOGGER.fine("tilesupport calculated dim : "+scaledDim);
+
         if ((width == scaledDim.width) && (height == scaledDim.height)) {
-        	scaled = image;
+            return image;
         } else {
-            scaled = KrameriusImageSupport.scale(image, scaledDim.width, scaledDim.height, method, iterateScaling);
+            return KrameriusImageSupport.scale(image, scaledDim.width, scaledDim.height, method, iterateScaling);
         }
+    }
+
+    @Override
+    public BufferedImage getTileFromLevelImage(BufferedImage scaled, int displayTile) {
+        Dimension scaledDim = new Dimension(scaled.getWidth(), scaled.getHeight());
+        int cols = getCols(scaledDim);
 
-        
-        
         int rowTile = displayTile / cols;
         int colTile = displayTile % cols;
 
@@ -174,8 +180,9 @@ public class TileSupportImpl implements DeepZoomTileSupport {
         Graphics2D graphics2d = (Graphics2D) buffImage.getGraphics();
         
         graphics2d.drawImage(scaled, -tileStartX,-tileStartY, null);
+        graphics2d.dispose();
         return buffImage;
-	}
+    }
 
     @Override
     public int getCols(Dimension scaledDim) {
@@ -27,10 +27,10 @@ import cz.incad.kramerius.statistics.NullStatisticsModule;
 import org.apache.commons.io.FileUtils;
 import org.w3c.dom.DOMException;
 
-import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.name.Names;
+import cz.incad.kramerius.processes.starter.ProcessStarter;
 
 import cz.incad.kramerius.FedoraAccess;
 import cz.incad.kramerius.ProcessSubtreeException;
@@ -57,7 +57,7 @@ public class DeleteGeneratedDeepZoomCache {
 
     public static void main(String[] args) throws IOException, ProcessSubtreeException {
         if (args.length == 1) {
-            Injector injector = Guice.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module(), new NullStatisticsModule());
+            Injector injector = ProcessStarter.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module(), new NullStatisticsModule());
             FedoraAccess fa = injector.getInstance(Key.get(FedoraAccess.class, Names.named("rawFedoraAccess")));
             DiscStrucutreForStore discStruct = injector.getInstance(DiscStrucutreForStore.class);
             deleteCacheForPID(args[0], fa, discStruct);
@@ -4,10 +4,10 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.logging.Level;
 
-import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.name.Names;
+import cz.incad.kramerius.processes.starter.ProcessStarter;
 
 import cz.incad.kramerius.ProcessSubtreeException;
 import cz.incad.kramerius.fedora.RepoModule;
@@ -26,7 +26,7 @@ public class GenerateDeepZoomCache {
     public static void main(String[] args) throws IOException, ProcessSubtreeException {
         LOGGER.log(Level.INFO,"Generate deep zoom cache :" + Arrays.asList(args));
         if (args.length >= 1) {
-            Injector injector = Guice.createInjector(new GenerateDeepZoomCacheModule(), new SolrModule(), new RepoModule(), new NullStatisticsModule());
+            Injector injector = ProcessStarter.createInjector(new GenerateDeepZoomCacheModule(), new SolrModule(), new RepoModule(), new NullStatisticsModule());
             int numberStepsOverTile = KConfiguration.getInstance().getConfiguration().getInt("deepZoom.numberStepsOverTile",1);
             if (args.length == 2) {
                 numberStepsOverTile = Integer.parseInt(args[1]);
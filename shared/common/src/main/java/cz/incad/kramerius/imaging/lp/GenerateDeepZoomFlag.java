@@ -19,8 +19,8 @@ package cz.incad.kramerius.imaging.lp;
 import java.io.IOException;
 import java.util.Arrays;
 
-import com.google.inject.Guice;
 import com.google.inject.Injector;
+import cz.incad.kramerius.processes.starter.ProcessStarter;
 
 import cz.incad.kramerius.imaging.DeepZoomFlagService;
 import cz.incad.kramerius.imaging.lp.guice.Fedora3Module;
@@ -48,7 +48,7 @@ public class GenerateDeepZoomFlag {
             void doAction(String[] args) throws IOException {
                 if (args.length >= 3) {
                     LOGGER.info("setting flag ...");
-                    Injector injector = Guice.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module(), new NullStatisticsModule());
+                    Injector injector = ProcessStarter.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module(), new NullStatisticsModule());
                     DeepZoomFlagService service = injector.getInstance(DeepZoomFlagService.class);
                     service.setFlagToPID(args[1],args[2]);
                     LOGGER.info("Process finished");
@@ -61,7 +61,7 @@ public class GenerateDeepZoomFlag {
             void doAction(String[] args) throws IOException {
                 if (args.length >= 2) {
                     LOGGER.info("deleting flag ...");
-                    Injector injector = Guice.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module());
+                    Injector injector = ProcessStarter.createInjector(new GenerateDeepZoomCacheModule(), new Fedora3Module());
                     DeepZoomFlagService service = injector.getInstance(DeepZoomFlagService.class);
                     service.deleteFlagToPID(args[1]);
                     LOGGER.info("Process finished");
@@ -73,4 +73,12 @@ public interface DirPath extends Path {
      * @throws IOException IO error has been occuredd
      */
     public void deleteChild(String name)  throws IOException;
+
+    /**
+     * Atomically renames file; existing target is replaced
+     * @param name Name of the file
+     * @param newName New name of the file
+     * @throws IOException IO error has been occured
+     */
+    public void renameChild(String name, String newName)  throws IOException;
 }
@@ -22,6 +22,8 @@ package cz.incad.kramerius.imaging.paths.impl;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -113,5 +115,10 @@ public class DirPathImpl extends AbstractPath implements DirPath{
         }
     }
 
+    @Override
+    public void renameChild(String name, String newName)  throws IOException {
+        Files.move(new File(this.file, name).toPath(), new File(this.file, newName).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
     
 }
@@ -16,8 +16,13 @@
  */
 package cz.incad.kramerius.pdf;
 
+import java.io.IOException;
 import java.io.OutputStream;
 
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfWriter;
+
 import cz.incad.kramerius.ObjectPidsPath;
 import cz.incad.kramerius.document.model.PreparedDocument;
 import cz.incad.kramerius.pdf.utils.pdf.FontMap;
@@ -58,5 +63,25 @@ public interface FirstPagePDFService {
      * @param fontMap Prepared FontMap object
      */
     public void parent(PreparedDocument rdoc, OutputStream os, ObjectPidsPath path, FontMap fontMap);
-    
+
+    /**
+     * Renders first pdf page for selection into opened document
+     * @param rdoc Generating document model
+     * @param doc Opened document
+     * @param writer Writer of the document
+     * @param pids PIDs selection
+     * @param fontMap Prepared FontMap object
+     */
+    public void selection(PreparedDocument rdoc, Document doc, PdfWriter writer, String[] pids, FontMap fontMap) throws IOException, DocumentException;
+
+    /**
+     * Renders first pdf page for title into opened document
+     * @param rdoc Generating document model
+     * @param doc Opened document
+     * @param writer Writer of the document
+     * @param path Path for generting object
+     * @param fontMap Prepared FontMap object
+     */
+    public void parent(PreparedDocument rdoc, Document doc, PdfWriter writer, ObjectPidsPath path, FontMap fontMap) throws IOException, DocumentException;
+
 }
@@ -3,7 +3,9 @@ package cz.incad.kramerius.pdf;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfWriter;
 
 import cz.incad.kramerius.ObjectPidsPath;
 import cz.incad.kramerius.document.model.PreparedDocument;
@@ -23,5 +25,15 @@ public interface SimplePDFService {
      * @throws DocumentException
      */
     public void pdf(PreparedDocument rdoc, OutputStream os, FontMap fontMap) throws IOException,DocumentException;
-}
 
+    /**
+     * Renders previous prepared document into opened document (for example after the first page)
+     * @param rdoc
+     * @param doc Opened document
+     * @param writer Writer of the document
+     * @param fontMap
+     * @throws IOException
+     * @throws DocumentException
+     */
+    public void pdf(PreparedDocument rdoc, Document doc, PdfWriter writer, FontMap fontMap) throws IOException,DocumentException;
+}
@@ -120,18 +120,21 @@ public class AbstractPDFRenderSupport {
             float percentage, PdfWriter pdfWriter, org.w3c.dom.Document alto,
             BufferedImage javaImg) throws IOException, BadElementException,
             MalformedURLException, DocumentException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        writeImageToStream(javaImg, "jpeg", bos);
-
-        // com.lowagie.text.Image img =
-        // com.lowagie.text.Image.getInstance(bos.toByteArray());
-
-        PdfTextUnderImage textUnderImage = new PdfTextUnderImage();
         ScaledImageOptions options = insertJavaImage(document, percentage,
                 javaImg);
-        // textUnderImage.setDebug(true);
+        new PdfTextUnderImage().imageWithAlto(document, pdfWriter, alto, options);
+        return options;
+    }
 
-        textUnderImage.imageWithAlto(document, pdfWriter, alto, options);
+    /**
+     * Inserts jpeg image with text from ALTO under the image; jpeg data are embedded without decoding
+     */
+    public ScaledImageOptions insertJpegImageWithOCR(Document document,
+            float percentage, PdfWriter pdfWriter, org.w3c.dom.Document alto,
+            byte[] jpeg) throws IOException, BadElementException,
+            MalformedURLException, DocumentException {
+        ScaledImageOptions options = insertJpegImage(document, percentage, jpeg);
+        new PdfTextUnderImage().imageWithAlto(document, pdfWriter, alto, options);
         return options;
     }
 
@@ -143,11 +146,25 @@ public class AbstractPDFRenderSupport {
 
         com.lowagie.text.Image img = com.lowagie.text.Image.getInstance(bos
                 .toByteArray());
+        return insertImage(document, percentage, img, javaImg.getWidth(null), javaImg.getHeight(null));
+    }
+
+    /**
+     * Inserts jpeg image; original data are embedded into the pdf without decoding and encoding again
+     */
+    public static ScaledImageOptions insertJpegImage(Document document,
+            float percentage, byte[] jpeg) throws IOException,
+            BadElementException, MalformedURLException, DocumentException {
+        com.lowagie.text.Image img = com.lowagie.text.Image.getInstance(jpeg);
+        return insertImage(document, percentage, img, (int) img.getWidth(), (int) img.getHeight());
+    }
 
-        Float ratio = ratio(document, percentage, javaImg);
+    private static ScaledImageOptions insertImage(Document document,
+            float percentage, com.lowagie.text.Image img, int width, int height) throws DocumentException {
+        Float ratio = ratio(document, percentage, width, height);
 
-        int fitToPageWidth = (int) (javaImg.getWidth(null) * ratio);
-        int fitToPageHeight = (int) (javaImg.getHeight(null) * ratio);
+        int fitToPageWidth = (int) (width * ratio);
+        int fitToPageHeight = (int) (height * ratio);
 
         int offsetX = ((int) document.getPageSize().getWidth() - fitToPageWidth) / 2;
         int offsetY = ((int) document.getPageSize().getHeight() - fitToPageHeight) / 2;
@@ -176,10 +193,15 @@ public class AbstractPDFRenderSupport {
 
     public static Float ratio(Document document, float percentage,
             BufferedImage javaImg) {
+        return ratio(document, percentage, javaImg.getWidth(null), javaImg.getHeight(null));
+    }
+
+    public static Float ratio(Document document, float percentage,
+            int width, int height) {
         Float wratio = document.getPageSize().getWidth()
-                / javaImg.getWidth(null);
+                / width;
         Float hratio = document.getPageSize().getHeight()
-                / javaImg.getHeight(null);
+                / height;
         Float ratio = Math.min(wratio, hratio);
         if (percentage != 1.0) {
             ratio = ratio * percentage;
@@ -17,19 +17,17 @@
 package cz.incad.kramerius.pdf.impl;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.MalformedURLException;
 import java.util.logging.Level;
 
-import javax.imageio.ImageIO;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
-import com.lowagie.text.BadElementException;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.pdf.PdfWriter;
@@ -37,16 +35,15 @@ import com.lowagie.text.pdf.PdfWriter;
 import cz.incad.kramerius.ObjectPidsPath;
 import cz.incad.kramerius.document.model.PreparedDocument;
 import cz.incad.kramerius.pdf.FirstPagePDFService;
-import cz.incad.kramerius.pdf.PDFContext;
 import cz.incad.kramerius.pdf.utils.pdf.DocumentUtils;
 import cz.incad.kramerius.pdf.utils.pdf.FontMap;
-import cz.incad.kramerius.utils.imgs.ImageMimeType;
-import cz.incad.kramerius.utils.imgs.KrameriusImageSupport;
 
 public class FirstPageAsImagePDFServiceImpl extends AbstractPDFRenderSupport implements FirstPagePDFService {
     
     static java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(FirstPageAsImagePDFServiceImpl.class.getName());
-    
+
+    // resolution of the rendered text page
+    static final int RESOLUTION = 160;
 
     @Inject
     @Named("TEXT")
@@ -56,18 +53,14 @@ public class FirstPageAsImagePDFServiceImpl extends AbstractPDFRenderSupport imp
     @Override
     public void selection(PreparedDocument rdoc, OutputStream os,String[] pids, FontMap fontMap) {
         try {
+            Document doc = DocumentUtils.createDocument(rdoc);
+            PdfWriter writer = PdfWriter.getInstance(doc, os);
+            doc.open();
 
+            selection(rdoc, doc, writer, pids, fontMap);
 
-            File pdfFile = writeSelectionToPDF(rdoc, pids, fontMap);
-            BufferedImage image = KrameriusImageSupport.readImage(pdfFile.toURI().toURL(), ImageMimeType.PDF, 0);
-            LOGGER.fine("Original first page file :"+pdfFile.getAbsolutePath());
-            
-            File imageFile = File.createTempFile("image", ImageMimeType.PNG.getDefaultFileExtension());
-            LOGGER.fine("Original first page file as image :"+imageFile.getAbsolutePath());
-            ImageIO.write(image, ImageMimeType.PNG.getDefaultFileExtension(), imageFile);
-            
-            insertImage(rdoc, os, imageFile);
-            
+            doc.close();
+            os.flush();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE,e.getMessage(),e);
         } catch (DocumentException e) {
@@ -75,57 +68,48 @@ public class FirstPageAsImagePDFServiceImpl extends AbstractPDFRenderSupport imp
         }
     }
 
-    public void insertImage(PreparedDocument rdoc, OutputStream os, File imageFile) throws DocumentException, IOException, MalformedURLException, BadElementException {
-        Document doc = DocumentUtils.createDocument(rdoc);
-
-        PdfWriter writer = PdfWriter.getInstance(doc, os);
-        doc.open();
-
-        insertImageFromURL(doc, 1.0f, imageFile.toURI().toURL().toString(), ImageMimeType.PNG);
-
-        doc.close();
-        os.flush();
-    }
-
-    File writeSelectionToPDF(PreparedDocument rdoc, String[] pids,  FontMap fontMap) throws IOException, FileNotFoundException {
-        FileOutputStream pdfFos = null;
-        try {
-            File tmpFile = File.createTempFile("firstpage", "pdf");
-            pdfFos = new FileOutputStream(tmpFile);
-            this.textPDFService.selection(rdoc, pdfFos, pids, fontMap);
-            return tmpFile;
-        } finally {
-            if (pdfFos != null) pdfFos.close();
-        }
-    }
-
-    public File writeParentToPDF(PreparedDocument rdoc,ObjectPidsPath path,   FontMap fontMap) throws IOException, FileNotFoundException {
-        FileOutputStream pdfFos = null;
-        try {
-            File tmpFile = File.createTempFile("firstpage", "pdf");
-            pdfFos = new FileOutputStream(tmpFile);
-            this.textPDFService.parent(rdoc, pdfFos,path, fontMap);
-            return tmpFile;
-        } finally {
-            if (pdfFos != null) pdfFos.close();
-        }
+    @Override
+    public void selection(PreparedDocument rdoc, Document doc, PdfWriter writer, String[] pids, FontMap fontMap) throws IOException, DocumentException {
+        ByteArrayOutputStream textPage = new ByteArrayOutputStream();
+        this.textPDFService.selection(rdoc, textPage, pids, fontMap);
+        insertImage(doc, textPage.toByteArray());
     }
 
     @Override
     public void parent(PreparedDocument rdoc, OutputStream os, ObjectPidsPath path,  FontMap fontMap) {
         try {
-            File pdfFile =writeParentToPDF(rdoc, path, fontMap);
-            BufferedImage image = KrameriusImageSupport.readImage(pdfFile.toURI().toURL(), ImageMimeType.PDF, 0);
-            
-            File imageFile = File.createTempFile("image", ImageMimeType.PNG.getDefaultFileExtension());
-            ImageIO.write(image, ImageMimeType.PNG.getDefaultFileExtension(), imageFile);
-            
-            insertImage(rdoc, os, imageFile);
-            
+            Document doc = DocumentUtils.createDocument(rdoc);
+            PdfWriter writer = PdfWriter.getInstance(doc, os);
+            doc.open();
+
+            parent(rdoc, doc, writer, path, fontMap);
+
+            doc.close();
+            os.flush();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE,e.getMessage(),e);
         } catch (DocumentException e) {
             LOGGER.log(Level.SEVERE,e.getMessage(),e);
         }
     }
+
+    @Override
+    public void parent(PreparedDocument rdoc, Document doc, PdfWriter writer, ObjectPidsPath path, FontMap fontMap) throws IOException, DocumentException {
+        ByteArrayOutputStream textPage = new ByteArrayOutputStream();
+        this.textPDFService.parent(rdoc, textPage, path, fontMap);
+        insertImage(doc, textPage.toByteArray());
+    }
+
+    /**
+     * Renders first page of the given text pdf (kept in memory) and inserts it as image
+     */
+    void insertImage(Document doc, byte[] textPdf) throws IOException, DocumentException {
+        PDDocument document = PDDocument.load(textPdf);
+        try {
+            BufferedImage image = new PDFRenderer(document).renderImageWithDPI(0, RESOLUTION, ImageType.RGB);
+            insertJavaImage(doc, 1.0f, image);
+        } finally {
+            document.close();
+        }
+    }
 }
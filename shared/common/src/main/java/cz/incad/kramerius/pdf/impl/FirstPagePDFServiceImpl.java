@@ -135,13 +135,22 @@ public class FirstPagePDFServiceImpl implements FirstPagePDFService {
             Document doc = DocumentUtils.createDocument(rdoc);
             PdfWriter writer = PdfWriter.getInstance(doc, os);
             doc.open();
-            String itextCommands = templateSelection(rdoc, pids);
-            renderFromTemplate(rdoc, doc, writer, fontMap, new StringReader(itextCommands));
+            selection(rdoc, doc, writer, pids, fontMap);
 
             doc.close();
             os.flush();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        } catch (DocumentException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void selection(PreparedDocument rdoc, Document doc, PdfWriter writer, String[] pids, FontMap fontMap) throws IOException, DocumentException {
+        try {
+            String itextCommands = templateSelection(rdoc, pids);
+            renderFromTemplate(rdoc, doc, writer, fontMap, new StringReader(itextCommands));
         } catch (InstantiationException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (IllegalAccessException e) {
@@ -150,8 +159,6 @@ public class FirstPagePDFServiceImpl implements FirstPagePDFService {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (SAXException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } catch (DocumentException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (XPathExpressionException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
@@ -434,9 +441,7 @@ public class FirstPagePDFServiceImpl implements FirstPagePDFService {
             PdfWriter writer = PdfWriter.getInstance(doc, os);
             doc.open();
 
-            String itextCommands = templateParent(rdoc, path);
-
-            renderFromTemplate(rdoc, doc, writer, fontMap, new StringReader(itextCommands));
+            parent(rdoc, doc, writer, path, fontMap);
 
             doc.close();
             os.flush();
@@ -444,6 +449,16 @@ public class FirstPagePDFServiceImpl implements FirstPagePDFService {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+
+    }
+
+    @Override
+    public void parent(PreparedDocument rdoc, Document doc, PdfWriter writer, ObjectPidsPath path, FontMap fontMap) throws IOException, DocumentException {
+        try {
+            String itextCommands = templateParent(rdoc, path);
+
+            renderFromTemplate(rdoc, doc, writer, fontMap, new StringReader(itextCommands));
         } catch (InstantiationException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (IllegalAccessException e) {
@@ -457,7 +472,6 @@ public class FirstPagePDFServiceImpl implements FirstPagePDFService {
         } catch (JAXBException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
-
     }
 
     // Reprezentuje objekt do sablony pro zobrazeni
@@ -21,7 +21,6 @@ import cz.incad.kramerius.pdf.utils.pdf.DocumentUtils;
 import cz.incad.kramerius.pdf.utils.pdf.FontMap;
 import cz.incad.kramerius.service.ResourceBundleService;
 import cz.incad.kramerius.service.TextsService;
-import cz.incad.kramerius.utils.FedoraUtils;
 import cz.incad.kramerius.utils.IOUtils;
 import cz.incad.kramerius.utils.XMLUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
@@ -30,6 +29,7 @@ import cz.knav.pdf.PdfTextUnderImage;
 
 import org.xml.sax.SAXException;
 
+import javax.imageio.ImageIO;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -144,24 +144,27 @@ public class GeneratePDFServiceImpl extends AbstractPDFRenderSupport implements
             int pocetStranek = 0;
             List<AbstractPage> pages = new ArrayList<AbstractPage>(
                     rdoc.getPages());
-            while (!pages.isEmpty()) {
-                pocetStranek += 1;
-                AbstractPage page = pages.remove(0);
-                doc.newPage();
-                if (page instanceof ImagePage) {
-                    ImagePage iPage = (ImagePage) page;
-                    insertOutlinedImagePage(iPage, writer, doc, pdfContext,
-                            fetcher);
-                } else {
-                    TextPage tPage = (TextPage) page;
-                    insertOutlinedTextPage(tPage, writer, doc,
-                            rdoc.getDocumentTitle(), pdfContext);
-                }
-                os.flush();
-                if (brk.broken(page.getUuid())) {
-                    brokenPage = page.getUuid();
-                    rdoc.removePagesTill(page.getUuid());
-                    break;
+            try (PagePrefetcher prefetcher = new PagePrefetcher(imagePids(pages),
+                    this.fedoraAccess, djvUrl, fetcher)) {
+                while (!pages.isEmpty()) {
+                    pocetStranek += 1;
+                    AbstractPage page = pages.remove(0);
+                    doc.newPage();
+                    if (page instanceof ImagePage) {
+                        ImagePage iPage = (ImagePage) page;
+                        insertOutlinedImagePage(iPage, prefetcher.next(iPage.getUuid()),
+                                writer, doc, pdfContext, fetcher);
+                    } else {
+                        TextPage tPage = (TextPage) page;
+                        insertOutlinedTextPage(tPage, writer, doc,
+                                rdoc.getDocumentTitle(), pdfContext);
+                    }
+                    os.flush();
+                    if (brk.broken(page.getUuid())) {
+                        brokenPage = page.getUuid();
+                        rdoc.removePagesTill(page.getUuid());
+                        break;
+                    }
                 }
             }
 
@@ -224,19 +227,22 @@ public class GeneratePDFServiceImpl extends AbstractPDFRenderSupport implements
             doc.open();
 
             doc.newPage();
-            for (AbstractPage page : rdoc.getPages()) {
-                doc.newPage();
-                if (page instanceof ImagePage) {
-                    ImagePage iPage = (ImagePage) page;
-                    insertImage(iPage.getUuid(), writer, doc, (float) 1.0,
-                            imgServletUrl, fetcher, pdfContext.getFontMap()
-                                    .getRegistredFont("normal"));
-                } else {
-                    TextPage tPage = (TextPage) page;
-                    if (tPage.getOutlineTitle().trim().equals(""))
-                        throw new IllegalArgumentException(page.getUuid());
-                    insertOutlinedTextPage(tPage, writer, doc,
-                            rdoc.getDocumentTitle(), pdfContext);
+            try (PagePrefetcher prefetcher = new PagePrefetcher(imagePids(rdoc.getPages()),
+                    this.fedoraAccess, imgServletUrl, fetcher)) {
+                for (AbstractPage page : rdoc.getPages()) {
+                    doc.newPage();
+                    if (page instanceof ImagePage) {
+                        ImagePage iPage = (ImagePage) page;
+                        insertImage(prefetcher.next(iPage.getUuid()), writer, doc, (float) 1.0,
+                                imgServletUrl, fetcher, pdfContext.getFontMap()
+                                        .getRegistredFont("normal"));
+                    } else {
+                        TextPage tPage = (TextPage) page;
+                        if (tPage.getOutlineTitle().trim().equals(""))
+                            throw new IllegalArgumentException(page.getUuid());
+                        insertOutlinedTextPage(tPage, writer, doc,
+                                rdoc.getDocumentTitle(), pdfContext);
+                    }
                 }
             }
 
@@ -276,6 +282,16 @@ public class GeneratePDFServiceImpl extends AbstractPDFRenderSupport implements
 
     }
 
+    private static List<String> imagePids(List<AbstractPage> pages) {
+        List<String> pids = new ArrayList<String>();
+        for (AbstractPage page : pages) {
+            if (page instanceof ImagePage) {
+                pids.add(page.getUuid());
+            }
+        }
+        return pids;
+    }
+
     private void fillOutline(PdfOutline pdfRoot, OutlineItem rDocRoot) {
         OutlineItem[] children = rDocRoot.getChildren();
         for (OutlineItem outlineItem : children) {
@@ -405,8 +421,16 @@ public class GeneratePDFServiceImpl extends AbstractPDFRenderSupport implements
     public void insertOutlinedImagePage(ImagePage page, PdfWriter pdfWriter,
             Document document, PDFContext pdfContext, ImageFetcher fetcher)
             throws XPathExpressionException, IOException, DocumentException {
+        try (PagePrefetcher prefetcher = new PagePrefetcher(Arrays.asList(page.getUuid()), this.fedoraAccess, pdfContext.getDjvuUrl(), fetcher, 0, 1)) {
+            insertOutlinedImagePage(page, prefetcher.next(page.getUuid()), pdfWriter, document, pdfContext, fetcher);
+        }
+    }
+
+    public void insertOutlinedImagePage(ImagePage page, PagePrefetcher.PageImage image, PdfWriter pdfWriter,
+            Document document, PDFContext pdfContext, ImageFetcher fetcher)
+            throws XPathExpressionException, IOException, DocumentException {
         String pageNumber = page.getPageNumber();
-        insertImage(page.getUuid(), pdfWriter, document, 0.7f,
+        insertImage(image, pdfWriter, document, 0.7f,
                 pdfContext.getDjvuUrl(), fetcher, pdfContext.getFontMap()
                         .getRegistredFont(FontMap.NORMAL_FONT));
 
@@ -489,49 +513,52 @@ public class GeneratePDFServiceImpl extends AbstractPDFRenderSupport implements
             Document document, float percentage, String imgServletUrl,
             ImageFetcher fetcher, Font font) throws XPathExpressionException,
             IOException, DocumentException {
+        try (PagePrefetcher prefetcher = new PagePrefetcher(Arrays.asList(uuid), this.fedoraAccess, imgServletUrl, fetcher, 0, 1)) {
+            insertImage(prefetcher.next(uuid), pdfWriter, document, percentage, imgServletUrl, fetcher, font);
+        }
+    }
+
+    /**
+     * Inserts image loaded by {@link PagePrefetcher}; jpeg data are embedded directly, other formats are decoded
+     */
+    public void insertImage(PagePrefetcher.PageImage image, PdfWriter pdfWriter,
+            Document document, float percentage, String imgServletUrl,
+            ImageFetcher fetcher, Font font) throws XPathExpressionException,
+            IOException, DocumentException {
         try {
-            if (fedoraAccess.isImageFULLAvailable(uuid)) {
-                // bypass
-                // String imgUrl = createIMGFULL(uuid, imgServletUrl);
-                // kdyz je pdf, musi
-                String mimetypeString = fedoraAccess.getImageFULLMimeType(uuid);
-                ImageMimeType mimetype = ImageMimeType
-                        .loadFromMimeType(mimetypeString);
-                if (mimetype != null && (!ImageMimeType.PDF.equals(mimetype))) {
-                    BufferedImage javaImg = fetcher.fetch(uuid, imgServletUrl,
-                            mimetype, this.fedoraAccess);
-                    boolean textocr = this.fedoraAccess.isStreamAvailable(uuid,
-                            FedoraUtils.ALTO_STREAM);
-                    boolean useAlto = KConfiguration.getInstance()
-                            .getConfiguration()
-                            .getBoolean("pdfQueue.useAlto", true);
-                    if (textocr && useAlto) {
-                        try {
-                            org.w3c.dom.Document alto = XMLUtils
-                                    .parseDocument(this.fedoraAccess
-                                            .getDataStream(uuid,
-                                                    FedoraUtils.ALTO_STREAM));
-                            insertJavaImageWithOCR(document, percentage,
-                                    pdfWriter, alto, javaImg);
-                        } catch (ParserConfigurationException e) {
-                            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                            insertJavaImage(document, percentage, javaImg);
-                        } catch (SAXException e) {
-                            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                            insertJavaImage(document, percentage, javaImg);
+            if (image.isSecurityFail()) {
+                Chunk chunk = new Chunk(textsService.getText("security_fail",
+                        localeProvider.get()), font);
+                Paragraph na = new Paragraph(chunk);
+                document.add(na);
+            } else if (image.isAvailable()) {
+                org.w3c.dom.Document alto = image.getAlto();
+                if (image.getJpeg() != null) {
+                    try {
+                        if (alto != null) {
+                            insertJpegImageWithOCR(document, percentage, pdfWriter, alto, image.getJpeg());
+                        } else {
+                            insertJpegImage(document, percentage, image.getJpeg());
                         }
-
-                    } else {
-                        insertJavaImage(document, percentage, javaImg);
+                        return;
+                    } catch (BadElementException | IOException e) {
+                        // jpeg which cannot be embedded directly is decoded and encoded again
+                        LOGGER.log(Level.WARNING, "cannot embed jpeg of '" + image.getPid() + "': " + e.getMessage());
                     }
+                }
+                BufferedImage javaImg = image.getImage();
+                if (javaImg == null && image.getJpeg() != null) {
+                    javaImg = ImageIO.read(new ByteArrayInputStream(image.getJpeg()));
+                }
+                if (javaImg == null) {
+                    javaImg = fetcher.fetch(image.getPid(), imgServletUrl,
+                            image.getMimetype(), this.fedoraAccess);
+                }
+                if (alto != null) {
+                    insertJavaImageWithOCR(document, percentage,
+                            pdfWriter, alto, javaImg);
                 } else {
-                    String text = textsService.getText("image_not_available",
-                            localeProvider.get());
-                    text = text != null ? text : "image_not_available";
-                    Chunk chunk = new Chunk(text, font);
-                    Paragraph na = new Paragraph();
-                    na.add(chunk);
-                    document.add(na);
+                    insertJavaImage(document, percentage, javaImg);
                 }
             } else {
                 String text = textsService.getText("image_not_available",
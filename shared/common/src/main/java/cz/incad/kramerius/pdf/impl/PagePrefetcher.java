@@ -0,0 +1,280 @@
+package cz.incad.kramerius.pdf.impl;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import cz.incad.kramerius.FedoraAccess;
+import cz.incad.kramerius.utils.FedoraUtils;
+import cz.incad.kramerius.utils.IOUtils;
+import cz.incad.kramerius.utils.XMLUtils;
+import cz.incad.kramerius.utils.conf.KConfiguration;
+import cz.incad.kramerius.utils.imgs.ImageMimeType;
+
+/**
+ * Prefetches images of the pages ahead of the pdf writer.
+ * <br>
+ * Secured calls (availability, mimetype, opening of the streams) are made by the calling thread because rights
+ * are resolved from the current request; reading of the streams, decoding of the images and parsing of ALTO run
+ * in the bounded pool. At most <code>pdfQueue.prefetch.pages</code> pages are held in memory; jpeg images are kept
+ * as the original data and embedded without decoding.
+ */
+public class PagePrefetcher implements Closeable {
+
+    public static final Logger LOGGER = Logger.getLogger(PagePrefetcher.class.getName());
+
+    private final Iterator<String> pids;
+    private final Deque<Prefetched> window = new ArrayDeque<Prefetched>();
+    private final int windowSize;
+    private final ExecutorService executor;
+
+    private final FedoraAccess fedoraAccess;
+    private final String imgServletUrl;
+    private final ImageFetcher fetcher;
+    private final boolean useAlto;
+
+    /**
+     * Creates prefetcher configured by <code>pdfQueue.prefetch.*</code> properties
+     * @param pids Pids of image pages in the order of writing
+     * @param fedoraAccess FedoraAccess
+     * @param imgServletUrl Image servlet url (see {@link ImageFetcher})
+     * @param fetcher Image fetcher
+     */
+    public PagePrefetcher(List<String> pids, FedoraAccess fedoraAccess, String imgServletUrl, ImageFetcher fetcher) {
+        this(pids, fedoraAccess, imgServletUrl, fetcher,
+                KConfiguration.getInstance().getConfiguration().getInt("pdfQueue.prefetch.threads", 2),
+                KConfiguration.getInstance().getConfiguration().getInt("pdfQueue.prefetch.pages", 4));
+    }
+
+    PagePrefetcher(List<String> pids, FedoraAccess fedoraAccess, String imgServletUrl, ImageFetcher fetcher, int threads, int windowSize) {
+        this.pids = pids.iterator();
+        this.fedoraAccess = fedoraAccess;
+        this.imgServletUrl = imgServletUrl;
+        this.fetcher = fetcher;
+        this.useAlto = KConfiguration.getInstance().getConfiguration().getBoolean("pdfQueue.useAlto", true);
+        this.windowSize = Math.max(windowSize, 1);
+        // no threads means everything is loaded by the calling thread
+        this.executor = threads > 0 ? Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "pdf-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Returns image of the next page; pages must be requested in the order given in the constructor
+     * @param pid Pid of the page
+     * @return Loaded page image
+     * @throws IOException
+     */
+    public PageImage next(String pid) throws IOException {
+        fill();
+        Prefetched first = this.window.pollFirst();
+        if (first == null || !first.pid.equals(pid)) {
+            // out of order; should not happen
+            if (first != null) first.cancel();
+            return new Prefetched(pid).get();
+        }
+        PageImage image = first.get();
+        fill();
+        return image;
+    }
+
+    private void fill() throws IOException {
+        while (this.window.size() < this.windowSize && this.pids.hasNext()) {
+            Prefetched prefetched = new Prefetched(this.pids.next());
+            prefetched.open();
+            this.window.addLast(prefetched);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Prefetched prefetched : this.window) {
+            prefetched.cancel();
+        }
+        this.window.clear();
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * One page in the prefetch window
+     */
+    private class Prefetched {
+
+        private final String pid;
+        private PageImage opened;
+        private InputStream imageStream;
+        private InputStream altoStream;
+        private Future<PageImage> future;
+
+        Prefetched(String pid) {
+            this.pid = pid;
+        }
+
+        /** Secured part; runs in the calling thread */
+        void open() throws IOException {
+            try {
+                if (!fedoraAccess.isImageFULLAvailable(pid)) {
+                    this.opened = PageImage.notAvailable(pid);
+                    return;
+                }
+                ImageMimeType mimetype = ImageMimeType.loadFromMimeType(fedoraAccess.getImageFULLMimeType(pid));
+                if (mimetype == null || ImageMimeType.PDF.equals(mimetype)) {
+                    this.opened = PageImage.notAvailable(pid);
+                    return;
+                }
+                this.opened = new PageImage(pid, mimetype);
+                if (mimetype.equals(ImageMimeType.JPEG) || mimetype.javaNativeSupport()) {
+                    this.imageStream = fetcher.openStream(pid, imgServletUrl, fedoraAccess);
+                }
+                if (useAlto && fedoraAccess.isStreamAvailable(pid, FedoraUtils.ALTO_STREAM)) {
+                    this.altoStream = fedoraAccess.getDataStream(pid, FedoraUtils.ALTO_STREAM);
+                }
+                if (executor != null) {
+                    this.future = executor.submit(this::load);
+                }
+            } catch (cz.incad.kramerius.security.SecurityException e) {
+                LOGGER.log(Level.INFO, e.getMessage());
+                closeStreams();
+                this.opened = PageImage.securityFail(pid);
+            }
+        }
+
+        /** Unsecured part; reads and decodes opened streams */
+        PageImage load() throws IOException {
+            try {
+                PageImage image = this.opened;
+                if (this.imageStream != null) {
+                    byte[] data = IOUtils.bos(this.imageStream, true);
+                    if (image.getMimetype().equals(ImageMimeType.JPEG)) {
+                        image.jpeg = data;
+                    } else {
+                        image.image = ImageIO.read(new ByteArrayInputStream(data));
+                    }
+                }
+                if (this.altoStream != null) {
+                    try {
+                        image.alto = XMLUtils.parseDocument(this.altoStream);
+                    } catch (ParserConfigurationException | SAXException e) {
+                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    }
+                }
+                return image;
+            } finally {
+                closeStreams();
+            }
+        }
+
+        PageImage get() throws IOException {
+            if (this.opened == null) {
+                open();
+            }
+            if (this.future == null) {
+                return this.opened.isAvailable() ? load() : this.opened;
+            }
+            try {
+                return this.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            }
+        }
+
+        void cancel() {
+            if (this.future == null || this.future.cancel(true)) {
+                closeStreams();
+            }
+        }
+
+        private void closeStreams() {
+            IOUtils.tryClose(this.imageStream);
+            IOUtils.tryClose(this.altoStream);
+            this.imageStream = null;
+            this.altoStream = null;
+        }
+    }
+
+    /**
+     * Loaded image of the page
+     */
+    public static class PageImage {
+
+        private final String pid;
+        private final ImageMimeType mimetype;
+        private final boolean securityFail;
+        private byte[] jpeg;
+        private BufferedImage image;
+        private org.w3c.dom.Document alto;
+
+        PageImage(String pid, ImageMimeType mimetype) {
+            this(pid, mimetype, false);
+        }
+
+        private PageImage(String pid, ImageMimeType mimetype, boolean securityFail) {
+            this.pid = pid;
+            this.mimetype = mimetype;
+            this.securityFail = securityFail;
+        }
+
+        static PageImage notAvailable(String pid) {
+            return new PageImage(pid, null, false);
+        }
+
+        static PageImage securityFail(String pid) {
+            return new PageImage(pid, null, true);
+        }
+
+        public String getPid() {
+            return pid;
+        }
+
+        public boolean isAvailable() {
+            return this.mimetype != null;
+        }
+
+        public boolean isSecurityFail() {
+            return securityFail;
+        }
+
+        public ImageMimeType getMimetype() {
+            return mimetype;
+        }
+
+        /** Original jpeg data or null if the image is not jpeg */
+        public byte[] getJpeg() {
+            return jpeg;
+        }
+
+        /** Decoded image or null if the image must be decoded by {@link ImageFetcher} (non native formats) or it is jpeg */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public org.w3c.dom.Document getAlto() {
+            return alto;
+        }
+    }
+}
@@ -87,24 +87,29 @@ public class SimplePDFServiceImpl implements SimplePDFService {
 
     @Override
     public void pdf(PreparedDocument rdoc, OutputStream os, FontMap fontMap) throws IOException, DocumentException {
+        Document doc = DocumentUtils.createDocument(rdoc);
+        PdfWriter pdfWriter = PdfWriter.getInstance(doc, os);
+        doc.open();
+
+        pdf(rdoc, doc, pdfWriter, fontMap);
+
+        doc.close();
+        os.flush();
+    }
+
+    @Override
+    public void pdf(PreparedDocument rdoc, Document doc, PdfWriter pdfWriter, FontMap fontMap) throws IOException, DocumentException {
         
         ITextCommands cmnds = null;
         try {
             String template = template(rdoc, this.fedoraAccess, this.textsService, this.localeProvider.get());
 
-            Document doc = DocumentUtils.createDocument(rdoc);
-            PdfWriter pdfWriter = PdfWriter.getInstance(doc, os);
-            doc.open();
-
             cmnds = new ITextCommands();
             cmnds.load(XMLUtils.parseDocument(new StringReader(template)).getDocumentElement(), cmnds);
 
             RenderPDF render = new RenderPDF(fontMap, this.fedoraAccess);
             render.render(doc, pdfWriter, cmnds);
 
-            doc.close();
-            os.flush();
-
         } catch (InstantiationException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (IllegalAccessException e) {
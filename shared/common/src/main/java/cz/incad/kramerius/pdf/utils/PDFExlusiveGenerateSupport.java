@@ -17,27 +17,167 @@
 package cz.incad.kramerius.pdf.utils;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 import cz.incad.kramerius.utils.conf.KConfiguration;
 
 public class PDFExlusiveGenerateSupport {
 
+    public static final Logger LOGGER = Logger.getLogger(PDFExlusiveGenerateSupport.class.getName());
+
     // controls genrating PDF
     public static final Semaphore PDF_SEMAPHORE = new Semaphore(KConfiguration
             .getInstance().getConfiguration()
             .getInt("pdfQueue.activeProcess", 5));
 
-    // stores handle for pdf
-    public static HashMap<String, File> PREPARED_FILES = new HashMap<String, File>();
+    // releases permits of responses whose entity has never been written
+    private static final ScheduledExecutorService PERMIT_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "pdf-permit-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // stores handle for pdf; ordered by time of push, bounded by count, age and size of the files
+    private static final LinkedHashMap<String, PreparedFile> PREPARED_FILES = new LinkedHashMap<String, PreparedFile>();
+    private static long preparedSize = 0;
+
+    /**
+     * Hands the acquired permit of {@link #PDF_SEMAPHORE} over to the response streaming the pdf.
+     * The permit is released when the pdf has been written, or after <code>pdfQueue.permitTimeout</code> seconds
+     * if the container never starts writing it (HEAD request, error before the entity is written)
+     */
+    public static Permit handOverPermit() {
+        return handOverPermit(KConfiguration.getInstance().getConfiguration().getLong("pdfQueue.permitTimeout", 60) * 1000);
+    }
+
+    static Permit handOverPermit(long timeoutMillis) {
+        Permit permit = new Permit();
+        permit.timeout = PERMIT_TIMER.schedule(() -> {
+            if (permit.release()) {
+                LOGGER.warning("pdf has not been written, releasing its permit");
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        return permit;
+    }
+
+    public static void pushFile(String uuid, File renderedPDF) {
+        pushFile(uuid, renderedPDF, System.currentTimeMillis());
+    }
+
+    static synchronized void pushFile(String uuid, File renderedPDF, long now) {
+        evictExpired(now);
+        PreparedFile previous = PREPARED_FILES.put(uuid, new PreparedFile(renderedPDF, now));
+        if (previous != null) {
+            delete(previous);
+        }
+        preparedSize += renderedPDF.length();
+
+        int maxFiles = KConfiguration.getInstance().getConfiguration().getInt("pdfQueue.prepared.maxFiles", 20);
+        long quota = KConfiguration.getInstance().getConfiguration().getLong("pdfQueue.prepared.quota", 1024) * 1024 * 1024;
+        Iterator<Map.Entry<String, PreparedFile>> it = PREPARED_FILES.entrySet().iterator();
+        while (it.hasNext() && (PREPARED_FILES.size() > maxFiles || preparedSize > quota)) {
+            Map.Entry<String, PreparedFile> oldest = it.next();
+            LOGGER.warning("evicting prepared pdf '" + oldest.getKey() + "' (store is full)");
+            it.remove();
+            delete(oldest.getValue());
+        }
+    }
+
+    /**
+     * Removes file from the store; returns null if there is no such file or it has expired
+     */
+    public static File popFile(String uuid) {
+        return popFile(uuid, System.currentTimeMillis());
+    }
+
+    static synchronized File popFile(String uuid, long now) {
+        evictExpired(now);
+        PreparedFile prepared = PREPARED_FILES.remove(uuid);
+        if (prepared != null) {
+            preparedSize -= prepared.size;
+            return prepared.file;
+        }
+        return null;
+    }
+
+    private static void evictExpired(long now) {
+        long ttl = KConfiguration.getInstance().getConfiguration().getLong("pdfQueue.prepared.ttl", 600) * 1000;
+        Iterator<PreparedFile> it = PREPARED_FILES.values().iterator();
+        while (it.hasNext()) {
+            PreparedFile prepared = it.next();
+            if (now - prepared.created <= ttl) break;
+            it.remove();
+            delete(prepared);
+        }
+    }
 
-    public static synchronized void pushFile(String uuid, File renderedPDF) {
-        PREPARED_FILES.put(uuid, renderedPDF);
+    static synchronized void clear() {
+        for (PreparedFile prepared : PREPARED_FILES.values()) {
+            delete(prepared);
+        }
+        PREPARED_FILES.clear();
     }
 
-    public static synchronized File popFile(String uuid) {
-        return PREPARED_FILES.remove(uuid);
+    private static void delete(PreparedFile prepared) {
+        preparedSize -= prepared.size;
+        prepared.file.delete();
     }
 
+    /**
+     * Permit handed over to the response; released exactly once
+     */
+    public static class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        private Permit() {
+        }
+
+        /**
+         * The pdf is being written; the permit is not released by the timeout any more, but by {@link #release()}
+         * when writing has finished
+         */
+        public void writing() {
+            ScheduledFuture<?> t = this.timeout;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+
+        /**
+         * Releases the permit if it has not been released yet
+         * @return true if this call has released the permit
+         */
+        public boolean release() {
+            if (this.released.compareAndSet(false, true)) {
+                writing();
+                PDF_SEMAPHORE.release();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class PreparedFile {
+
+        private final File file;
+        private final long size;
+        private final long created;
+
+        PreparedFile(File file, long created) {
+            this.file = file;
+            this.size = file.length();
+            this.created = created;
+        }
+    }
 }
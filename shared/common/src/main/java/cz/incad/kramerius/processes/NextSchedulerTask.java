@@ -1,16 +1,22 @@
 package cz.incad.kramerius.processes;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.TimerTask;
+import java.util.Map;
 import java.util.logging.Level;
 
 import cz.incad.kramerius.utils.conf.KConfiguration;
 
 /**
  * Scheduler is able to start new process
+ * <br>
+ * One pass starts as many planned processes as free slots allow (<code>processQueue.activeProcess</code> in total
+ * and optional <code>processQueue.activeProcess.&lt;definition id&gt;</code> per definition).
+ * Running processes are kept in memory by the scheduler; the periodic pass reloads definitions
+ * and reconciles running processes with the database.
  * @author pavels
  */
-public class NextSchedulerTask extends TimerTask {
+public class NextSchedulerTask implements Runnable {
 
 	public static final java.util.logging.Logger LOGGER = java.util.logging.Logger
 			.getLogger(NextSchedulerTask.class.getName());
@@ -18,36 +24,49 @@ public class NextSchedulerTask extends TimerTask {
 	private ProcessScheduler processScheduler;
 	private LRProcessManager lrProcessManager;
 	private DefinitionManager definitionManager;
+	// uuid -> definition id; accessed only from the scheduler thread
+	private Map<String, String> runningProcesses;
+	private boolean periodic;
 	
-	public NextSchedulerTask(LRProcessManager lrProcessManager, DefinitionManager definitionManager, ProcessScheduler processScheduler,  long interval) {
+	public NextSchedulerTask(LRProcessManager lrProcessManager, DefinitionManager definitionManager, ProcessScheduler processScheduler, Map<String, String> runningProcesses, boolean periodic) {
 		super();
 		this.lrProcessManager = lrProcessManager;
 		this.definitionManager = definitionManager;
 		this.processScheduler = processScheduler;
+		this.runningProcesses = runningProcesses;
+		this.periodic = periodic;
 	}
 
 	@Override
 	public void run() {
 		try {
-			// neco delej
-			definitionManager.load();
-			List<LRProcess> plannedProcess = lrProcessManager.getPlannedProcess(allowRunningProcesses());
-			if (!plannedProcess.isEmpty()) {
-				int runningProcesses = 0;
-				List<LRProcess> longRunningProcesses = this.lrProcessManager.getLongRunningProcessesAsFlat(null, null, null);
-				for (LRProcess lrProcess : longRunningProcesses) {
-					if (lrProcess.getProcessState().equals(States.RUNNING)) {
-						runningProcesses +=1;
+			if (this.periodic) {
+				definitionManager.load();
+				reconcileRunningProcesses();
+			}
+			int freeSlots = allowRunningProcesses() - this.runningProcesses.size();
+			if (freeSlots > 0) {
+				Map<String, Integer> runningByDefinition = runningByDefinition();
+				List<LRProcess> plannedProcess = lrProcessManager.getPlannedProcess(freeSlots + plannedLookahead());
+				for (LRProcess lrProcess : plannedProcess) {
+					if (freeSlots <= 0) break;
+					String definitionId = lrProcess.getDefinitionId();
+					int running = runningByDefinition.containsKey(definitionId) ? runningByDefinition.get(definitionId) : 0;
+					if (running >= allowRunningProcesses(definitionId)) {
+						continue;
 					}
-				}
-				if (runningProcesses < allowRunningProcesses()) {
-					LRProcess lrProcess = plannedProcess.get(0);
 					lrProcess.startMe(false, this.processScheduler.getApplicationLib(), this.processScheduler.getAdditionalJarFiles());
+					this.runningProcesses.put(lrProcess.getUUID(), definitionId);
+					runningByDefinition.put(definitionId, running + 1);
+					freeSlots -= 1;
 				}
-			}  else {
-				LOGGER.fine("no planned process found");
+				if (plannedProcess.isEmpty()) {
+					LOGGER.fine("no planned process found");
+				}
+			}
+			if (this.periodic) {
+				this.processScheduler.scheduleNextTask();
 			}
-			this.processScheduler.scheduleNextTask();
 		} catch(Throwable e) {
 			this.processScheduler.shutdown();
 			LOGGER.log(Level.SEVERE,e.getMessage(), e);
@@ -55,8 +74,32 @@ public class NextSchedulerTask extends TimerTask {
 		
 	}
 
+	private void reconcileRunningProcesses() {
+		this.runningProcesses.clear();
+		for (LRProcess lrProcess : this.lrProcessManager.getLongRunningProcesses(States.RUNNING)) {
+			this.runningProcesses.put(lrProcess.getUUID(), lrProcess.getDefinitionId());
+		}
+	}
+
+	private Map<String, Integer> runningByDefinition() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (String definitionId : this.runningProcesses.values()) {
+			Integer count = counts.get(definitionId);
+			counts.put(definitionId, count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
 	private int allowRunningProcesses() {
 		String aProcess = KConfiguration.getInstance().getProperty("processQueue.activeProcess","1");
 		return Integer.parseInt(aProcess);
 	}
+
+	private int allowRunningProcesses(String definitionId) {
+		return KConfiguration.getInstance().getConfiguration().getInt("processQueue.activeProcess." + definitionId, Integer.MAX_VALUE);
+	}
+
+	private int plannedLookahead() {
+		return KConfiguration.getInstance().getConfiguration().getInt("processQueue.plannedLookahead", 100);
+	}
 }
@@ -25,6 +25,13 @@ public interface ProcessScheduler {
 	public String getApplicationLib();
 	
 	public String[] getAdditionalJarFiles();
+
+	/**
+	 * Notifies scheduler about planned or finished process; the queue is checked immediately,
+	 * without waiting for the next periodic check
+	 * @param process Process with changed state
+	 */
+	public void processStateChanged(LRProcess process);
 	
 	/**
 	 * Shutdown scheduler
@@ -1,6 +1,5 @@
 package cz.incad.kramerius.processes;
 
-import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.hazelcast.internal.json.Json;
@@ -76,7 +75,7 @@ public class SetPolicyProcess {
         } else {
             ProcessStarter.updateName(String.format("Změna viditelnosti %s (%s, %s)", pid, policy, scopeDesc));
         }
-        Injector injector = Guice.createInjector(new SolrModule(), new ResourceIndexModule(), new RepoModule(), new NullStatisticsModule());
+        Injector injector = ProcessStarter.createInjector(new SolrModule(), new ResourceIndexModule(), new RepoModule(), new NullStatisticsModule());
         KrameriusRepositoryApi repository = injector.getInstance(Key.get(KrameriusRepositoryApiImpl.class)); //FIXME: hardcoded implementation
 
         //check object exists in repository
@@ -19,8 +19,10 @@ package cz.incad.kramerius.processes.impl;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +38,7 @@ import cz.incad.kramerius.processes.LRProcessDefinition;
 import cz.incad.kramerius.processes.LRProcessManager;
 import cz.incad.kramerius.processes.States;
 import cz.incad.kramerius.processes.starter.ProcessStarter;
+import cz.incad.kramerius.processes.starter.ProcessWorker;
 import cz.incad.kramerius.security.User;
 import cz.incad.kramerius.utils.IPAddressUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
@@ -134,6 +137,14 @@ public abstract class AbstractLRProcessImpl implements LRProcess {
     @Override
     public void startMe(boolean wait, String krameriusAppLib,
             String... additionalJarFiles) {
+        if (!wait && ProcessWorkerPool.accepts(this.definition) && startInWorker(krameriusAppLib, additionalJarFiles)) {
+            return;
+        }
+        startInOwnJvm(wait, krameriusAppLib, additionalJarFiles);
+    }
+
+    private void startInOwnJvm(boolean wait, String krameriusAppLib,
+            String... additionalJarFiles) {
         try {
             File processWorkingDir = processWorkingDirectory();
 
@@ -189,31 +200,17 @@ public abstract class AbstractLRProcessImpl implements LRProcess {
             }
 
             // create CLASSPATH
-            StringBuffer buffer = new StringBuffer();
             String libsDirPath = this.definition.getLibsDir();
             if (libsDirPath == null) {
                 libsDirPath = krameriusAppLib;
             }
-
-            File libsDir = new File(libsDirPath);
-            File[] listFiles = libsDir.listFiles();
-            if (listFiles != null) {
-                for (File file : listFiles) {
-                    buffer.append(file.getAbsolutePath());
-                    buffer.append(File.pathSeparator);
-                }
-            }
-            // TODO: co delat pri zmene definice?
-            for (String string : additionalJarFiles) {
-                buffer.append(new File(string).getAbsolutePath());
-                buffer.append(File.pathSeparator);
-            }
+            String classpath = processClasspath(libsDirPath, additionalJarFiles);
 
             ProcessBuilder processBuilder = new ProcessBuilder(command);
             processBuilder = processBuilder.directory(processWorkingDir);
 
             processBuilder.environment().put(ProcessStarter.CLASSPATH_NAME,
-                    buffer.toString());
+                    classpath);
             this.setStartTime(System.currentTimeMillis());
             this.state = States.RUNNING;
 
@@ -222,7 +219,7 @@ public abstract class AbstractLRProcessImpl implements LRProcess {
             manager.updateLongRunningProcessStartedDate(this);
 
             LOGGER.fine("" + command);
-            LOGGER.fine(buffer.toString());
+            LOGGER.fine(classpath);
 
             Process process = processBuilder.start();
 
@@ -244,6 +241,111 @@ public abstract class AbstractLRProcessImpl implements LRProcess {
         }
     }
 
+    /**
+     * Runs the process in the pool of worker JVMs; the job file contains the same properties and arguments
+     * which are passed on the command line of standalone process JVM
+     * @return false if the process has not been queued for a worker
+     * @see ProcessWorkerPool
+     */
+    private boolean startInWorker(final String krameriusAppLib, final String... additionalJarFiles) {
+        try {
+            File processWorkingDir = processWorkingDirectory();
+            Properties job = new Properties();
+            for (String jpParam : this.definition.getJavaProcessParameters()) {
+                // only system properties make sense in shared JVM
+                if (jpParam.startsWith("-D") && jpParam.contains("=")) {
+                    int index = jpParam.indexOf('=');
+                    job.setProperty(ProcessWorker.PROPERTY_PREFIX + jpParam.substring(2, index), jpParam.substring(index + 1));
+                }
+            }
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.MAIN_CLASS_KEY, this.definition.getMainClass());
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + IPAddressUtils.X_IP_FORWARD, String.valueOf(this.ipAddress));
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.UUID_KEY, this.uuid);
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.TOKEN_KEY, String.valueOf(this.getGroupToken()));
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.AUTH_TOKEN_KEY, String.valueOf(this.getAuthToken()));
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.SHOULD_CHECK_ERROR_STREAM, String.valueOf(this.definition.isCheckedErrorStream()));
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.SOUT_FILE, standardOutFile(processWorkingDir).getAbsolutePath());
+            job.setProperty(ProcessWorker.PROPERTY_PREFIX + ProcessStarter.SERR_FILE, errorOutFile(processWorkingDir).getAbsolutePath());
+            for (Object key : this.parametersMapping.keySet()) {
+                job.setProperty(ProcessWorker.PROPERTY_PREFIX + key, this.parametersMapping.getProperty(key.toString()));
+            }
+            List<String> arguments = new ArrayList<String>(this.definition.getParameters());
+            arguments.addAll(this.getParameters());
+            for (int i = 0; i < arguments.size(); i++) {
+                job.setProperty(ProcessWorker.ARGUMENT_PREFIX + i, arguments.get(i));
+            }
+
+            final File jobFile = new File(processWorkingDir, "worker-job.properties");
+            // process still waiting in the queue is submitted again by the scheduler; its job file may be being read
+            if (!jobFile.exists()) {
+                try (OutputStream os = new FileOutputStream(jobFile)) {
+                    job.store(os, this.definition.getId());
+                }
+            }
+
+            return ProcessWorkerPool.getInstance(krameriusAppLib, additionalJarFiles).submit(new ProcessWorkerPool.Job() {
+                @Override
+                public String getId() {
+                    return uuid;
+                }
+
+                @Override
+                public File getJobFile() {
+                    return jobFile;
+                }
+
+                @Override
+                public void started() {
+                    setStartTime(System.currentTimeMillis());
+                    state = States.RUNNING;
+                    manager.updateLongRunningProcessState(AbstractLRProcessImpl.this);
+                    manager.updateLongRunningProcessStartedDate(AbstractLRProcessImpl.this);
+                }
+
+                @Override
+                public void notStarted() {
+                    startInOwnJvm(false, krameriusAppLib, additionalJarFiles);
+                }
+
+                @Override
+                public void terminated() {
+                    // final state could have been reported by the worker (e.g. KILLED from its shutdown hook)
+                    LRProcess current = manager.getLongRunningProcess(uuid);
+                    if (current == null || current.getProcessState() == States.RUNNING) {
+                        state = States.FAILED;
+                        setFinishedTime(System.currentTimeMillis());
+                        manager.updateLongRunningProcessState(AbstractLRProcessImpl.this);
+                        manager.updateLongRunningProcessFinishedDate(AbstractLRProcessImpl.this);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates CLASSPATH from all files of the libs directory and additional jar files
+     */
+    static String processClasspath(String libsDirPath, String... additionalJarFiles) {
+        StringBuffer buffer = new StringBuffer();
+        File libsDir = new File(libsDirPath);
+        File[] listFiles = libsDir.listFiles();
+        if (listFiles != null) {
+            for (File file : listFiles) {
+                buffer.append(file.getAbsolutePath());
+                buffer.append(File.pathSeparator);
+            }
+        }
+        // TODO: co delat pri zmene definice?
+        for (String string : additionalJarFiles) {
+            buffer.append(new File(string).getAbsolutePath());
+            buffer.append(File.pathSeparator);
+        }
+        return buffer.toString();
+    }
+
     public Properties getParametersMapping() {
         return parametersMapping;
     }
@@ -50,6 +50,7 @@ import cz.incad.kramerius.processes.LRProcessManager;
 import cz.incad.kramerius.processes.LRProcessOrdering;
 import cz.incad.kramerius.processes.NotReadyException;
 import cz.incad.kramerius.processes.ProcessManagerException;
+import cz.incad.kramerius.processes.ProcessScheduler;
 import cz.incad.kramerius.processes.States;
 import cz.incad.kramerius.processes.database.ProcessDatabaseUtils;
 import cz.incad.kramerius.security.User;
@@ -83,6 +84,10 @@ public class DatabaseProcessManager implements LRProcessManager {
     @Inject
     private LoggedUsersSingleton loggedUsersSingleton;
 
+    // scheduler is bound only in the web application, not in the processes
+    @Inject(optional = true)
+    private Provider<ProcessScheduler> processSchedulerProvider;
+
     private final Lock reentrantLock = new ReentrantLock();
 
     public DatabaseProcessManager() {
@@ -122,11 +127,14 @@ public class DatabaseProcessManager implements LRProcessManager {
         Connection connection = null;
         try {
             connection = getConnectionOrThrowNotReadyException();
+            Integer processId;
             if (lp.getUser() == null) {
-                return registerProcess(connection, lp, PropertiesStoreUtils.storeProperties(parametersMapping));
+                processId = registerProcess(connection, lp, PropertiesStoreUtils.storeProperties(parametersMapping));
             } else {
-                return registerProcess(connection, lp, /* this.userProvider.get() */lp.getUser(), lp.getLoggedUserKey(), PropertiesStoreUtils.storeProperties(parametersMapping));
+                processId = registerProcess(connection, lp, /* this.userProvider.get() */lp.getUser(), lp.getLoggedUserKey(), PropertiesStoreUtils.storeProperties(parametersMapping));
             }
+            notifyScheduler(lp);
+            return processId;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             return null;
@@ -356,11 +364,18 @@ public class DatabaseProcessManager implements LRProcessManager {
             String processUuid = lrProcess.getUUID();
             LOGGER.fine("params is " + val + "," + processUuid);
             new JDBCUpdateTemplate(connection).executeUpdate("update processes set STATUS = ? where UUID = ?", val, processUuid);
+            notifyScheduler(lrProcess);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
     }
 
+    private void notifyScheduler(LRProcess lrProcess) {
+        if (this.processSchedulerProvider != null) {
+            this.processSchedulerProvider.get().processStateChanged(lrProcess);
+        }
+    }
+
 
     @Override
     public void updateLongRunninngProcessBatchState(LRProcess lrProcess) {
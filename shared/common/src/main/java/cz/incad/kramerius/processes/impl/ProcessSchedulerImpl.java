@@ -16,18 +16,32 @@
  */
 package cz.incad.kramerius.processes.impl;
 
-import java.util.Timer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.inject.Inject;
 
 import cz.incad.kramerius.processes.DefinitionManager;
+import cz.incad.kramerius.processes.LRProcess;
 import cz.incad.kramerius.processes.LRProcessManager;
 import cz.incad.kramerius.processes.NextSchedulerTask;
 import cz.incad.kramerius.processes.ProcessScheduler;
+import cz.incad.kramerius.processes.States;
 import cz.incad.kramerius.utils.conf.KConfiguration;
 
+/**
+ * Process scheduler; all passes run in one scheduler thread. Queue is checked immediately when a process
+ * is planned or finished and periodically (<code>processQueue.checkInterval</code>) as a fallback for events
+ * which are not seen by this node.
+ */
 public class ProcessSchedulerImpl implements ProcessScheduler {
 
 	public static final Logger LOGGER = Logger.getLogger(ProcessScheduler.class.getName());
@@ -39,7 +53,13 @@ public class ProcessSchedulerImpl implements ProcessScheduler {
 	private String applicationLib;
 	private String[]jarFiles;
 	
-	private Timer timer;
+	private final ScheduledExecutorService executor;
+	private ScheduledFuture<?> nextTask;
+	private volatile boolean started = false;
+	// coalesces event driven checks
+	private final AtomicBoolean checkPending = new AtomicBoolean(false);
+	// uuid -> definition id of running processes; accessed only from the scheduler thread
+	private final Map<String, String> runningProcesses = new HashMap<String, String>();
 	
 	
 	@Inject
@@ -48,7 +68,11 @@ public class ProcessSchedulerImpl implements ProcessScheduler {
 		super();
 		this.lrProcessManager = lrProcessManager;
 		this.definitionManager = definitionManager;
-		this.timer = new Timer(ProcessSchedulerImpl.class.getName()+"-thread",true);
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, ProcessSchedulerImpl.class.getName()+"-thread");
+			thread.setDaemon(true);
+			return thread;
+		});
 		
 	}
 
@@ -66,14 +90,46 @@ public class ProcessSchedulerImpl implements ProcessScheduler {
 		this.jarFiles = jarFiles;
 		String sinterval  = KConfiguration.getInstance().getProperty("processQueue.checkInterval","10000");
 		this.interval =  Integer.parseInt(sinterval);
+		if (KConfiguration.getInstance().getConfiguration().getInt("processQueue.workers", 0) > 0) {
+			// worker JVMs are started in advance
+			ProcessWorkerPool.getInstance(applicationLib, jarFiles);
+		}
 		//this.scheduleNextTask();
 	}
 
 	@Override
-	public void scheduleNextTask() {
-		this.timer.purge();
-		NextSchedulerTask schedulerTsk = new NextSchedulerTask(this.lrProcessManager, this.definitionManager,this, this.interval);
-		this.timer.schedule(schedulerTsk, this.interval);
+	public synchronized void scheduleNextTask() {
+		if (this.executor.isShutdown()) return;
+		if (this.nextTask != null) {
+			this.nextTask.cancel(false);
+		}
+		NextSchedulerTask schedulerTsk = new NextSchedulerTask(this.lrProcessManager, this.definitionManager, this, this.runningProcesses, true);
+		// the first pass runs immediately, so running processes are loaded before any event driven pass
+		this.nextTask = this.executor.schedule(schedulerTsk, this.started ? this.interval : 0, TimeUnit.MILLISECONDS);
+		this.started = true;
+	}
+
+	@Override
+	public void processStateChanged(LRProcess process) {
+		if (!this.started) return;
+		States state = process.getProcessState();
+		// running processes are started by the scheduler itself
+		if (state == States.RUNNING) return;
+		try {
+			if (state != States.PLANNED) {
+				String uuid = process.getUUID();
+				this.executor.execute(() -> this.runningProcesses.remove(uuid));
+			}
+			if (this.checkPending.compareAndSet(false, true)) {
+				NextSchedulerTask schedulerTsk = new NextSchedulerTask(this.lrProcessManager, this.definitionManager, this, this.runningProcesses, false);
+				this.executor.execute(() -> {
+					this.checkPending.set(false);
+					schedulerTsk.run();
+				});
+			}
+		} catch (RejectedExecutionException e) {
+			LOGGER.log(Level.FINE, "process scheduler is shut down", e);
+		}
 	}
 
     @Override
@@ -84,6 +140,7 @@ public class ProcessSchedulerImpl implements ProcessScheduler {
 	@Override
 	public void shutdown() {
 		LOGGER.info("canceling process scheduler");
-		this.timer.cancel();
+		this.executor.shutdownNow();
+		ProcessWorkerPool.shutdownIfRunning();
 	}
 }
@@ -0,0 +1,312 @@
+package cz.incad.kramerius.processes.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cz.incad.kramerius.processes.DefinitionManager;
+import cz.incad.kramerius.processes.LRProcessDefinition;
+import cz.incad.kramerius.processes.starter.ProcessStarter;
+import cz.incad.kramerius.processes.starter.ProcessWorker;
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+/**
+ * Pool of long-lived worker JVMs ({@link ProcessWorker}) for short processes.
+ * <br>
+ * Processes of definitions listed in <code>processQueue.workers.definitions</code> wait in a local queue
+ * (<code>processQueue.workers.queueSize</code>) for the first free worker; a process which does not fit into the queue
+ * (or no worker JVM is running) runs in its own JVM. Queued process stays PLANNED in the database until a worker
+ * takes it, so nothing is lost when the application stops and the scheduler plans it again. Each worker runs one
+ * process at a time. Worker which dies (process has been killed, process called System.exit) is started again
+ * for the next process.
+ * <br>
+ * Processes which create their injector by {@link ProcessStarter#createInjector} share it within the worker JVM;
+ * processes creating their own injectors leave their singletons behind, for them the worker can be replaced
+ * by a fresh JVM after <code>processQueue.workers.maxJobs</code> processes (0 = never).
+ */
+public class ProcessWorkerPool {
+
+    public static final Logger LOGGER = Logger.getLogger(ProcessWorkerPool.class.getName());
+
+    private static final long RESTART_DELAY = 5000;
+
+    private static ProcessWorkerPool INSTANCE;
+
+    private final BlockingQueue<Job> queue;
+    // ids of queued jobs and of jobs taken by a worker, but not yet reported as started
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private final String classpath;
+    private final String mainClass;
+    private final String[] javaParameters;
+    private final int maxJobs;
+    private final File workDir;
+    private volatile boolean shutdown = false;
+
+    ProcessWorkerPool(int size, int queueSize, String classpath, String mainClass, String[] javaParameters, int maxJobs, File workDir) {
+        this.queue = new ArrayBlockingQueue<Job>(Math.max(queueSize, 1));
+        this.classpath = classpath;
+        this.mainClass = mainClass;
+        this.javaParameters = javaParameters;
+        this.maxJobs = maxJobs;
+        this.workDir = workDir;
+        for (int i = 0; i < size; i++) {
+            Worker worker = new Worker(i);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Process handed over to the worker
+     */
+    public interface Job {
+
+        /**
+         * @return Unique id of the job (process uuid); the same process submitted again is not queued twice
+         */
+        String getId();
+
+        /**
+         * @return Job file (see {@link ProcessWorker})
+         */
+        File getJobFile();
+
+        /**
+         * Worker has taken the job; called by the worker thread before the job is passed to the worker JVM
+         */
+        void started();
+
+        /**
+         * Worker JVM has not accepted the job (it could not be started or it died before reading the job);
+         * the process has not run
+         */
+        void notStarted();
+
+        /**
+         * Worker JVM died while running the job
+         */
+        void terminated();
+    }
+
+    /**
+     * Returns true if the process of given definition should be run in the worker pool
+     */
+    public static boolean accepts(LRProcessDefinition definition) {
+        KConfiguration conf = KConfiguration.getInstance();
+        if (conf.getConfiguration().getInt("processQueue.workers", 0) <= 0) return false;
+        // own libraries require own classpath
+        if (definition.getLibsDir() != null) return false;
+        return Arrays.asList(conf.getConfiguration().getStringArray("processQueue.workers.definitions")).contains(definition.getId());
+    }
+
+    /**
+     * Returns pool, starts it if necessary
+     * @param krameriusAppLib Application libs for creating CLASSPATH
+     * @param additionalJarFiles Additional jar files
+     */
+    public static synchronized ProcessWorkerPool getInstance(String krameriusAppLib, String... additionalJarFiles) {
+        if (INSTANCE == null) {
+            KConfiguration conf = KConfiguration.getInstance();
+            INSTANCE = new ProcessWorkerPool(conf.getConfiguration().getInt("processQueue.workers", 0),
+                    conf.getConfiguration().getInt("processQueue.workers.queueSize", 10),
+                    AbstractLRProcessImpl.processClasspath(krameriusAppLib, additionalJarFiles),
+                    ProcessWorker.class.getName(),
+                    conf.getConfiguration().getStringArray("processQueue.workers.javaParameters"),
+                    conf.getConfiguration().getInt("processQueue.workers.maxJobs", 0),
+                    new File(DefinitionManager.DEFAULT_LP_WORKDIR + File.separator + "workers"));
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Shuts down the pool if it has been started
+     */
+    public static synchronized void shutdownIfRunning() {
+        if (INSTANCE != null) {
+            INSTANCE.shutdown();
+            INSTANCE = null;
+        }
+    }
+
+    /**
+     * Queues the job for the first free worker
+     * @param job Job
+     * @return false if the queue is full or no worker JVM is running; the job has not been taken
+     */
+    public boolean submit(Job job) {
+        if (this.shutdown || !anyWorkerRunning()) return false;
+        if (!this.pending.add(job.getId())) {
+            // already waiting for a worker
+            return true;
+        }
+        if (!this.queue.offer(job)) {
+            this.pending.remove(job.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean anyWorkerRunning() {
+        for (Worker worker : this.workers) {
+            if (worker.process != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops the workers; queued jobs are dropped, their processes are still PLANNED
+     */
+    void shutdown() {
+        this.shutdown = true;
+        this.queue.clear();
+        for (Worker worker : this.workers) {
+            worker.interrupt();
+            worker.destroyProcess();
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private volatile Process process;
+        private Writer input;
+        private BufferedReader output;
+        private int jobs;
+
+        Worker(int index) {
+            super(ProcessWorkerPool.class.getName() + "-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    // worker JVM is started before the job arrives; worker without JVM takes no jobs
+                    ensureProcess();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    try {
+                        Thread.sleep(RESTART_DELAY);
+                        continue;
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    job.started();
+                } catch (RuntimeException e) {
+                    // process stays planned, the scheduler submits it again
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    continue;
+                } finally {
+                    pending.remove(job.getId());
+                }
+                runJob(job);
+            }
+        }
+
+        private void runJob(Job job) {
+            boolean accepted = false;
+            try {
+                ensureProcess();
+                this.input.write(job.getJobFile().getAbsolutePath() + "\n");
+                this.input.flush();
+                accepted = ProcessWorker.STARTED.equals(this.output.readLine());
+                if (!accepted) {
+                    LOGGER.warning("process worker " + getName() + " has not accepted job " + job.getJobFile());
+                    destroyProcess();
+                    job.notStarted();
+                    return;
+                }
+                if (!ProcessWorker.DONE.equals(this.output.readLine())) {
+                    LOGGER.warning("process worker " + getName() + " terminated while running job " + job.getJobFile());
+                    destroyProcess();
+                    job.terminated();
+                    return;
+                }
+                if (maxJobs > 0 && ++this.jobs >= maxJobs) {
+                    // singletons created by the processes are released with the JVM
+                    recycleProcess();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                destroyProcess();
+                if (accepted) {
+                    job.terminated();
+                } else {
+                    job.notStarted();
+                }
+            }
+        }
+
+        private void ensureProcess() throws IOException {
+            if (this.process != null && this.process.isAlive()) return;
+            List<String> command = new ArrayList<String>();
+            command.add("java");
+            for (String param : javaParameters) {
+                command.add(param);
+            }
+            command.add(mainClass);
+
+            if (!workDir.exists() && !workDir.mkdirs()) {
+                throw new IOException("cannot create directory '" + workDir.getAbsolutePath() + "'");
+            }
+            ProcessBuilder processBuilder = new ProcessBuilder(command).directory(workDir);
+            processBuilder.environment().put(ProcessStarter.CLASSPATH_NAME, classpath);
+            processBuilder.redirectError(ProcessBuilder.Redirect.appendTo(new File(workDir, getName() + ".err")));
+            this.process = processBuilder.start();
+            this.input = new OutputStreamWriter(this.process.getOutputStream(), StandardCharsets.UTF_8);
+            this.output = new BufferedReader(new InputStreamReader(this.process.getInputStream(), StandardCharsets.UTF_8));
+            this.jobs = 0;
+            LOGGER.info("started process worker " + getName());
+        }
+
+        /**
+         * Closes the input of the worker JVM, so that it finishes normally
+         */
+        private void recycleProcess() {
+            Process p = this.process;
+            try {
+                this.input.close();
+                if (!p.waitFor(RESTART_DELAY, TimeUnit.MILLISECONDS)) {
+                    p.destroy();
+                }
+            } catch (IOException e) {
+                p.destroy();
+            } catch (InterruptedException e) {
+                p.destroy();
+                interrupt();
+            }
+            this.process = null;
+        }
+
+        private void destroyProcess() {
+            Process p = this.process;
+            if (p != null) {
+                p.destroy();
+                this.process = null;
+            }
+        }
+    }
+}
@@ -16,6 +16,9 @@
  */
 package cz.incad.kramerius.processes.starter;
 
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
 import cz.incad.kramerius.processes.States;
 import cz.incad.kramerius.processes.WarningException;
 import cz.incad.kramerius.processes.annotations.ParameterName;
@@ -32,7 +35,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
 
@@ -72,6 +77,9 @@ public class ProcessStarter {
     public static final String SOUT_FILE = "SOUT";
     public static final String SERR_FILE = "SERR";
 
+    // injectors shared by processes of the worker JVM; null in the standalone process JVM
+    private static volatile Map<List<Class<?>>, Injector> SHARED_INJECTORS = null;
+
     //_BY_ME because process status can be updated also from outside through LongRunningProcessServlet and LRProcessManager.updateLongRunningProcessState()
     //and it is happening, see GCCheckFoundCandidatesTask and AbstractLRProcessImpl, those are to place outside of process jvm, where state is updated
     private static boolean STATUS_UPDATED_BY_ME = false;
@@ -81,6 +89,7 @@ public class ProcessStarter {
     public static void main(String[] args) {
         PrintStream outStream = null;
         PrintStream errStream = null;
+        boolean success = false;
         try {
 
             String mainClass = System.getProperty(MAIN_CLASS_KEY);
@@ -107,6 +116,37 @@ public class ProcessStarter {
                 }
             }));
 
+            success = runProcess(mainClass, args);
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            try {
+                updateStatus(States.FAILED);
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            }
+        } finally {
+            if (!success) {
+                closeStream(outStream);
+                closeStream(errStream);
+            }
+            AkubraDOManager.shutdown();
+            closeTokenIfNecessary();
+        }
+    }
+
+    /**
+     * Runs process main class (annotated or main method) in the current JVM and reports its final state.
+     * Expects process system properties (uuid, tokens, parameters) to be set.
+     * Used by the standalone process JVM and by the worker JVM
+     * @param mainClass Process main class
+     * @param args Process arguments
+     * @return true if the process has finished without errors or warnings
+     */
+    static boolean runProcess(String mainClass, String[] args) {
+        STATUS_UPDATED_BY_ME = false;
+        NAME_UPDATED_BY_ME = false;
+        PID_UPDATED_BY_ME = false;
+        try {
             Class<?> clz = Class.forName(mainClass);
 
             String pid = getPID();
@@ -127,6 +167,7 @@ public class ProcessStarter {
 
             checkErrorFile();
             updateStatus(States.FINISHED);
+            return true;
         } catch (WarningException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             try {
@@ -134,21 +175,6 @@ public class ProcessStarter {
             } catch (IOException ex) {
                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
             }
-            if (outStream != null) {
-                try {
-                    outStream.close();
-                } catch (Exception e1) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                }
-            }
-            if (errStream != null) {
-                try {
-                    errStream.close();
-                } catch (Exception e1) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                }
-            }
-
         } catch (Throwable e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             try {
@@ -156,26 +182,62 @@ public class ProcessStarter {
             } catch (IOException ex) {
                 LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
             }
-            if (outStream != null) {
-                try {
-                    outStream.close();
-                } catch (Exception e1) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                }
-            }
-            if (errStream != null) {
-                try {
-                    errStream.close();
-                } catch (Exception e1) {
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                }
+        }
+        return false;
+    }
+
+    /**
+     * Creates Guice injector of the process.
+     * In the worker JVM ({@link ProcessWorker}) the processes share one injector per combination of modules,
+     * so repository access, cache managers and other singletons are created once per worker and not by every process.
+     * Modules must be stateless, they are compared by class.
+     * @param modules Guice modules
+     * @return new injector, or the injector shared by previous processes of the worker
+     */
+    public static Injector createInjector(Module... modules) {
+        Map<List<Class<?>>, Injector> shared = SHARED_INJECTORS;
+        if (shared == null) {
+            return Guice.createInjector(modules);
+        }
+        List<Class<?>> key = new ArrayList<>();
+        for (Module module : modules) {
+            key.add(module.getClass());
+        }
+        synchronized (shared) {
+            Injector injector = shared.get(key);
+            if (injector == null) {
+                injector = Guice.createInjector(modules);
+                shared.put(key, injector);
             }
-        } finally {
-            AkubraDOManager.shutdown();
-            String uuid = System.getProperty(ProcessStarter.UUID_KEY);
-            String closeTokenFlag = System.getProperty(AUTOMATIC_CLOSE_TOKEN, "true");
-            if (closeTokenFlag != null && closeTokenFlag.trim().toLowerCase().equals("true")) {
-                ProcessUtils.closeToken(uuid);
+            return injector;
+        }
+    }
+
+    /**
+     * Turns on sharing of injectors created by {@link #createInjector(Module...)}; used by the worker JVM
+     */
+    static void shareInjectors() {
+        SHARED_INJECTORS = new HashMap<>();
+    }
+
+    static boolean isStatusUpdatedByMe() {
+        return STATUS_UPDATED_BY_ME;
+    }
+
+    static void closeTokenIfNecessary() {
+        String uuid = System.getProperty(ProcessStarter.UUID_KEY);
+        String closeTokenFlag = System.getProperty(AUTOMATIC_CLOSE_TOKEN, "true");
+        if (closeTokenFlag != null && closeTokenFlag.trim().toLowerCase().equals("true")) {
+            ProcessUtils.closeToken(uuid);
+        }
+    }
+
+    private static void closeStream(PrintStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
             }
         }
     }
@@ -188,7 +250,7 @@ public class ProcessStarter {
         }
     }
 
-    private static void setDefaultLoggingIfNecessary() {
+    static void setDefaultLoggingIfNecessary() {
         String classProperty = System.getProperty(LOGGING_CLASS_PROPERTY);
         String fileProperty = System.getProperty(LOGGING_FILE_PROPERTY);
         if ((classProperty == null) && (fileProperty == null)) {
@@ -0,0 +1,167 @@
+package cz.incad.kramerius.processes.starter;
+
+import cz.incad.kramerius.fedora.om.impl.AkubraDOManager;
+import cz.incad.kramerius.processes.States;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Long-lived worker JVM; runs processes one after another without starting new JVM for each of them.
+ * <br>
+ * Worker reads paths of job files from the standard input, answers with line {@link #STARTED} on the standard output,
+ * runs the process described by the job and answers with line {@link #DONE}. Missing {@link #DONE} means that the worker
+ * died during the job. Job file contains process system properties
+ * (prefix {@link #PROPERTY_PREFIX}) and arguments (prefix {@link #ARGUMENT_PREFIX}); standard streams of the process
+ * are redirected into its SOUT and SERR files and the state is reported through {@link ProcessUpdatingChannel}
+ * exactly as in {@link ProcessStarter}.
+ * @see cz.incad.kramerius.processes.impl.ProcessWorkerPool
+ */
+public class ProcessWorker {
+
+    public static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(ProcessWorker.class.getName());
+
+    public static final String PROPERTY_PREFIX = "property.";
+    public static final String ARGUMENT_PREFIX = "argument.";
+    public static final String STARTED = "STARTED";
+    public static final String DONE = "DONE";
+
+    private static volatile boolean jobRunning = false;
+
+    public static void main(String[] args) throws IOException {
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        SwitchableOutputStream out = new SwitchableOutputStream(new FileOutputStream(FileDescriptor.err));
+        SwitchableOutputStream err = new SwitchableOutputStream(new FileOutputStream(FileDescriptor.err));
+        // handlers created by logging keep reference to System.err, so the streams are switched underneath
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+        System.setErr(new PrintStream(err, true, "UTF-8"));
+        ProcessStarter.setDefaultLoggingIfNecessary();
+        // processes creating their injector by ProcessStarter.createInjector share it, the worker stays warm
+        ProcessStarter.shareInjectors();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (jobRunning && !ProcessStarter.isStatusUpdatedByMe()) {
+                    ProcessStarter.updateStatus(States.KILLED);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            }
+        }));
+
+        try {
+            BufferedReader input = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                protocol.println(STARTED);
+                try {
+                    runJob(new File(line.trim()), out, err);
+                } catch (Throwable e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
+                protocol.println(DONE);
+            }
+        } finally {
+            AkubraDOManager.shutdown();
+        }
+    }
+
+    private static void runJob(File jobFile, SwitchableOutputStream out, SwitchableOutputStream err) throws IOException {
+        Properties job = new Properties();
+        try (InputStream is = new FileInputStream(jobFile)) {
+            job.load(is);
+        }
+        Map<String, String> previousProperties = new HashMap<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; job.containsKey(ARGUMENT_PREFIX + i); i++) {
+            arguments.add(job.getProperty(ARGUMENT_PREFIX + i));
+        }
+        for (String key : job.stringPropertyNames()) {
+            if (key.startsWith(PROPERTY_PREFIX)) {
+                String name = key.substring(PROPERTY_PREFIX.length());
+                previousProperties.put(name, System.getProperty(name));
+                System.setProperty(name, job.getProperty(key));
+            }
+        }
+        try (OutputStream jobOut = new FileOutputStream(System.getProperty(ProcessStarter.SOUT_FILE));
+             OutputStream jobErr = new FileOutputStream(System.getProperty(ProcessStarter.SERR_FILE))) {
+            OutputStream previousOut = out.switchTo(jobOut);
+            OutputStream previousErr = err.switchTo(jobErr);
+            jobRunning = true;
+            try {
+                ProcessStarter.runProcess(System.getProperty(ProcessStarter.MAIN_CLASS_KEY), arguments.toArray(new String[arguments.size()]));
+            } finally {
+                jobRunning = false;
+                System.out.flush();
+                System.err.flush();
+                out.switchTo(previousOut);
+                err.switchTo(previousErr);
+                ProcessStarter.closeTokenIfNecessary();
+            }
+        } finally {
+            // properties of one process must not leak into the next one
+            for (Map.Entry<String, String> entry : previousProperties.entrySet()) {
+                if (entry.getValue() == null) {
+                    System.clearProperty(entry.getKey());
+                } else {
+                    System.setProperty(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Output stream delegating to the stream of the currently running process
+     */
+    static class SwitchableOutputStream extends OutputStream {
+
+        private volatile OutputStream target;
+
+        SwitchableOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        synchronized OutputStream switchTo(OutputStream newTarget) throws IOException {
+            OutputStream previous = this.target;
+            previous.flush();
+            this.target = newTarget;
+            return previous;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // underlying streams are owned by the worker
+            flush();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Interface for accessing data in repository (Akubra, formerly Fedora).
@@ -64,6 +65,25 @@ public interface RepositoryApi {
 
     public List<String> getPidsOfObjectsByModel(String model) throws RepositoryException, IOException, SolrServerException;
 
+    /**
+     * Lazily fetched pids of all objects; the processing index is paged with cursorMark, so the stream can be walked in constant memory.
+     * Errors of paging are thrown as unchecked exceptions during the iteration.
+     */
+    public Stream<String> streamPidsOfAllObjects() throws RepositoryException;
+
+    /**
+     * Lazily fetched pids of objects with given model, see {@link #streamPidsOfAllObjects()}
+     */
+    public Stream<String> streamPidsOfObjectsByModel(String model) throws RepositoryException;
+
+    /**
+     * Lazily fetched pids of objects with given model (or of all objects if model is null) split into disjoint partitions by pid range;
+     * partitions are paged independently, so the returned parallel stream fetches them concurrently.
+     * @param model Model or null
+     * @param partitions Requested number of partitions (1 means sequential stream)
+     */
+    public Stream<String> streamPidsOfObjectsByModel(String model, int partitions) throws RepositoryException;
+
     public TitlePidPairs getPidsOfObjectsWithTitlesByModel(String model, boolean ascendingOrder, int offset, int limit) throws RepositoryException, IOException, SolrServerException;
 
     public TitlePidPairs getPidsOfObjectsWithTitlesByModelWithCursor(String model, boolean ascendingOrder, String cursor, int limit) throws RepositoryException, IOException, SolrServerException;
@@ -2,45 +2,57 @@ package cz.incad.kramerius.repository;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.qbizm.kramerius.imp.jaxb.DatastreamType;
+import com.qbizm.kramerius.imp.jaxb.DatastreamVersionType;
 import com.qbizm.kramerius.imp.jaxb.DigitalObject;
+import com.qbizm.kramerius.imp.jaxb.XmlContentType;
 import cz.incad.kramerius.fedora.om.RepositoryDatastream;
 import cz.incad.kramerius.fedora.om.RepositoryException;
 import cz.incad.kramerius.fedora.om.RepositoryObject;
 import cz.incad.kramerius.fedora.om.impl.AkubraDOManager;
 import cz.incad.kramerius.fedora.om.impl.AkubraRepository;
+import cz.incad.kramerius.fedora.om.impl.AkubraUtils;
+import cz.incad.kramerius.fedora.om.impl.FoxmlObjectView;
 import cz.incad.kramerius.repository.utils.Utils;
 import cz.incad.kramerius.resourceindex.ProcessingIndexFeeder;
-import cz.incad.kramerius.utils.Dom4jUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.incad.kramerius.utils.java.Pair;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.dom4j.*;
+import org.dom4j.io.DOMWriter;
 import org.ehcache.CacheManager;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class RepositoryApiImpl implements RepositoryApi {
 
-    private static final Namespace NS_FOXML = new Namespace("foxml", "info:fedora/fedora-system:def/foxml#");
+    private final AkubraDOManager akubraDOManager;
     private final AkubraRepository akubraRepository;
     private final Unmarshaller digitalObjectUnmarshaller;
 
     @Inject
     public RepositoryApiImpl(KConfiguration configuration, ProcessingIndexFeeder processingIndexFeeder, @Named("akubraCacheManager") CacheManager cacheManager) throws RepositoryException {
         try {
-            AkubraDOManager akubraDOManager = new AkubraDOManager(configuration, cacheManager);
-            this.akubraRepository = (AkubraRepository) AkubraRepository.build(processingIndexFeeder, akubraDOManager);
+            this.akubraDOManager = new AkubraDOManager(configuration, cacheManager);
+            this.akubraRepository = (AkubraRepository) AkubraRepository.build(processingIndexFeeder, this.akubraDOManager);
             this.digitalObjectUnmarshaller = JAXBContext.newInstance(DigitalObject.class).createUnmarshaller();
         } catch (IOException e) {
             throw new RepositoryException(e);
@@ -58,13 +70,16 @@ public class RepositoryApiImpl implements RepositoryApi {
 
     @Override
     public boolean objectExists(String pid) throws RepositoryException {
-        return akubraRepository.objectExists(pid);
+        try {
+            return akubraDOManager.readObjectViewFromStorage(pid) != null;
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
     }
 
     @Override
     public String getProperty(String pid, String propertyName) throws IOException, RepositoryException {
-        Document objectFoxml = getFoxml(pid);
-        return objectFoxml == null ? null : extractProperty(objectFoxml, propertyName);
+        return getObjectView(pid).getProperty(propertyName);
     }
 
     @Override
@@ -106,46 +121,44 @@ public class RepositoryApiImpl implements RepositoryApi {
 
     @Override
     public boolean datastreamExists(String pid, String dsId) throws RepositoryException, IOException {
-        RepositoryObject object = akubraRepository.getObject(pid);
-        return object == null ? false : object.streamExists(dsId);
+        return getObjectView(pid).datastreamExists(dsId);
     }
 
     @Override
     public String getDatastreamMimetype(String pid, String dsId) throws RepositoryException, IOException {
-        RepositoryObject object = akubraRepository.getObject(pid);
-        if (object != null) {
-            RepositoryDatastream stream = object.getStream(dsId);
-            if (stream != null) {
-                return stream.getMimeType();
-            }
+        FoxmlObjectView.Datastream datastream = getObjectView(pid).getDatastream(dsId);
+        if (datastream != null && datastream.getLatestVersion() != null) {
+            return datastream.getLatestVersion().getMimetype();
         }
         return null;
     }
 
     @Override
     public Document getDatastreamXml(String pid, String dsId) throws RepositoryException, IOException {
-        RepositoryObject object = akubraRepository.getObject(pid);
-        if (object.streamExists(dsId)) {
-            Document foxml = Utils.inputstreamToDocument(object.getFoxml(), true);
-            Element dcEl = (Element) Dom4jUtils.buildXpath(String.format("/foxml:digitalObject/foxml:datastream[@ID='%s']", dsId)).selectSingleNode(foxml);
-            Element detached = (Element) dcEl.detach();
-            Document result = DocumentHelper.createDocument();
-            result.add(detached);
-            return result;
-        } else {
-            return null;
+        // one pass over (cached) raw FOXML; the datastream may be managed, so the inline content of the view is not enough
+        String datastreamXml;
+        try (InputStream foxml = akubraDOManager.retrieveObject(pid)) {
+            datastreamXml = FoxmlObjectView.copyDatastream(foxml, dsId);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
         }
+        return datastreamXml == null ? null : Utils.inputstreamToDocument(new ByteArrayInputStream(datastreamXml.getBytes(StandardCharsets.UTF_8)), true);
     }
 
     @Override
     public InputStream getLatestVersionOfDatastream(String pid, String dsId) throws RepositoryException, IOException {
-        RepositoryObject object = akubraRepository.getObject(pid);
-        if (object.streamExists(dsId)) {
-            RepositoryDatastream stream = object.getStream(dsId);
-            return stream.getContent();
-        } else {
+        FoxmlObjectView.Datastream datastream = getObjectView(pid).getDatastream(dsId);
+        if (datastream == null) {
             return null;
         }
+        String inlineContent = latestInlineContent(datastream);
+        if (inlineContent != null) {
+            return new ByteArrayInputStream(inlineContent.getBytes(StandardCharsets.UTF_8));
+        }
+        // managed, external and binary content is resolved by the repository object
+        RepositoryObject object = akubraRepository.getObject(pid);
+        RepositoryDatastream stream = object.getStream(dsId);
+        return stream == null ? null : stream.getContent();
     }
 
     @Override
@@ -154,6 +167,20 @@ public class RepositoryApiImpl implements RepositoryApi {
         return is == null ? null : Utils.inputstreamToDocument(is, true);
     }
 
+    private FoxmlObjectView getObjectView(String pid) throws RepositoryException, IOException {
+        FoxmlObjectView view = akubraDOManager.readObjectViewFromStorage(pid);
+        if (view == null) {
+            // the same behaviour as AkubraRepository.getObject
+            throw new RepositoryException("object not consistently found in storage: " + pid);
+        }
+        return view;
+    }
+
+    private String latestInlineContent(FoxmlObjectView.Datastream datastream) {
+        FoxmlObjectView.DatastreamVersion latestVersion = datastream.getLatestVersion();
+        return latestVersion == null ? null : latestVersion.getXmlContent();
+    }
+
     @Override
     public String getLatestVersionOfManagedTextDatastream(String pid, String dsId) throws RepositoryException, IOException {
         InputStream is = getLatestVersionOfDatastream(pid, dsId);
@@ -190,6 +217,89 @@ public class RepositoryApiImpl implements RepositoryApi {
         return pids;
     }
 
+    @Override
+    public Stream<String> streamPidsOfAllObjects() throws RepositoryException {
+        return streamPidsOfObjectsByModel(null, 1);
+    }
+
+    @Override
+    public Stream<String> streamPidsOfObjectsByModel(String model) throws RepositoryException {
+        return streamPidsOfObjectsByModel(model, 1);
+    }
+
+    @Override
+    public Stream<String> streamPidsOfObjectsByModel(String model, int partitions) throws RepositoryException {
+        String query = model == null ? "type:description" : String.format("type:description AND model:%s", "model\\:" + model);
+        return streamPids(akubraRepository.getProcessingIndexFeeder(), query, partitions);
+    }
+
+    static Stream<String> streamPids(ProcessingIndexFeeder feeder, String query, int partitions) {
+        List<String> ranges = pidRanges(partitions);
+        if (ranges.size() == 1) {
+            return streamPids(feeder, query);
+        }
+        // every partition is paged by its own cursor; partitions are processed in parallel
+        return IntStream.range(0, ranges.size()).parallel()
+                .boxed()
+                .flatMap(i -> streamPids(feeder, query + " AND " + ranges.get(i)));
+    }
+
+    private static Stream<String> streamPids(ProcessingIndexFeeder feeder, String query) {
+        return feeder.streamProcessing(query, "source")
+                .map(doc -> doc.getFieldValue("source"))
+                .filter(Objects::nonNull)
+                .map(Object::toString);
+    }
+
+    /**
+     * Splits pid space into disjoint ranges by the first hex digit of uuid (uuids are uniformly distributed);
+     * hex letters are matched in both cases (source is a string field, uuid:ABC... is not matched by source:uuid\:a*),
+     * pids which are not uuids or do not start with hex digit fall into the first range
+     * @param partitions Requested number of partitions, rounded down to 1, 2, 4, 8 or 16
+     * @return Solr filter query of each range
+     */
+    static List<String> pidRanges(int partitions) {
+        int count = 1;
+        while (count * 2 <= Math.min(partitions, 16)) {
+            count *= 2;
+        }
+        List<String> ranges = new ArrayList<>();
+        if (count == 1) {
+            ranges.add("*:*");
+            return ranges;
+        }
+        String hexDigits = "0123456789abcdef";
+        int digitsPerRange = 16 / count;
+        List<String> rangeQueries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder range = new StringBuilder();
+            for (int d = i * digitsPerRange; d < (i + 1) * digitsPerRange; d++) {
+                char digit = hexDigits.charAt(d);
+                appendPidPrefix(range, digit);
+                if (Character.isLetter(digit)) {
+                    appendPidPrefix(range, Character.toUpperCase(digit));
+                }
+            }
+            rangeQueries.add(range.toString());
+        }
+        for (int i = 0; i < count; i++) {
+            StringBuilder range = new StringBuilder("(").append(rangeQueries.get(i));
+            if (i == 0) {
+                range.append(" OR (*:* -(").append(String.join(" OR ", rangeQueries)).append("))");
+            }
+            range.append(')');
+            ranges.add(range.toString());
+        }
+        return ranges;
+    }
+
+    private static void appendPidPrefix(StringBuilder range, char digit) {
+        if (range.length() > 0) {
+            range.append(" OR ");
+        }
+        range.append("source:uuid\\:").append(digit).append('*');
+    }
+
     @Override
     public TitlePidPairs getPidsOfObjectsWithTitlesByModel(String model, boolean ascendingOrder, int offset, int limit) throws RepositoryException, IOException, SolrServerException {
         List<Pair<String, String>> titlePidPairs = new ArrayList<>();
@@ -305,66 +415,72 @@ public class RepositoryApiImpl implements RepositoryApi {
 
     @Override
     public void updateInlineXmlDatastream(String pid, String dsId, Document streamDoc, String formatUri) throws RepositoryException, IOException {
-        Document foxml = getFoxml(pid);
-        appendNewInlineXmlDatastreamVersion(foxml, dsId, streamDoc, formatUri);
-        updateLastModifiedTimestamp(foxml);
-        DigitalObject updatedDigitalObject = foxmlDocToDigitalObject(foxml);
-        akubraRepository.deleteObject(pid, false, false);
-        akubraRepository.ingestObject(updatedDigitalObject);
-        akubraRepository.commitTransaction();
+        DigitalObject digitalObject = readObjectClone(pid);
+        DatastreamType datastream = findDatastream(digitalObject, dsId);
+        if (datastream != null) {
+            appendNewInlineXmlDatastreamVersion(datastream, dsId, streamDoc, formatUri);
+        }
+        replaceObject(pid, digitalObject);
     }
 
     @Override
     public void setDatastreamXml(String pid, String dsId, Document ds) throws RepositoryException, IOException {
-        Document foxml = getFoxml(pid);
-        Element originalDsEl = (Element) Dom4jUtils.buildXpath(String.format("/foxml:digitalObject/foxml:datastream[@ID='%s']", dsId)).selectSingleNode(foxml);
-        if (originalDsEl != null) {
-            originalDsEl.detach();
+        DigitalObject digitalObject = readObjectClone(pid);
+        DatastreamType datastream;
+        try {
+            datastream = digitalObjectUnmarshaller.unmarshal(new StreamSource(new StringReader(ds.asXML())), DatastreamType.class).getValue();
+        } catch (JAXBException e) {
+            throw new IOException(e);
         }
-        foxml.getRootElement().add(ds.getRootElement().detach());
-        updateLastModifiedTimestamp(foxml);
-        DigitalObject updatedDigitalObject = foxmlDocToDigitalObject(foxml);
-        akubraRepository.deleteObject(pid, false, false);
-        akubraRepository.ingestObject(updatedDigitalObject);
-        akubraRepository.commitTransaction();
+        digitalObject.getDatastream().removeIf(original -> dsId.equals(original.getID()));
+        digitalObject.getDatastream().add(datastream);
+        replaceObject(pid, digitalObject);
     }
 
-    private void updateLastModifiedTimestamp(Document foxml) {
-        Attribute valueAttr = (Attribute) Dom4jUtils.buildXpath("/foxml:digitalObject/foxml:objectProperties/foxml:property[@NAME='info:fedora/fedora-system:def/view#lastModifiedDate']/@VALUE").selectSingleNode(foxml);
-        if (valueAttr != null) {
-            valueAttr.setValue(LocalDateTime.now().format(TIMESTAMP_FORMATTER));
-        } else {
-            Element objectProperties = (Element) Dom4jUtils.buildXpath("/foxml:digitalObject/foxml:objectProperties").selectSingleNode(foxml);
-            Element propertyLastModified = objectProperties.addElement(new QName("property", NS_FOXML));
-            propertyLastModified.addAttribute("NAME", "info:fedora/fedora-system:def/view#lastModifiedDate");
-            propertyLastModified.addAttribute("VALUE", LocalDateTime.now().format(RepositoryApi.TIMESTAMP_FORMATTER));
+    /**
+     * Reads fresh copy of the object, which can be modified; no DOM of the whole FOXML is built
+     */
+    private DigitalObject readObjectClone(String pid) throws RepositoryException, IOException {
+        DigitalObject digitalObject = akubraDOManager.readObjectCloneFromStorage(pid);
+        if (digitalObject == null) {
+            throw new RepositoryException("object not consistently found in storage: " + pid);
         }
+        return digitalObject;
     }
 
-    private void appendNewInlineXmlDatastreamVersion(Document foxml, String dsId, Document streamDoc, String formatUri) {
-        Element datastreamEl = (Element) Dom4jUtils.buildXpath(String.format("/foxml:digitalObject/foxml:datastream[@ID='%s']", dsId)).selectSingleNode(foxml);
-        if (datastreamEl != null) {
-            int latestDsIdVersion = extractLatestDsIdVersion(datastreamEl);
-            int newDsIdVesion = latestDsIdVersion + 1;
-            Element dsVersionEl = datastreamEl.addElement("datastreamVersion", NAMESPACE_FOXML);
-            dsVersionEl.addAttribute("ID", dsId + "." + newDsIdVesion);
-            dsVersionEl.addAttribute("CREATED", LocalDateTime.now().format(TIMESTAMP_FORMATTER));
-            dsVersionEl.addAttribute("MIMETYPE", "application/xml");
-            if (formatUri != null) {
-                dsVersionEl.addAttribute("FORMAT_URI", formatUri);
-            }
-            Element xmlContentEl = dsVersionEl.addElement("xmlContent", NAMESPACE_FOXML);
-            xmlContentEl.add(streamDoc.getRootElement().detach());
+    /**
+     * Stores modified object, lastModifiedDate is updated by AkubraDOManager.commit
+     */
+    private void replaceObject(String pid, DigitalObject digitalObject) throws RepositoryException {
+        akubraRepository.deleteObject(pid, false, false);
+        akubraRepository.ingestObject(digitalObject);
+        akubraRepository.commitTransaction();
+    }
+
+    private void appendNewInlineXmlDatastreamVersion(DatastreamType datastream, String dsId, Document streamDoc, String formatUri) throws IOException {
+        int latestDsIdVersion = extractLatestDsIdVersion(datastream);
+        int newDsIdVesion = latestDsIdVersion + 1;
+        DatastreamVersionType dsVersion = new DatastreamVersionType();
+        dsVersion.setID(dsId + "." + newDsIdVesion);
+        dsVersion.setCREATED(AkubraUtils.getCurrentXMLGregorianCalendar());
+        dsVersion.setMIMETYPE("application/xml");
+        if (formatUri != null) {
+            dsVersion.setFORMATURI(formatUri);
+        }
+        XmlContentType xmlContent = new XmlContentType();
+        try {
+            xmlContent.getAny().add(new DOMWriter().write(streamDoc).getDocumentElement());
+        } catch (DocumentException e) {
+            throw new IOException(e);
         }
+        dsVersion.setXmlContent(xmlContent);
+        datastream.getDatastreamVersion().add(dsVersion);
     }
 
-    private int extractLatestDsIdVersion(Element datastreamEl) {
-        List<Node> dsVersionEls = Dom4jUtils.buildXpath("foxml:datastreamVersion").selectNodes(datastreamEl);
+    private int extractLatestDsIdVersion(DatastreamType datastream) {
         int maxVersion = -1;
-        for (Node node : dsVersionEls) {
-            Element versionEl = (Element) node;
-            String ID = Dom4jUtils.stringOrNullFromAttributeByName(versionEl, "ID");
-            int versionNumber = Integer.valueOf(ID.split("\\.")[1]);
+        for (DatastreamVersionType version : datastream.getDatastreamVersion()) {
+            int versionNumber = Integer.valueOf(version.getID().split("\\.")[1]);
             if (versionNumber > maxVersion) {
                 maxVersion = versionNumber;
             }
@@ -386,9 +502,13 @@ public class RepositoryApiImpl implements RepositoryApi {
         }
     }
 
-    private String extractProperty(Document foxmlDoc, String name) {
-        Node node = Dom4jUtils.buildXpath(String.format("/foxml:digitalObject/foxml:objectProperties/foxml:property[@NAME='%s']/@VALUE", name)).selectSingleNode(foxmlDoc);
-        return node == null ? null : Dom4jUtils.toStringOrNull(node);
+    private DatastreamType findDatastream(DigitalObject digitalObject, String dsId) {
+        for (DatastreamType datastream : digitalObject.getDatastream()) {
+            if (dsId.equals(datastream.getID())) {
+                return datastream;
+            }
+        }
+        return null;
     }
 
 }
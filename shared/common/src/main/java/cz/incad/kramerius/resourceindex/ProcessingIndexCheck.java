@@ -14,9 +14,17 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrDocument;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class ProcessingIndexCheck {
 
@@ -28,18 +36,51 @@ public class ProcessingIndexCheck {
         final Repository repo = fa.getInternalAPI();
         final ProcessingIndexFeeder instance = injector.getInstance(ProcessingIndexFeeder.class);
 
-        List<String> pidsToDelete = new ArrayList<>();
-        instance.iterateProcessing(ProcessingIndexFeeder.DEFAULT_ITERATE_QUERY, (SolrDocument doc) ->{
-            try {
-                Object source = doc.getFieldValue("source");
-                if (!repo.objectExists(source.toString())) {
-                    LOGGER.info("Object marked for delete :"+source.toString());
-                    pidsToDelete.add(source.toString());
+        // every relation and description is checked, relations of objects without description are orphans too;
+        // documents sorted by pid are grouped by source (descriptions and relations separately), so only the change of source is checked
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 4);
+        Set<String> pidsToDelete = Collections.synchronizedSet(new LinkedHashSet<>());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (Stream<SolrDocument> docs = instance.streamProcessing(ProcessingIndexFeeder.DEFAULT_ITERATE_QUERY, "source")) {
+            String previous = null;
+            Iterator<SolrDocument> iterator = docs.iterator();
+            while (iterator.hasNext() && failure.get() == null) {
+                Object field = iterator.next().getFieldValue("source");
+                if (field == null || field.toString().equals(previous)) {
+                    continue;
                 }
-            } catch (RepositoryException e) {
-                throw new RuntimeException(e);
+                String source = field.toString();
+                previous = source;
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (!repo.objectExists(source)) {
+                            LOGGER.info("Object marked for delete :" + source);
+                            pidsToDelete.add(source);
+                        }
+                    } catch (RepositoryException e) {
+                        failure.compareAndSet(null, new RuntimeException(e));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
             }
-        });
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
 
         pidsToDelete.stream().forEach(pid ->{
             try {
@@ -2,22 +2,35 @@ package cz.incad.kramerius.resourceindex;
 
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This is the helper. It is dedicated for creating supporting index which should replace
@@ -36,15 +49,47 @@ public class ProcessingIndexFeeder {
 
     private SolrClient solrClient;
 
+    /** Documents waiting for the next batch; guarded by bufferLock */
+    private List<SolrInputDocument> buffer = new ArrayList<>();
+    private final Object bufferLock = new Object();
+    /** Serializes batches and delete requests so that they reach solr in the order of the calls (buffered mode) */
+    private final Object sendLock = new Object();
+
+    /** Batch size; values lower than 2 mean that every document is sent immediately */
+    private volatile int batchSize;
+    private final long flushInterval;
+    /** Page size of the cursor iteration */
+    private final int iterationRows;
+    private ScheduledExecutorService flushScheduler;
+
     @Inject
     public ProcessingIndexFeeder(@Named("processingUpdate") SolrClient solrClient) {
         super();
         this.solrClient = solrClient;
+        this.batchSize = KConfiguration.getInstance().getConfiguration().getInt("processingIndex.batchSize", 0);
+        this.flushInterval = KConfiguration.getInstance().getConfiguration().getLong("processingIndex.flushInterval", 2000L);
+        this.iterationRows = KConfiguration.getInstance().getConfiguration().getInt("processingIndex.iteration.rows", 1000);
+    }
 
+    /**
+     * Enables (batchSize &gt; 1) or disables buffered mode. In buffered mode documents are sent in batches
+     * when the batch is full, when the flush interval elapses, before any delete and on {@link #commit()}.
+     * Threads adding documents send full batches themselves, so producers cannot outrun solr.
+     * @param batchSize number of documents in one update request
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
 
-    public UpdateResponse feedDescriptionDocument(String sourcePid, String model, String title, String ref, Date date) throws IOException, SolrServerException {
+    private boolean isBuffered() {
+        return this.batchSize > 1;
+    }
+
+    public SolrInputDocument createDescriptionDocument(String sourcePid, String model, String title, String ref, Date date) {
         SolrInputDocument sdoc = new SolrInputDocument();
         sdoc.addField("source", sourcePid);
         sdoc.addField("type", TYPE_DESC);
@@ -53,56 +98,192 @@ public class ProcessingIndexFeeder {
         sdoc.addField("ref", ref);
         sdoc.addField("date", date);
         sdoc.addField("pid", TYPE_DESC + "|" + sourcePid);
-        return feedDescriptionDocument(sdoc);
-    }
-
-
-    public UpdateResponse feedDescriptionDocument(SolrInputDocument doc) throws IOException, SolrServerException {
-        UpdateResponse response = this.solrClient.add(doc);
-        return response;
+        return sdoc;
     }
 
-    public UpdateResponse feedRelationDocument(String sourcePid, String relation, String targetPid) throws IOException, SolrServerException {
+    public SolrInputDocument createRelationDocument(String sourcePid, String relation, String targetPid) {
         SolrInputDocument sdoc = new SolrInputDocument();
         sdoc.addField("source", sourcePid);
         sdoc.addField("type", TYPE_RELATION);
         sdoc.addField("relation", relation);
         sdoc.addField("targetPid", targetPid);
         sdoc.addField("pid", TYPE_RELATION + "|" + sourcePid + "|" + relation + "|" + targetPid);
-        return feedRelationDocument(sdoc);
+        return sdoc;
+    }
+
+    public UpdateResponse feedDescriptionDocument(String sourcePid, String model, String title, String ref, Date date) throws IOException, SolrServerException {
+        return feedDescriptionDocument(createDescriptionDocument(sourcePid, model, title, ref, date));
     }
 
+    /**
+     * Feeds description document
+     * @param doc Description document
+     * @return solr response or null if the document has been buffered
+     */
+    public UpdateResponse feedDescriptionDocument(SolrInputDocument doc) throws IOException, SolrServerException {
+        return feedDocuments(Collections.singletonList(doc));
+    }
 
+    public UpdateResponse feedRelationDocument(String sourcePid, String relation, String targetPid) throws IOException, SolrServerException {
+        return feedRelationDocument(createRelationDocument(sourcePid, relation, targetPid));
+    }
+
+    /**
+     * Feeds relation document
+     * @param sdoc Relation document
+     * @return solr response or null if the document has been buffered
+     */
     public UpdateResponse feedRelationDocument(SolrInputDocument sdoc) throws IOException, SolrServerException {
-        UpdateResponse resp = this.solrClient.add(sdoc);
-        return resp;
+        return feedDocuments(Collections.singletonList(sdoc));
+    }
+
+    /**
+     * Feeds all documents in one update request (or adds them to the current batch in buffered mode)
+     * @param docs Relation and description documents
+     * @return solr response or null if the documents have been buffered
+     */
+    public UpdateResponse feedDocuments(Collection<SolrInputDocument> docs) throws IOException, SolrServerException {
+        if (docs.isEmpty()) {
+            return null;
+        }
+        if (!isBuffered()) {
+            // nothing is buffered, so there is nothing to keep in order with
+            return this.solrClient.add(docs);
+        }
+        boolean full;
+        synchronized (this.bufferLock) {
+            this.buffer.addAll(docs);
+            full = this.buffer.size() >= this.batchSize;
+        }
+        ensureFlushScheduler();
+        if (full) {
+            sendBuffer(false);
+        }
+        return null;
+    }
+
+    /**
+     * Replaces all relations of the given object; new documents and removal of the stale relations are sent in one request
+     * (solr processes added documents before deletes in one update request)
+     * @param pid Source pid
+     * @param docs New relation and description documents of the object
+     * @return solr response
+     */
+    public UpdateResponse replaceRelationsForPid(String pid, Collection<SolrInputDocument> docs) throws IOException, SolrServerException {
+        UpdateRequest request = new UpdateRequest();
+        StringBuilder deleteQuery = new StringBuilder("source:\"" + pid + "\" AND type:\"relation\"");
+        List<String> keptRelations = new ArrayList<>();
+        for (SolrInputDocument doc : docs) {
+            if (TYPE_RELATION.equals(doc.getFieldValue("type"))) {
+                keptRelations.add(doc.getFieldValue("pid").toString());
+            }
+        }
+        if (!keptRelations.isEmpty()) {
+            // terms query parser avoids the max boolean clauses limit for large objects
+            deleteQuery.append(" AND NOT _query_:\"{!terms f=pid}").append(String.join(",", keptRelations)).append("\"");
+        }
+        if (!docs.isEmpty()) {
+            request.add(docs);
+        }
+        request.deleteByQuery(deleteQuery.toString());
+        synchronized (this.sendLock) {
+            flushBufferInternal();
+            return request.process(this.solrClient);
+        }
+    }
+
+    /**
+     * Sends all buffered documents
+     */
+    public void flush() throws IOException, SolrServerException {
+        sendBuffer(true);
+    }
+
+    private void sendBuffer(boolean force) throws IOException, SolrServerException {
+        synchronized (this.sendLock) {
+            if (force || bufferSize() >= this.batchSize) {
+                flushBufferInternal();
+            }
+        }
+    }
+
+    private int bufferSize() {
+        synchronized (this.bufferLock) {
+            return this.buffer.size();
+        }
+    }
+
+    // must be called with sendLock held
+    private void flushBufferInternal() throws IOException, SolrServerException {
+        List<SolrInputDocument> toSend;
+        synchronized (this.bufferLock) {
+            if (this.buffer.isEmpty()) {
+                return;
+            }
+            toSend = this.buffer;
+            this.buffer = new ArrayList<>();
+        }
+        try {
+            this.solrClient.add(toSend);
+        } catch (IOException | SolrServerException | RuntimeException e) {
+            // documents are returned to the front of the buffer and sent with the next batch
+            synchronized (this.bufferLock) {
+                toSend.addAll(this.buffer);
+                this.buffer = toSend;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void ensureFlushScheduler() {
+        if (this.flushScheduler == null && this.flushInterval > 0) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread thread = new Thread(r, "processing-index-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Cannot flush processing index batch: " + e.getMessage(), e);
+                }
+            }, this.flushInterval, this.flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private UpdateResponse deleteByQuery(String query) throws IOException, SolrServerException {
+        synchronized (this.sendLock) {
+            flushBufferInternal();
+            return this.solrClient.deleteByQuery(query);
+        }
     }
 
 
     public UpdateResponse deleteProcessingIndex() throws IOException, SolrServerException {
-        UpdateResponse response = this.solrClient.deleteByQuery("*:*");
+        UpdateResponse response = deleteByQuery("*:*");
         return response;
     }
 
 
     public UpdateResponse deleteByPid(String pid) throws IOException, SolrServerException {
-        UpdateResponse response = this.solrClient.deleteByQuery("source:\"" + pid + "\"");
+        UpdateResponse response = deleteByQuery("source:\"" + pid + "\"");
         return response;
     }
 
     public UpdateResponse deleteByTargetPid(String pid) throws IOException, SolrServerException {
-        UpdateResponse response = this.solrClient.deleteByQuery("targetPid:\"" + pid + "\"");
+        UpdateResponse response = deleteByQuery("targetPid:\"" + pid + "\"");
         return response;
     }
 
     public UpdateResponse deleteDescriptionByPid(String pid) throws IOException, SolrServerException {
-        UpdateResponse response = this.solrClient.deleteByQuery("source:\"" + pid + "\" AND type:\"description\"");
+        UpdateResponse response = deleteByQuery("source:\"" + pid + "\" AND type:\"description\"");
         return response;
     }
 
     public UpdateResponse deleteByRelationsForPid(String pid) throws IOException, SolrServerException {
         String query = "source:\"" + pid + "\" AND type:\"relation\"";
-        UpdateResponse response = this.solrClient.deleteByQuery(query);
+        UpdateResponse response = deleteByQuery(query);
         return response;
     }
 
@@ -120,22 +301,137 @@ public class ProcessingIndexFeeder {
     }
 
     private void iterateProcessingWithSort(String query, String sortField, SolrQuery.ORDER order, Consumer<SolrDocument> action) throws IOException, SolrServerException {
-        ///String query = "*:*";
+        // cursor paging has constant cost per page; start/rows paging makes solr skip all previous documents every time
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        while (true) {
+            QueryResponse response = this.solrClient.query(createCursorQuery(query, sortField, order, cursorMark, this.iterationRows));
+            response.getResults().forEach(action);
+            String nextCursorMark = response.getNextCursorMark();
+            if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+                break;
+            }
+            cursorMark = nextCursorMark;
+        }
+    }
+
+    /**
+     * Returns lazily fetched stream of processing index documents sorted by pid. Pages are fetched with cursorMark
+     * (processingIndex.iteration.rows documents per request) only as they are consumed, so the stream is not split
+     * for parallel processing; parallel consumers should hand the documents over to their own pool or split the query.
+     * @param query Solr query
+     * @return stream of documents
+     */
+    public Stream<SolrDocument> streamProcessing(String query) {
+        return StreamSupport.stream(new CursorSpliterator(query, "pid", SolrQuery.ORDER.asc, this.iterationRows, null), false);
+    }
+
+    /**
+     * Same as {@link #streamProcessing(String)}, but returned documents contain only given fields
+     * @param query Solr query
+     * @param fields Returned fields
+     * @return stream of documents
+     */
+    public Stream<SolrDocument> streamProcessing(String query, String... fields) {
+        return StreamSupport.stream(new CursorSpliterator(query, "pid", SolrQuery.ORDER.asc, this.iterationRows, fields), false);
+    }
+
+    private static SolrQuery createCursorQuery(String query, String sortField, SolrQuery.ORDER order, String cursorMark, int rows) {
         SolrQuery solrQuery = new SolrQuery(query);
-        int offset = 0;
-        int rows = 100;
-        long numFound = Integer.MAX_VALUE;
-        solrQuery.setStart(offset).setRows(rows);
-        solrQuery.setSort(sortField, order);
-        QueryResponse response = this.solrClient.query(solrQuery);
-        while (offset < numFound) {
-            response.getResults().forEach((doc) -> {
-                action.accept(doc);
-            });
-            offset += rows;
-            solrQuery.setStart(offset).setRows(rows);
-            response = this.solrClient.query(solrQuery);
-            numFound = response.getResults().getNumFound();
+        solrQuery.setParam(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark).setRows(rows);
+        List<SolrQuery.SortClause> sortClauses = new ArrayList<>();
+        sortClauses.add(SolrQuery.SortClause.create(sortField, order));
+        if (!"pid".equals(sortField)) {
+            sortClauses.add(SolrQuery.SortClause.asc("pid")); //cursor query requires unique sorting field
+        }
+        solrQuery.setSorts(sortClauses);
+        return solrQuery;
+    }
+
+    /**
+     * Spliterator over cursor paged results. It does not split: splitting ahead of consumption would fetch all pages
+     * into memory, since the cursor can only go forward.
+     */
+    private class CursorSpliterator implements Spliterator<SolrDocument> {
+
+        private final String query;
+        private final String sortField;
+        private final SolrQuery.ORDER order;
+        private final int rows;
+        private final String[] fields;
+
+        private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        private boolean finished = false;
+        private List<SolrDocument> page = Collections.emptyList();
+        private int position = 0;
+        private boolean started = false;
+        /** numFound of the first page minus documents handed over */
+        private long remaining = Long.MAX_VALUE;
+
+        CursorSpliterator(String query, String sortField, SolrQuery.ORDER order, int rows, String[] fields) {
+            this.query = query;
+            this.sortField = sortField;
+            this.order = order;
+            this.rows = rows;
+            this.fields = fields;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SolrDocument> action) {
+            while (position >= page.size()) {
+                if (!fetchNextPage()) {
+                    return false;
+                }
+            }
+            action.accept(page.get(position++));
+            if (remaining > 0) {
+                remaining--;
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<SolrDocument> trySplit() {
+            return null;
+        }
+
+        private boolean fetchNextPage() {
+            if (finished) {
+                return false;
+            }
+            try {
+                SolrQuery solrQuery = createCursorQuery(query, sortField, order, cursorMark, rows);
+                if (fields != null && fields.length > 0) {
+                    solrQuery.setFields(fields);
+                }
+                QueryResponse response = solrClient.query(solrQuery);
+                if (!started) {
+                    started = true;
+                    remaining = response.getResults().getNumFound();
+                }
+                String nextCursorMark = response.getNextCursorMark();
+                finished = nextCursorMark == null || nextCursorMark.equals(cursorMark);
+                cursorMark = nextCursorMark;
+                page = new ArrayList<>(response.getResults());
+                position = 0;
+                return !page.isEmpty() || !finished;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SolrServerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            if (!started && !finished) {
+                fetchNextPage();
+            }
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
         }
     }
 
@@ -185,6 +481,7 @@ public class ProcessingIndexFeeder {
 
     // commit to solr
     public void commit() throws IOException, SolrServerException {
+        flush();
         this.solrClient.commit();
     }
 
@@ -11,46 +11,23 @@ import cz.incad.kramerius.fedora.RepoModule;
 import cz.incad.kramerius.fedora.om.RepositoryException;
 import cz.incad.kramerius.fedora.om.impl.AkubraObject;
 import cz.incad.kramerius.fedora.om.impl.AkubraUtils;
-import cz.incad.kramerius.fedora.om.impl.RELSEXTSPARQLBuilder;
-import cz.incad.kramerius.fedora.om.impl.RELSEXTSPARQLBuilderImpl;
 import cz.incad.kramerius.solr.SolrModule;
 import cz.incad.kramerius.statistics.NullStatisticsModule;
 import cz.incad.kramerius.utils.FedoraUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
-import org.apache.commons.io.IOUtils;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.fcrepo.client.FcrepoOperationFailedException;
-import org.xml.sax.SAXException;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ProcessingIndexRebuild {
     public static final Logger LOGGER = Logger.getLogger(ProcessingIndexCheck.class.getName());
 
-    private static Unmarshaller unmarshaller = null;
-
-    static {
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            unmarshaller = jaxbContext.createUnmarshaller();
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Cannot init JAXB", e);
-            throw new RuntimeException(e);
-        }
-    }
-
     private volatile static long counter = 0;
 
 
@@ -59,25 +36,21 @@ public class ProcessingIndexRebuild {
         final FedoraAccess fa = injector.getInstance(Key.get(FedoraAccess.class, Names.named("rawFedoraAccess")));
         final ProcessingIndexFeeder feeder = injector.getInstance(ProcessingIndexFeeder.class);
         try {
-            long start = System.currentTimeMillis();
-            feeder.deleteProcessingIndex();
+            if (feeder.getBatchSize() <= 1) {
+                feeder.setBatchSize(KConfiguration.getInstance().getConfiguration().getInt("processingIndex.rebuild.batchSize", 1000));
+            }
             Path objectStoreRoot = null;
             if (KConfiguration.getInstance().getConfiguration().getBoolean("legacyfs")) {
                 objectStoreRoot = Paths.get(KConfiguration.getInstance().getProperty("object_store_base"));
             } else {
                 objectStoreRoot = Paths.get(KConfiguration.getInstance().getProperty("objectStore.path"));
             }
-            Files.walk(objectStoreRoot, FileVisitOption.FOLLOW_LINKS).parallel().filter(Files::isRegularFile).forEach(path -> {
-                String filename = path.toString();
-                try {
-                    FileInputStream inputStream = new FileInputStream(path.toFile());
-                    DigitalObject digitalObject = createDigitalObject(inputStream);
-                    rebuildProcessingIndex(feeder, digitalObject);
-                } catch (Exception ex) {
-                    LOGGER.log(Level.SEVERE, "Error processing file: " + filename, ex);
-                }
-            });
-            LOGGER.info("Finished tree walk in " + (System.currentTimeMillis() - start) + " ms");
+            Path checkpointFile = Paths.get(KConfiguration.getInstance().getConfiguration().getString("processingIndex.rebuild.checkpointFile",
+                    System.getProperty("user.home") + "/.kramerius4/processing-rebuild.checkpoint"));
+            int threads = KConfiguration.getInstance().getConfiguration().getInt("processingIndex.rebuild.threads", Runtime.getRuntime().availableProcessors());
+            long checkpointInterval = KConfiguration.getInstance().getConfiguration().getLong("processingIndex.rebuild.checkpointInterval", 60000L);
+            boolean resume = args.length > 0 && "resume".equalsIgnoreCase(args[0]);
+            new ProcessingIndexRebuildEngine(feeder, objectStoreRoot, checkpointFile, threads, checkpointInterval).rebuild(resume);
         } finally {
             if (feeder != null) {
                 feeder.commit();
@@ -87,19 +60,6 @@ public class ProcessingIndexRebuild {
         fa.shutdown();
     }
 
-    private static DigitalObject createDigitalObject(InputStream inputStream) {
-        DigitalObject obj = null;
-        try {
-            synchronized (unmarshaller) {
-                obj = (DigitalObject) unmarshaller.unmarshal(inputStream);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        return obj;
-    }
-
-
     public static void rebuildProcessingIndex(ProcessingIndexFeeder feeder, DigitalObject digitalObject) throws RepositoryException {
         try {
             List<DatastreamType> datastreamList = digitalObject.getDatastream();
@@ -107,7 +67,7 @@ public class ProcessingIndexRebuild {
                 if (FedoraUtils.RELS_EXT_STREAM.equals(datastreamType.getID())) {
                     InputStream streamContent = AkubraUtils.getStreamContent(AkubraUtils.getLastStreamVersion(datastreamType), null);
                     AkubraObject akubraObject = new AkubraObject(null, digitalObject.getPID(), digitalObject, feeder);
-                    rebuildProcessingIndexImpl(akubraObject, streamContent);
+                    rebuildProcessingIndexImpl(feeder, akubraObject, streamContent);
                 }
             }
         } catch (Exception e) {
@@ -115,20 +75,13 @@ public class ProcessingIndexRebuild {
         }
     }
 
-    private static void rebuildProcessingIndexImpl(AkubraObject akubraObject, InputStream content) throws RepositoryException {
+    private static void rebuildProcessingIndexImpl(ProcessingIndexFeeder feeder, AkubraObject akubraObject, InputStream content) throws RepositoryException {
         try {
-            String s = IOUtils.toString(content, "UTF-8");
-            RELSEXTSPARQLBuilder sparqlBuilder = new RELSEXTSPARQLBuilderImpl();
-            sparqlBuilder.sparqlProps(s.trim(), (object, localName) -> {
-                akubraObject.processRELSEXTRelationAndFeedProcessingIndex(object, localName);
-                return object;
-            });
+            feeder.feedDocuments(akubraObject.processingIndexDocuments(content));
             LOGGER.info("Processed PID:" + akubraObject.getPid() + ",  count:" + (++counter));
         } catch (IOException e) {
             throw new RepositoryException(e);
-        } catch (SAXException e) {
-            throw new RepositoryException(e);
-        } catch (ParserConfigurationException e) {
+        } catch (SolrServerException e) {
             throw new RepositoryException(e);
         }
     }
@@ -0,0 +1,329 @@
+package cz.incad.kramerius.resourceindex;
+
+import com.qbizm.kramerius.imp.jaxb.DigitalObject;
+import cz.incad.kramerius.FedoraNamespaces;
+import cz.incad.kramerius.fedora.om.impl.AkubraUtils;
+import cz.incad.kramerius.utils.FedoraUtils;
+import cz.incad.kramerius.utils.pid.PIDParser;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parallel rebuild of the processing index directly from the object store files.
+ * <ul>
+ *     <li>hash directories of the store are walked by fork-join tasks (one task per directory)</li>
+ *     <li>RELS-EXT and DC title are read by one StAX pass over FOXML; JAXB is used only for objects with non inline RELS-EXT</li>
+ *     <li>documents go through the buffered {@link ProcessingIndexFeeder}</li>
+ *     <li>finished directories are periodically written into the checkpoint file (after flush and commit);
+ *     an interrupted rebuild can be resumed and skips them. Directory is finished only if no object of it (or of its
+ *     subdirectories) failed, so resumed rebuild retries failed objects. The root is never written, it is always walked.</li>
+ * </ul>
+ */
+public class ProcessingIndexRebuildEngine {
+
+    public static final Logger LOGGER = Logger.getLogger(ProcessingIndexRebuildEngine.class.getName());
+
+    private static final String FOXML_NAMESPACE_URI = "info:fedora/fedora-system:def/foxml#";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final ProcessingIndexFeeder feeder;
+    private final Path objectStoreRoot;
+    private final Path checkpointFile;
+    private final int parallelism;
+    private final long checkpointInterval;
+
+    private final Set<String> finishedDirectories = ConcurrentHashMap.newKeySet();
+    private final List<String> notCheckpointedDirectories = new ArrayList<>();
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private JAXBContext jaxbContext;
+
+    /**
+     * @param feeder Processing index feeder
+     * @param objectStoreRoot Root of the object store
+     * @param checkpointFile File with finished directories
+     * @param parallelism Number of worker threads
+     * @param checkpointInterval Checkpoint interval in ms
+     */
+    public ProcessingIndexRebuildEngine(ProcessingIndexFeeder feeder, Path objectStoreRoot, Path checkpointFile, int parallelism, long checkpointInterval) {
+        this.feeder = feeder;
+        this.objectStoreRoot = objectStoreRoot;
+        this.checkpointFile = checkpointFile;
+        this.parallelism = parallelism;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Rebuilds the processing index
+     * @param resume If true, finished directories from the checkpoint file are skipped and the index is not deleted
+     */
+    public void rebuild(boolean resume) throws IOException, SolrServerException {
+        if (resume && Files.exists(this.checkpointFile)) {
+            this.finishedDirectories.addAll(Files.readAllLines(this.checkpointFile, StandardCharsets.UTF_8));
+            LOGGER.info("Resuming rebuild, skipping " + this.finishedDirectories.size() + " finished directories");
+        } else {
+            Files.deleteIfExists(this.checkpointFile);
+            this.feeder.deleteProcessingIndex();
+        }
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.invoke(new DirectoryTask(this.objectStoreRoot));
+        } finally {
+            pool.shutdown();
+        }
+        checkpoint(true);
+        LOGGER.info(String.format("Rebuild finished in %d ms, processed %d objects, failed %d", (System.currentTimeMillis() - start), processed.get(), failed.get()));
+        if (failed.get() == 0) {
+            Files.deleteIfExists(this.checkpointFile);
+        }
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return false if the object failed
+     */
+    private boolean processFile(Path path) {
+        try {
+            List<SolrInputDocument> docs;
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+                docs = processingIndexDocuments(this.feeder, inputStream);
+            }
+            if (docs != null) {
+                this.feeder.feedDocuments(docs);
+            } else {
+                // RELS-EXT is not inline, full object is needed
+                try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+                    ProcessingIndexRebuild.rebuildProcessingIndex(this.feeder, unmarshall(inputStream));
+                }
+            }
+            long count = processed.incrementAndGet();
+            if (count % 10000 == 0) {
+                LOGGER.info("Processed objects: " + count);
+            }
+            return true;
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.SEVERE, "Error processing file: " + path, ex);
+            return false;
+        }
+    }
+
+    private DigitalObject unmarshall(InputStream inputStream) throws JAXBException {
+        synchronized (this) {
+            if (this.jaxbContext == null) {
+                this.jaxbContext = JAXBContext.newInstance(DigitalObject.class);
+            }
+        }
+        return (DigitalObject) this.jaxbContext.createUnmarshaller().unmarshal(inputStream);
+    }
+
+    private void directoryFinished(String relativePath) throws IOException, SolrServerException {
+        synchronized (this.notCheckpointedDirectories) {
+            this.notCheckpointedDirectories.add(relativePath);
+        }
+        checkpoint(false);
+    }
+
+    private void checkpoint(boolean force) throws IOException, SolrServerException {
+        synchronized (this.notCheckpointedDirectories) {
+            if (!force && System.currentTimeMillis() - this.lastCheckpoint < this.checkpointInterval) {
+                return;
+            }
+            // documents of finished directories must be stored before the directories are written into checkpoint
+            this.feeder.commit();
+            if (!this.notCheckpointedDirectories.isEmpty()) {
+                try (Writer writer = Files.newBufferedWriter(this.checkpointFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (String dir : this.notCheckpointedDirectories) {
+                        writer.write(dir);
+                        writer.write('\n');
+                    }
+                }
+                this.notCheckpointedDirectories.clear();
+            }
+            this.lastCheckpoint = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Task processes files of one directory and forks tasks for its subdirectories.
+     * Result is true if all objects of the directory and its subdirectories were processed without failure.
+     */
+    private class DirectoryTask extends RecursiveTask<Boolean> {
+
+        private final Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected Boolean compute() {
+            String relativePath = objectStoreRoot.relativize(this.directory).toString();
+            boolean root = relativePath.isEmpty();
+            if (!root && finishedDirectories.contains(relativePath)) {
+                return true;
+            }
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path path : stream) {
+                    if (Files.isDirectory(path)) {
+                        subtasks.add(new DirectoryTask(path));
+                    } else if (Files.isRegularFile(path)) {
+                        files.add(path);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Cannot list directory: " + this.directory, e);
+                failed.incrementAndGet();
+                return false;
+            }
+            for (DirectoryTask subtask : subtasks) {
+                subtask.fork();
+            }
+            boolean clean = true;
+            for (Path file : files) {
+                clean &= processFile(file);
+            }
+            for (DirectoryTask subtask : subtasks) {
+                clean &= subtask.join();
+            }
+            if (clean && !root) {
+                try {
+                    directoryFinished(relativePath);
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Cannot write checkpoint: " + e.getMessage(), e);
+                }
+            }
+            return clean;
+        }
+    }
+
+    /**
+     * Creates processing index documents from FOXML in one streaming pass; reads the last versions of RELS-EXT and DC datastreams
+     * @param feeder Feeder creating the documents
+     * @param foxml FOXML stream
+     * @return documents or null if the RELS-EXT is not inline XML
+     */
+    static List<SolrInputDocument> processingIndexDocuments(ProcessingIndexFeeder feeder, InputStream foxml) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(foxml);
+        try {
+            String pid = null;
+            String datastreamId = null;
+            boolean relsExtInline = false;
+            boolean relsExtFound = false;
+            List<String[]> relations = new ArrayList<>();
+            String dcTitle = null;
+            int descriptionDepth = -1;
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String ns = reader.getNamespaceURI();
+                    String localName = reader.getLocalName();
+                    if (FOXML_NAMESPACE_URI.equals(ns)) {
+                        if ("digitalObject".equals(localName)) {
+                            pid = reader.getAttributeValue(null, "PID");
+                        } else if ("datastream".equals(localName)) {
+                            datastreamId = reader.getAttributeValue(null, "ID");
+                        } else if ("datastreamVersion".equals(localName)) {
+                            // every next version replaces the previous one
+                            if (FedoraUtils.RELS_EXT_STREAM.equals(datastreamId)) {
+                                relsExtFound = true;
+                                relsExtInline = false;
+                                relations.clear();
+                            } else if (FedoraUtils.DC_STREAM.equals(datastreamId)) {
+                                dcTitle = null;
+                            }
+                        } else if ("xmlContent".equals(localName) && FedoraUtils.RELS_EXT_STREAM.equals(datastreamId)) {
+                            relsExtInline = true;
+                        }
+                    } else if (FedoraUtils.RELS_EXT_STREAM.equals(datastreamId)) {
+                        if (descriptionDepth < 0 && "Description".equals(localName) && FedoraNamespaces.RDF_NAMESPACE_URI.equals(ns)) {
+                            descriptionDepth = depth;
+                        } else if (descriptionDepth > 0 && depth == descriptionDepth + 1) {
+                            String resource = reader.getAttributeValue(FedoraNamespaces.RDF_NAMESPACE_URI, "resource");
+                            if (resource != null && resource.startsWith(PIDParser.INFO_FEDORA_PREFIX)) {
+                                relations.add(new String[]{localName, resource.substring(PIDParser.INFO_FEDORA_PREFIX.length())});
+                            }
+                        }
+                    } else if (FedoraUtils.DC_STREAM.equals(datastreamId) && dcTitle == null
+                            && "title".equals(localName) && FedoraNamespaces.DC_NAMESPACE_URI.equals(ns)) {
+                        dcTitle = reader.getElementText();
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == descriptionDepth) {
+                        descriptionDepth = -1;
+                    }
+                    depth--;
+                    if (FOXML_NAMESPACE_URI.equals(reader.getNamespaceURI()) && "datastream".equals(reader.getLocalName())) {
+                        datastreamId = null;
+                    }
+                }
+            }
+            if (relsExtFound && !relsExtInline) {
+                return null;
+            }
+            List<SolrInputDocument> docs = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (String[] relation : relations) {
+                if (!seen.add(relation[0] + "|" + relation[1])) {
+                    continue;
+                }
+                if ("hasModel".equals(relation[0])) {
+                    docs.add(feeder.createDescriptionDocument(pid, relation[1], dcTitle != null ? dcTitle.trim() : "", AkubraUtils.getAkubraInternalId(pid), new Date()));
+                } else {
+                    docs.add(feeder.createRelationDocument(pid, relation[0], relation[1]));
+                }
+            }
+            return docs;
+        } finally {
+            reader.close();
+        }
+    }
+}
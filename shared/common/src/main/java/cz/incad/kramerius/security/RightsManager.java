@@ -207,6 +207,18 @@ public interface RightsManager {
      * @return role identifiers
      */
     public int[] findUsedRoleIDs();
+
+    /**
+     * Find all user identifiers which have rights assigned directly (not through roles)
+     * @return user identifiers
+     */
+    public int[] findUsedUserIDs();
+
+    /**
+     * Returns version of rights; the version changes with every modification of rights, criteriums or params
+     * @return rights version
+     */
+    public long getRightsVersion();
     
     
     /**
@@ -25,6 +25,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import cz.incad.kramerius.security.*;
@@ -42,6 +47,7 @@ import cz.incad.kramerius.security.database.SecurityDatabaseUtils;
 import cz.incad.kramerius.security.utils.RightsDBUtils;
 import cz.incad.kramerius.security.utils.SecurityDBUtils;
 import cz.incad.kramerius.security.utils.SortingRightsUtils;
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.incad.kramerius.utils.database.JDBCCommand;
 import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
 import cz.incad.kramerius.utils.database.JDBCTransactionTemplate;
@@ -67,6 +73,22 @@ public class DatabaseRightsManager implements RightsManager {
     @Inject
     @Named("fedora")
     CollectionsManager colGet;
+
+    // changes with every modification of rights, criteriums or params
+    private static final AtomicLong RIGHTS_VERSION = new AtomicLong();
+
+    // in-memory copy of rights table used by resolve; sql is used while the snapshot is missing or stale
+    private static volatile RightsSnapshot SNAPSHOT;
+    private static volatile long SNAPSHOT_TIMESTAMP;
+    private static final AtomicBoolean SNAPSHOT_REBUILDING = new AtomicBoolean(false);
+    private static final ExecutorService SNAPSHOT_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "rights-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     
     @Override
     @InitSecurityDatabase
@@ -211,11 +233,7 @@ public class DatabaseRightsManager implements RightsManager {
                 grpIds[i] = grps[i].getId();
             }
         }
-        for (int i = 0; i < pids.length; i++) {
-            if (!pids[i].startsWith("uuid:") && !pids[i].startsWith("vc:")) {
-                pids[i] = "uuid:" + pids[i];
-            }
-        }
+        normalizePids(pids);
         StringTemplate template = SecurityDatabaseUtils.stGroup().getInstanceOf("findRightFromWithGroups");
         template.setAttribute("pids", pids);
         template.setAttribute("groups", grpIds);
@@ -247,6 +265,84 @@ public class DatabaseRightsManager implements RightsManager {
         return ((rights != null) && (!rights.isEmpty())) ? (Right[]) rights.toArray(new Right[rights.size()]) : new Right[0];
     }
 
+    private static void normalizePids(String[] pids) {
+        for (int i = 0; i < pids.length; i++) {
+            if (!pids[i].startsWith("uuid:") && !pids[i].startsWith("vc:")) {
+                pids[i] = "uuid:" + pids[i];
+            }
+        }
+    }
+
+    /**
+     * Rights for resolving; served from the snapshot, sql is used only while the snapshot is being (re)built
+     */
+    Right[] findRightsForResolve(String[] pids, String action, User user) {
+        RightsSnapshot snapshot = currentSnapshot();
+        if (snapshot != null) {
+            normalizePids(pids);
+            return snapshot.findRights(pids, action, user, this.criteriumWrapperFactory);
+        } else {
+            return findRights(pids, action, user);
+        }
+    }
+
+    RightsSnapshot currentSnapshot() {
+        if (!KConfiguration.getInstance().getConfiguration().getBoolean("security.rightsSnapshot", true)) {
+            return null;
+        }
+        RightsSnapshot snapshot = SNAPSHOT;
+        if (snapshot == null || snapshot.getVersion() != RIGHTS_VERSION.get()) {
+            scheduleSnapshotRebuild();
+            return null;
+        }
+        // labels and changes made on other nodes are not versioned; refresh periodically in background and serve current snapshot meanwhile
+        long maxAge = KConfiguration.getInstance().getConfiguration().getLong("security.rightsSnapshot.maxAge", 60000L);
+        if (System.currentTimeMillis() - SNAPSHOT_TIMESTAMP > maxAge) {
+            scheduleSnapshotRebuild();
+        }
+        return snapshot;
+    }
+
+    void scheduleSnapshotRebuild() {
+        if (SNAPSHOT_REBUILDING.compareAndSet(false, true)) {
+            SNAPSHOT_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        snapshotBuilt(buildSnapshot());
+                    } catch (Exception e) {
+                        LOGGER.log(Level.SEVERE, "cannot build rights snapshot: " + e.getMessage(), e);
+                    } finally {
+                        SNAPSHOT_REBUILDING.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    void snapshotBuilt(RightsSnapshot snapshot) {
+        SNAPSHOT_TIMESTAMP = System.currentTimeMillis();
+        SNAPSHOT = snapshot;
+    }
+
+    RightsSnapshot buildSnapshot() {
+        // version must be read before the table; change during reading makes the snapshot stale immediately
+        long version = RIGHTS_VERSION.get();
+        StringTemplate template = SecurityDatabaseUtils.stGroup().getInstanceOf("findAllRights");
+        template.setAttribute("params", new HashMap<String, List<String>>());
+        final RightsSnapshot.Builder builder = new RightsSnapshot.Builder(version);
+        new JDBCQueryTemplate<Right>(this.provider.get()) {
+            @Override
+            public boolean handleRow(ResultSet rs, List<Right> returnsList) throws SQLException {
+                builder.addRow(rs);
+                return true;
+            }
+        }.executeQuery(template.toString());
+        RightsSnapshot snapshot = builder.build();
+        LOGGER.fine("rights snapshot version " + version + " has been built");
+        return snapshot;
+    }
+
     public Provider<Connection> getProvider() {
         return provider;
     }
@@ -274,7 +370,7 @@ public class DatabaseRightsManager implements RightsManager {
         //List<String> pids = Arrays.asList(path.injectRepository().getPathFromRootToLeaf());
         String[] pids = processPath.getPathFromLeafToRoot();
         
-        Right[] findRights = findRights(pids, action, user);
+        Right[] findRights = findRightsForResolve(pids, action, user);
         findRights = SortingRightsUtils.sortRights(findRights, processPath);
         for (Right right : findRights) {
             ctx.setAssociatedPid(right.getPid());
@@ -289,7 +385,7 @@ public class DatabaseRightsManager implements RightsManager {
 
     @InitSecurityDatabase
     public RightsReturnObject[] resolveAllPath(RightCriteriumContext ctx, String pid, ObjectPidsPath path, String action, User user) throws RightCriteriumException {
-        Right[] findRights = findRights(path.getPathFromLeafToRoot(), action, user);
+        Right[] findRights = findRightsForResolve(path.getPathFromLeafToRoot(), action, user);
         findRights = SortingRightsUtils.sortRights(findRights, path);
         RightsReturnObject[] results = new RightsReturnObject[path.getLength()];
         for (int i = 0; i < results.length; i++) {
@@ -438,7 +534,7 @@ public class DatabaseRightsManager implements RightsManager {
 
         final RightCriteriumParams params = criteriumWrapper != null ? criteriumWrapper.getCriteriumParams() : null;
         final Connection con = provider.get();
-        return (Integer) new JDBCTransactionTemplate(con, true).updateWithTransaction(new JDBCCommand() {
+        int retval = (Integer) new JDBCTransactionTemplate(con, true).updateWithTransaction(new JDBCCommand() {
 
             @Override
             public Object executeJDBCCommand(Connection con) throws SQLException {
@@ -480,6 +576,8 @@ public class DatabaseRightsManager implements RightsManager {
                 return insertRightImpl(con, right);
             }
         });
+        rightsChanged();
+        return retval;
     }
 
     private Label getLabel(RightCriteriumWrapper criteriumWrapper) {
@@ -533,6 +631,7 @@ public class DatabaseRightsManager implements RightsManager {
                 return -1;
             }
         });
+        rightsChanged();
     }
 
     @InitSecurityDatabase
@@ -572,6 +671,7 @@ public class DatabaseRightsManager implements RightsManager {
                 return -1;
             }
         });
+        rightsChanged();
     }
     
     
@@ -594,6 +694,7 @@ public class DatabaseRightsManager implements RightsManager {
                 return -1;
             }
         });
+        rightsChanged();
     }
     
     
@@ -638,6 +739,7 @@ public class DatabaseRightsManager implements RightsManager {
         
         new JDBCTransactionTemplate(connection, true).updateWithTransaction(commands);
         
+        rightsChanged();
     }
 
     
@@ -645,6 +747,7 @@ public class DatabaseRightsManager implements RightsManager {
     @Override
     public void deleteRightCriterium(int id) throws SQLException {
         this.deleteRightCriteriumImpl(this.provider.get(), id);
+        rightsChanged();
     }
 
 
@@ -708,7 +811,7 @@ public class DatabaseRightsManager implements RightsManager {
         final RightCriteriumParams params = criterium.getCriteriumParams();
         final Connection con = provider.get();
 
-        return (Integer) new JDBCTransactionTemplate(con, true).updateWithTransaction(new JDBCCommand() {
+        int retval = (Integer) new JDBCTransactionTemplate(con, true).updateWithTransaction(new JDBCCommand() {
             @Override
             public Object executeJDBCCommand(Connection con) throws SQLException {
                 if (params != null) {
@@ -729,6 +832,8 @@ public class DatabaseRightsManager implements RightsManager {
             }
         });
 
+        rightsChanged();
+        return retval;
     }
 
     @InitSecurityDatabase
@@ -769,8 +874,40 @@ public class DatabaseRightsManager implements RightsManager {
     public void updateRightCriteriumParams(RightCriteriumParams criteriumParams) throws SQLException {
         final Connection con = provider.get();  
         updateRightCriteriumParamsImpl(con, criteriumParams);
+        rightsChanged();
+    }
+
+
+    @Override
+    public long getRightsVersion() {
+        return RIGHTS_VERSION.get();
+    }
+
+    void rightsChanged() {
+        RIGHTS_VERSION.incrementAndGet();
+        scheduleSnapshotRebuild();
     }
 
+    @Override
+    public int[] findUsedUserIDs() {
+        StringTemplate template = SecurityDatabaseUtils.stGroup().getInstanceOf("findUsedUsers");
+        List<Integer> ids = new JDBCQueryTemplate<Integer>(this.provider.get()) {
+            @Override
+            public boolean handleRow(ResultSet rs, List<Integer> returnsList) throws SQLException {
+                int val = rs.getInt("user_id");
+                if (val > 0) {
+                    returnsList.add(val);
+                }
+                return true;
+            }
+        }.executeQuery(template.toString());
+
+        int[] retArray = new int[ids.size()];
+        for (int i = 0; i < retArray.length; i++) {
+            retArray[i] = ids.get(i);
+        }
+        return retArray;
+    }
 
     @Override
     public int[] findUsedRoleIDs() {
@@ -0,0 +1,170 @@
+package cz.incad.kramerius.security.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cz.incad.kramerius.security.AbstractUser;
+import cz.incad.kramerius.security.CriteriumType;
+import cz.incad.kramerius.security.Right;
+import cz.incad.kramerius.security.RightCriteriumParams;
+import cz.incad.kramerius.security.RightCriteriumWrapper;
+import cz.incad.kramerius.security.RightCriteriumWrapperFactory;
+import cz.incad.kramerius.security.Role;
+import cz.incad.kramerius.security.User;
+import cz.incad.kramerius.security.labels.impl.LabelImpl;
+import cz.incad.kramerius.security.utils.RightsDBUtils;
+import cz.incad.kramerius.security.utils.SecurityDBUtils;
+
+/**
+ * Immutable in-memory copy of the rights table (rights, criteriums, params and labels) indexed by action and pid.
+ * <br>
+ * Snapshot holds only row data; every lookup creates new {@link Right} instances because criteriums keep
+ * evaluation state and evaluation of one right instance is synchronized.
+ * @see DatabaseRightsManager
+ */
+class RightsSnapshot {
+
+    private final long version;
+    // action -> pid -> records
+    private final Map<String, Map<String, List<RightRecord>>> index;
+
+    private RightsSnapshot(long version, Map<String, Map<String, List<RightRecord>>> index) {
+        this.version = version;
+        this.index = index;
+    }
+
+    /**
+     * Returns version of rights from which the snapshot has been built
+     * @return rights version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Equivalent of {@link DatabaseRightsManager#findRights(String[], String, User)} without database access
+     */
+    Right[] findRights(String[] pids, String action, User user, RightCriteriumWrapperFactory factory) {
+        Map<String, List<RightRecord>> byPid = this.index.get(action);
+        if (byPid == null) return new Right[0];
+
+        Set<Integer> groups = new HashSet<Integer>();
+        Role[] grps = user.getGroups();
+        if (grps != null) {
+            for (Role grp : grps) {
+                groups.add(grp.getId());
+            }
+        }
+
+        List<Right> rights = new ArrayList<Right>();
+        for (String pid : pids) {
+            List<RightRecord> records = byPid.get(pid);
+            if (records == null) continue;
+            for (RightRecord record : records) {
+                if (record.isAssociatedWith(user.getId(), groups)) {
+                    rights.add(record.createRight(factory));
+                }
+            }
+        }
+        return rights.toArray(new Right[rights.size()]);
+    }
+
+    static class Builder {
+
+        private final long version;
+        private final Map<String, Map<String, List<RightRecord>>> index = new HashMap<String, Map<String, List<RightRecord>>>();
+
+        Builder(long version) {
+            this.version = version;
+        }
+
+        void addRow(ResultSet rs) throws SQLException {
+            RightRecord record = new RightRecord(rs);
+            Map<String, List<RightRecord>> byPid = this.index.get(record.action);
+            if (byPid == null) {
+                byPid = new HashMap<String, List<RightRecord>>();
+                this.index.put(record.action, byPid);
+            }
+            List<RightRecord> records = byPid.get(record.pid);
+            if (records == null) {
+                records = new ArrayList<RightRecord>();
+                byPid.put(record.pid, records);
+            }
+            records.add(record);
+        }
+
+        RightsSnapshot build() {
+            Map<String, Map<String, List<RightRecord>>> unmodifiable = new HashMap<String, Map<String, List<RightRecord>>>();
+            for (Map.Entry<String, Map<String, List<RightRecord>>> actionEntry : this.index.entrySet()) {
+                Map<String, List<RightRecord>> byPid = new HashMap<String, List<RightRecord>>();
+                for (Map.Entry<String, List<RightRecord>> pidEntry : actionEntry.getValue().entrySet()) {
+                    byPid.put(pidEntry.getKey(), Collections.unmodifiableList(pidEntry.getValue()));
+                }
+                unmodifiable.put(actionEntry.getKey(), Collections.unmodifiableMap(byPid));
+            }
+            return new RightsSnapshot(this.version, Collections.unmodifiableMap(unmodifiable));
+        }
+    }
+
+    /**
+     * One row of the rights table; mirrors {@link RightsDBUtils#createRight(ResultSet, AbstractUser, RightCriteriumWrapperFactory)}
+     */
+    static class RightRecord {
+
+        private final int rightId;
+        private final String pid;
+        private final String action;
+        private final int fixedPriority;
+        private final int userId;
+        private final int groupId;
+        private final AbstractUser user;
+
+        private final String qname;
+        private final CriteriumType criteriumType;
+        private final int criteriumId;
+        private final RightCriteriumParams params;
+        private final LabelImpl label;
+
+        RightRecord(ResultSet rs) throws SQLException {
+            this.rightId = rs.getInt("right_id");
+            this.pid = rs.getString("uuid");
+            this.action = rs.getString("action");
+            this.fixedPriority = rs.getInt("fixed_priority");
+            int uid = rs.getInt("user_id");
+            this.userId = rs.wasNull() ? -1 : uid;
+            int gid = rs.getInt("group_id");
+            this.groupId = rs.wasNull() ? -1 : gid;
+            this.user = SecurityDBUtils.createUser(rs);
+
+            this.qname = rs.getString("qname");
+            this.criteriumType = CriteriumType.findByValue(rs.getInt("type"));
+            this.criteriumId = rs.getInt("crit_id");
+            this.params = this.qname != null ? RightsDBUtils.createCriteriumParams(rs) : null;
+            this.label = new LabelImpl(rs.getInt("label_id"), rs.getString("label_name"), rs.getString("label_description"), rs.getString("label_group"), rs.getInt("label_priority"));
+        }
+
+        boolean isAssociatedWith(int uid, Set<Integer> groups) {
+            return (this.userId >= 0 && this.userId == uid) || (this.groupId >= 0 && groups.contains(this.groupId));
+        }
+
+        Right createRight(RightCriteriumWrapperFactory factory) {
+            RightCriteriumWrapper crit = null;
+            if (this.qname != null) {
+                crit = factory.loadExistingWrapper(this.criteriumType, this.qname, this.criteriumId, this.params);
+                if (crit != null && crit.isLabelAwareCriterium()) {
+                    crit.setLabel(this.label);
+                }
+            }
+            Right right = new RightImpl(this.rightId, crit, this.pid, this.action, this.user);
+            right.setFixedPriority(this.fixedPriority);
+            return right;
+        }
+    }
+}
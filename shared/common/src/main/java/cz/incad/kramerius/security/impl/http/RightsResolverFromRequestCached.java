@@ -15,6 +15,10 @@ import org.ehcache.expiry.Expirations;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -27,14 +31,27 @@ import static cz.incad.kramerius.security.impl.criteria.utils.CriteriaDNNTUtils.
  * @author Martin Rumanek
  */
 public class RightsResolverFromRequestCached extends RightsResolverFromRequest {
+
+    /**
+     * Decision key; user is represented by set of roles (and by user id only if the user has own rights),
+     * so users with the same roles share entries
+     */
     static class CacheKey implements Serializable {
+        private final long version;
+        private final String action;
         private final String PID;
-        private final User user;
+        private final String stream;
+        private final String path;
+        private final String principal;
         private final String ip;
 
-        public CacheKey(String PID, User user, String ip) {
+        public CacheKey(long version, String action, String PID, String stream, String path, String principal, String ip) {
+            this.version = version;
+            this.action = action;
             this.PID = PID;
-            this.user = user;
+            this.stream = stream;
+            this.path = path;
+            this.principal = principal;
             this.ip = ip;
         }
 
@@ -45,15 +62,23 @@ public class RightsResolverFromRequestCached extends RightsResolverFromRequest {
 
             CacheKey cacheKey = (CacheKey) o;
 
+            if (version != cacheKey.version) return false;
+            if (action != null ? !action.equals(cacheKey.action) : cacheKey.action != null) return false;
             if (PID != null ? !PID.equals(cacheKey.PID) : cacheKey.PID != null) return false;
-            if (user != null ? !user.equals(cacheKey.user) : cacheKey.user != null) return false;
+            if (stream != null ? !stream.equals(cacheKey.stream) : cacheKey.stream != null) return false;
+            if (path != null ? !path.equals(cacheKey.path) : cacheKey.path != null) return false;
+            if (principal != null ? !principal.equals(cacheKey.principal) : cacheKey.principal != null) return false;
             return ip != null ? ip.equals(cacheKey.ip) : cacheKey.ip == null;
         }
 
         @Override
         public int hashCode() {
-            int result = PID != null ? PID.hashCode() : 0;
-            result = 31 * result + (user != null ? user.hashCode() : 0);
+            int result = (int) (version ^ (version >>> 32));
+            result = 31 * result + (action != null ? action.hashCode() : 0);
+            result = 31 * result + (PID != null ? PID.hashCode() : 0);
+            result = 31 * result + (stream != null ? stream.hashCode() : 0);
+            result = 31 * result + (path != null ? path.hashCode() : 0);
+            result = 31 * result + (principal != null ? principal.hashCode() : 0);
             result = 31 * result + (ip != null ? ip.hashCode() : 0);
             return result;
         }
@@ -61,8 +86,14 @@ public class RightsResolverFromRequestCached extends RightsResolverFromRequest {
 
     private static Cache<CacheKey, RightsReturnObject> cache;
 
+    // users with directly assigned rights; valid for usersVersion
+    private static volatile Set<Integer> usersWithRights = Collections.emptySet();
+    private static volatile long usersVersion = -1;
+
     private Provider<HttpServletRequest> provider;
 
+    private RightsManager rightsManager;
+
     private static final String CACHE_ALIAS = "ActionAllowedCache";
 
     @Inject
@@ -73,48 +104,60 @@ public class RightsResolverFromRequestCached extends RightsResolverFromRequest {
         super(logger, provider, rightsManager, contextFactory, currentUserProvider);
 
         this.provider = provider;
+        this.rightsManager = rightsManager;
 
         cache = cacheManager.getCache(CACHE_ALIAS, CacheKey.class, RightsReturnObject.class);
         if (cache == null) {
+            // rights version is kept per JVM; ttl bounds changes made on other nodes and criteriums depending on time or index data
+            int ttl = configuration.getConfiguration().getInt("cache.rights.timeToLiveExpiration", configuration.getCacheTimeToLiveExpiration());
             cache = cacheManager.createCache(CACHE_ALIAS,
                     CacheConfigurationBuilder.newCacheConfigurationBuilder(CacheKey.class, RightsReturnObject.class,
                             ResourcePoolsBuilder.heap(1000).offheap(32, MemoryUnit.MB))
                             .withExpiry(Expirations.timeToLiveExpiration(
-                                    org.ehcache.expiry.Duration.of(configuration.getCacheTimeToLiveExpiration(), TimeUnit.SECONDS))).build());
+                                    org.ehcache.expiry.Duration.of(ttl, TimeUnit.SECONDS))).build());
         }
     }
 
 
     public RightsReturnObject isAllowedInternalForFedoraDocuments(String actionName, String pid, String stream, ObjectPidsPath path, User user) throws RightCriteriumException {
-        if ("read".equals(actionName)) {
-            String ip = IPAddressUtils.getRemoteAddress(this.provider.get(), KConfiguration.getInstance().getConfiguration());
-            RightsReturnObject allowed = cache.get(new CacheKey(pid, user, ip));
-
-            if (allowed != null) { //cache hit
+        long version = this.rightsManager.getRightsVersion();
+        String ip = IPAddressUtils.getRemoteAddress(this.provider.get(), KConfiguration.getInstance().getConfiguration());
+        CacheKey key = new CacheKey(version, actionName, pid, stream, path != null ? path.toString() : null, principal(user, version), ip);
+        RightsReturnObject allowed = cache.get(key);
+        if (allowed == null) { //cache miss
+            allowed = super.isAllowedInternalForFedoraDocuments(actionName, pid, stream, path, user);
+            // rights changed during evaluation; decision belongs to the old version
+            if (version == this.rightsManager.getRightsVersion()) {
+                cache.put(key, allowed);
+            }
+        }
 
-                // TODO: this is hack, replace it in future
-                currentThreadReturnObject.set(allowed);
+        // TODO: this is hack, replace it in future
+        currentThreadReturnObject.set(allowed);
 
-                return allowed;
-            } else { //cache miss
-                allowed = super.isAllowedInternalForFedoraDocuments(actionName, pid, stream, path, user);
-                cache.put(new CacheKey(pid, user, ip), allowed);
+        return allowed;
+    }
 
-                // TODO: this is hack, replace it in future
-                currentThreadReturnObject.set(allowed);
+    private String principal(User user, long version) {
+        Role[] groups = user.getGroups();
+        int[] ids = new int[groups != null ? groups.length : 0];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = groups[i].getId();
+        }
+        Arrays.sort(ids);
+        String roles = Arrays.toString(ids);
+        return usersWithRights(version).contains(user.getId()) ? user.getId() + roles : roles;
+    }
 
-                return allowed;
+    private Set<Integer> usersWithRights(long version) {
+        if (usersVersion != version) {
+            Set<Integer> users = new HashSet<Integer>();
+            for (int id : this.rightsManager.findUsedUserIDs()) {
+                users.add(id);
             }
-        } else {
-            RightsReturnObject allowed = super.isAllowedInternalForFedoraDocuments(actionName, pid, stream, path, user);
-
-            // TODO: this is hack, replace it in future
-            currentThreadReturnObject.set(allowed);
-
-            return allowed;
+            usersWithRights = users;
+            usersVersion = version;
         }
-
+        return usersWithRights;
     }
-
-
 }
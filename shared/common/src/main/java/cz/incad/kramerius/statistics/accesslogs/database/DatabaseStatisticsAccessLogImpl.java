@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -31,6 +32,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import javax.servlet.http.HttpServletRequest;
@@ -49,6 +54,8 @@ import org.antlr.stringtemplate.language.DefaultTemplateLexer;
 import org.json.JSONObject;
 import org.w3c.dom.Document;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
@@ -63,6 +70,7 @@ import cz.incad.kramerius.statistics.StatisticReport;
 import cz.incad.kramerius.statistics.StatisticsAccessLogSupport;
 import cz.incad.kramerius.users.LoggedUsersSingleton;
 import cz.incad.kramerius.utils.DCUtils;
+import cz.incad.kramerius.utils.conf.KConfiguration;
 import cz.incad.kramerius.utils.database.JDBCCommand;
 import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
 import cz.incad.kramerius.utils.database.JDBCTransactionTemplate;
@@ -108,114 +116,180 @@ public class DatabaseStatisticsAccessLogImpl extends AbstractStatisticsAccessLog
 
     private XPathFactory xpfactory;
 
+    /** Events waiting for enrichment and writing; bounded, events are dropped when it is full */
+    private final BlockingQueue<AccessEvent> events;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    /** Metadata of path elements; the same titles and volumes are read over and over */
+    private final Cache<String, DetailMetadata> metadataCache;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean running = true;
+
 
     public DatabaseStatisticsAccessLogImpl() {
+        this(KConfiguration.getInstance().getConfiguration().getInt("statistics.accessLog.queueSize", 10000),
+                KConfiguration.getInstance().getConfiguration().getInt("statistics.accessLog.batchSize", 100));
+        // events waiting in the queue are written when the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "statistics-access-log-shutdown"));
+    }
+
+    DatabaseStatisticsAccessLogImpl(int queueSize, int batchSize) {
         this.xpfactory = XPathFactory.newInstance();
+        KConfiguration conf = KConfiguration.getInstance();
+        this.events = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.metadataCache = CacheBuilder.newBuilder()
+                .maximumSize(conf.getConfiguration().getInt("statistics.accessLog.metadataCacheSize", 10000))
+                .expireAfterWrite(conf.getConfiguration().getInt("statistics.accessLog.metadataCacheTTL", 600), TimeUnit.SECONDS)
+                .build();
+        this.writer = new Thread(this::writeEvents, "statistics-access-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
     }
 
+    /**
+     * Captures request dependent data and puts the event into the queue; enrichment and writing run in the writer thread
+     */
     @Override
     public void reportAccess(final String pid, final String streamName) throws IOException {
+        User user = this.userProvider.get();
+        RightsReturnObject rightsReturnObject = CriteriaDNNTUtils.currentThreadReturnObject.get();
+        boolean providedByDnnt =  rightsReturnObject != null ? CriteriaDNNTUtils.allowedByReadDNNTFlagRight(rightsReturnObject) : false;
+
+        HttpServletRequest request = this.requestProvider.get();
+        boolean logged = loggedUsersSingleton.isLoggedUser(requestProvider);
+        AccessEvent event = new AccessEvent(pid,
+                new java.sql.Timestamp(System.currentTimeMillis()),
+                request.getRemoteAddr(),
+                logged ? user.getLoginname() : null,
+                disectedURL(requestProvider),
+                this.reportedAction.get(),
+                request.getSession().getId(),
+                providedByDnnt,
+                rightsReturnObject != null ? rightsReturnObject.getEvaluateInfoMap() : null,
+                user.getSessionAttributes());
+        enqueue(event);
+    }
 
-        ObjectPidsPath[] paths = this.solrAccess.getPidPaths(pid);
-        ObjectModelsPath[] mpaths = this.solrAccess.getModelPaths(pid);
+    void enqueue(AccessEvent event) {
+        if (!this.running || !this.events.offer(event)) {
+            long dropped = this.droppedEvents.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                LOGGER.warning("statistics access log queue is full or closed, dropped events: " + dropped);
+            }
+        }
+    }
 
-        Connection connection = null;
+    /**
+     * Stops accepting events and waits until the events from the queue are written
+     */
+    public void shutdown() {
+        this.running = false;
         try {
-            connection = connectionProvider.get();
-            if (connection == null)
-                throw new NotReadyException("connection not ready");
-
-            List<JDBCCommand> commands = new ArrayList<>();
-
-            Document solrDoc = this.solrAccess.getSolrDataByPid(pid);
-            String dnnt = SElemUtils.selem("bool", "dnnt", solrDoc);
-
-            List<String> dnntLabels = SolrUtils.disectDNNTLabels(solrDoc.getDocumentElement());
-
-
-
-            User user = this.userProvider.get();
-            RightsReturnObject rightsReturnObject = CriteriaDNNTUtils.currentThreadReturnObject.get();
-            boolean providedByDnnt =  rightsReturnObject != null ? CriteriaDNNTUtils.allowedByReadDNNTFlagRight(rightsReturnObject) : false;
-
-
-            commands.add(new InsertRecord(pid, loggedUsersSingleton, requestProvider, userProvider, this.reportedAction.get(), dnnt != null ? Boolean.parseBoolean(dnnt) : false, providedByDnnt, rightsReturnObject.getEvaluateInfoMap(), user.getSessionAttributes(), versionService.getVersion(), dnntLabels));
-            for (int i = 0, ll = paths.length; i < ll; i++) {
-
-                if (paths[i].contains(SpecialObjects.REPOSITORY.getPid())) {
-                    paths[i] = paths[i].cutHead(0);
-                }
-                final int pathIndex = i;
+            this.writer.join(TimeUnit.SECONDS.toMillis(KConfiguration.getInstance().getConfiguration().getInt("statistics.accessLog.shutdownTimeout", 10)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!this.events.isEmpty()) {
+            LOGGER.warning("statistics access log has not been flushed, lost events: " + this.events.size());
+        }
+    }
 
-                String[] pathFromLeafToRoot = paths[i].getPathFromLeafToRoot();
-                for (int j = 0; j < pathFromLeafToRoot.length; j++) {
-                    final String detailPid = pathFromLeafToRoot[j];
+    /**
+     * Returns number of events dropped because of full queue
+     */
+    public long getDroppedEvents() {
+        return this.droppedEvents.get();
+    }
 
-                    String kModel = fedoraAccess.getKrameriusModelName(detailPid);
-                    Document dc = fedoraAccess.getDC(detailPid);
-                    Document sDoc = this.solrAccess.getSolrDataByPid(pid);
+    private void writeEvents() {
+        List<AccessEvent> batch = new ArrayList<>(this.batchSize);
+        // after shutdown the rest of the queue is written
+        while (this.running || !this.events.isEmpty()) {
+            try {
+                AccessEvent event = this.events.poll(1, TimeUnit.SECONDS);
+                if (event == null) continue;
+                batch.add(event);
+                this.events.drainTo(batch, this.batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
 
-                    Object dateFromDC = DCUtils.dateFromDC(dc);
-                    dateFromDC = dateFromDC != null ? dateFromDC : new JDBCUpdateTemplate.NullObject(String.class);
+    void writeBatch(List<AccessEvent> batch) throws SQLException {
+        InsertBatch insertBatch = new InsertBatch(this.versionService.getVersion());
+        for (AccessEvent event : batch) {
+            try {
+                enrich(event, insertBatch);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "cannot report access to " + event.pid + ": " + e.getMessage(), e);
+            }
+        }
+        if (insertBatch.isEmpty()) return;
+
+        Connection connection = connectionProvider.get();
+        if (connection == null)
+            throw new NotReadyException("connection not ready");
+        //  WRITE TO DATABASE
+        JDBCTransactionTemplate transactionTemplate = new JDBCTransactionTemplate(connection, true);
+        transactionTemplate.updateWithTransaction(insertBatch);
+    }
 
-                    Object dateFromSolr = SElemUtils.selem("str", "datum_str", solrDoc);
-                    dateFromSolr = dateFromSolr != null ? dateFromSolr :  new JDBCUpdateTemplate.NullObject(String.class);
+    private void enrich(AccessEvent event, InsertBatch insertBatch) throws IOException {
+        ObjectPidsPath[] paths = this.solrAccess.getPidPaths(event.pid);
 
-                    Object languageFromDc = DCUtils.languageFromDC(dc);
-                    languageFromDc = languageFromDc != null ? languageFromDc : new JDBCUpdateTemplate.NullObject(String.class);
-                                      
-                    Object title = DCUtils.titleFromDC(dc);
-                    title = title != null ? title : new JDBCUpdateTemplate.NullObject(String.class);
+        Document solrDoc = this.solrAccess.getSolrDataByPid(event.pid);
+        String dnnt = SElemUtils.selem("bool", "dnnt", solrDoc);
+        List<String> dnntLabels = SolrUtils.disectDNNTLabels(solrDoc.getDocumentElement());
+        String dateFromSolr = SElemUtils.selem("str", "datum_str", solrDoc);
 
-                    Object rights = DCUtils.rightsFromDC(dc);
-                    rights = rights != null ? rights : new JDBCUpdateTemplate.NullObject(String.class);
+        int record = insertBatch.addRecord(event, dnnt != null ? Boolean.parseBoolean(dnnt) : false, dnntLabels);
+        for (int i = 0, ll = paths.length; i < ll; i++) {
 
-                    Document mods =  fedoraAccess.getBiblioMods(detailPid);
-                    List<String> languagesFromMods = null;
+            if (paths[i].contains(SpecialObjects.REPOSITORY.getPid())) {
+                paths[i] = paths[i].cutHead(0);
+            }
 
-                    Map<String, List<String>> identifiers = null;
-                    try {
-                        identifiers = ModsUtils.identifiersFromMods(mods);
-                    } catch (XPathExpressionException e) {
-                        Logger.getLogger(DatabaseStatisticsAccessLogImpl.class.getName()).log(Level.SEVERE, e.getMessage(), e);
-                    }
+            String[] pathFromLeafToRoot = paths[i].getPathFromLeafToRoot();
+            for (int j = 0; j < pathFromLeafToRoot.length; j++) {
+                DetailMetadata metadata = detailMetadata(pathFromLeafToRoot[j]);
+                insertBatch.addDetail(record, metadata, dateFromSolr, i);
+            }
+        }
+    }
 
-                    try {
-                        languagesFromMods = ModsUtils.languagesFromMods(mods);
-                    } catch (XPathExpressionException ex) {
-                        Logger.getLogger(DatabaseStatisticsAccessLogImpl.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-                    
-                    if (!languagesFromMods.isEmpty()) {
-                        for (String languageFromMods : languagesFromMods) {
-                            InsertDetail insertDetail = new InsertDetail(detailPid, kModel, rights, dateFromDC, dateFromSolr, languageFromMods, title, identifiers, pathIndex);
-                            commands.add(insertDetail);
-                        }
-                    }
-                    else {
-                        InsertDetail insertDetail = new InsertDetail(detailPid, kModel, rights, dateFromDC, dateFromSolr, languageFromDc, title, identifiers, pathIndex);
-                        commands.add(insertDetail);
-                    }
+    private DetailMetadata detailMetadata(final String detailPid) throws IOException {
+        DetailMetadata metadata = this.metadataCache.getIfPresent(detailPid);
+        if (metadata != null) return metadata;
 
-                    String[] creatorsFromDC = DCUtils.creatorsFromDC(dc);
-                    for (String cr : creatorsFromDC) {
-                        InsertAuthor insertAuth = new InsertAuthor(cr);
-                        commands.add(insertAuth);
-                    }
+        String kModel = fedoraAccess.getKrameriusModelName(detailPid);
+        Document dc = fedoraAccess.getDC(detailPid);
+        Document mods =  fedoraAccess.getBiblioMods(detailPid);
 
-                    String[] publishersFromDC = DCUtils.publishersFromDC(dc);
-                    for (String p : publishersFromDC) {
-                        InsertPublisher inserPublisher = new InsertPublisher(p);
-                        commands.add(inserPublisher);
-                    }
-                }
-            }
-            //  WRITE TO DATABASE
-            JDBCTransactionTemplate transactionTemplate = new JDBCTransactionTemplate(connection, true);
-            transactionTemplate.updateWithTransaction(commands);
-        } catch (SQLException e) {
+        Map<String, List<String>> identifiers = null;
+        try {
+            identifiers = ModsUtils.identifiersFromMods(mods);
+        } catch (XPathExpressionException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
+        List<String> languagesFromMods = null;
+        try {
+            languagesFromMods = ModsUtils.languagesFromMods(mods);
+        } catch (XPathExpressionException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+
+        metadata = new DetailMetadata(detailPid, kModel, DCUtils.rightsFromDC(dc), DCUtils.dateFromDC(dc), DCUtils.languageFromDC(dc), DCUtils.titleFromDC(dc),
+                languagesFromMods, identifiers, DCUtils.creatorsFromDC(dc), DCUtils.publishersFromDC(dc));
+        this.metadataCache.put(detailPid, metadata);
+        return metadata;
     }
 
 
@@ -326,192 +400,211 @@ public class DatabaseStatisticsAccessLogImpl extends AbstractStatisticsAccessLog
     }
     
  
-    public static class InsertRecord extends JDBCCommand {
-        
-        private LoggedUsersSingleton loggedUserSingleton;
-        private Provider<HttpServletRequest> requestProvider;
-        private Provider<User> userProvider;
-        private String pid;
-        private ReportedAction action;
-
-        private boolean dnnt;
-        private boolean providedByDnnt;
-
-        private Map evaluateMap;
-        private Map userSesionAttributes;
-        private String dbversion;
-
-        private String[] dnnt_labels;
-
-        public InsertRecord(String pid,LoggedUsersSingleton loggedUserSingleton, Provider<HttpServletRequest> requestProvider, Provider<User> userProvider, ReportedAction action, boolean dnnt, boolean providedByDnnt, Map evaulateMap, Map userSesionAttributes, String dbversion, List<String> dnnt_labels) {
-            super();
-            this.loggedUserSingleton = loggedUserSingleton;
-            this.requestProvider = requestProvider;
-            this.userProvider = userProvider;
+    /**
+     * Access event; everything which depends on the request is captured in the request thread
+     */
+    static class AccessEvent {
+
+        private final String pid;
+        private final java.sql.Timestamp date;
+        private final String remoteAddress;
+        private final String user;
+        private final String url;
+        private final ReportedAction action;
+        private final String sessionId;
+        private final boolean providedByDnnt;
+        private final Map evaluateMap;
+        private final Map userSessionAttributes;
+
+        AccessEvent(String pid, java.sql.Timestamp date, String remoteAddress, String user, String url, ReportedAction action, String sessionId, boolean providedByDnnt, Map evaluateMap, Map userSessionAttributes) {
             this.pid = pid;
+            this.date = date;
+            this.remoteAddress = remoteAddress;
+            this.user = user;
+            this.url = url;
             this.action = action;
-
-            this.dbversion = dbversion;
-
-            this.dnnt = dnnt;
+            this.sessionId = sessionId;
             this.providedByDnnt = providedByDnnt;
-
-            this.evaluateMap = evaulateMap;
-            this.userSesionAttributes = userSesionAttributes;
-
-            this.dnnt_labels = dnnt_labels != null ? dnnt_labels.toArray(new String[dnnt_labels.size()]) : new String[0];
+            this.evaluateMap = evaluateMap;
+            this.userSessionAttributes = userSessionAttributes;
         }
+    }
 
+    /**
+     * Metadata of one path element (model, DC and MODS derived values)
+     */
+    static class DetailMetadata {
+
+        private final String pid;
+        private final String model;
+        private final String rights;
+        private final String date;
+        private final String language;
+        private final String title;
+        private final List<String> languagesFromMods;
+        private final String[] isbn;
+        private final String[] issn;
+        private final String[] ccnb;
+        private final String[] creators;
+        private final String[] publishers;
+
+        DetailMetadata(String pid, String model, String rights, String date, String language, String title, List<String> languagesFromMods, Map<String, List<String>> modsIdents, String[] creators, String[] publishers) {
+            this.pid = pid;
+            this.model = model;
+            this.rights = rights;
+            this.date = date;
+            this.language = language;
+            this.title = title;
+            this.languagesFromMods = languagesFromMods != null ? languagesFromMods : new ArrayList<String>();
+            this.isbn = identifiers(modsIdents, ISBN_MODS_KEY);
+            this.issn = identifiers(modsIdents, ISSN_MODS_KEY);
+            this.ccnb = identifiers(modsIdents, CCNB_MODS_KEY);
+            this.creators = creators;
+            this.publishers = publishers;
+        }
 
+        private static String[] identifiers(Map<String, List<String>> modsIdents, String key) {
+            if (modsIdents != null && modsIdents.containsKey(key)) {
+                return modsIdents.get(key).toArray(new String[modsIdents.get(key).size()]);
+            }
+            return new String[0];
+        }
+    }
 
+    /**
+     * Writes records of many events with JDBC batches; record and detail ids are allocated from their sequences up front
+     * because authors and publishers reference them
+     */
+    static class InsertBatch extends JDBCCommand {
 
-        public Object executeJDBCCommand(Connection con) throws SQLException {
-            Map<String, Integer> previousResult = (Map<String, Integer>) getPreviousResult();
-            if (previousResult == null) previousResult = new HashMap<String, Integer>();
-            
-            final StringTemplate statRecord = stGroup.getInstanceOf("insertStatisticRecord");
-            String sessionId = requestProvider.get().getSession().getId();
-            boolean logged = loggedUserSingleton.isLoggedUser(requestProvider);
-            Object user = logged ? userProvider.get().getLoginname() : new JDBCUpdateTemplate.NullObject(String.class);
-
-            String url = disectedURL(requestProvider); //requestProvider.get().getRequestURL().toString() +"?"+requestProvider.get().getQueryString();
-            int record_id  = new JDBCUpdateTemplate(con, false)
-                .executeUpdate(
-                    statRecord.toString(),
-                    pid,
-                    new java.sql.Timestamp(System.currentTimeMillis()),
-                    requestProvider.get().getRemoteAddr(),
-                    user,
-                    url,
-                    action != null ? action.name() : ReportedAction.READ.name() ,
-                    sessionId,
-                    dnnt,
-                    providedByDnnt,
-                    evaluateMap != null && !evaluateMap.isEmpty() ?  new JSONObject(evaluateMap).toString() : new JDBCUpdateTemplate.NullObject(String.class),
-                    userSesionAttributes != null && !userSesionAttributes.isEmpty() ? new JSONObject(userSesionAttributes).toString() :new JDBCUpdateTemplate.NullObject(String.class),
-                    dbversion,
-                    dnnt_labels
-            );
-
-
-            previousResult.put("record_id", new Integer(record_id));
+        private final String dbversion;
 
+        private final List<Object[]> records = new ArrayList<>();
+        // detail row: record index, branch, metadata, language, solr date
+        private final List<Object[]> details = new ArrayList<>();
+        // author or publisher row: name, detail index, record index
+        private final List<Object[]> authors = new ArrayList<>();
+        private final List<Object[]> publishers = new ArrayList<>();
 
+        InsertBatch(String dbversion) {
+            this.dbversion = dbversion;
+        }
 
-            return previousResult;
+        boolean isEmpty() {
+            return this.records.isEmpty();
         }
-    }
 
-    public static class InsertDetail extends JDBCCommand {
-
-        private String detailPid = null;
-        private String kModel = null;
-        private Object language = null;
-        private Object title = null;
-        private Object date = null;
-        private Object solrDate = null;
-        private int pathIndex = 0;
-        private Object rights=null;
-
-        private String[] isbn = new String[0];
-        private String[] issn  = new String[0];
-        private String[] ccnb  = new String[0];
-
-        public InsertDetail(String detailPid, String kModel,Object rights ,Object date, Object solrDate, Object language, Object title, Map<String,List<String>> modsIdents, int pathIndex) {
-            super();
-            this.detailPid = detailPid;
-            this.kModel = kModel;
-            this.language = language;
-            this.title = title;
-            this.date = date;
-            this.rights = rights;
-            this.pathIndex = pathIndex;
-            this.solrDate = solrDate;
+        int addRecord(AccessEvent event, boolean dnnt, List<String> dnntLabels) {
+            this.records.add(new Object[] {
+                    event.pid,
+                    event.date,
+                    event.remoteAddress,
+                    event.user != null ? event.user : new JDBCUpdateTemplate.NullObject(String.class),
+                    event.url,
+                    event.action != null ? event.action.name() : ReportedAction.READ.name(),
+                    event.sessionId,
+                    dnnt,
+                    event.providedByDnnt,
+                    event.evaluateMap != null && !event.evaluateMap.isEmpty() ? new JSONObject(event.evaluateMap).toString() : new JDBCUpdateTemplate.NullObject(String.class),
+                    event.userSessionAttributes != null && !event.userSessionAttributes.isEmpty() ? new JSONObject(event.userSessionAttributes).toString() : new JDBCUpdateTemplate.NullObject(String.class),
+                    this.dbversion,
+                    dnntLabels != null ? dnntLabels.toArray(new String[dnntLabels.size()]) : new String[0]
+            });
+            return this.records.size() - 1;
+        }
 
-            if (modsIdents.containsKey(ISBN_MODS_KEY)) {
-                isbn = modsIdents.get(ISBN_MODS_KEY).toArray(new String[ modsIdents.get(ISBN_MODS_KEY).size() ]);
+        void addDetail(int record, DetailMetadata metadata, String dateFromSolr, int pathIndex) {
+            if (!metadata.languagesFromMods.isEmpty()) {
+                for (String languageFromMods : metadata.languagesFromMods) {
+                    this.details.add(new Object[] {record, pathIndex, metadata, languageFromMods, dateFromSolr});
+                }
+            } else {
+                this.details.add(new Object[] {record, pathIndex, metadata, metadata.language, dateFromSolr});
             }
-            if (modsIdents.containsKey(ISSN_MODS_KEY)) {
-                issn =  modsIdents.get(ISSN_MODS_KEY).toArray(new String[ modsIdents.get(ISSN_MODS_KEY).size() ]);
+            // authors and publishers belong to the last detail row of the element
+            int detail = this.details.size() - 1;
+            for (String cr : metadata.creators) {
+                this.authors.add(new Object[] {cr, detail, record});
             }
-            if (modsIdents.containsKey(CCNB_MODS_KEY)) {
-                ccnb = modsIdents.get(CCNB_MODS_KEY).toArray(new String[ modsIdents.get(CCNB_MODS_KEY).size() ]);
+            for (String p : metadata.publishers) {
+                this.publishers.add(new Object[] {p, detail, record});
             }
         }
 
         @Override
         public Object executeJDBCCommand(Connection con) throws SQLException {
-            Map<String, Integer> previousResult = (Map<String, Integer>) getPreviousResult();
-            if (previousResult == null) previousResult = new HashMap<String, Integer>();
-
-            final StringTemplate detail = stGroup.getInstanceOf("insertStatisticRecordDetail");
-            String sql = detail.toString();
-            int record_id = previousResult.get("record_id");
-
-            int detail_id  = new JDBCUpdateTemplate(con, false)
-                .executeUpdate(sql, detailPid, kModel, date, solrDate, rights , language, title, pathIndex,record_id, issn, isbn, ccnb);
-            
-            previousResult.put("detail_id", detail_id);
-            
-            return previousResult;
-        } 
-    }
+            List<Integer> recordIds = allocateIds(con, "statistics_access_log_ID_SEQUENCE", this.records.size());
+            List<Integer> detailIds = allocateIds(con, "statistic_access_log_detail_id_sequence", this.details.size());
 
-    public static class InsertAuthor extends JDBCCommand {
-        
-        private String authorName;
+            List<Object[]> recordRows = new ArrayList<>();
+            for (int i = 0; i < this.records.size(); i++) {
+                recordRows.add(prepend(recordIds.get(i), this.records.get(i)));
+            }
+            new JDBCUpdateTemplate(con, false).executeBatch(stGroup.getInstanceOf("insertStatisticRecordWithId").toString(), recordRows);
+
+            List<Object[]> detailRows = new ArrayList<>();
+            for (int i = 0; i < this.details.size(); i++) {
+                Object[] detail = this.details.get(i);
+                DetailMetadata metadata = (DetailMetadata) detail[2];
+                detailRows.add(new Object[] {
+                        detailIds.get(i),
+                        metadata.pid,
+                        metadata.model,
+                        orNull(metadata.date),
+                        orNull((String) detail[4]),
+                        orNull(metadata.rights),
+                        orNull((String) detail[3]),
+                        orNull(metadata.title),
+                        detail[1],
+                        recordIds.get((Integer) detail[0]),
+                        metadata.issn,
+                        metadata.isbn,
+                        metadata.ccnb
+                });
+            }
+            new JDBCUpdateTemplate(con, false).executeBatch(stGroup.getInstanceOf("insertStatisticRecordDetailWithId").toString(), detailRows);
 
-        public InsertAuthor(String authorName) {
-            super();
-            this.authorName = authorName;
+            new JDBCUpdateTemplate(con, false).executeBatch(stGroup.getInstanceOf("insertStatisticRecordDetailAuthor").toString(), referencingRows(this.authors, detailIds, recordIds));
+            new JDBCUpdateTemplate(con, false).executeBatch(stGroup.getInstanceOf("insertStatisticRecordDetailPublisher").toString(), referencingRows(this.publishers, detailIds, recordIds));
+            return null;
         }
 
-
-        @Override
-        public Object executeJDBCCommand(Connection con) throws SQLException {
-            Map<String, Integer> previousResult = (Map<String, Integer>) getPreviousResult();
-            if (previousResult == null) previousResult = new HashMap<String, Integer>();
-
-            final StringTemplate detail = stGroup.getInstanceOf("insertStatisticRecordDetailAuthor");
-            String sql = detail.toString();
-            int record_id = previousResult.get("record_id");
-            int detail_id = previousResult.get("detail_id");
-            
-            new JDBCUpdateTemplate(con, false)
-            .executeUpdate(sql, this.authorName, detail_id, record_id);
-            
-            return previousResult;
+        private static List<Object[]> referencingRows(List<Object[]> rows, List<Integer> detailIds, List<Integer> recordIds) {
+            List<Object[]> result = new ArrayList<>();
+            for (Object[] row : rows) {
+                result.add(new Object[] {row[0], detailIds.get((Integer) row[1]), recordIds.get((Integer) row[2])});
+            }
+            return result;
         }
-    }
-
 
-    public static class InsertPublisher extends JDBCCommand {
-
-        private String publisher;
-
-        public InsertPublisher(String publisher) {
-            super();
-            this.publisher = publisher;
+        private static List<Integer> allocateIds(Connection con, String sequence, int count) throws SQLException {
+            List<Integer> ids = new ArrayList<>(count);
+            if (count == 0) return ids;
+            StringTemplate template = stGroup.getInstanceOf("nextStatisticIds");
+            template.setAttribute("sequence", sequence);
+            try (PreparedStatement pstm = con.prepareStatement(template.toString())) {
+                pstm.setInt(1, count);
+                try (ResultSet rs = pstm.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt(1));
+                    }
+                }
+            }
+            return ids;
         }
 
+        private static Object[] prepend(Object first, Object[] rest) {
+            Object[] result = new Object[rest.length + 1];
+            result[0] = first;
+            System.arraycopy(rest, 0, result, 1, rest.length);
+            return result;
+        }
 
-        @Override
-        public Object executeJDBCCommand(Connection con) throws SQLException {
-            Map<String, Integer> previousResult = (Map<String, Integer>) getPreviousResult();
-            if (previousResult == null) previousResult = new HashMap<String, Integer>();
-
-            final StringTemplate detail = stGroup.getInstanceOf("insertStatisticRecordDetailPublisher");
-            String sql = detail.toString();
-            int record_id = previousResult.get("record_id");
-            int detail_id = previousResult.get("detail_id");
-
-            new JDBCUpdateTemplate(con, false)
-                    .executeUpdate(sql, this.publisher, detail_id, record_id);
-
-            return previousResult;
+        private static Object orNull(String value) {
+            return value != null ? value : new JDBCUpdateTemplate.NullObject(String.class);
         }
     }
-    
+
 
     public static StringTemplateGroup stGroup;
     static {
@@ -212,6 +212,9 @@ public class StatisticDbInitializer {
             // check if labels exists
             checkLabelsColumns(connection);
 
+            // check if daily rollup tables exist, if not creates them
+            checkRollupTables(connection);
+
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         } catch (IOException e) {
@@ -232,6 +235,19 @@ public class StatisticDbInitializer {
         }
     }
 
+    private static void checkRollupTables(Connection connection) {
+        try {
+            if (!DatabaseUtils.tableExists(connection, "STATISTICS_ROLLUP_PID")) {
+                InputStream is = StatisticDbInitializer.class.getResourceAsStream("res/initrollupdb.sql");
+                JDBCUpdateTemplate template = new JDBCUpdateTemplate(connection, false);
+                template.setUseReturningKeys(false);
+                template.executeUpdate(IOUtils.readAsString(is, Charset.forName("UTF-8"), true));
+            }
+        } catch (SQLException | IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
     private static void checkLogVersionColumn(Connection connection) {
         try {
             if (!DatabaseUtils.columnExists(connection, "statistics_access_log", "dbversion")) {
@@ -0,0 +1,69 @@
+package cz.incad.kramerius.statistics.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+
+import cz.incad.kramerius.service.LifeCycleHook;
+import cz.incad.kramerius.utils.DatabaseUtils;
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+/**
+ * Periodically rolls forward daily statistics rollups (see {@link StatisticsRollups})
+ */
+public class StatisticsRollupLifeCycleHook implements LifeCycleHook {
+
+    static Logger LOGGER = Logger.getLogger(StatisticsRollupLifeCycleHook.class.getName());
+
+    @Inject
+    @Named("kramerius4")
+    Provider<Connection> connectionProvider;
+
+    private ScheduledExecutorService executor;
+
+    @Override
+    public synchronized void startNotification() {
+        int interval = KConfiguration.getInstance().getConfiguration().getInt("statistics.rollup.interval", 600);
+        if (interval <= 0) return;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "statistics-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::rollForward, 0, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void shutdownNotification() {
+        if (this.executor != null) {
+            LOGGER.info("shutting down statistics rollups");
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    private void rollForward() {
+        Connection connection = null;
+        try {
+            connection = this.connectionProvider.get();
+            StatisticsRollups.rollForward(connection);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        } catch (RuntimeException e) {
+            // the next run must be scheduled anyway
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        } finally {
+            if (connection != null) {
+                DatabaseUtils.tryClose(connection);
+            }
+        }
+    }
+}
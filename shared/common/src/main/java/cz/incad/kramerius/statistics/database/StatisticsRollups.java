@@ -0,0 +1,139 @@
+package cz.incad.kramerius.statistics.database;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.antlr.stringtemplate.StringTemplate;
+
+import cz.incad.kramerius.statistics.accesslogs.database.DatabaseStatisticsAccessLogImpl;
+import cz.incad.kramerius.utils.database.JDBCCommand;
+import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
+import cz.incad.kramerius.utils.database.JDBCTransactionTemplate;
+import cz.incad.kramerius.utils.database.JDBCUpdateTemplate;
+
+/**
+ * Daily rollups of the access log for model, author, language and pids reports.
+ * <br>
+ * Every rolled day contains number of distinct sessions for each combination of action, model (author, language), pid,
+ * rights and ip address, so the reports keep their action, date, visibility and ip address filters.
+ * Roll forward recomputes days from the day before the last rolled day up to today; the current day is recomputed
+ * by every run and the previous one catches late writes of the asynchronous access log.
+ */
+public class StatisticsRollups {
+
+    static Logger LOGGER = Logger.getLogger(StatisticsRollups.class.getName());
+
+    static List<String> ROLLUP_TABLES = Arrays.asList(
+            "statistics_rollup_pid", "statistics_rollup_author", "statistics_rollup_lang"
+    );
+
+    static List<String> ROLLUP_TEMPLATES = Arrays.asList(
+            "rollupPidDay", "rollupAuthorDay", "rollupLangDay"
+    );
+
+    /** First key of the advisory locks of rolled days; the second one is the day */
+    static final int ROLLUP_LOCK_KEY = "statistics_rollup".hashCode();
+
+    /**
+     * Rolls all days which are not rolled yet (or may have changed since the last run)
+     * @param con Connection; it is not closed
+     * @throws SQLException
+     */
+    public static void rollForward(Connection con) throws SQLException {
+        LocalDate from = firstDayToRoll(con);
+        if (from == null) return;
+        LocalDate today = LocalDate.now();
+        for (LocalDate day = from; !day.isAfter(today); day = day.plusDays(1)) {
+            rollDay(con, day);
+        }
+    }
+
+    /**
+     * Recomputes rollups of one day in one transaction.
+     * Transactions rolling the same day (e.g. from more nodes) are serialized by transaction level advisory lock
+     * of the day, otherwise both could delete the day and then insert it twice.
+     * @param con Connection; it is not closed
+     * @param day Rolled day
+     * @throws SQLException
+     */
+    public static void rollDay(Connection con, LocalDate day) throws SQLException {
+        final Date sqlDay = Date.valueOf(day);
+        final Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        final Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        List<JDBCCommand> commands = new ArrayList<>();
+        commands.add(new JDBCCommand() {
+            @Override
+            public Object executeJDBCCommand(Connection con) throws SQLException {
+                String sql = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("lockRollupDay").toString();
+                try (PreparedStatement lock = con.prepareStatement(sql)) {
+                    lock.setInt(1, ROLLUP_LOCK_KEY);
+                    lock.setInt(2, (int) day.toEpochDay());
+                    lock.executeQuery().close();
+                }
+                return null;
+            }
+        });
+        for (final String table : ROLLUP_TABLES) {
+            commands.add(new JDBCCommand() {
+                @Override
+                public Object executeJDBCCommand(Connection con) throws SQLException {
+                    StringTemplate delete = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("deleteRollupDay");
+                    delete.setAttribute("table", table);
+                    JDBCUpdateTemplate template = new JDBCUpdateTemplate(con, false);
+                    template.setUseReturningKeys(false);
+                    template.executeUpdate(delete.toString(), sqlDay);
+                    return null;
+                }
+            });
+        }
+        for (final String rollup : ROLLUP_TEMPLATES) {
+            commands.add(new JDBCCommand() {
+                @Override
+                public Object executeJDBCCommand(Connection con) throws SQLException {
+                    String sql = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf(rollup).toString();
+                    JDBCUpdateTemplate template = new JDBCUpdateTemplate(con, false);
+                    template.setUseReturningKeys(false);
+                    template.executeUpdate(sql, sqlDay, from, to);
+                    return null;
+                }
+            });
+        }
+        new JDBCTransactionTemplate(con, false).updateWithTransaction(commands);
+        LOGGER.log(Level.FINE, "rolled statistics of day {0}", day);
+    }
+
+    static LocalDate firstDayToRoll(Connection con) {
+        List<Date> lastRolled = new JDBCQueryTemplate<Date>(con, false) {
+            @Override
+            public boolean handleRow(ResultSet rs, List<Date> returnsList) throws SQLException {
+                Date day = rs.getDate("day");
+                if (day != null) returnsList.add(day);
+                return false;
+            }
+        }.executeQuery(DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("selectLastRolledDay").toString());
+        if (!lastRolled.isEmpty()) {
+            return lastRolled.get(0).toLocalDate().minusDays(1);
+        }
+
+        List<Timestamp> firstAccess = new JDBCQueryTemplate<Timestamp>(con, false) {
+            @Override
+            public boolean handleRow(ResultSet rs, List<Timestamp> returnsList) throws SQLException {
+                Timestamp date = rs.getTimestamp("date");
+                if (date != null) returnsList.add(date);
+                return false;
+            }
+        }.executeQuery(DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("selectFirstAccessDate").toString());
+        return firstAccess.isEmpty() ? null : firstAccess.get(0).toLocalDateTime().toLocalDate();
+    }
+}
@@ -0,0 +1,40 @@
+-- denni agregace statistik --
+create table statistics_rollup_pid(
+   DAY DATE NOT NULL,
+   STAT_ACTION VARCHAR(255),
+   MODEL VARCHAR(255),
+   PID VARCHAR(255),
+   TITLE VARCHAR(1024),
+   RIGHTS VARCHAR(255),
+   REMOTE_IP_ADDRESS VARCHAR(255),
+   SESSIONS INT NOT NULL
+);
+create index statistics_rollup_pid_model_idx on statistics_rollup_pid(model, day);
+create index statistics_rollup_pid_pid_idx on statistics_rollup_pid(pid);
+create index statistics_rollup_pid_day_idx on statistics_rollup_pid(day);
+
+create table statistics_rollup_author(
+   DAY DATE NOT NULL,
+   STAT_ACTION VARCHAR(255),
+   AUTHOR_NAME VARCHAR(1024),
+   PID VARCHAR(255),
+   RIGHTS VARCHAR(255),
+   REMOTE_IP_ADDRESS VARCHAR(255),
+   SESSIONS INT NOT NULL
+);
+create index statistics_rollup_author_day_idx on statistics_rollup_author(day);
+
+create table statistics_rollup_lang(
+   DAY DATE NOT NULL,
+   STAT_ACTION VARCHAR(255),
+   LANG VARCHAR(255),
+   PID VARCHAR(255),
+   RIGHTS VARCHAR(255),
+   REMOTE_IP_ADDRESS VARCHAR(255),
+   SESSIONS INT NOT NULL
+);
+create index statistics_rollup_lang_day_idx on statistics_rollup_lang(day);
+
+-- agregace po dnech prochazi detaily a autory podle zaznamu --
+create index statistic_access_log_detail_record_idx on statistic_access_log_detail(record_id);
+create index statistic_access_log_detail_authors_record_idx on statistic_access_log_detail_authors(record_id);
@@ -47,9 +47,7 @@ import cz.incad.kramerius.statistics.filters.ModelFilter;
 import cz.incad.kramerius.statistics.filters.StatisticsFiltersContainer;
 import cz.incad.kramerius.statistics.filters.UniqueIPAddressesFilter;
 import cz.incad.kramerius.statistics.filters.VisibilityFilter;
-import cz.incad.kramerius.utils.DatabaseUtils;
 import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
-import cz.incad.kramerius.utils.database.JDBCUpdateTemplate;
 import cz.incad.kramerius.utils.database.Offset;
 
 /**
@@ -74,6 +72,7 @@ public class ModelStatisticReport implements StatisticReport {
             DateFilter dateFilter = filters.getFilter(DateFilter.class);
             ModelFilter modelFilter = filters.getFilter(ModelFilter.class);
             VisibilityFilter visFilter = filters.getFilter(VisibilityFilter.class);
+            IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
             UniqueIPAddressesFilter uniqueIPFilter = filters.getFilter(UniqueIPAddressesFilter.class);
             
             Boolean isUniqueSelected = uniqueIPFilter.getUniqueIPAddresses();
@@ -93,6 +92,7 @@ public class ModelStatisticReport implements StatisticReport {
             statRecord.setAttribute("fromDefined", dateFilter.getFromDate() != null);
             statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
             statRecord.setAttribute("visibility", visFilter.asMap());
+            statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
 
 
             @SuppressWarnings("rawtypes")
@@ -152,41 +152,7 @@ public class ModelStatisticReport implements StatisticReport {
     
     @Override
     public void prepareViews(ReportedAction action, StatisticsFiltersContainer filters) throws StatisticsReportException {
-        try {
-            ModelFilter modelFilter = filters.getFilter(ModelFilter.class);
-            DateFilter dateFilter = filters.getFilter(DateFilter.class);
-            IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
-            
-            
-            final StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("prepareModelView");
-            statRecord.setAttribute("model", modelFilter.getModel());
-            statRecord.setAttribute("action", action != null ? action.name() : null);
-            statRecord.setAttribute("paging", false);
-            
-            statRecord.setAttribute("fromDefined", dateFilter.getFromDate() != null);
-            statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
-            statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
-            
-            String sql = statRecord.toString();
-            Connection conn = connectionProvider.get();
-            
-            String viewName =  "statistics_grouped_by_sessionandpid_"+modelFilter.getModel();
-            boolean tableExists = DatabaseUtils.viewExists(conn,viewName.toUpperCase());
-            if (!tableExists) {
-                JDBCUpdateTemplate updateTemplate = new JDBCUpdateTemplate(connectionProvider.get(), true);
-                updateTemplate.setUseReturningKeys(false);
-                updateTemplate
-                    .executeUpdate(sql);
-            }
-            // if viewExists; we have to close connection manually
-            if (!conn.isClosed()) {
-                conn.close();
-            }
-            LOGGER.fine(String.format("Test statistics connection.isClosed() : %b", conn.isClosed()));
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new StatisticsReportException(e);
-        }
+        // report reads daily rollups maintained by StatisticsRollups, no views are necessary
     }
 
     @Override
@@ -196,7 +162,7 @@ public class ModelStatisticReport implements StatisticReport {
             ModelFilter modelFilter = filters.getFilter(ModelFilter.class);
             DateFilter dateFilter = filters.getFilter(DateFilter.class);
             VisibilityFilter visFilter = filters.getFilter(VisibilityFilter.class);
-            //IPAddressFilter ipAddrFilter = filters.getFilter(IPAddressFilter.class);
+            IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
             UniqueIPAddressesFilter uniqueIPFilter = filters.getFilter(UniqueIPAddressesFilter.class);
             
             Boolean isUniqueSelected = uniqueIPFilter.getUniqueIPAddresses();
@@ -218,6 +184,7 @@ public class ModelStatisticReport implements StatisticReport {
             statRecord.setAttribute("fromDefined", dateFilter.getFromDate() != null);
             statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
             statRecord.setAttribute("visibility", visFilter.asMap());
+            statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
             
             @SuppressWarnings("rawtypes")
             List params = StatisticUtils.jdbcParams(dateFilter);
@@ -18,8 +18,8 @@ import cz.incad.kramerius.statistics.filters.DateFilter;
 import cz.incad.kramerius.statistics.filters.StatisticsFiltersContainer;
 import cz.incad.kramerius.statistics.accesslogs.database.DatabaseStatisticsAccessLogImpl;
 import cz.incad.kramerius.statistics.filters.VisibilityFilter;
+import cz.incad.kramerius.utils.DatabaseUtils;
 import cz.incad.kramerius.utils.conf.KConfiguration;
-import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
 import cz.incad.kramerius.utils.database.Offset;
 import cz.incad.kramerius.utils.solr.SolrUtils;
 import org.antlr.stringtemplate.StringTemplate;
@@ -31,7 +31,13 @@ import java.io.IOException;
 import java.sql.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,6 +57,8 @@ public class NKPLogReport implements StatisticReport {
     //public static List<String> EXPECTED_FIELDS = Arrays.asList("");
 
     public static final SimpleDateFormat ACCESS_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    // partitions are read in parallel, SimpleDateFormat is not thread safe
+    static final DateTimeFormatter ACCESS_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
 
     public static final Logger LOGGER = Logger.getLogger(AuthorReport.class.getName());
 
@@ -98,23 +106,14 @@ public class NKPLogReport implements StatisticReport {
             VisibilityFilter visFilter = filters.getFilter(VisibilityFilter.class);
 
             if (dateFilter.getFromDate() != null && dateFilter.getToDate() != null) {
-                final StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("nkpLogsReport");
-                statRecord.setAttribute("action", ReportedAction.READ.name());
-
-                statRecord.setAttribute("fromDefined", dateFilter.getFromDate() != null);
-                statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
-                // visibility must be filtered in the runtime
-                //statRecord.setAttribute("visibility", visFilter.asMap());
-
-
                 @SuppressWarnings("rawtypes")
                 List params = StatisticUtils.jdbcParams(dateFilter);
-                String sql = statRecord.toString();
-                Connection conn = connectionProvider.get();
+                int partitionDays = KConfiguration.getInstance().getConfiguration().getInt("nkp.logs.partitionDays", 1);
+                List<Timestamp[]> partitions = partitions((Timestamp) params.get(0), (Timestamp) params.get(1), partitionDays);
 
-                new StastisticsIteration(sql, params, conn, collectedRecord-> {
+                streamPartitions(partitions, collectedRecord-> {
                     logReport(collectedRecord, sup, visFilter);
-                }).iterate();
+                });
 
             } else {
                 throw new UnsupportedOperationException("Full report is not supported. Please, use dateFrom and dateTo");
@@ -126,62 +125,176 @@ public class NKPLogReport implements StatisticReport {
 
     }
 
-    static class StastisticsIteration extends JDBCQueryTemplate<Object> {
+    /**
+     * Splits date range into partitions; partition boundaries are at midnight
+     * @param from Start of the range (exclusive)
+     * @param to End of the range (exclusive)
+     * @param days Number of days in one partition; zero or less means one partition for the whole range
+     */
+    static List<Timestamp[]> partitions(Timestamp from, Timestamp to, int days) {
+        List<Timestamp[]> partitions = new ArrayList<>();
+        if (days <= 0) {
+            if (from.before(to)) partitions.add(new Timestamp[] {from, to});
+            return partitions;
+        }
+        LocalDateTime start = from.toLocalDateTime();
+        LocalDateTime end = to.toLocalDateTime();
+        while (start.isBefore(end)) {
+            LocalDateTime next = start.toLocalDate().plusDays(days).atStartOfDay();
+            if (next.isAfter(end)) next = end;
+            partitions.add(new Timestamp[] {Timestamp.valueOf(start), Timestamp.valueOf(next)});
+            start = next;
+        }
+        return partitions;
+    }
 
+    /**
+     * Reads partitions in parallel (nkp.logs.parallelism) and passes assembled records to the consumer in the order
+     * of partitions. Every partition has its own bounded queue, so the memory does not depend on the size of the range.
+     */
+    void streamPartitions(List<Timestamp[]> partitions, Consumer<Record> consumer) throws StatisticsReportException {
+        if (partitions.isEmpty()) return;
+        int parallelism = Math.max(1, KConfiguration.getInstance().getConfiguration().getInt("nkp.logs.parallelism", 2));
+        int queueSize = KConfiguration.getInstance().getConfiguration().getInt("nkp.logs.queueSize", 1000);
+        int fetchSize = KConfiguration.getInstance().getConfiguration().getInt("nkp.logs.fetchSize", 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, partitions.size()), r -> {
+            Thread thread = new Thread(r, "nkp-logs-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<PartitionReader> readers = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                // first partition keeps the exclusive lower bound of the date filter
+                PartitionReader reader = new PartitionReader(partitions.get(i), i > 0, queueSize, fetchSize);
+                readers.add(reader);
+                executor.submit(reader);
+            }
+            for (PartitionReader reader : readers) {
+                Record record;
+                while ((record = reader.queue.take()) != END_OF_PARTITION) {
+                    consumer.accept(record);
+                }
+                if (reader.failure != null) {
+                    throw new StatisticsReportException(reader.failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StatisticsReportException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        private Record currentRecord = new Record();
+    private static final Record END_OF_PARTITION = new Record();
 
-        private Consumer<Record> consumer;
-        private String sql;
-        private List params;
+    /**
+     * Reads one partition into its queue
+     */
+    class PartitionReader implements Runnable {
 
-        public StastisticsIteration(String sql, List params, Connection connection, Consumer<Record> consumer) {
-            super(connection);
-            this.consumer = consumer;
-            this.params = params;
-            this.sql = sql;
-        }
+        private final Timestamp[] partition;
+        private final boolean fromInclusive;
+        private final int fetchSize;
+        private final BlockingQueue<Record> queue;
+        private volatile Exception failure;
 
-        public void iterate() {
-            executeQuery(sql,params.toArray());
-            if (currentRecord != null && currentRecord.pid != null) consumer.accept(currentRecord);
+        PartitionReader(Timestamp[] partition, boolean fromInclusive, int queueSize, int fetchSize) {
+            this.partition = partition;
+            this.fromInclusive = fromInclusive;
+            this.fetchSize = fetchSize;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
         }
 
         @Override
-        public boolean handleRow(ResultSet rs, List<Object> returnsList) throws SQLException {
+        public void run() {
+            Connection conn = null;
             try {
-                int recordId = rs.getInt("slrecord_id");
-                int detailId = rs.getInt("sddetail_id");
-                int authorId = rs.getInt("saauthor_id");
-                int publisherId = rs.getInt("sppublisher_id");
-
-                if (currentRecord.isDifferent(recordId)) {
-                    if (currentRecord.recordId != -1) {
-                        consumer.accept(currentRecord);
-                    }
-                    currentRecord = Record.load(rs);
-                }
-
-                if (currentRecord.lastDetail() == null || currentRecord.lastDetail().isDifferent(detailId)) {
-                    currentRecord.details.add(Detail.load(rs));
-                }
+                final StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("nkpLogsReport");
+                statRecord.setAttribute("action", ReportedAction.READ.name());
+                statRecord.setAttribute("fromDefined", true);
+                statRecord.setAttribute("toDefined", true);
+                statRecord.setAttribute("fromInclusive", this.fromInclusive);
+                // visibility must be filtered in the runtime
 
-                if (authorId != -1) {
-                    currentRecord.lastDetail().authors.add(Author.load(rs));
-                }
-                if (publisherId != -1) {
-                    currentRecord.lastDetail().publishers.add(Publisher.load(rs));
-                }
+                conn = connectionProvider.get();
+                iterate(conn, statRecord.toString(), new Object[] {this.partition[0], this.partition[1]}, this.fetchSize, this.queue::put);
+            } catch (InterruptedException e) {
+                // report has been cancelled
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                this.failure = e;
+            } finally {
+                DatabaseUtils.tryClose(conn);
+            }
+            try {
+                this.queue.put(END_OF_PARTITION);
+            } catch (InterruptedException e) {
+                // report has been cancelled
+            }
+        }
+    }
 
+    interface RecordSink {
+        void accept(Record record) throws InterruptedException;
+    }
 
+    /**
+     * Iterates over rows of nkpLogsReport query with the server side cursor and assembles records
+     * @param conn Connection; it is not closed
+     * @param sql Query
+     * @param params Query parameters
+     * @param fetchSize Number of rows fetched in one round trip
+     * @param sink Receiver of the assembled records
+     */
+    static void iterate(Connection conn, String sql, Object[] params, int fetchSize, RecordSink sink) throws SQLException, InterruptedException {
+        boolean autoCommit = conn.getAutoCommit();
+        // postgresql uses cursor only in the transaction
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstm = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstm.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                pstm.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstm.executeQuery()) {
+                Record currentRecord = null;
+                while (rs.next()) {
+                    try {
+                        int recordId = rs.getInt("slrecord_id");
+                        int detailId = rs.getInt("sddetail_id");
+                        int authorId = rs.getInt("saauthor_id");
+                        int publisherId = rs.getInt("sppublisher_id");
+
+                        if (currentRecord == null || currentRecord.isDifferent(recordId)) {
+                            if (currentRecord != null) {
+                                sink.accept(currentRecord);
+                            }
+                            currentRecord = Record.load(rs);
+                        }
 
+                        if (currentRecord.lastDetail() == null || currentRecord.lastDetail().isDifferent(detailId)) {
+                            currentRecord.details.add(Detail.load(rs));
+                        }
 
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                        if (authorId != -1) {
+                            currentRecord.lastDetail().authors.add(Author.load(rs));
+                        }
+                        if (publisherId != -1) {
+                            currentRecord.lastDetail().publishers.add(Publisher.load(rs));
+                        }
+                    } catch (SQLException | RuntimeException e) {
+                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    }
+                }
+                if (currentRecord != null && currentRecord.pid != null) sink.accept(currentRecord);
             }
-            return super.handleRow(rs, returnsList);
+        } finally {
+            conn.commit();
+            conn.setAutoCommit(autoCommit);
         }
-
     }
 
 
@@ -189,7 +302,7 @@ public class NKPLogReport implements StatisticReport {
     void logReport(Record record, StatisticsReportSupport sup, VisibilityFilter visibilityFilter) {
 
         // Must be filtered in runtime
-        boolean selected = visibilityFilter.getSelected().equals(VisibilityFilter.VisbilityType.ALL);
+        boolean selected = visibilityFilter == null || visibilityFilter.getSelected().equals(VisibilityFilter.VisbilityType.ALL);
         if (!selected) {
 
             List<Detail> firstBranch = record.details.stream().filter(detail -> {
@@ -449,7 +562,7 @@ public class NKPLogReport implements StatisticReport {
             Record nrecord = new Record();
             nrecord.recordId= rs.getInt("slrecord_id");
             nrecord.pid = rs.getString("slpid");
-            nrecord.date = ACCESS_DATE_FORMAT.format(rs.getTimestamp("sldate"));
+            nrecord.date = ACCESS_DATE_FORMATTER.format(rs.getTimestamp("sldate").toLocalDateTime());
             nrecord.remoteIpAddress=rs.getString("slremote_ip_address");
             nrecord.user=rs.getString("slUSER");
 
@@ -27,9 +27,7 @@ import cz.incad.kramerius.statistics.filters.PidsFilter;
 import cz.incad.kramerius.statistics.filters.StatisticsFiltersContainer;
 import cz.incad.kramerius.statistics.filters.UniqueIPAddressesFilter;
 import cz.incad.kramerius.statistics.filters.VisibilityFilter;
-import cz.incad.kramerius.utils.DatabaseUtils;
 import cz.incad.kramerius.utils.database.JDBCQueryTemplate;
-import cz.incad.kramerius.utils.database.JDBCUpdateTemplate;
 import cz.incad.kramerius.utils.database.Offset;
 import java.util.logging.Logger;
 
@@ -51,7 +49,8 @@ public class PidsReport implements StatisticReport {
                 DateFilter dateFilter = filters.getFilter(DateFilter.class);
                 VisibilityFilter visFilter = filters.getFilter(VisibilityFilter.class);
                 UniqueIPAddressesFilter uniqueIPFilter = filters.getFilter(UniqueIPAddressesFilter.class);
-                IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);             
+                IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
+                PidsFilter pidsFilter = filters.getFilter(PidsFilter.class);
 
                 Boolean isUniqueSelected = uniqueIPFilter.getUniqueIPAddresses();
                 final StringTemplate statRecord;
@@ -71,6 +70,7 @@ public class PidsReport implements StatisticReport {
                 statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
                 statRecord.setAttribute("visibility", visFilter.asMap());
                 statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
+                statRecord.setAttribute("pids", pidsFilter.getPids().split(","));
                 
                 @SuppressWarnings("rawtypes")
                 List params = StatisticUtils.jdbcParams(dateFilter, rOffset);
@@ -111,37 +111,7 @@ public class PidsReport implements StatisticReport {
     
     @Override
     public void prepareViews(ReportedAction action, StatisticsFiltersContainer filters) throws StatisticsReportException {
-        try {
-            IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
-            PidsFilter pidsFilter = filters.getFilter(PidsFilter.class);
-            
-            final StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("preparePidsView");
-            statRecord.setAttribute("action", action != null ? action.name() : null);
-            statRecord.setAttribute("paging", false);
-            
-            statRecord.setAttribute("pids", pidsFilter.getPids().split(","));
-            statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
-            
-            String sql = statRecord.toString();
-            Connection conn = connectionProvider.get();
-            
-            String viewName =  "statistics_grouped_by_sessionandpid_pid";
-            boolean tableExists = DatabaseUtils.viewExists(conn, viewName.toUpperCase());
-            if (!tableExists) {
-                JDBCUpdateTemplate updateTemplate = new JDBCUpdateTemplate(conn, true);
-                updateTemplate.setUseReturningKeys(false);
-                updateTemplate
-                    .executeUpdate(sql);
-            }
-            // if table exists; we have to close connection manually
-            if (!conn.isClosed()) {
-                conn.close();
-            }
-            LOGGER.fine(String.format("Test statistics connection.isClosed() : %b", conn.isClosed()));
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            throw new StatisticsReportException(e);
-        }
+        // report reads daily rollups maintained by StatisticsRollups, no views are necessary
     }
 
 
@@ -153,6 +123,7 @@ public class PidsReport implements StatisticReport {
             VisibilityFilter visFilter = filters.getFilter(VisibilityFilter.class);
             UniqueIPAddressesFilter uniqueIPFilter = filters.getFilter(UniqueIPAddressesFilter.class);
             IPAddressFilter ipFilter = filters.getFilter(IPAddressFilter.class);
+            PidsFilter pidsFilter = filters.getFilter(PidsFilter.class);
             
             Boolean isUniqueSelected = uniqueIPFilter.getUniqueIPAddresses();
             final StringTemplate statRecord;
@@ -172,6 +143,7 @@ public class PidsReport implements StatisticReport {
             statRecord.setAttribute("toDefined", dateFilter.getToDate() != null);
             statRecord.setAttribute("visibility", visFilter.asMap());
             statRecord.setAttribute("ipaddr", ipFilter.getIpAddress());
+            statRecord.setAttribute("pids", pidsFilter.getPids().split(","));
             
             @SuppressWarnings("rawtypes")
             List params = StatisticUtils.jdbcParams(dateFilter);
@@ -26,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.logging.Logger;
 
 import cz.incad.kramerius.utils.DatabaseUtils;
@@ -104,6 +105,36 @@ public class JDBCUpdateTemplate {
         return result;
     }
 
+    /**
+     * Perform JDBC batch update; the statement is prepared once and executed with all parameter rows in one round trip
+     *
+     * @param sql        SQL command
+     * @param paramsRows Parameters of each row
+     * @return Update counts
+     * @throws SQLException SQL exception has been occurred
+     */
+    public int[] executeBatch(String sql, List<Object[]> paramsRows) throws SQLException {
+        if (paramsRows.isEmpty()) return new int[0];
+        PreparedStatement pstm = null;
+        try {
+            pstm = connection.prepareStatement(sql);
+            for (Object[] params : paramsRows) {
+                for (int i = 0; i < params.length; i++) {
+                    setParam(i + 1, params[i], pstm, connection);
+                }
+                pstm.addBatch();
+            }
+            return pstm.executeBatch();
+        } finally {
+            if (pstm != null) {
+                DatabaseUtils.tryClose(pstm);
+            }
+            if (closeConnectionFlag && connection != null) {
+                DatabaseUtils.tryClose(connection);
+            }
+        }
+    }
+
     /**
      * Create PreparedStatement instance
      *
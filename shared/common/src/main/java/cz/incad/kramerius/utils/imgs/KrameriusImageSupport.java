@@ -135,6 +135,46 @@ public class KrameriusImageSupport {
             throw new IllegalArgumentException("unsupported mimetype '" + type.getValue() + "'");
     }
 
+    /**
+     * Reads image with source subsampling (every n-th pixel in both directions is decoded).
+     * Subsampling is applied only to formats with native ImageIO reader; other formats are read fully.
+     * @param url Image url
+     * @param type Mimetype
+     * @param page Page (for multipage formats)
+     * @param subsampling Subsampling factor, 1 means no subsampling
+     * @return decoded image
+     * @throws IOException
+     */
+    public static BufferedImage readImage(URL url, ImageMimeType type, int page, int subsampling) throws IOException {
+        if (subsampling <= 1 || type == null || !type.javaNativeSupport()) {
+            return readImage(url, type, page);
+        }
+        InputStream stream = url.openStream();
+        ImageInputStream istream = null;
+        try {
+            ImageIO.setUseCache(useCache());
+            istream = ImageIO.createImageInputStream(stream);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(istream);
+            if (!readers.hasNext()) {
+                throw new IOException("No reader for type '" + type.getValue() + "'");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(istream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(page, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            if (istream != null) {
+                istream.close();
+            }
+            org.apache.commons.io.IOUtils.closeQuietly(stream);
+        }
+    }
+
     public static void writeImageToStream(BufferedImage image, String javaFormat, OutputStream os) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         ImageIO.write(image, javaFormat, bos);
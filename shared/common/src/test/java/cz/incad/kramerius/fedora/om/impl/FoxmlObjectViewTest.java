@@ -0,0 +1,75 @@
+package cz.incad.kramerius.fedora.om.impl;
+
+import cz.incad.kramerius.utils.XMLUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class FoxmlObjectViewTest {
+
+    @Test
+    public void testParse() throws Exception {
+        InputStream foxml = FoxmlObjectViewTest.class.getResourceAsStream("/cz/incad/kramerius/fedora/om/5035a48a-5e2e-486c-8127-2fa650842e46.xml");
+        FoxmlObjectView view = FoxmlObjectView.parse("uuid:5035a48a-5e2e-486c-8127-2fa650842e46", foxml);
+
+        Assert.assertEquals("Illustrovaný průvodce Jičín a Prachovské skály", view.getProperty("info:fedora/fedora-system:def/model#label"));
+        Assert.assertEquals("2014-06-26T23:30:25.888Z", view.getProperty("info:fedora/fedora-system:def/view#lastModifiedDate"));
+
+        Assert.assertTrue(view.datastreamExists("DC"));
+        Assert.assertTrue(view.datastreamExists("RELS-EXT"));
+        Assert.assertFalse(view.datastreamExists("IMG_FULL"));
+
+        FoxmlObjectView.Datastream dc = view.getDatastream("DC");
+        Assert.assertEquals("X", dc.getControlGroup());
+        Assert.assertEquals("DC.1", dc.getLatestVersion().getId());
+        Assert.assertEquals("text/xml", dc.getLatestVersion().getMimetype());
+
+        // inline content is standalone, parseable document with namespaces of the foxml document
+        String content = dc.getLatestVersion().getXmlContent();
+        Assert.assertNotNull(content);
+        Document dcDoc = XMLUtils.parseDocument(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), true);
+        Element title = XMLUtils.findElement(dcDoc.getDocumentElement(), "title", "http://purl.org/dc/elements/1.1/");
+        Assert.assertNotNull(title);
+        Assert.assertEquals("Illustrovaný průvodce Jičín a Prachovské skály", title.getTextContent());
+    }
+
+    private static final String VERSIONED_FOXML = "<foxml:digitalObject xmlns:foxml=\"info:fedora/fedora-system:def/foxml#\" PID=\"uuid:1\">"
+            + "<foxml:datastream ID=\"BIBLIO_MODS\" CONTROL_GROUP=\"X\" STATE=\"A\">"
+            + "<foxml:datastreamVersion ID=\"BIBLIO_MODS.0\" MIMETYPE=\"text/xml\"><foxml:xmlContent><mods>first</mods></foxml:xmlContent></foxml:datastreamVersion>"
+            + "<foxml:datastreamVersion ID=\"BIBLIO_MODS.1\" MIMETYPE=\"text/xml\"><foxml:xmlContent><mods>second</mods></foxml:xmlContent></foxml:datastreamVersion>"
+            + "</foxml:datastream>"
+            + "<foxml:datastream ID=\"IMG_THUMB\" CONTROL_GROUP=\"M\" STATE=\"A\">"
+            + "<foxml:datastreamVersion ID=\"IMG_THUMB.0\" MIMETYPE=\"image/jpeg\"><foxml:contentLocation TYPE=\"INTERNAL_ID\" REF=\"uuid:1+IMG_THUMB+IMG_THUMB.0\"/></foxml:datastreamVersion>"
+            + "</foxml:datastream>"
+            + "</foxml:digitalObject>";
+
+    @Test
+    public void testOnlyLatestVersionKeepsContent() throws Exception {
+        FoxmlObjectView view = FoxmlObjectView.parse("uuid:1", new ByteArrayInputStream(VERSIONED_FOXML.getBytes(StandardCharsets.UTF_8)));
+        FoxmlObjectView.Datastream mods = view.getDatastream("BIBLIO_MODS");
+        Assert.assertEquals(2, mods.getVersions().size());
+        Assert.assertNull(mods.getVersions().get(0).getXmlContent());
+        Assert.assertEquals("BIBLIO_MODS.0", mods.getVersions().get(0).getId());
+        Assert.assertEquals("<mods>second</mods>", mods.getLatestVersion().getXmlContent());
+    }
+
+    @Test
+    public void testCopyDatastream() throws Exception {
+        String thumb = FoxmlObjectView.copyDatastream(new ByteArrayInputStream(VERSIONED_FOXML.getBytes(StandardCharsets.UTF_8)), "IMG_THUMB");
+        Document dsDoc = XMLUtils.parseDocument(new ByteArrayInputStream(thumb.getBytes(StandardCharsets.UTF_8)), true);
+        Element datastream = dsDoc.getDocumentElement();
+        Assert.assertEquals("datastream", datastream.getLocalName());
+        Assert.assertEquals("info:fedora/fedora-system:def/foxml#", datastream.getNamespaceURI());
+        Assert.assertEquals("M", datastream.getAttribute("CONTROL_GROUP"));
+        Element location = XMLUtils.findElement(datastream, "contentLocation", "info:fedora/fedora-system:def/foxml#");
+        Assert.assertNotNull(location);
+        Assert.assertEquals("uuid:1+IMG_THUMB+IMG_THUMB.0", location.getAttribute("REF"));
+
+        Assert.assertNull(FoxmlObjectView.copyDatastream(new ByteArrayInputStream(VERSIONED_FOXML.getBytes(StandardCharsets.UTF_8)), "IMG_FULL"));
+    }
+}
@@ -366,6 +366,15 @@ public class FileSystemCacheServiceImplTest extends AbstractGuiceTestCase {
             Path removed = PATHS.remove(cloned);
             this.list.remove(removed);
         }
+
+        @Override
+        public void renameChild(String name, String newName) throws IOException {
+            _FilePath source = (_FilePath) child(name);
+            deleteChild(name);
+            deleteChild(newName);
+            _FilePath target = (_FilePath) createChildFile(newName);
+            target.bos.write(source.bos.toByteArray());
+        }
     }
 
     public static class _FilePath extends _AbstractPath implements FilePath {
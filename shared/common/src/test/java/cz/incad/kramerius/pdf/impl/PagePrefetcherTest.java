@@ -0,0 +1,49 @@
+package cz.incad.kramerius.pdf.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import cz.incad.kramerius.FedoraAccess;
+import cz.incad.kramerius.utils.FedoraUtils;
+
+public class PagePrefetcherTest {
+
+    @Test
+    public void testJpegPassThrough() throws Exception {
+        byte[] jpeg1 = new byte[] { (byte) 0xFF, (byte) 0xD8, 1 };
+        byte[] jpeg2 = new byte[] { (byte) 0xFF, (byte) 0xD8, 2 };
+
+        FedoraAccess fa = EasyMock.createMock(FedoraAccess.class);
+        EasyMock.expect(fa.isImageFULLAvailable("uuid:1")).andReturn(true);
+        EasyMock.expect(fa.getImageFULLMimeType("uuid:1")).andReturn("image/jpeg");
+        EasyMock.expect(fa.getImageFULL("uuid:1")).andReturn(new ByteArrayInputStream(jpeg1));
+        EasyMock.expect(fa.isStreamAvailable("uuid:1", FedoraUtils.ALTO_STREAM)).andReturn(false).anyTimes();
+
+        EasyMock.expect(fa.isImageFULLAvailable("uuid:2")).andReturn(false);
+
+        EasyMock.expect(fa.isImageFULLAvailable("uuid:3")).andReturn(true);
+        EasyMock.expect(fa.getImageFULLMimeType("uuid:3")).andReturn("image/jpeg");
+        EasyMock.expect(fa.getImageFULL("uuid:3")).andReturn(new ByteArrayInputStream(jpeg2));
+        EasyMock.expect(fa.isStreamAvailable("uuid:3", FedoraUtils.ALTO_STREAM)).andReturn(false).anyTimes();
+        EasyMock.replay(fa);
+
+        try (PagePrefetcher prefetcher = new PagePrefetcher(Arrays.asList("uuid:1", "uuid:2", "uuid:3"), fa, null, ImageFetcher.WEB, 2, 2)) {
+            PagePrefetcher.PageImage first = prefetcher.next("uuid:1");
+            Assert.assertTrue(first.isAvailable());
+            Assert.assertArrayEquals(jpeg1, first.getJpeg());
+            Assert.assertNull(first.getImage());
+
+            PagePrefetcher.PageImage second = prefetcher.next("uuid:2");
+            Assert.assertFalse(second.isAvailable());
+            Assert.assertFalse(second.isSecurityFail());
+
+            PagePrefetcher.PageImage third = prefetcher.next("uuid:3");
+            Assert.assertArrayEquals(jpeg2, third.getJpeg());
+        }
+        EasyMock.verify(fa);
+    }
+}
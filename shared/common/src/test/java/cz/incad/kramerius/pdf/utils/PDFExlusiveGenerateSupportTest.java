@@ -0,0 +1,126 @@
+package cz.incad.kramerius.pdf.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+public class PDFExlusiveGenerateSupportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        PDFExlusiveGenerateSupport.clear();
+        KConfiguration.getInstance().getConfiguration().clearProperty("pdfQueue.prepared.maxFiles");
+        KConfiguration.getInstance().getConfiguration().clearProperty("pdfQueue.prepared.quota");
+        KConfiguration.getInstance().getConfiguration().clearProperty("pdfQueue.prepared.ttl");
+    }
+
+    @Test
+    public void testMaxFiles() throws IOException {
+        KConfiguration.getInstance().getConfiguration().setProperty("pdfQueue.prepared.maxFiles", 2);
+        File first = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("first", first, 0);
+        File second = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("second", second, 1);
+        File third = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("third", third, 2);
+
+        // the oldest file is evicted and deleted
+        Assert.assertNull(PDFExlusiveGenerateSupport.popFile("first", 3));
+        Assert.assertFalse(first.exists());
+        Assert.assertEquals(second, PDFExlusiveGenerateSupport.popFile("second", 3));
+        Assert.assertEquals(third, PDFExlusiveGenerateSupport.popFile("third", 3));
+        // popped file belongs to the caller
+        Assert.assertTrue(third.exists());
+        Assert.assertNull(PDFExlusiveGenerateSupport.popFile("third", 3));
+    }
+
+    @Test
+    public void testQuota() throws IOException {
+        // 1 MB
+        KConfiguration.getInstance().getConfiguration().setProperty("pdfQueue.prepared.quota", 1);
+        File first = pdf(600 * 1024);
+        PDFExlusiveGenerateSupport.pushFile("first", first, 0);
+        File second = pdf(600 * 1024);
+        PDFExlusiveGenerateSupport.pushFile("second", second, 1);
+
+        Assert.assertNull(PDFExlusiveGenerateSupport.popFile("first", 2));
+        Assert.assertFalse(first.exists());
+        Assert.assertEquals(second, PDFExlusiveGenerateSupport.popFile("second", 2));
+
+        // popped file does not count into the quota any more
+        File third = pdf(600 * 1024);
+        PDFExlusiveGenerateSupport.pushFile("third", third, 3);
+        Assert.assertEquals(third, PDFExlusiveGenerateSupport.popFile("third", 4));
+    }
+
+    @Test
+    public void testTtl() throws IOException {
+        KConfiguration.getInstance().getConfiguration().setProperty("pdfQueue.prepared.ttl", 10);
+        File first = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("first", first, 0);
+        File second = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("second", second, 5000);
+
+        Assert.assertNull(PDFExlusiveGenerateSupport.popFile("first", 10001));
+        Assert.assertFalse(first.exists());
+        Assert.assertEquals(second, PDFExlusiveGenerateSupport.popFile("second", 10001));
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        File first = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("uuid", first, 0);
+        File second = pdf(10);
+        PDFExlusiveGenerateSupport.pushFile("uuid", second, 1);
+        Assert.assertFalse(first.exists());
+        Assert.assertEquals(second, PDFExlusiveGenerateSupport.popFile("uuid", 2));
+    }
+
+    @Test
+    public void testPermitReleasedOnce() throws InterruptedException {
+        int available = PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits();
+        Assert.assertTrue(PDFExlusiveGenerateSupport.PDF_SEMAPHORE.tryAcquire());
+        PDFExlusiveGenerateSupport.Permit permit = PDFExlusiveGenerateSupport.handOverPermit(50);
+        permit.writing();
+        // writing has started, the timeout does not release the permit
+        Thread.sleep(200);
+        Assert.assertEquals(available - 1, PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits());
+        Assert.assertTrue(permit.release());
+        Assert.assertFalse(permit.release());
+        Assert.assertEquals(available, PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits());
+    }
+
+    @Test
+    public void testPermitReleasedByTimeout() throws InterruptedException {
+        int available = PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits();
+        Assert.assertTrue(PDFExlusiveGenerateSupport.PDF_SEMAPHORE.tryAcquire());
+        // stream never written (HEAD request)
+        PDFExlusiveGenerateSupport.Permit permit = PDFExlusiveGenerateSupport.handOverPermit(50);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits() < available && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(available, PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits());
+        Assert.assertFalse(permit.release());
+        Assert.assertEquals(available, PDFExlusiveGenerateSupport.PDF_SEMAPHORE.availablePermits());
+    }
+
+    private File pdf(int size) throws IOException {
+        File file = this.folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,214 @@
+package cz.incad.kramerius.processes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import cz.incad.kramerius.processes.impl.ProcessSchedulerImpl;
+import cz.incad.kramerius.utils.conf.KConfiguration;
+
+public class NextSchedulerTaskTest {
+
+    private final List<String> started = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void setUp() {
+        Configuration conf = KConfiguration.getInstance().getConfiguration();
+        conf.setProperty("processQueue.activeProcess", "3");
+        conf.setProperty("processQueue.activeProcess.import", "1");
+        conf.setProperty("processQueue.plannedLookahead", "10");
+    }
+
+    @After
+    public void tearDown() {
+        Configuration conf = KConfiguration.getInstance().getConfiguration();
+        conf.clearProperty("processQueue.activeProcess");
+        conf.clearProperty("processQueue.activeProcess.import");
+        conf.clearProperty("processQueue.plannedLookahead");
+    }
+
+    @Test
+    public void testDefinitionLimit() {
+        List<LRProcess> planned = Arrays.asList(
+                process("a", "import", States.PLANNED),
+                process("b", "import", States.PLANNED),
+                process("c", "reindex", States.PLANNED),
+                process("d", "reindex", States.PLANNED));
+        LRProcessManager manager = EasyMock.createMock(LRProcessManager.class);
+        EasyMock.expect(manager.getPlannedProcess(3 + 10)).andReturn(planned);
+        EasyMock.replay(manager);
+
+        Map<String, String> running = new HashMap<String, String>();
+        new NextSchedulerTask(manager, null, scheduler(false), running, false).run();
+
+        Assert.assertEquals(Arrays.asList("a", "c", "d"), started);
+        Assert.assertEquals(3, running.size());
+        Assert.assertEquals("import", running.get("a"));
+        EasyMock.verify(manager);
+    }
+
+    @Test
+    public void testRunningProcessesCountToLimits() {
+        List<LRProcess> planned = Arrays.asList(
+                process("a", "import", States.PLANNED),
+                process("c", "reindex", States.PLANNED),
+                process("d", "reindex", States.PLANNED));
+        LRProcessManager manager = EasyMock.createMock(LRProcessManager.class);
+        EasyMock.expect(manager.getPlannedProcess(1 + 10)).andReturn(planned);
+        EasyMock.replay(manager);
+
+        Map<String, String> running = new HashMap<String, String>();
+        running.put("x", "import");
+        running.put("y", "reindex");
+        new NextSchedulerTask(manager, null, scheduler(false), running, false).run();
+
+        // import is capped by running x, one free slot in total
+        Assert.assertEquals(Collections.singletonList("c"), started);
+        Assert.assertEquals(3, running.size());
+        EasyMock.verify(manager);
+    }
+
+    @Test
+    public void testNoFreeSlot() {
+        // no planned processes are loaded at all
+        LRProcessManager manager = EasyMock.createMock(LRProcessManager.class);
+        EasyMock.replay(manager);
+
+        Map<String, String> running = new HashMap<String, String>();
+        running.put("x", "import");
+        running.put("y", "reindex");
+        running.put("z", "reindex");
+        new NextSchedulerTask(manager, null, scheduler(false), running, false).run();
+
+        Assert.assertTrue(started.isEmpty());
+        EasyMock.verify(manager);
+    }
+
+    @Test
+    public void testPeriodicPassReconciles() {
+        LRProcessManager manager = EasyMock.createMock(LRProcessManager.class);
+        EasyMock.expect(manager.getLongRunningProcesses(States.RUNNING)).andReturn(Arrays.asList(
+                process("y", "import", States.RUNNING)));
+        EasyMock.expect(manager.getPlannedProcess(2 + 10)).andReturn(Arrays.asList(
+                process("a", "import", States.PLANNED),
+                process("c", "reindex", States.PLANNED)));
+        DefinitionManager definitionManager = EasyMock.createMock(DefinitionManager.class);
+        definitionManager.load();
+        EasyMock.expectLastCall();
+        ProcessScheduler scheduler = scheduler(true);
+        EasyMock.replay(manager, definitionManager);
+
+        // x has finished on another node
+        Map<String, String> running = new HashMap<String, String>();
+        running.put("x", "import");
+        new NextSchedulerTask(manager, definitionManager, scheduler, running, true).run();
+
+        Assert.assertEquals(Collections.singletonList("c"), started);
+        Assert.assertFalse(running.containsKey("x"));
+        Assert.assertTrue(running.containsKey("y"));
+        EasyMock.verify(manager, definitionManager, scheduler);
+    }
+
+    @Test
+    public void testFinishedProcessFreesSlot() throws InterruptedException {
+        KConfiguration.getInstance().getConfiguration().setProperty("processQueue.activeProcess", "1");
+        final CountDownLatch secondStarted = new CountDownLatch(1);
+        final LRProcess first = process("a", "import", States.PLANNED);
+        final LRProcess second = process("b", "reindex", States.PLANNED, secondStarted);
+        LRProcessManager manager = EasyMock.createNiceMock(LRProcessManager.class);
+        EasyMock.expect(manager.getLongRunningProcesses(States.RUNNING)).andReturn(new ArrayList<LRProcess>()).anyTimes();
+        EasyMock.expect(manager.getPlannedProcess(EasyMock.anyInt())).andAnswer(() -> {
+            List<LRProcess> planned = new ArrayList<LRProcess>();
+            for (LRProcess process : Arrays.asList(first, second)) {
+                if (!started.contains(process.getUUID())) {
+                    planned.add(process);
+                }
+            }
+            return planned;
+        }).anyTimes();
+        DefinitionManager definitionManager = EasyMock.createNiceMock(DefinitionManager.class);
+        EasyMock.replay(manager, definitionManager);
+
+        ProcessSchedulerImpl scheduler = new ProcessSchedulerImpl(manager, definitionManager);
+        try {
+            scheduler.init("lib");
+            scheduler.scheduleNextTask();
+            waitFor("a");
+            // only one slot; second waits until the first one finishes (without waiting for the periodic check)
+            scheduler.processStateChanged(process("b", "reindex", States.PLANNED));
+            Assert.assertFalse(secondStarted.await(200, TimeUnit.MILLISECONDS));
+            scheduler.processStateChanged(process("a", "import", States.FINISHED));
+            Assert.assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void waitFor(String uuid) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!started.contains(uuid) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(started.contains(uuid));
+    }
+
+    private ProcessScheduler scheduler(boolean periodic) {
+        ProcessScheduler scheduler = EasyMock.createMock(ProcessScheduler.class);
+        EasyMock.expect(scheduler.getApplicationLib()).andReturn("lib").anyTimes();
+        EasyMock.expect(scheduler.getAdditionalJarFiles()).andReturn(new String[0]).anyTimes();
+        if (periodic) {
+            scheduler.scheduleNextTask();
+            EasyMock.expectLastCall();
+        }
+        EasyMock.replay(scheduler);
+        return scheduler;
+    }
+
+    private LRProcess process(String uuid, String definitionId, States state) {
+        return process(uuid, definitionId, state, null);
+    }
+
+    /**
+     * Process recording its start
+     */
+    private LRProcess process(final String uuid, final String definitionId, final States state, final CountDownLatch startLatch) {
+        return (LRProcess) Proxy.newProxyInstance(NextSchedulerTaskTest.class.getClassLoader(), new Class<?>[] { LRProcess.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("getUUID")) {
+                    return uuid;
+                } else if (name.equals("getDefinitionId")) {
+                    return definitionId;
+                } else if (name.equals("getProcessState")) {
+                    return state;
+                } else if (name.equals("startMe")) {
+                    started.add(uuid);
+                    if (startLatch != null) {
+                        startLatch.countDown();
+                    }
+                    return null;
+                } else if (name.equals("toString")) {
+                    return uuid;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+}
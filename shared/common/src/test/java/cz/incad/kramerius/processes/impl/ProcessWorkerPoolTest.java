@@ -0,0 +1,221 @@
+package cz.incad.kramerius.processes.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cz.incad.kramerius.processes.starter.ProcessWorker;
+
+public class ProcessWorkerPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProcessWorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testJobDone() throws Exception {
+        this.pool = pool(1, 20);
+        RecordingJob job = job("ok");
+        submit(job);
+        // worker takes the next job after the previous one
+        RecordingJob next = job("ok");
+        submit(next);
+        awaitStarted(next);
+        Assert.assertEquals(1, job.started);
+        Assert.assertEquals(0, job.notStarted);
+        Assert.assertEquals(1, job.terminated.getCount());
+    }
+
+    @Test
+    public void testWorkerKilledDuringJob() throws Exception {
+        this.pool = pool(1, 20);
+        RecordingJob killed = job("die");
+        submit(killed);
+        Assert.assertTrue(killed.terminated.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, killed.started);
+        Assert.assertEquals(0, killed.notStarted);
+
+        // worker JVM is started again for the next job
+        RecordingJob next = job("ok");
+        submit(next);
+        RecordingJob last = job("ok");
+        submit(last);
+        awaitStarted(last);
+        Assert.assertEquals(1, next.terminated.getCount());
+        Assert.assertNotEquals(pid(killed), pid(next));
+    }
+
+    @Test
+    public void testJobNotAccepted() throws Exception {
+        this.pool = pool(1, 20);
+        RecordingJob refused = job("refuse");
+        submit(refused);
+        Assert.assertTrue(refused.notStartedLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, refused.terminated.getCount());
+    }
+
+    @Test
+    public void testBusyWorkerQueuesJob() throws Exception {
+        this.pool = pool(1, 20);
+        RecordingJob sleeping = job("sleep");
+        submit(sleeping);
+        awaitStarted(sleeping);
+        RecordingJob queued = job("ok");
+        Assert.assertTrue(this.pool.submit(queued));
+        // the same process submitted again by the scheduler is not queued twice
+        Assert.assertTrue(this.pool.submit(queued));
+        // queue is full, the process runs in its own JVM
+        Assert.assertFalse(this.pool.submit(job("ok")));
+        Assert.assertEquals(0, queued.started);
+    }
+
+    @Test
+    public void testNoRecyclingByDefault() throws Exception {
+        this.pool = pool(1, 0);
+        RecordingJob first = job("ok");
+        RecordingJob second = job("ok");
+        submit(first);
+        submit(second);
+        awaitStarted(second);
+        RecordingJob last = job("ok");
+        submit(last);
+        awaitStarted(last);
+        Assert.assertEquals(pid(first), pid(second));
+    }
+
+    @Test
+    public void testWorkerRecycled() throws Exception {
+        this.pool = pool(1, 1);
+        RecordingJob first = job("ok");
+        RecordingJob second = job("ok");
+        submit(first);
+        submit(second);
+        RecordingJob last = job("ok");
+        submit(last);
+        awaitStarted(last);
+        Assert.assertNotEquals(pid(first), pid(second));
+        Assert.assertEquals(1, first.terminated.getCount());
+    }
+
+    private ProcessWorkerPool pool(int size, int maxJobs) throws IOException {
+        return new ProcessWorkerPool(size, 1, System.getProperty("java.class.path"), FakeWorker.class.getName(),
+                new String[0], maxJobs, this.folder.newFolder());
+    }
+
+    /**
+     * Submits job as soon as the worker JVM is running and the queue has room
+     */
+    private void submit(RecordingJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!this.pool.submit(job)) {
+            Assert.assertTrue("job not queued", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Waits until a worker takes the job; with one worker all previous jobs are finished
+     */
+    private static void awaitStarted(RecordingJob job) throws InterruptedException {
+        Assert.assertTrue("job not started", job.startedLatch.await(20, TimeUnit.SECONDS));
+    }
+
+    private RecordingJob job(String command) throws IOException {
+        File jobFile = this.folder.newFile();
+        Files.write(jobFile.toPath(), command.getBytes(StandardCharsets.UTF_8));
+        return new RecordingJob(jobFile);
+    }
+
+    private static String pid(RecordingJob job) throws IOException {
+        return new String(Files.readAllBytes(new File(job.jobFile.getAbsolutePath() + ".pid").toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static class RecordingJob implements ProcessWorkerPool.Job {
+        private final File jobFile;
+        private volatile int started = 0;
+        private volatile int notStarted = 0;
+        private final CountDownLatch startedLatch = new CountDownLatch(1);
+        private final CountDownLatch notStartedLatch = new CountDownLatch(1);
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        RecordingJob(File jobFile) {
+            this.jobFile = jobFile;
+        }
+
+        @Override
+        public String getId() {
+            return this.jobFile.getName();
+        }
+
+        @Override
+        public File getJobFile() {
+            return this.jobFile;
+        }
+
+        @Override
+        public void started() {
+            this.started++;
+            this.startedLatch.countDown();
+        }
+
+        @Override
+        public void notStarted() {
+            this.notStarted++;
+            this.notStartedLatch.countDown();
+        }
+
+        @Override
+        public void terminated() {
+            this.terminated.countDown();
+        }
+    }
+
+    /**
+     * Worker JVM speaking the protocol of {@link ProcessWorker}; job file contains the command
+     */
+    public static class FakeWorker {
+
+        public static void main(String[] args) throws Exception {
+            PrintStream protocol = new PrintStream(System.out, true, "UTF-8");
+            BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String pid = ManagementFactory.getRuntimeMXBean().getName();
+            String line;
+            while ((line = input.readLine()) != null) {
+                String command = new String(Files.readAllBytes(new File(line).toPath()), StandardCharsets.UTF_8).trim();
+                if (command.equals("refuse")) {
+                    Runtime.getRuntime().halt(1);
+                }
+                Files.write(new File(line + ".pid").toPath(), pid.getBytes(StandardCharsets.UTF_8));
+                protocol.println(ProcessWorker.STARTED);
+                if (command.equals("die")) {
+                    // as if the JVM has been killed
+                    Runtime.getRuntime().halt(137);
+                } else if (command.equals("sleep")) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                }
+                protocol.println(ProcessWorker.DONE);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package cz.incad.kramerius.repository;
+
+import cz.incad.kramerius.resourceindex.ProcessingIndexFeeder;
+import org.apache.solr.common.SolrDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class RepositoryApiImplTest {
+
+    private static final Pattern RANGE_DIGIT = Pattern.compile("source:uuid\\\\:([0-9a-fA-F])\\*");
+    private static final String NON_UUID = " OR (*:* -(";
+
+    @Test
+    public void testPidRangesCount() {
+        Assert.assertEquals(Collections.singletonList("*:*"), RepositoryApiImpl.pidRanges(0));
+        Assert.assertEquals(Collections.singletonList("*:*"), RepositoryApiImpl.pidRanges(1));
+        Assert.assertEquals(2, RepositoryApiImpl.pidRanges(2).size());
+        Assert.assertEquals(2, RepositoryApiImpl.pidRanges(3).size());
+        Assert.assertEquals(8, RepositoryApiImpl.pidRanges(15).size());
+        Assert.assertEquals(16, RepositoryApiImpl.pidRanges(16).size());
+        Assert.assertEquals(16, RepositoryApiImpl.pidRanges(100).size());
+    }
+
+    @Test
+    public void testPidRangesDisjointAndComplete() {
+        for (int partitions : new int[] { 2, 4, 8, 16 }) {
+            List<String> ranges = RepositoryApiImpl.pidRanges(partitions);
+            Set<Character> digits = new HashSet<>();
+            int nonUuidRanges = 0;
+            for (String range : ranges) {
+                for (char digit : digits(range)) {
+                    Assert.assertTrue("digit " + digit + " in more ranges", digits.add(digit));
+                }
+                if (range.contains(NON_UUID)) {
+                    nonUuidRanges++;
+                }
+            }
+            Assert.assertEquals(22, digits.size());
+            Assert.assertEquals(1, nonUuidRanges);
+            Assert.assertTrue(ranges.get(0).contains(NON_UUID));
+            // catch-all range excludes exactly the prefixes of all ranges
+            String catchAll = ranges.get(0).substring(ranges.get(0).indexOf(NON_UUID));
+            Assert.assertEquals(new HashSet<>(allDigits(catchAll)), digits);
+        }
+    }
+
+    @Test
+    public void testPidRangesUppercaseDigits() {
+        List<String> ranges = RepositoryApiImpl.pidRanges(16);
+        Assert.assertEquals(Arrays.asList('a', 'A'), digits(ranges.get(10)));
+        Assert.assertEquals(Arrays.asList('f', 'F'), digits(ranges.get(15)));
+        Assert.assertEquals(Collections.singletonList('0'), digits(ranges.get(0)));
+    }
+
+    @Test
+    public void testStreamPids() {
+        List<String> pids = Arrays.asList(
+                "uuid:0a2a5d7c-4c7e-4c4a-9a0b-111111111111",
+                "uuid:3b2a5d7c-4c7e-4c4a-9a0b-222222222222",
+                "uuid:7c2a5d7c-4c7e-4c4a-9a0b-333333333333",
+                "uuid:8d2a5d7c-4c7e-4c4a-9a0b-444444444444",
+                "uuid:fe2a5d7c-4c7e-4c4a-9a0b-555555555555",
+                "uuid:AB2A5D7C-4C7E-4C4A-9A0B-777777777777",
+                "uuid:F02A5D7C-4C7E-4C4A-9A0B-888888888888",
+                "uuid:x-not-hex",
+                "vc:6f2a5d7c-4c7e-4c4a-9a0b-666666666666");
+        for (int partitions : new int[] { 1, 2, 4, 16 }) {
+            FakeFeeder feeder = new FakeFeeder(pids);
+            Stream<String> stream = RepositoryApiImpl.streamPids(feeder, "type:description", partitions);
+            List<String> streamed = stream.sorted().collect(Collectors.toList());
+            List<String> expected = new ArrayList<>(pids);
+            Collections.sort(expected);
+            Assert.assertEquals(expected, streamed);
+            Assert.assertEquals(RepositoryApiImpl.pidRanges(partitions).size(), feeder.queries.size());
+            for (String query : feeder.queries) {
+                Assert.assertTrue(query.startsWith("type:description"));
+            }
+        }
+    }
+
+    /**
+     * Digits of uuid prefixes in the range, without the catch-all part
+     */
+    private static List<Character> digits(String range) {
+        int nonUuid = range.indexOf(NON_UUID);
+        return allDigits(nonUuid < 0 ? range : range.substring(0, nonUuid));
+    }
+
+    private static List<Character> allDigits(String range) {
+        List<Character> digits = new ArrayList<>();
+        Matcher matcher = RANGE_DIGIT.matcher(range);
+        while (matcher.find()) {
+            digits.add(matcher.group(1).charAt(0));
+        }
+        return digits;
+    }
+
+    /**
+     * Processing index returning description documents whose pids fall into the range of the query
+     */
+    private static class FakeFeeder extends ProcessingIndexFeeder {
+        private final List<String> pids;
+        private final List<String> queries = new CopyOnWriteArrayList<>();
+
+        FakeFeeder(List<String> pids) {
+            super(null);
+            this.pids = pids;
+        }
+
+        @Override
+        public Stream<SolrDocument> streamProcessing(String query, String... fields) {
+            Assert.assertEquals(Collections.singletonList("source"), Arrays.asList(fields));
+            queries.add(query);
+            List<Character> digits = digits(query);
+            boolean nonUuid = query.contains(NON_UUID);
+            List<SolrDocument> docs = new ArrayList<>();
+            for (String pid : pids) {
+                boolean uuid = pid.startsWith("uuid:") && Character.digit(pid.charAt("uuid:".length()), 16) >= 0;
+                boolean matches = digits.isEmpty()
+                        || (uuid && digits.contains(pid.charAt("uuid:".length())))
+                        || (!uuid && nonUuid);
+                if (matches) {
+                    SolrDocument doc = new SolrDocument();
+                    doc.setField("source", pid);
+                    docs.add(doc);
+                }
+            }
+            // relations without source are skipped
+            docs.add(new SolrDocument());
+            return docs.stream();
+        }
+    }
+}
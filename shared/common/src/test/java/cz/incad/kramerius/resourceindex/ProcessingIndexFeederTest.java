@@ -0,0 +1,166 @@
+package cz.incad.kramerius.resourceindex;
+
+import cz.incad.kramerius.utils.conf.KConfiguration;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+public class ProcessingIndexFeederTest {
+
+    @Before
+    public void setUp() {
+        // batches are sent only explicitly
+        KConfiguration.getInstance().getConfiguration().setProperty("processingIndex.flushInterval", "0");
+        KConfiguration.getInstance().getConfiguration().setProperty("processingIndex.iteration.rows", "10");
+    }
+
+    @After
+    public void tearDown() {
+        KConfiguration.getInstance().getConfiguration().clearProperty("processingIndex.flushInterval");
+        KConfiguration.getInstance().getConfiguration().clearProperty("processingIndex.iteration.rows");
+    }
+
+    @Test
+    public void testFailedBatchIsNotLost() throws Exception {
+        RecordingSolrClient solr = new RecordingSolrClient();
+        ProcessingIndexFeeder feeder = new ProcessingIndexFeeder(solr);
+        feeder.setBatchSize(3);
+        feeder.feedRelationDocument("uuid:1", "hasPage", "uuid:2");
+        feeder.feedRelationDocument("uuid:1", "hasPage", "uuid:3");
+        Assert.assertTrue(solr.sent.isEmpty());
+
+        solr.failing = true;
+        try {
+            feeder.flush();
+            Assert.fail("flush should fail");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertTrue(solr.sent.isEmpty());
+
+        // failed documents go with the next batch, in the original order
+        solr.failing = false;
+        feeder.feedRelationDocument("uuid:1", "hasPage", "uuid:4");
+        Assert.assertEquals(Arrays.asList("uuid:2", "uuid:3", "uuid:4"), solr.sent);
+    }
+
+    @Test
+    public void testUnbufferedSentImmediately() throws Exception {
+        RecordingSolrClient solr = new RecordingSolrClient();
+        ProcessingIndexFeeder feeder = new ProcessingIndexFeeder(solr);
+        feeder.setBatchSize(0);
+        feeder.feedRelationDocument("uuid:1", "hasPage", "uuid:2");
+        Assert.assertEquals(Arrays.asList("uuid:2"), solr.sent);
+    }
+
+    @Test
+    public void testStreamFetchesPagesWhenConsumed() {
+        PagingSolrClient solr = new PagingSolrClient(95);
+        ProcessingIndexFeeder feeder = new ProcessingIndexFeeder(solr);
+        Iterator<SolrDocument> iterator = feeder.streamProcessing("*:*", "source").iterator();
+        for (int i = 0; i < 15; i++) {
+            Assert.assertEquals("uuid:" + i, iterator.next().getFieldValue("source"));
+        }
+        Assert.assertEquals(2, solr.requests);
+    }
+
+    @Test
+    public void testStreamEstimateAndNoSplit() {
+        PagingSolrClient solr = new PagingSolrClient(95);
+        ProcessingIndexFeeder feeder = new ProcessingIndexFeeder(solr);
+        Spliterator<SolrDocument> spliterator = feeder.streamProcessing("*:*", "source").spliterator();
+        Assert.assertEquals(95, spliterator.estimateSize());
+        Assert.assertNull(spliterator.trySplit());
+        Assert.assertEquals(1, solr.requests);
+
+        // parallel stream does not fetch pages ahead, all documents are streamed once
+        PagingSolrClient parallelSolr = new PagingSolrClient(95);
+        List<Object> sources = new ProcessingIndexFeeder(parallelSolr).streamProcessing("*:*", "source").parallel()
+                .map(doc -> doc.getFieldValue("source")).collect(Collectors.toList());
+        Assert.assertEquals(95, sources.size());
+        Assert.assertEquals("uuid:94", sources.get(94));
+        Assert.assertEquals(11, parallelSolr.requests);
+    }
+
+    /**
+     * Solr client paging documents uuid:0 .. uuid:N-1 by cursor; cursor mark is the position of the next page
+     */
+    private static class PagingSolrClient extends SolrClient {
+        private final int count;
+        private volatile int requests = 0;
+
+        PagingSolrClient(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) {
+            requests++;
+            SolrParams params = ((QueryRequest) request).getParams();
+            String cursorMark = params.get(CursorMarkParams.CURSOR_MARK_PARAM);
+            int from = CursorMarkParams.CURSOR_MARK_START.equals(cursorMark) ? 0 : Integer.parseInt(cursorMark);
+            int to = Math.min(from + params.getInt("rows"), count);
+            SolrDocumentList docs = new SolrDocumentList();
+            docs.setNumFound(count);
+            for (int i = from; i < to; i++) {
+                SolrDocument doc = new SolrDocument();
+                doc.setField("source", "uuid:" + i);
+                docs.add(doc);
+            }
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", docs);
+            response.add(CursorMarkParams.CURSOR_MARK_NEXT, String.valueOf(to));
+            return response;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Solr client recording target pids of added relations
+     */
+    private static class RecordingSolrClient extends SolrClient {
+        private final List<String> sent = new ArrayList<>();
+        private volatile boolean failing = false;
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            if (failing) {
+                throw new IOException("solr not available");
+            }
+            List<SolrInputDocument> docs = ((UpdateRequest) request).getDocuments();
+            if (docs != null) {
+                for (SolrInputDocument doc : docs) {
+                    sent.add(doc.getFieldValue("targetPid").toString());
+                }
+            }
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
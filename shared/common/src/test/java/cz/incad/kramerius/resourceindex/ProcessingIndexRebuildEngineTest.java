@@ -0,0 +1,106 @@
+package cz.incad.kramerius.resourceindex;
+
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class ProcessingIndexRebuildEngineTest {
+
+    private static final String FOXML = "/cz/incad/kramerius/fedora/om/5035a48a-5e2e-486c-8127-2fa650842e46.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProcessingIndexDocuments() throws Exception {
+        ProcessingIndexFeeder feeder = new ProcessingIndexFeeder(null);
+        InputStream foxml = ProcessingIndexRebuildEngineTest.class.getResourceAsStream("/cz/incad/kramerius/fedora/om/5035a48a-5e2e-486c-8127-2fa650842e46.xml");
+        List<SolrInputDocument> docs = ProcessingIndexRebuildEngine.processingIndexDocuments(feeder, foxml);
+        Assert.assertNotNull(docs);
+
+        List<SolrInputDocument> descriptions = docs.stream().filter(d -> "description".equals(d.getFieldValue("type"))).collect(Collectors.toList());
+        Assert.assertEquals(1, descriptions.size());
+        Assert.assertEquals("model:monograph", descriptions.get(0).getFieldValue("model"));
+        Assert.assertEquals("Illustrovaný průvodce Jičín a Prachovské skály", descriptions.get(0).getFieldValue("dc.title"));
+        Assert.assertEquals("uuid:5035a48a-5e2e-486c-8127-2fa650842e46", descriptions.get(0).getFieldValue("source"));
+
+        List<SolrInputDocument> relations = docs.stream().filter(d -> "relation".equals(d.getFieldValue("type"))).collect(Collectors.toList());
+        // one of 37 hasPage relations is duplicated in RELS-EXT
+        Assert.assertEquals(36, relations.stream().filter(d -> "hasPage".equals(d.getFieldValue("relation"))).count());
+        Assert.assertEquals(1, relations.stream().filter(d -> "hasDonator".equals(d.getFieldValue("relation"))).count());
+        // literals (policy, itemID) are not relations
+        Assert.assertEquals(37, relations.size());
+    }
+
+    @Test
+    public void testFailedDirectoriesNotCheckpointed() throws Exception {
+        Path store = folder.newFolder("store").toPath();
+        Path checkpoint = folder.getRoot().toPath().resolve("checkpoint");
+        Files.createDirectories(store.resolve("ab/cd"));
+        Files.createDirectories(store.resolve("ef/gh"));
+        try (InputStream foxml = ProcessingIndexRebuildEngineTest.class.getResourceAsStream(FOXML)) {
+            Files.copy(foxml, store.resolve("ab/cd/good.xml"));
+        }
+        Files.write(store.resolve("ef/gh/bad.xml"), "<broken".getBytes(StandardCharsets.UTF_8));
+
+        CountingFeeder feeder = new CountingFeeder();
+        ProcessingIndexRebuildEngine engine = new ProcessingIndexRebuildEngine(feeder, store, checkpoint, 2, 0);
+        engine.rebuild(false);
+        Assert.assertEquals(1, engine.getProcessed());
+        Assert.assertEquals(1, engine.getFailed());
+        List<String> finished = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        Assert.assertTrue(finished.contains(Paths.get("ab", "cd").toString()));
+        Assert.assertFalse(finished.contains("ef"));
+        Assert.assertFalse(finished.contains(Paths.get("ef", "gh").toString()));
+        Assert.assertFalse(finished.contains(""));
+
+        // failed object is retried by resumed rebuild, finished directories are skipped
+        try (InputStream foxml = ProcessingIndexRebuildEngineTest.class.getResourceAsStream(FOXML)) {
+            Files.copy(foxml, store.resolve("ef/gh/bad.xml"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        CountingFeeder resumedFeeder = new CountingFeeder();
+        ProcessingIndexRebuildEngine resumed = new ProcessingIndexRebuildEngine(resumedFeeder, store, checkpoint, 2, 0);
+        resumed.rebuild(true);
+        Assert.assertEquals(1, resumed.getProcessed());
+        Assert.assertEquals(0, resumed.getFailed());
+        Assert.assertEquals(0, resumedFeeder.deletions.get());
+        Assert.assertFalse(Files.exists(checkpoint));
+    }
+
+    private static class CountingFeeder extends ProcessingIndexFeeder {
+        private final AtomicInteger deletions = new AtomicInteger();
+
+        CountingFeeder() {
+            super(null);
+        }
+
+        @Override
+        public UpdateResponse feedDocuments(Collection<SolrInputDocument> docs) {
+            return null;
+        }
+
+        @Override
+        public UpdateResponse deleteProcessingIndex() {
+            deletions.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void commit() {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cz.incad.kramerius.security.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cz.incad.kramerius.security.Right;
+import cz.incad.kramerius.security.Role;
+
+public class RightsSnapshotTest {
+
+    @Test
+    public void testFindRights() throws Exception {
+        RightsSnapshot snapshot = snapshot(1L);
+        UserImpl user = new UserImpl(5, "first", "sur", "login", -1);
+        user.setGroups(new Role[] { new RoleImpl(7, "group", -1) });
+
+        Assert.assertEquals(ids(1, 2, 3), ids(snapshot.findRights(new String[] { "uuid:a", "uuid:b" }, "read", user, null)));
+        Assert.assertEquals(ids(1, 2), ids(snapshot.findRights(new String[] { "uuid:a" }, "read", user, null)));
+        Assert.assertEquals(ids(4), ids(snapshot.findRights(new String[] { "uuid:a" }, "administrate", user, null)));
+        Assert.assertEquals(ids(), ids(snapshot.findRights(new String[] { "uuid:c" }, "read", user, null)));
+        Assert.assertEquals(ids(), ids(snapshot.findRights(new String[] { "uuid:a" }, "unknown", user, null)));
+
+        // other user, no groups
+        UserImpl other = new UserImpl(6, "first", "sur", "other", -1);
+        Assert.assertEquals(ids(), ids(snapshot.findRights(new String[] { "uuid:a", "uuid:b" }, "read", other, null)));
+    }
+
+    @Test
+    public void testFreshInstancesForEveryLookup() throws Exception {
+        RightsSnapshot snapshot = snapshot(1L);
+        UserImpl user = new UserImpl(5, "first", "sur", "login", -1);
+        Right[] first = snapshot.findRights(new String[] { "uuid:a" }, "administrate", user, null);
+        Right[] second = snapshot.findRights(new String[] { "uuid:a" }, "administrate", user, null);
+        Assert.assertNotSame(first[0], second[0]);
+        Assert.assertEquals(first[0].getPid(), second[0].getPid());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        TestRightsManager manager = new TestRightsManager();
+        manager.snapshotBuilt(snapshot(manager.getRightsVersion()));
+        RightsSnapshot current = manager.currentSnapshot();
+        Assert.assertNotNull(current);
+        Assert.assertEquals(manager.getRightsVersion(), current.getVersion());
+
+        // change of rights makes the snapshot unusable until it is rebuilt
+        int scheduled = manager.scheduled;
+        manager.rightsChanged();
+        Assert.assertTrue(manager.scheduled > scheduled);
+        Assert.assertNull(manager.currentSnapshot());
+
+        manager.snapshotBuilt(snapshot(manager.getRightsVersion()));
+        Assert.assertNotNull(manager.currentSnapshot());
+    }
+
+    private static RightsSnapshot snapshot(long version) throws Exception {
+        RightsSnapshot.Builder builder = new RightsSnapshot.Builder(version);
+        builder.addRow(row(1, "uuid:a", "read", 5, null));
+        builder.addRow(row(2, "uuid:a", "read", null, 7));
+        builder.addRow(row(3, "uuid:b", "read", 5, null));
+        builder.addRow(row(4, "uuid:a", "administrate", 5, null));
+        builder.addRow(row(5, "uuid:b", "read", null, 8));
+        return builder.build();
+    }
+
+    private static Set<Integer> ids(Right[] rights) {
+        Set<Integer> ids = new TreeSet<Integer>();
+        for (Right right : rights) {
+            ids.add(right.getId());
+        }
+        return ids;
+    }
+
+    private static Set<Integer> ids(Integer... ids) {
+        return new TreeSet<Integer>(Arrays.asList(ids));
+    }
+
+    /**
+     * Row of the rights table without criterium
+     */
+    private static ResultSet row(int rightId, String pid, String action, Integer userId, Integer groupId) {
+        final Map<String, Object> columns = new HashMap<String, Object>();
+        columns.put("right_id", rightId);
+        columns.put("uuid", pid);
+        columns.put("action", action);
+        columns.put("user_id", userId);
+        columns.put("group_id", groupId);
+        columns.put("loginname", "login");
+        return (ResultSet) Proxy.newProxyInstance(RightsSnapshotTest.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+            private boolean wasNull = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("wasNull")) {
+                    return wasNull;
+                }
+                Object value = columns.get(args[0]);
+                wasNull = value == null;
+                if (method.getName().equals("getInt")) {
+                    return value != null ? value : 0;
+                } else if (method.getName().equals("getString")) {
+                    return value;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static class TestRightsManager extends DatabaseRightsManager {
+        private int scheduled = 0;
+
+        @Override
+        void scheduleSnapshotRebuild() {
+            scheduled++;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cz.incad.kramerius.statistics.accesslogs.database;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import cz.incad.kramerius.statistics.ReportedAction;
+
+public class DatabaseStatisticsAccessLogImplTest {
+
+    private RecordingAccessLog log;
+
+    @After
+    public void tearDown() {
+        if (this.log != null) {
+            this.log.release.countDown();
+            this.log.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        this.log = new RecordingAccessLog(1000, 100);
+        // writer waits in the first batch until all other events are queued
+        this.log.enqueue(event(0));
+        Assert.assertTrue(this.log.firstBatch.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 250; i++) {
+            this.log.enqueue(event(i));
+        }
+        this.log.release.countDown();
+        waitForEvents(251);
+        Assert.assertEquals(Arrays.asList(1, 100, 100, 50), this.log.batchSizes);
+    }
+
+    @Test
+    public void testFlushOnShutdown() throws Exception {
+        this.log = new RecordingAccessLog(1000, 100);
+        this.log.enqueue(event(0));
+        Assert.assertTrue(this.log.firstBatch.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 150; i++) {
+            this.log.enqueue(event(i));
+        }
+        this.log.release.countDown();
+        this.log.shutdown();
+        Assert.assertEquals(151, this.log.written.size());
+
+        // no events after shutdown
+        this.log.enqueue(event(151));
+        Assert.assertEquals(1, this.log.getDroppedEvents());
+        Assert.assertEquals(151, this.log.written.size());
+    }
+
+    @Test
+    public void testFullQueueDropsEvents() throws Exception {
+        this.log = new RecordingAccessLog(10, 100);
+        this.log.enqueue(event(0));
+        Assert.assertTrue(this.log.firstBatch.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 15; i++) {
+            this.log.enqueue(event(i));
+        }
+        Assert.assertEquals(5, this.log.getDroppedEvents());
+        this.log.release.countDown();
+        waitForEvents(11);
+        Assert.assertEquals(Arrays.asList(1, 10), this.log.batchSizes);
+    }
+
+    private void waitForEvents(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.log.written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, this.log.written.size());
+    }
+
+    private static DatabaseStatisticsAccessLogImpl.AccessEvent event(int i) {
+        return new DatabaseStatisticsAccessLogImpl.AccessEvent("uuid:" + i, new Timestamp(System.currentTimeMillis()),
+                "127.0.0.1", "user", "http://localhost", ReportedAction.READ, "session", false,
+                Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Access log recording batches instead of writing them to the database
+     */
+    private static class RecordingAccessLog extends DatabaseStatisticsAccessLogImpl {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<AccessEvent> written = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstBatch = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        RecordingAccessLog(int queueSize, int batchSize) {
+            super(queueSize, batchSize);
+        }
+
+        @Override
+        void writeBatch(List<AccessEvent> batch) throws SQLException {
+            firstBatch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+        }
+    }
+}
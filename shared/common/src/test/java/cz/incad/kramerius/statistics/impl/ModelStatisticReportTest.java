@@ -32,8 +32,8 @@ import org.junit.Test;
 public class ModelStatisticReportTest {
 
     @Test
-    public void testPrepareView() {
-        StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("prepareModelView");
+    public void testIpAddrFilter() {
+        StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("selectModelReport");
         statRecord.setAttribute("model", "monograph");
         statRecord.setAttribute("action", "PDF");
         statRecord.setAttribute("fromDefined", true);
@@ -41,7 +41,7 @@ public class ModelStatisticReportTest {
        
         Assert.assertFalse(statRecord.toString().contains(" SIMILAR TO "));
         
-        statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("prepareModelView");
+        statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("selectModelReportUnique");
         statRecord.setAttribute("model", "monograph");
         statRecord.setAttribute("action", "PDF");
         statRecord.setAttribute("fromDefined", true);
@@ -15,6 +15,7 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
@@ -36,6 +37,30 @@ public class NKPLogReportTest {
         Assert.assertTrue(statRecord.toString().contains("?"));
     }
 
+    @Test
+    public void testPartitions() {
+        Timestamp from = Timestamp.valueOf(LocalDateTime.of(2021, 1, 1, 0, 0));
+        Timestamp to = Timestamp.valueOf(LocalDateTime.of(2021, 1, 3, 12, 0));
+
+        List<Timestamp[]> partitions = NKPLogReport.partitions(from, to, 1);
+        Assert.assertEquals(3, partitions.size());
+        Assert.assertEquals(from, partitions.get(0)[0]);
+        Assert.assertEquals(Timestamp.valueOf(LocalDateTime.of(2021, 1, 2, 0, 0)), partitions.get(0)[1]);
+        Assert.assertEquals(partitions.get(0)[1], partitions.get(1)[0]);
+        Assert.assertEquals(to, partitions.get(2)[1]);
+
+        partitions = NKPLogReport.partitions(from, to, 0);
+        Assert.assertEquals(1, partitions.size());
+
+        Assert.assertTrue(NKPLogReport.partitions(to, from, 1).isEmpty());
+
+        StringTemplate statRecord = DatabaseStatisticsAccessLogImpl.stGroup.getInstanceOf("nkpLogsReport");
+        statRecord.setAttribute("fromDefined", true);
+        statRecord.setAttribute("toDefined", true);
+        statRecord.setAttribute("fromInclusive", true);
+        Assert.assertTrue(statRecord.toString().contains(">="));
+    }
+
     @Test
     @Ignore
     public void testProcessDatabase() throws SQLException {
@@ -92,10 +117,10 @@ public class NKPLogReportTest {
 //            counter.incrementAndGet();
 //        });
 
-        new NKPLogReport.StastisticsIteration(sql, new ArrayList(),conn, record-> {
+        NKPLogReport.iterate(conn, sql, new Object[0], 1000, record-> {
             //logReport(collectedRecord, sup);
             System.out.println(record);
-        }).iterate();
+        });
 
         long stop = System.currentTimeMillis();
         System.out.println("It took "+(stop - start)+" ms ");